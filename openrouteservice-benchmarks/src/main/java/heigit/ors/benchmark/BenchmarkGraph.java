@@ -0,0 +1,90 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import heigit.ors.routing.RouteSearchParameters;
+import heigit.ors.routing.RoutingProfileManager;
+import heigit.ors.routing.RoutingProfileType;
+import heigit.ors.routing.RoutingRequest;
+import heigit.ors.routing.WeightingMethod;
+
+/**
+ * Access to the graph shared by all benchmarks. The graph is built from the OSM extract configured in conf/app.config
+ * on first use and loaded from the graphs directory afterwards.
+ */
+public final class BenchmarkGraph {
+	public static final int PROFILE_TYPE = RoutingProfileType.DRIVING_CAR;
+
+	// Heidelberg, the area covered by the extract of the API tests
+	private static final double MIN_LON = 8.64;
+	private static final double MAX_LON = 8.72;
+	private static final double MIN_LAT = 49.38;
+	private static final double MAX_LAT = 49.43;
+	private static final Coordinate CENTER = new Coordinate(8.6934, 49.4093);
+
+	private BenchmarkGraph() {
+	}
+
+	public static RoutingProfileManager getProfileManager() throws Exception {
+		return RoutingProfileManager.getInstance();
+	}
+
+	public static RouteSearchParameters createSearchParameters() throws Exception {
+		RouteSearchParameters searchParams = new RouteSearchParameters();
+		searchParams.setProfileType(PROFILE_TYPE);
+		searchParams.setWeightingMethod(WeightingMethod.FASTEST);
+		return searchParams;
+	}
+
+	public static RoutingRequest createRoutingRequest(Coordinate from, Coordinate to, RouteSearchParameters searchParams) {
+		RoutingRequest req = new RoutingRequest();
+		req.setCoordinates(new Coordinate[] { from, to });
+		req.setSearchParameters(searchParams);
+		return req;
+	}
+
+	/**
+	 * Returns random but reproducible locations within the extract. Only locations from which the center of the
+	 * extract can be reached are returned, so that no benchmark iteration fails because of an unroutable point.
+	 */
+	public static Coordinate[] createLocations(int count, long seed) throws Exception {
+		RoutingProfileManager profileManager = getProfileManager();
+		RouteSearchParameters searchParams = createSearchParameters();
+		Random random = new Random(seed);
+		List<Coordinate> locations = new ArrayList<Coordinate>(count);
+		int attempts = 0;
+
+		while (locations.size() < count) {
+			if (++attempts > count * 20)
+				throw new IllegalStateException("Unable to find " + count + " routable locations in the benchmark graph.");
+
+			Coordinate c = new Coordinate(MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON), MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT));
+
+			try {
+				profileManager.computeRoute(createRoutingRequest(c, CENTER, searchParams));
+				locations.add(c);
+			} catch (Exception ex) {
+				// not snapped to the road network or not connected to the center
+			}
+		}
+
+		return locations.toArray(new Coordinate[locations.size()]);
+	}
+}
@@ -0,0 +1,93 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensphere.geometry.algorithm.ConcaveHull;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import heigit.ors.isochrones.builders.concaveballs.DelaunayConcaveHull;
+
+/**
+ * Concave hulls of large point sets as built for isochrones, comparing the array based DelaunayConcaveHull with the
+ * opensphere ConcaveHull it replaces. Does not need the graph.
+ * <p>
+ * The points are spread over a disk with a radius of about 20 km around Heidelberg, with a few empty wedges so that
+ * the hull has to erode deep bays, and are hulled with the default edge length of the isochrones of 0.012 degrees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcaveHullBenchmark {
+	private static final double THRESHOLD = 0.012;
+	private static final double RADIUS = 0.18;
+
+	@Param({ "100000", "250000" })
+	public int points;
+
+	@Param({ "delaunay", "opensphere" })
+	public String algorithm;
+
+	private GeometryCollection _points;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		GeometryFactory geomFactory = new GeometryFactory();
+		Random random = new Random(17);
+		Geometry[] geometries = new Geometry[points];
+
+		int i = 0;
+		while (i < points) {
+			double angle = random.nextDouble() * 2 * Math.PI;
+			// leave out every fourth of 16 wedges beyond a third of the radius
+			double radius = RADIUS * Math.sqrt(random.nextDouble());
+			if (radius > RADIUS / 3 && ((int) (angle / (Math.PI / 8))) % 4 == 0)
+				continue;
+
+			Coordinate c = new Coordinate(8.68 + radius * Math.cos(angle), 49.41 + radius * Math.sin(angle));
+			geometries[i++] = geomFactory.createPoint(c);
+		}
+
+		_points = new GeometryCollection(geometries, geomFactory);
+	}
+
+	@Benchmark
+	public Geometry buildConcaveHull() {
+		if ("opensphere".equals(algorithm))
+			return new ConcaveHull(_points, THRESHOLD, false).getConcaveHull();
+
+		return new DelaunayConcaveHull(_points, THRESHOLD).getConcaveHull();
+	}
+}
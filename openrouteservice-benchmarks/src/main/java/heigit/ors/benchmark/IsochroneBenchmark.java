@@ -0,0 +1,75 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import heigit.ors.common.TravelRangeType;
+import heigit.ors.isochrones.IsochroneMap;
+import heigit.ors.isochrones.IsochroneSearchParameters;
+
+/**
+ * Time based isochrones built with the default (concave balls) builder, which covers the edge map search of
+ * GraphEdgeMapFinder as well as the polygon construction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IsochroneBenchmark {
+	private static final int LOCATIONS_COUNT = 16;
+
+	/** Range in seconds */
+	@Param({ "300", "900", "1800" })
+	public int range;
+
+	private IsochroneSearchParameters[] _parameters;
+	private int _next;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		Coordinate[] locations = BenchmarkGraph.createLocations(LOCATIONS_COUNT, 13);
+		_parameters = new IsochroneSearchParameters[LOCATIONS_COUNT];
+
+		for (int i = 0; i < LOCATIONS_COUNT; i++) {
+			IsochroneSearchParameters parameters = new IsochroneSearchParameters(0, locations[i], new double[] { range });
+			parameters.setRangeType(TravelRangeType.Time);
+			parameters.setCalcMethod("ConcaveBalls");
+			parameters.setRouteParameters(BenchmarkGraph.createSearchParameters());
+			_parameters[i] = parameters;
+		}
+	}
+
+	@Benchmark
+	public IsochroneMap buildIsochrone() throws Exception {
+		return BenchmarkGraph.getProfileManager().buildIsochrone(_parameters[_next++ % LOCATIONS_COUNT]);
+	}
+}
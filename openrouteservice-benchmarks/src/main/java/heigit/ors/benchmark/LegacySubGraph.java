@@ -1,29 +1,29 @@
 /*  This file is part of Openrouteservice.
  *
- *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
- *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
  *  of the License, or (at your option) any later version.
 
- *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
- *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
  *  See the GNU Lesser General Public License for more details.
 
- *  You should have received a copy of the GNU Lesser General Public License along with this library; 
- *  if not, see <https://www.gnu.org/licenses/>.  
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
  */
-package heigit.ors.routing.algorithms;
+package heigit.ors.benchmark;
 
-import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-public class SubGraph {
-	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+/**
+ * Copy of the linked list based RPHAST target graph that has been replaced by
+ * {@link heigit.ors.routing.algorithms.PreparedTargetGraph}, only kept to compare both in
+ * {@link TargetGraphBenchmark}.
+ */
+public class LegacySubGraph {
 	private GHIntObjectHashMap<EdgeIteratorLink> _node2edgesMap;
 	private Graph _baseGraph;
 
@@ -39,9 +39,9 @@ public class SubGraph {
 	};
 
 	class SubGraphEdgeExplorer implements EdgeExplorer  {
-		private SubGraph _graph;
+		private LegacySubGraph _graph;
 
-		public SubGraphEdgeExplorer(SubGraph graph)
+		public SubGraphEdgeExplorer(LegacySubGraph graph)
 		{
 			_graph = graph;
 		}
@@ -214,7 +214,7 @@ public class SubGraph {
 		}
 	};
 
-	public SubGraph(Graph graph)
+	public LegacySubGraph(Graph graph)
 	{
 		_baseGraph = graph;
 		_node2edgesMap = new GHIntObjectHashMap<EdgeIteratorLink>(Math.min(Math.max(200, graph.getNodes() / 10), 2000));
@@ -277,25 +277,4 @@ public class SubGraph {
 	{
 		return new SubGraphEdgeExplorer(this);
 	}
-
-	public void print()
-	{
-		int edgesCount = 0;
-
-		EdgeExplorer explorer = createExplorer();
-
-		for (IntObjectCursor<?> node : _node2edgesMap) {
-			EdgeIterator iter = explorer.setBaseNode(node.key);
-
-			if (iter != null)
-			{
-				while (iter.next())
-				{
-					edgesCount++;
-				}
-			}
-		}
-
-		logger.info("SubGraph: nodes - " + _node2edgesMap.size() + "; edges - " + edgesCount);
-	}
 }
@@ -0,0 +1,79 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import heigit.ors.matrix.MatrixMetricsType;
+import heigit.ors.matrix.MatrixRequest;
+import heigit.ors.matrix.MatrixResult;
+import heigit.ors.matrix.algorithms.MatrixAlgorithmFactory;
+
+/**
+ * Square N x N duration and distance matrices. "rphast" and "flat_rphast" run on the CH graph with the object based
+ * and the array based RPHAST implementation, "dijkstra" uses the flexible mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MatrixBenchmark {
+	@Param({ "10", "50", "100", "250" })
+	public int size;
+
+	@Param({ "rphast", MatrixAlgorithmFactory.FLAT_RPHAST, "dijkstra" })
+	public String algorithm;
+
+	private MatrixRequest _request;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		Coordinate[] locations = BenchmarkGraph.createLocations(size, 7);
+
+		_request = new MatrixRequest();
+		_request.setProfileType(BenchmarkGraph.PROFILE_TYPE);
+		_request.setWeightingMethod("fastest");
+		_request.setMetrics(MatrixMetricsType.Duration | MatrixMetricsType.Distance);
+		_request.setSources(locations);
+		_request.setDestinations(Arrays.copyOf(locations, locations.length));
+
+		if ("dijkstra".equals(algorithm))
+			_request.setFlexibleMode(true);
+		else
+			_request.setAlgorithm(algorithm);
+	}
+
+	@Benchmark
+	public MatrixResult computeMatrix() throws Exception {
+		return BenchmarkGraph.getProfileManager().computeMatrix(_request);
+	}
+}
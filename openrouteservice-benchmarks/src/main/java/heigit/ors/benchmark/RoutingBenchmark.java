@@ -0,0 +1,125 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.shapes.GHPoint;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import heigit.ors.routing.GraphHopperHandle;
+import heigit.ors.routing.RouteSearchParameters;
+import heigit.ors.routing.RoutingProfile;
+import heigit.ors.routing.RoutingRequest;
+import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+
+/**
+ * Point to point routes on the same pairs of locations with contraction hierarchies, ALT (A* with landmarks) and a
+ * plain bidirectional Dijkstra.
+ * <p>
+ * CH and ALT run through {@link heigit.ors.routing.RoutingProfileManager#computeRoute(RoutingRequest)} like a
+ * service request, ALT being selected by the flexible mode. There is no request option for Dijkstra, so it is
+ * measured on the GraphHopper instance of the profile with both speed-up techniques disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RoutingBenchmark {
+	private static final int ROUTES_COUNT = 64;
+
+	@Param({ "ch", "alt", "dijkstra" })
+	public String algorithm;
+
+	private RoutingRequest[] _requests;
+	private GHRequest[] _ghRequests;
+	private GraphHopperHandle _graphHopperHandle;
+	private ORSGraphHopper _graphHopper;
+	private int _next;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		Coordinate[] locations = BenchmarkGraph.createLocations(ROUTES_COUNT * 2, 42);
+
+		RouteSearchParameters searchParams = BenchmarkGraph.createSearchParameters();
+		searchParams.setFlexibleMode("alt".equals(algorithm));
+
+		_requests = new RoutingRequest[ROUTES_COUNT];
+		_ghRequests = new GHRequest[ROUTES_COUNT];
+
+		for (int i = 0; i < ROUTES_COUNT; i++) {
+			Coordinate from = locations[2 * i];
+			Coordinate to = locations[2 * i + 1];
+			_requests[i] = BenchmarkGraph.createRoutingRequest(from, to, searchParams);
+			_ghRequests[i] = new GHRequest(new GHPoint(from.y, from.x), new GHPoint(to.y, to.x));
+		}
+
+		if ("dijkstra".equals(algorithm)) {
+			RoutingProfile profile = BenchmarkGraph.getProfileManager().getRouteProfile(_requests[0], false);
+			_graphHopperHandle = profile.acquireGH();
+			_graphHopper = _graphHopperHandle.getGraphHopper();
+			String vehicle = _graphHopper.getEncodingManager().fetchEdgeEncoders().get(0).toString();
+
+			for (GHRequest req : _ghRequests) {
+				req.setVehicle(vehicle);
+				req.setWeighting("fastest");
+				req.setAlgorithm("dijkstrabi");
+				req.getHints().put("weighting_method", "fastest");
+				req.getHints().put("ch.disable", true);
+				req.getHints().put("lm.disable", true);
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (_graphHopperHandle != null) {
+			_graphHopperHandle.release();
+			_graphHopperHandle = null;
+			_graphHopper = null;
+		}
+	}
+
+	@Benchmark
+	public Object route() throws Exception {
+		int index = _next++ % ROUTES_COUNT;
+
+		if (_graphHopper != null) {
+			GHResponse resp = _graphHopper.route(_ghRequests[index]);
+			if (resp.hasErrors())
+				throw new IllegalStateException(resp.getErrors().get(0));
+			return resp;
+		}
+
+		return BenchmarkGraph.getProfileManager().computeRoute(_requests[index]);
+	}
+}
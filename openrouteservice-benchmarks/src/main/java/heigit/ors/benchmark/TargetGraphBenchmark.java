@@ -0,0 +1,168 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.benchmark;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.vividsolutions.jts.geom.Coordinate;
+
+import heigit.ors.routing.GraphHopperHandle;
+import heigit.ors.routing.algorithms.PreparedTargetGraph;
+import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.DownwardSearchEdgeFilter;
+
+/**
+ * Phase I of RPHAST on the same target sets with the array based PreparedTargetGraph and the linked list based
+ * SubGraph it replaced (see {@link LegacySubGraph}). "build" collects the downward edges reachable from the targets,
+ * "scan" reads the weights of all edges of a built target graph once, as the downward search does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TargetGraphBenchmark {
+	@Param({ "10", "50", "250" })
+	public int targets;
+
+	@Param({ "subgraph", "prepared" })
+	public String graph;
+
+	private GraphHopperHandle _handle;
+	private CHGraph _chGraph;
+	private Weighting _weighting;
+	private DownwardSearchEdgeFilter _downwardEdgeFilter;
+	private int[] _targetNodes;
+	private LegacySubGraph _subGraph;
+	private int[] _subGraphNodes;
+	private PreparedTargetGraph _preparedGraph;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		// the same locations as the destinations of MatrixBenchmark
+		Coordinate[] locations = BenchmarkGraph.createLocations(targets, 7);
+
+		_handle = BenchmarkGraph.getProfileManager().getProfiles().getRouteProfile(BenchmarkGraph.PROFILE_TYPE, true).acquireGH();
+		ORSGraphHopper gh = _handle.getGraphHopper();
+		PrepareContractionHierarchies prepareCH = gh.getCHPreparation("fastest");
+		_chGraph = gh.getCHGraph("fastest");
+		_weighting = prepareCH.getPrepareWeighting();
+		_downwardEdgeFilter = new DownwardSearchEdgeFilter(_chGraph, _weighting.getFlagEncoder());
+
+		_targetNodes = new int[targets];
+		for (int i = 0; i < targets; i++)
+			_targetNodes[i] = gh.getLocationIndex().findClosest(locations[i].y, locations[i].x, EdgeFilter.ALL_EDGES).getClosestNode();
+
+		IntArrayList subGraphNodes = new IntArrayList();
+		_subGraph = buildSubGraph(subGraphNodes);
+		_subGraphNodes = subGraphNodes.toArray();
+		_preparedGraph = buildPreparedGraph();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		_handle.release();
+	}
+
+	/**
+	 * Builds the target graph like RPHASTAlgorithm.prepare did before it was replaced.
+	 */
+	private LegacySubGraph buildSubGraph(IntArrayList nodes) {
+		PriorityQueue<Integer> prioQueue = new PriorityQueue<>(100);
+		LegacySubGraph targetGraph = new LegacySubGraph(_chGraph);
+		EdgeExplorer explorer = _chGraph.createEdgeExplorer();
+
+		for (int node : _targetNodes) {
+			if (node >= 0) {
+				targetGraph.addEdge(node, null, true);
+				prioQueue.add(node);
+				nodes.add(node);
+			}
+		}
+
+		while (!prioQueue.isEmpty()) {
+			int adjNode = prioQueue.poll();
+			EdgeIterator iter = explorer.setBaseNode(adjNode);
+			_downwardEdgeFilter.setBaseNode(adjNode);
+
+			while (iter.next()) {
+				if (!_downwardEdgeFilter.accept(iter))
+					continue;
+
+				if (targetGraph.addEdge(adjNode, iter, true)) {
+					prioQueue.add(iter.getAdjNode());
+					nodes.add(iter.getAdjNode());
+				}
+			}
+		}
+
+		return targetGraph;
+	}
+
+	private PreparedTargetGraph buildPreparedGraph() {
+		return PreparedTargetGraph.create(_chGraph, _downwardEdgeFilter, _weighting, _targetNodes);
+	}
+
+	@Benchmark
+	public Object build() {
+		if ("subgraph".equals(graph))
+			return buildSubGraph(new IntArrayList());
+
+		return buildPreparedGraph();
+	}
+
+	@Benchmark
+	public double scan() {
+		double sum = 0;
+
+		if ("subgraph".equals(graph)) {
+			EdgeExplorer explorer = _subGraph.createExplorer();
+			for (int node : _subGraphNodes) {
+				EdgeIterator iter = explorer.setBaseNode(node);
+				if (iter == null)
+					continue;
+				while (iter.next())
+					sum += _weighting.calcWeight(iter, false, 0);
+			}
+		} else {
+			for (int i = 0; i < _preparedGraph.getEdgesCount(); i++)
+				sum += _preparedGraph.getWeight(i);
+		}
+
+		return sum;
+	}
+}
@@ -23,6 +23,7 @@ import heigit.ors.api.errors.CommonResponseEntityExceptionHandler;
 import heigit.ors.api.requests.common.APIEnums;
 import heigit.ors.api.requests.matrix.MatrixRequest;
 import heigit.ors.api.requests.matrix.MatrixRequestHandler;
+import heigit.ors.api.responses.matrix.BinaryMatrixResponse;
 import heigit.ors.api.responses.matrix.JSONMatrixResponseObjects.JSONMatrixResponse;
 import heigit.ors.exceptions.*;
 import heigit.ors.matrix.MatrixErrorCodes;
@@ -35,6 +36,7 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -101,6 +103,24 @@ public class MatrixAPI {
         return new JSONMatrixResponse(matrixResult, originalRequest);
     }
 
+    @PostMapping(value = "/{profile}/binary", produces = {BinaryMatrixResponse.CONTENT_TYPE})
+    @ApiOperation(value = "Get a matrix calculation from the specified profile as binary tables", notes = "Returns the matrix tables as little endian float32 values row by row, preceded by a header with the magic bytes `ORSM`, the format version, the number of sources and destinations and the metrics as bit mask (1 = duration, 2 = distance). Values are NaN if no route could be found.",
+            httpMethod = "POST", consumes = "application/json", produces = BinaryMatrixResponse.CONTENT_TYPE)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Standard response for successfully processed requests. Returns the binary tables.")
+    })
+    public void getBinaryMime(
+            @ApiParam(value = "Specifies the matrix profile.", required = true, example = "driving-car") @PathVariable APIEnums.Profile profile,
+            @ApiParam(value = "The request payload", required = true) @RequestBody MatrixRequest originalRequest,
+            HttpServletResponse response) throws StatusCodeException, IOException {
+        originalRequest.setProfile(profile);
+        originalRequest.setResponseType(APIEnums.MatrixResponseType.BINARY);
+        MatrixResult matrixResult = MatrixRequestHandler.generateMatrixFromRequest(originalRequest);
+
+        response.setContentType(BinaryMatrixResponse.CONTENT_TYPE);
+        new BinaryMatrixResponse(matrixResult, originalRequest).writeTo(response.getOutputStream());
+    }
+
     @ExceptionHandler(MissingServletRequestParameterException.class)
     public ResponseEntity<Object> handleMissingParams(final MissingServletRequestParameterException e) {
         return errorHandler.handleStatusCodeException(new MissingParameterException(MatrixErrorCodes.MISSING_PARAMETER, e.getParameterName()));
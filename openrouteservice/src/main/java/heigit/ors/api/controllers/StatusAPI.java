@@ -17,6 +17,7 @@ package heigit.ors.api.controllers;
 
 import com.graphhopper.storage.StorableProperties;
 import heigit.ors.localization.LocalizationManager;
+import heigit.ors.routing.LocationSnapCache;
 import heigit.ors.routing.RoutingProfile;
 import heigit.ors.routing.RoutingProfileManager;
 import heigit.ors.routing.RoutingProfileManagerStatus;
@@ -110,6 +111,15 @@ public class StatusAPI {
                     if (jProfileLimits.length() > 0)
                         jProfileProps.put("limits", jProfileLimits);
 
+                    LocationSnapCache snapCache = rp.getLocationSnapCache();
+                    if (snapCache != null) {
+                        org.json.JSONObject jSnapCache = new org.json.JSONObject(true);
+                        jSnapCache.put("size", snapCache.size());
+                        jSnapCache.put("hits", snapCache.getHits());
+                        jSnapCache.put("misses", snapCache.getMisses());
+                        jProfileProps.put("snap_cache", jSnapCache);
+                    }
+
                     jProfiles.put("profile " + Integer.toString(i), jProfileProps);
 
                     i++;
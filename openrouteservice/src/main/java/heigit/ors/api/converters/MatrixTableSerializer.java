@@ -0,0 +1,57 @@
+/*
+ * This file is part of Openrouteservice.
+ *
+ * Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library;
+ * if not, see <https://www.gnu.org/licenses/>.
+ */
+
+package heigit.ors.api.converters;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import heigit.ors.api.responses.matrix.MatrixTable;
+
+import java.io.IOException;
+
+/**
+ * Writes a matrix table as array of rows directly to the generator, so large tables are streamed to the response
+ * without boxing every value.
+ */
+public class MatrixTableSerializer extends StdSerializer<MatrixTable> {
+    public MatrixTableSerializer() {
+        this(null);
+    }
+
+    public MatrixTableSerializer(Class<MatrixTable> t) {
+        super(t);
+    }
+
+    @Override
+    public void serialize(MatrixTable table, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+        jsonGenerator.writeStartArray();
+
+        for (int i = 0; i < table.getRows(); i++) {
+            jsonGenerator.writeStartArray();
+
+            for (int j = 0; j < table.getColumns(); j++) {
+                if (table.hasValue(i, j))
+                    jsonGenerator.writeNumber(table.getValue(i, j));
+                else
+                    jsonGenerator.writeNull();
+            }
+
+            jsonGenerator.writeEndArray();
+        }
+
+        jsonGenerator.writeEndArray();
+    }
+}
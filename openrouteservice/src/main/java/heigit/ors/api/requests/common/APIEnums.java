@@ -118,7 +118,8 @@ public class APIEnums {
 
     @ApiModel
     public enum MatrixResponseType {
-        JSON("json");
+        JSON("json"),
+        BINARY("binary");
 
         private final String value;
 
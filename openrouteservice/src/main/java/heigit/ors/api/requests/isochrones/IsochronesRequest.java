@@ -46,6 +46,7 @@ public class IsochronesRequest {
     public static final String PARAM_ATTRIBUTES = "attributes";
     public static final String PARAM_INTERVAL = "interval";
     public static final String PARAM_SMOOTHING = "smoothing";
+    public static final String PARAM_CALC_METHOD = "calc_method";
 
     @ApiModelProperty(name = PARAM_ID,
             value = "Arbitrary identification string of the request reflected in the meta information.",
@@ -158,6 +159,15 @@ public class IsochronesRequest {
     @JsonIgnore
     private boolean hasSmoothing = false;
 
+    @ApiModelProperty(name = PARAM_CALC_METHOD,
+            value = "Method used to build the isochrone polygons. `concaveballs` builds concave hulls around the reachable road network, " +
+                    "`grid` contours a raster of the travel costs and is faster for large isochrones. " +
+                    "By default the method configured for the profile is used.")
+    @JsonProperty(value = PARAM_CALC_METHOD)
+    private IsochronesRequestEnums.CalculationMethod calcMethod;
+    @JsonIgnore
+    private boolean hasCalcMethod = false;
+
     @JsonCreator
     public IsochronesRequest() {
     }
@@ -216,6 +226,19 @@ public class IsochronesRequest {
         return hasSmoothing;
     }
 
+    public IsochronesRequestEnums.CalculationMethod getCalcMethod() {
+        return calcMethod;
+    }
+
+    public void setCalcMethod(IsochronesRequestEnums.CalculationMethod calcMethod) {
+        this.calcMethod = calcMethod;
+        this.hasCalcMethod = true;
+    }
+
+    public boolean hasCalcMethod() {
+        return hasCalcMethod;
+    }
+
     public APIEnums.RouteResponseType getResponseType() {
         return responseType;
     }
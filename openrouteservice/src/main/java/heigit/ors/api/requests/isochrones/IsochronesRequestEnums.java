@@ -107,6 +107,12 @@ public class IsochronesRequestEnums {
             }
             throw new ParameterValueException(INVALID_PARAMETER_VALUE, "calc_method", v);
         }
+
+        @Override
+        @JsonValue
+        public String toString() {
+            return value;
+        }
     }
 
 
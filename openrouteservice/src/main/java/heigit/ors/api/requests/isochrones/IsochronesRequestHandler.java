@@ -35,6 +35,7 @@ import heigit.ors.routing.RoutingProfileType;
 import heigit.ors.services.isochrones.IsochronesServiceSettings;
 import heigit.ors.util.DistanceUnitUtil;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -61,11 +62,12 @@ public class IsochronesRequestHandler extends GenericHandler {
         if (!travellers.isEmpty()) {
             isoMaps = new IsochroneMapCollection();
 
-            for (int i = 0; i < travellers.size(); ++i) {
-                IsochroneSearchParameters searchParams = isochroneRequest.getSearchParameters(i);
-                IsochroneMap isochroneMap = RoutingProfileManager.getInstance().buildIsochrone(searchParams);
+            List<IsochroneSearchParameters> searchParams = new ArrayList<IsochroneSearchParameters>(travellers.size());
+            for (int i = 0; i < travellers.size(); ++i)
+                searchParams.add(isochroneRequest.getSearchParameters(i));
+
+            for (IsochroneMap isochroneMap : RoutingProfileManager.getInstance().buildIsochrones(searchParams))
                 isoMaps.add(isochroneMap);
-            }
 
         }
     }
@@ -184,6 +186,8 @@ public class IsochronesRequestHandler extends GenericHandler {
             convertedIsochroneRequest.setSmoothingFactor(convertSmoothing(request.getSmoothing()));
         if (request.hasIntersections())
             convertedIsochroneRequest.setIncludeIntersections(request.getIntersections());
+        if (request.hasCalcMethod())
+            convertedIsochroneRequest.setCalcMethod(convertCalcMethod(request.getCalcMethod()));
         return convertedIsochroneRequest;
 
     }
@@ -18,6 +18,7 @@ package heigit.ors.api.responses.isochrones.GeoJSONIsochronesResponseObjects;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Polygon;
 import heigit.ors.geojson.GeometryJSON;
 import io.swagger.annotations.ApiModelProperty;
@@ -34,9 +35,14 @@ public abstract class GeoJSONIsochroneBase {
     @JsonProperty("geometry")
     public JSONObject getGeometry() {
         JSONObject geoJson = new JSONObject();
-        geoJson.put("type", "Polygon");
-        Polygon isoPoly = (Polygon) getIsochroneGeometry();
-        geoJson.put("coordinates", GeometryJSON.toJSON(isoPoly));
+        Geometry isoGeom = getIsochroneGeometry();
+        if (isoGeom instanceof MultiPolygon) {
+            geoJson.put("type", "MultiPolygon");
+            geoJson.put("coordinates", GeometryJSON.toJSON((MultiPolygon) isoGeom));
+        } else {
+            geoJson.put("type", "Polygon");
+            geoJson.put("coordinates", GeometryJSON.toJSON((Polygon) isoGeom));
+        }
         return geoJson;
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Openrouteservice.
+ *
+ * Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library;
+ * if not, see <https://www.gnu.org/licenses/>.
+ */
+
+package heigit.ors.api.responses.matrix;
+
+import heigit.ors.api.requests.matrix.MatrixRequest;
+import heigit.ors.matrix.MatrixResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact binary representation of the matrix tables for clients that do not need the JSON metadata. All numbers are
+ * little endian:
+ * <pre>
+ * 4 bytes  magic "ORSM"
+ * int32    format version (1)
+ * int32    number of sources
+ * int32    number of destinations
+ * int32    metrics of the contained tables as bit mask of {@link heigit.ors.matrix.MatrixMetricsType}
+ * float32  for each contained table in ascending order of the metric: the values row by row, one row per source,
+ *          NaN if no route has been found
+ * </pre>
+ * The values are not rounded, distances are given in the units of the request.
+ */
+public class BinaryMatrixResponse extends MatrixResponse {
+    public static final String CONTENT_TYPE = "application/octet-stream";
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'O', 'R', 'S', 'M'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public BinaryMatrixResponse(MatrixResult result, MatrixRequest request) {
+        super(result, request);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        int sourceCount = matrixResult.getSources().length;
+        int destinationCount = matrixResult.getDestinations().length;
+        float[][] tables = matrixResult.getTables();
+
+        int metrics = 0;
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] != null)
+                metrics |= i;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(sourceCount);
+        buffer.putInt(destinationCount);
+        buffer.putInt(metrics);
+
+        for (float[] table : tables) {
+            if (table == null)
+                continue;
+
+            for (int i = 0; i < sourceCount * destinationCount; i++) {
+                if (buffer.remaining() < Float.BYTES)
+                    flush(buffer, out);
+
+                buffer.putFloat(table[i] == -1 ? Float.NaN : table[i]);
+            }
+        }
+
+        flush(buffer, out);
+        out.flush();
+    }
+
+    private static void flush(ByteBuffer buffer, OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
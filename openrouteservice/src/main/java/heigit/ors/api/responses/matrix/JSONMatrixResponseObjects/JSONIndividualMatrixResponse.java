@@ -15,12 +15,13 @@
 
 package heigit.ors.api.responses.matrix.JSONMatrixResponseObjects;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import heigit.ors.api.requests.matrix.MatrixRequest;
+import heigit.ors.api.responses.matrix.MatrixTable;
 import heigit.ors.matrix.MatrixMetricsType;
 import heigit.ors.matrix.MatrixResult;
-import heigit.ors.util.FormatUtility;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
@@ -31,11 +32,11 @@ import java.util.List;
 public class JSONIndividualMatrixResponse extends JSONBasedIndividualMatrixResponse {
     @ApiModelProperty(value = "The durations of the matrix calculations.", example = "[[0,25],[25,0]]")
     @JsonProperty("durations")
-    private Double[][] durations;
+    private MatrixTable durations;
 
     @ApiModelProperty(value = "The distances of the matrix calculations.", example = "[[0,0.25],[0.25,0]]")
     @JsonProperty("distances")
-    private Double[][] distances;
+    private MatrixTable distances;
 
     @ApiModelProperty(value = "The individual destinations of the matrix calculations.")
     @JsonProperty("destinations")
@@ -67,27 +68,13 @@ public class JSONIndividualMatrixResponse extends JSONBasedIndividualMatrixRespo
         }
     }
 
-    private Double[][] constructMetric(float[] table, MatrixResult result) {
-        int sourceCount = result.getSources().length;
-        int destinationCount = result.getDestinations().length;
-
-        Double[][] constructedTable = new Double[sourceCount][destinationCount];
-
-        for (int i=0; i<sourceCount; i++) {
-            for (int j=0; j<destinationCount; j++) {
-                double value = (double) table[(i*destinationCount) + j];
-                if (value == -1)
-                    constructedTable[i][j] = null;
-                else
-                    constructedTable[i][j] = FormatUtility.roundToDecimals(value, 2);
-            }
-        }
-
-        return constructedTable;
+    private MatrixTable constructMetric(float[] table, MatrixResult result) {
+        return new MatrixTable(table, result.getSources().length, result.getDestinations().length);
     }
 
+    @JsonIgnore
     public Double[][] getDurations() {
-        return durations;
+        return durations == null ? null : durations.toArray();
     }
 
     public List<JSON2DDestinations> getDestinations() {
@@ -98,16 +85,19 @@ public class JSONIndividualMatrixResponse extends JSONBasedIndividualMatrixRespo
         return sources;
     }
 
+    @JsonIgnore
     public Double[][] getDistances() {
-        return distances;
+        return distances == null ? null : distances.toArray();
     }
 
+    @JsonIgnore
     public void setDistances(Double[][] distances) {
-        this.distances = distances;
+        this.distances = distances == null ? null : MatrixTable.fromArray(distances);
     }
 
+    @JsonIgnore
     public void setDurations(Double[][] durations) {
-        this.durations = durations;
+        this.durations = durations == null ? null : MatrixTable.fromArray(durations);
     }
 
     public void setDestinations(List<JSON2DDestinations> destinations) {
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Openrouteservice.
+ *
+ * Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library;
+ * if not, see <https://www.gnu.org/licenses/>.
+ */
+
+package heigit.ors.api.responses.matrix;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import heigit.ors.api.converters.MatrixTableSerializer;
+import heigit.ors.util.FormatUtility;
+
+/**
+ * A single table of a {@link heigit.ors.matrix.MatrixResult} with one row per source and one column per destination.
+ * The values are kept in the flat float array of the result and written by {@link MatrixTableSerializer} without
+ * creating an object per value. Values of -1 mark pairs for which no route has been found.
+ */
+@JsonSerialize(using = MatrixTableSerializer.class)
+public class MatrixTable {
+    public static final int DECIMALS = 2;
+
+    private final float[] values;
+    private final int rows;
+    private final int columns;
+
+    public MatrixTable(float[] values, int rows, int columns) {
+        this.values = values;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    public static MatrixTable fromArray(Double[][] array) {
+        int rows = array.length;
+        int columns = rows == 0 ? 0 : array[0].length;
+        float[] values = new float[rows * columns];
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++)
+                values[i * columns + j] = array[i][j] == null ? -1 : array[i][j].floatValue();
+        }
+
+        return new MatrixTable(values, rows, columns);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public boolean hasValue(int row, int column) {
+        return values[row * columns + column] != -1;
+    }
+
+    /**
+     * Returns the value rounded to {@link #DECIMALS} decimals, check {@link #hasValue(int, int)} before.
+     */
+    public double getValue(int row, int column) {
+        return FormatUtility.roundToDecimals(values[row * columns + column], DECIMALS);
+    }
+
+    /**
+     * Returns the table as boxed array, rounded like the JSON output and with null for missing values.
+     */
+    public Double[][] toArray() {
+        Double[][] array = new Double[rows][columns];
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++)
+                array[i][j] = hasValue(i, j) ? getValue(i, j) : null;
+        }
+
+        return array;
+    }
+}
@@ -13,15 +13,14 @@
  */
 package heigit.ors.isochrones;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.HintsMap;
-import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
 import com.graphhopper.storage.GraphHopperStorage;
-import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.shapes.GHPoint3D;
 import com.vividsolutions.jts.geom.Coordinate;
@@ -29,8 +28,10 @@ import heigit.ors.common.TravelRangeType;
 import heigit.ors.exceptions.InternalServerException;
 import heigit.ors.routing.RouteSearchContext;
 import heigit.ors.routing.RouteSearchParameters;
-import heigit.ors.routing.algorithms.DijkstraCostCondition;
+import heigit.ors.routing.algorithms.CostBoundedDijkstra;
+import heigit.ors.routing.algorithms.CostBoundedPHAST;
 import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
 import heigit.ors.routing.graphhopper.extensions.weighting.DistanceWeighting;
 
 public class GraphEdgeMapFinder {
@@ -50,6 +51,11 @@ public class GraphEdgeMapFinder {
 		if (fromId == -1)
 			throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "The closest node is null.");
 	
+		PrepareContractionHierarchies prepareCH = getCHPreparation(gh, encoder, parameters);
+		if (prepareCH != null)
+			return CostBoundedPHAST.calcAccessibilityMap(graph.getGraph(CHGraph.class, prepareCH.getWeighting()), graph, prepareCH.getPrepareWeighting(), fromId,
+					parameters.getMaximumRange(), parameters.getReverseDirection(), snappedPosition);
+
 		Weighting weighting = null;
 		
 		if (parameters.getRangeType() == TravelRangeType.Time)
@@ -60,13 +66,27 @@ public class GraphEdgeMapFinder {
 		{
 			weighting  = new DistanceWeighting(encoder);
 		}
-		// IMPORTANT: It only works with TraversalMode.NODE_BASED.
-		DijkstraCostCondition dijkstraAlg = new DijkstraCostCondition(graph, weighting, parameters.getMaximumRange(), parameters.getReverseDirection(),
-				TraversalMode.NODE_BASED);
-		dijkstraAlg.setEdgeFilter(searchCntx.getEdgeFilter());
-		dijkstraAlg.calcPath(fromId, Integer.MIN_VALUE);
 
-		IntObjectMap<SPTEntry> edgeMap = dijkstraAlg.getMap();
-       return new AccessibilityMap(edgeMap, dijkstraAlg.getCurrentEdge(), snappedPosition);
+		return CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, searchCntx.getEdgeFilter(), fromId,
+				parameters.getMaximumRange(), parameters.getReverseDirection(), snappedPosition);
+	}
+
+	/**
+	 * Returns the preparation of the contraction hierarchies if the isochrone can be computed on them, i.e. for time
+	 * ranges with the fastest weighting and without options that change the weights, otherwise null.
+	 */
+	private static PrepareContractionHierarchies getCHPreparation(GraphHopper gh, FlagEncoder encoder, IsochroneSearchParameters parameters) {
+		if (!gh.isCHEnabled() || !(gh instanceof ORSGraphHopper) || parameters.getRangeType() != TravelRangeType.Time)
+			return null;
+
+		RouteSearchParameters searchParams = parameters.getRouteParameters();
+		// profile parameters such as the wheelchair restrictions are applied as edge filters
+		if (searchParams != null && (searchParams.requiresDynamicWeights() || searchParams.getProfileParameters() != null))
+			return null;
+
+		// the preparations may also contain other weightings such as the shortest one
+		PrepareContractionHierarchies prepareCH = ((ORSGraphHopper) gh).getCHPreparation("fastest");
+
+		return prepareCH != null && prepareCH.getWeighting().getFlagEncoder() == encoder ? prepareCH : null;
 	}
 }
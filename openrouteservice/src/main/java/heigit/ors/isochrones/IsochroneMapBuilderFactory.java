@@ -18,6 +18,7 @@ import heigit.ors.isochrones.builders.IsochroneMapBuilder;
 import heigit.ors.isochrones.builders.concaveballs.ConcaveBallsIsochroneMapBuilder;
 import heigit.ors.isochrones.builders.grid.GridBasedIsochroneMapBuilder;
 import heigit.ors.routing.RouteSearchContext;
+import heigit.ors.services.isochrones.IsochronesServiceSettings;
 
 import com.graphhopper.util.Helper;
 
@@ -32,8 +33,10 @@ public class IsochroneMapBuilderFactory {
 		IsochroneMapBuilder isochroneBuilder = null;
 
 		String method = parameters.getCalcMethod();
+		if (Helper.isEmpty(method) || "Default".equalsIgnoreCase(method))
+			method = IsochronesServiceSettings.getCalcMethod(parameters.getRouteParameters().getProfileType());
 
-		if (Helper.isEmpty(method) || "Default".equalsIgnoreCase(method) || "ConcaveBalls".equalsIgnoreCase(method)) {
+		if ("ConcaveBalls".equalsIgnoreCase(method)) {
 			isochroneBuilder = new ConcaveBallsIsochroneMapBuilder();
 		} 
         else if ("grid".equalsIgnoreCase(method))
@@ -0,0 +1,42 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.isochrones;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import heigit.ors.services.isochrones.IsochronesServiceSettings;
+import heigit.ors.util.WorkerPool;
+
+/**
+ * Bounded pool of worker threads shared by all isochrone requests. The locations of a request are built concurrently,
+ * and so are the point sets of the ranges of each location.
+ */
+public class IsochronesWorkerPool {
+	private static WorkerPool _pool;
+
+	/**
+	 * Runs all tasks and waits for their completion, see {@link WorkerPool#run(List)}.
+	 */
+	public static void run(List<Callable<Void>> tasks) throws Exception {
+		getPool().run(tasks);
+	}
+
+	private static synchronized WorkerPool getPool() {
+		if (_pool == null)
+			_pool = new WorkerPool("ORS-isochrones", IsochronesServiceSettings.getParallelThreads());
+
+		return _pool;
+	}
+}
@@ -13,8 +13,12 @@
  */
 package heigit.ors.isochrones.builders;
 
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.FootFlagEncoder;
+import com.graphhopper.routing.util.HikeFlagEncoder;
 import heigit.ors.isochrones.builders.IsochroneMapBuilder;
 import heigit.ors.routing.RouteSearchContext;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.WheelchairFlagEncoder;
 import heigit.ors.isochrones.IsochroneSearchParameters;
 import heigit.ors.isochrones.IsochroneMap;
 
@@ -23,4 +27,19 @@ public abstract class AbstractIsochroneMapBuilder implements IsochroneMapBuilder
 	public abstract void initialize(RouteSearchContext searchContext);
 	
 	public abstract IsochroneMap compute(IsochroneSearchParameters parameters) throws Exception; 
+
+	/**
+	 * Returns the speed in km/h used to estimate the radius of time based isochrones.
+	 */
+	protected static double getMaximumSpeed(FlagEncoder encoder) {
+		if (encoder instanceof FootFlagEncoder || encoder instanceof HikeFlagEncoder) {
+			// in the GH FootFlagEncoder, the maximum speed is set to 15km/h which is way too high
+			return 4;
+		}
+
+		if (encoder instanceof WheelchairFlagEncoder)
+			return WheelchairFlagEncoder.MEAN_SPEED;
+
+		return encoder.getMaxSpeed();
+	}
 }
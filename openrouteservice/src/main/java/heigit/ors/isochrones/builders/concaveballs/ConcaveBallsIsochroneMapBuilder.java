@@ -13,15 +13,9 @@
  */
 package heigit.ors.isochrones.builders.concaveballs;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.carrotsearch.hppc.cursors.IntObjectCursor;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.AbstractFlagEncoder;
-import com.graphhopper.routing.util.FootFlagEncoder;
-import com.graphhopper.routing.util.HikeFlagEncoder;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
-import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint3D;
 import com.vividsolutions.jts.geom.*;
@@ -31,30 +25,26 @@ import heigit.ors.isochrones.GraphEdgeMapFinder;
 import heigit.ors.isochrones.Isochrone;
 import heigit.ors.isochrones.IsochroneMap;
 import heigit.ors.isochrones.IsochroneSearchParameters;
+import heigit.ors.isochrones.IsochronesWorkerPool;
 import heigit.ors.isochrones.builders.AbstractIsochroneMapBuilder;
 import heigit.ors.routing.RouteSearchContext;
 import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
-import heigit.ors.routing.graphhopper.extensions.flagencoders.WheelchairFlagEncoder;
 import heigit.ors.util.GeomUtility;
 import org.apache.log4j.Logger;
-import org.opensphere.geometry.algorithm.ConcaveHull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder 
 {
 	private final Logger LOGGER = Logger.getLogger(ConcaveBallsIsochroneMapBuilder.class.getName());
 
-	private double searchWidth = 0.0007; 
-	private double pointWidth = 0.0005;
-	private double visitorThreshold = 0.0013;
-	private Envelope searchEnv = new Envelope();
 	private GeometryFactory _geomFactory;
-	private PointItemVisitor visitor = null;
 	private List<Coordinate> prevIsoPoints = null;
-    private TreeSet<Coordinate>_treeSet;
 	private RouteSearchContext _searchContext;
 
 	private boolean BUFFERED_OUTPUT = true;
@@ -76,17 +66,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		}
 
 		// 1. Find all graph edges for a given cost.
-		double maxSpeed = _searchContext.getEncoder().getMaxSpeed();
-
-		if (_searchContext.getEncoder() instanceof FootFlagEncoder || _searchContext.getEncoder() instanceof HikeFlagEncoder) {
-			// in the GH FootFlagEncoder, the maximum speed is set to 15km/h which is way too high
-			maxSpeed = 4;
-		}
-
-		if (_searchContext.getEncoder() instanceof WheelchairFlagEncoder) {
-			maxSpeed = WheelchairFlagEncoder.MEAN_SPEED;
-		}
-
+		double maxSpeed = getMaximumSpeed(_searchContext.getEncoder());
 
 		AccessibilityMap edgeMap = GraphEdgeMapFinder.findEdgeMap(_searchContext, parameters);
 
@@ -106,44 +86,39 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		if (edgeMap.isEmpty())
 			return isochroneMap;
 
-		_treeSet = new TreeSet<Coordinate>();
-
-		List<Coordinate> isoPoints = new ArrayList<Coordinate>((int)(1.2*edgeMap.getMap().size()));
-
 		if (LOGGER.isDebugEnabled())
 		{
 			sw = new StopWatch();
 			sw.start();
 		}
 
-		markDeadEndEdges(edgeMap);
+		final boolean[] deadEnds = markDeadEndEdges(edgeMap);
 
 		if (LOGGER.isDebugEnabled())
 		{
 			sw.stop();
 			LOGGER.debug("Mark dead ends: " + sw.getSeconds());
+
+			sw = new StopWatch();
+			sw.start();
 		}
 
 		int nRanges = parameters.getRanges().length;
 
 		double metersPerSecond = maxSpeed / 3.6;
+		float smoothingFactor = parameters.getSmoothingFactor();
+		TravelRangeType isochroneType = parameters.getRangeType();
+
+		double[] maxRadiuses = new double[nRanges];
+		final List<List<Coordinate>> rangePoints = new ArrayList<List<Coordinate>>(Collections.nCopies(nRanges, (List<Coordinate>) null));
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(nRanges);
 
-		double prevCost = 0;
 		for (int i = 0; i < nRanges; i++) {
 			double isoValue = parameters.getRanges()[i];
 			double isochronesDifference = parameters.getRanges()[i];
 			if (i > 0)
 				isochronesDifference = isochronesDifference -parameters.getRanges()[i-1];
 
-			float smoothingFactor = parameters.getSmoothingFactor();
-			TravelRangeType isochroneType = parameters.getRangeType();
-
-			if (LOGGER.isDebugEnabled())
-			{
-				sw = new StopWatch();
-				sw.start();
-			}
-
 			double maxRadius = 0;
 			switch (isochroneType) {
 				case Distance:
@@ -155,25 +130,42 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 					break;
 			}
 
-			GeometryCollection points = buildIsochrone(edgeMap, isoPoints, loc.x, loc.y, isoValue, prevCost, isochronesDifference, 0.85);
+			maxRadiuses[i] = maxRadius;
 
+			final int rangeIndex = i;
+			final double rangeValue = isoValue;
+			final double prevCost = (i > 0) ? parameters.getRanges()[i-1] : 0;
+			final double rangeDifference = isochronesDifference;
+
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					rangePoints.set(rangeIndex, new RangePointsBuilder().build(edgeMap, deadEnds, loc.x, loc.y, rangeValue, prevCost, rangeDifference, 0.85));
+					return null;
+				}
+			});
+		}
+
+		// The points of a range do not depend on the other ranges and are collected concurrently. Each hull is built
+		// from the points of its range and the exterior ring of the previous hull, so the hulls are built in order.
+		IsochronesWorkerPool.run(tasks);
+
+		if (LOGGER.isDebugEnabled())
+			LOGGER.debug("Find points: " + sw.stop().getSeconds());
+
+		for (int i = 0; i < nRanges; i++) {
 			if (LOGGER.isDebugEnabled())
 			{
-				//	 savePoints(points, "D:\\isochrones3.shp");
-				sw.stop();
-				LOGGER.debug(i + " Find points: " + sw.getSeconds() + " " + points.getNumGeometries());
-
 				sw = new StopWatch();
 				sw.start();
 			}
 
-			addIsochrone(isochroneMap, points, isoValue, maxRadius, smoothingFactor);
+			GeometryCollection points = createPoints(rangePoints.get(i));
 
+			addIsochrone(isochroneMap, points, parameters.getRanges()[i], maxRadiuses[i], smoothingFactor);
 
 			if (LOGGER.isDebugEnabled())
-				LOGGER.debug("Build concave hull: " + sw.stop().getSeconds());
-
-			prevCost = isoValue;
+				LOGGER.debug(i + " Build concave hull: " + sw.stop().getSeconds() + " " + points.getNumGeometries());
 		}
 
 		if (LOGGER.isDebugEnabled())
@@ -219,7 +211,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		if (points.isEmpty())
 			return;
 
-		ConcaveHull ch = new ConcaveHull(points, convertSmoothingFactorToDistance(smoothingFactor, maxRadius), false);
+		DelaunayConcaveHull ch = new DelaunayConcaveHull(points, convertSmoothingFactorToDistance(smoothingFactor, maxRadius));
 		Geometry geom = ch.getConcaveHull();
 
 		if (geom instanceof GeometryCollection)
@@ -236,290 +228,299 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		isochroneMap.addIsochrone(new Isochrone(poly, isoValue, maxRadius));
 	}
 
-	private void markDeadEndEdges(AccessibilityMap edgeMap)
+	/**
+	 * Marks the entries no other entry has been reached from.
+	 */
+	private boolean[] markDeadEndEdges(AccessibilityMap edgeMap)
 	{
-		IntObjectMap<SPTEntry> map = edgeMap.getMap();
-		IntObjectMap<Integer> result = new GHIntObjectHashMap<Integer>(map.size()/20);
-
-		for (IntObjectCursor<SPTEntry> entry : map) {
-			SPTEntry  edge = entry.value;
-			if (edge.originalEdge == -1)
-				continue;
+		boolean[] deadEnds = new boolean[edgeMap.size()];
+		Arrays.fill(deadEnds, true);
 
-			result.put(edge.parent.originalEdge, 1);
+		for (int i = 0; i < edgeMap.size(); i++) {
+			int parent = edgeMap.getParent(i);
+			if (parent >= 0)
+				deadEnds[parent] = false;
 		}
 
-		for (IntObjectCursor<SPTEntry> entry : map) {
-			SPTEntry  edge = entry.value;
-			if (edge.originalEdge == -1)
-				continue;
+		return deadEnds;
+	}
 
-			if (!result.containsKey(edge.originalEdge))
-				edge.edge =-2;
-		}
+	/**
+	 * Returns the points of the previous hull followed by the given points of the current range.
+	 */
+	private GeometryCollection createPoints(List<Coordinate> points)
+	{
+		int offset = (prevIsoPoints == null) ? 0 : prevIsoPoints.size();
+		Geometry[] geometries = new Geometry[offset + points.size()];
+
+		for (int i = 0; i < offset; ++i)
+			geometries[i] = _geomFactory.createPoint(prevIsoPoints.get(i));
+
+		for (int i = 0; i < points.size(); ++i)
+			geometries[offset + i] = _geomFactory.createPoint(points.get(i));
+
+		return new GeometryCollection(geometries, _geomFactory);
 	}
 
-	public Boolean addPoint(List<Coordinate> points, Quadtree tree, double lon, double lat, boolean checkNeighbours) {
-		if (checkNeighbours)
+	private void copyConvexHullPoints(Polygon poly)
+	{
+		LineString ring = (LineString)poly.getExteriorRing();		
+		if (prevIsoPoints == null)
+			prevIsoPoints = new ArrayList<Coordinate>(ring.getNumPoints());
+		else
+			prevIsoPoints.clear();
+		for (int i = 0; i< ring.getNumPoints(); ++i)
 		{
-			visitor.setPoint(lon, lat);
-			searchEnv.init(lon - searchWidth, lon + searchWidth, lat - searchWidth, lat + searchWidth);
-			tree.query(searchEnv, visitor);
-			if (!visitor.isNeighbourFound()) 
+			Point p = ring.getPointN(i);
+			prevIsoPoints.add(new Coordinate(p.getX(), p.getY()));
+		}
+	}
+
+	/**
+	 * Collects the points of a single range. Each range uses its own instance, so that the ranges can be collected
+	 * concurrently.
+	 */
+	private class RangePointsBuilder
+	{
+		private double searchWidth = 0.0007;
+		private double pointWidth = 0.0005;
+		private double visitorThreshold = 0.0013;
+		private Envelope searchEnv = new Envelope();
+		private PointItemVisitor visitor = null;
+		private HashSet<Coordinate> _pointSet = new HashSet<Coordinate>();
+
+		public Boolean addPoint(List<Coordinate> points, Quadtree tree, double lon, double lat, boolean checkNeighbours) {
+			if (checkNeighbours)
 			{
-				Coordinate p = new Coordinate(lon, lat);
+				visitor.setPoint(lon, lat);
+				searchEnv.init(lon - searchWidth, lon + searchWidth, lat - searchWidth, lat + searchWidth);
+				tree.query(searchEnv, visitor);
+				if (!visitor.isNeighbourFound()) 
+				{
+					Coordinate p = new Coordinate(lon, lat);
+
+					if (!_pointSet.contains(p))
+					{
+						Envelope env = new Envelope(lon - pointWidth, lon + pointWidth, lat - pointWidth, lat + pointWidth);
+						tree.insert(env, p);
+						points.add(p);
+						_pointSet.add(p);
 
-				if (!_treeSet.contains(p))
+						return true;
+					}
+				}
+			}
+			else
+			{
+				Coordinate p = new Coordinate(lon, lat);
+				if (!_pointSet.contains(p))
 				{
 					Envelope env = new Envelope(lon - pointWidth, lon + pointWidth, lat - pointWidth, lat + pointWidth);
 					tree.insert(env, p);
 					points.add(p);
-					_treeSet.add(p);
-					
+					_pointSet.add(p);
+
 					return true;
 				}
-			}
-		}
-		else
-		{
-			Coordinate p = new Coordinate(lon, lat);
-			if (!_treeSet.contains(p))
-			{
-				Envelope env = new Envelope(lon - pointWidth, lon + pointWidth, lat - pointWidth, lat + pointWidth);
-				tree.insert(env, p);
-				points.add(p);
-				_treeSet.add(p);
-				
-				return true;
-			}
-		} 
-		
-		return false;
-	}
+			} 
 
-	private void addBufferPoints(List<Coordinate> points, Quadtree tree, double lon0, double lat0, double lon1,
-			double lat1, boolean addLast, boolean checkNeighbours, double bufferSize) {
-		double dx = (lon0 - lon1);
-		double dy = (lat0 - lat1);
-		double norm_length = Math.sqrt((dx * dx) + (dy * dy));
-		double scale = bufferSize /norm_length;
-
-		double dx2 = -dy*scale;
-		double dy2 = dx*scale;
-
-		addPoint(points, tree, lon0 + dx2, lat0 + dy2, checkNeighbours);
-		addPoint(points, tree, lon0 - dx2, lat0 - dy2, checkNeighbours);
-			
-		// add a middle point if two points are too far from each other
-		if (norm_length > 2*bufferSize)
-		{
-			addPoint(points, tree, (lon0 + lon1)/2.0 + dx2, (lat0 + lat1)/2.0 + dy2, checkNeighbours);	
-			addPoint(points, tree, (lon0 + lon1)/2.0 - dx2, (lat0 + lat1)/2.0 - dy2, checkNeighbours);
+			return false;
 		}
- 
-		if (addLast) {
-			 addPoint(points, tree, lon1 + dx2, lat1 + dy2, checkNeighbours);
-			 addPoint(points, tree, lon1 - dx2, lat1 - dy2, checkNeighbours);
-		} 
-	}
-
-	private GeometryCollection buildIsochrone(AccessibilityMap edgeMap, List<Coordinate> points, double lon, double lat,
-			double isolineCost, double prevCost, double isochronesDifference, double detailedGeomFactor) {
-		IntObjectMap<SPTEntry> map = edgeMap.getMap();
 
-		points.clear();
-		_treeSet.clear();
+		private void addBufferPoints(List<Coordinate> points, Quadtree tree, double lon0, double lat0, double lon1,
+				double lat1, boolean addLast, boolean checkNeighbours, double bufferSize) {
+			double dx = (lon0 - lon1);
+			double dy = (lat0 - lat1);
+			double norm_length = Math.sqrt((dx * dx) + (dy * dy));
+			double scale = bufferSize /norm_length;
 
-		if (prevIsoPoints != null)
-			points.addAll(prevIsoPoints);
+			double dx2 = -dy*scale;
+			double dy2 = dx*scale;
 
-		GraphHopperStorage graph = _searchContext.getGraphHopper().getGraphHopperStorage();
-		NodeAccess nodeAccess = graph.getNodeAccess();
-		int maxNodeId = graph.getNodes();
+			addPoint(points, tree, lon0 + dx2, lat0 + dy2, checkNeighbours);
+			addPoint(points, tree, lon0 - dx2, lat0 - dy2, checkNeighbours);
 
-		SPTEntry edgeEntry = edgeMap.getEdgeEntry();
-		SPTEntry goalEdge = edgeEntry;
-
-		DistanceCalc dcFast = new DistancePlaneProjection();
-		double bufferSize = 0.0018;
-		Quadtree qtree = new Quadtree();
-		visitor = new PointItemVisitor(lon, lat, visitorThreshold);
-		double detailedZone = isolineCost * detailedGeomFactor;
+			// add a middle point if two points are too far from each other
+			if (norm_length > 2*bufferSize)
+			{
+				addPoint(points, tree, (lon0 + lon1)/2.0 + dx2, (lat0 + lat1)/2.0 + dy2, checkNeighbours);	
+				addPoint(points, tree, (lon0 + lon1)/2.0 - dx2, (lat0 + lat1)/2.0 - dy2, checkNeighbours);
+			}
 
-		double defaultSearchWidth = 0.0008;
-		double defaulPointWidth =  0.005;
-		double defaultVisitorThreshold = 0.0035;
-		
-		// make results a bit more precise for regions with low data density
-		if (map.size() < 10000)
-		{
-			defaultSearchWidth = 0.0008;
-			defaulPointWidth = 0.005;
-			defaultVisitorThreshold = 0.0025;
+			if (addLast) {
+				 addPoint(points, tree, lon1 + dx2, lat1 + dy2, checkNeighbours);
+				 addPoint(points, tree, lon1 - dx2, lat1 - dy2, checkNeighbours);
+			} 
 		}
 
-		if (isochronesDifference < 1000) {
-			bufferSize = 0.00018;
-			defaultVisitorThreshold = 0.000005;
-		}
-		
-		int nodeId, edgeId;
+		/**
+		 * Returns the points of the range up to isolineCost, without the points of the previous range.
+		 */
+		public List<Coordinate> build(AccessibilityMap edgeMap, boolean[] deadEnds, double lon, double lat, double isolineCost,
+				double prevCost, double isochronesDifference, double detailedGeomFactor) {
+			List<Coordinate> points = new ArrayList<Coordinate>((int)(1.2*edgeMap.size()));
+
+			GraphHopperStorage graph = _searchContext.getGraphHopper().getGraphHopperStorage();
+			NodeAccess nodeAccess = graph.getNodeAccess();
+			int maxNodeId = graph.getNodes();
+
+			DistanceCalc dcFast = new DistancePlaneProjection();
+			double bufferSize = 0.0018;
+			Quadtree qtree = new Quadtree();
+			visitor = new PointItemVisitor(lon, lat, visitorThreshold);
+			double detailedZone = isolineCost * detailedGeomFactor;
+
+			double defaultSearchWidth = 0.0008;
+			double defaulPointWidth =  0.005;
+			double defaultVisitorThreshold = 0.0035;
+
+			// make results a bit more precise for regions with low data density
+			if (edgeMap.size() < 10000)
+			{
+				defaultSearchWidth = 0.0008;
+				defaulPointWidth = 0.005;
+				defaultVisitorThreshold = 0.0025;
+			}
 
-		for (IntObjectCursor<SPTEntry> entry : map) {
-			goalEdge = entry.value;
-			edgeId = goalEdge.originalEdge;
+			if (isochronesDifference < 1000) {
+				bufferSize = 0.00018;
+				defaultVisitorThreshold = 0.000005;
+			}
 
-			if (edgeId == -1)
-				continue;
+			int nodeId, edgeId;
 
-			nodeId = goalEdge.adjNode;
+			for (int entry = 0; entry < edgeMap.size(); entry++) {
+				edgeId = edgeMap.getEdge(entry);
 
-			if (nodeId == -1 || nodeId > maxNodeId)
-				continue;
-			
-			EdgeIteratorState iter = graph.getEdgeIteratorState(edgeId, nodeId);
+				if (edgeId == -1)
+					continue;
 
-			float maxCost = (float) (goalEdge.weight);
-			float minCost = (float) (goalEdge.parent.weight);
+				nodeId = edgeMap.getNode(entry);
 
-			// ignore all edges that have been considered in the previous step. We do not want to do this for small
-			// isochrones as the edge may have more than one range on it in that case
-			if (minCost < prevCost && isochronesDifference > 1000)
-				continue;
+				if (nodeId == -1 || nodeId > maxNodeId)
+					continue;
 
-			searchWidth = defaultSearchWidth; 
-			visitorThreshold = defaultVisitorThreshold; 
-			pointWidth = defaulPointWidth;
+				EdgeIteratorState iter = graph.getEdgeIteratorState(edgeId, nodeId);
 
-			visitor.setThreshold(visitorThreshold);
+				float maxCost = (float) (edgeMap.getWeight(entry));
+				float minCost = (float) (edgeMap.getWeight(edgeMap.getParent(entry)));
 
-			// edges that are fully inside of the isochrone
-			if (isolineCost >= maxCost) {
-				// This checks for dead end edges, but we need to include those in small areas to provide realistic
-				// results
-				if (goalEdge.edge == -2 && isochronesDifference > 1000)
-				{
-					//addPoint(points, qtree, nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId), true);
-				}
-				else
-				{
-					double edgeDist = iter.getDistance();
-					if (((maxCost >= detailedZone && maxCost <= isolineCost) || edgeDist > 300))
-					{
-						boolean detailedShape = (edgeDist > 300);
-						// always use mode=3, since other ones do not provide correct results
-						PointList pl = iter.fetchWayGeometry(3);
-						int size = pl.getSize();
-						if (size > 0) {
-							double lat0 = pl.getLat(0);
-							double lon0 = pl.getLon(0);
-							double lat1, lon1;
+				// ignore all edges that have been considered in the previous step. We do not want to do this for small
+				// isochrones as the edge may have more than one range on it in that case
+				if (minCost < prevCost && isochronesDifference > 1000)
+					continue;
 
-							if (detailedShape && BUFFERED_OUTPUT)
-							{
-								for (int i = 1; i < size; ++i) {
-									lat1 = pl.getLat(i);
-									lon1 = pl.getLon(i);
+				searchWidth = defaultSearchWidth; 
+				visitorThreshold = defaultVisitorThreshold; 
+				pointWidth = defaulPointWidth;
 
-									addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, goalEdge.edge < 0 && i == size - 1, true, bufferSize);
+				visitor.setThreshold(visitorThreshold);
 
-									lon0 = lon1;
-									lat0 = lat1;
+				// edges that are fully inside of the isochrone
+				if (isolineCost >= maxCost) {
+					// This checks for dead end edges, but we need to include those in small areas to provide realistic
+					// results
+					if (deadEnds[entry] && isochronesDifference > 1000)
+					{
+						//addPoint(points, qtree, nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId), true);
+					}
+					else
+					{
+						double edgeDist = iter.getDistance();
+						if (((maxCost >= detailedZone && maxCost <= isolineCost) || edgeDist > 300))
+						{
+							boolean detailedShape = (edgeDist > 300);
+							// always use mode=3, since other ones do not provide correct results
+							PointList pl = iter.fetchWayGeometry(3);
+							int size = pl.getSize();
+							if (size > 0) {
+								double lat0 = pl.getLat(0);
+								double lon0 = pl.getLon(0);
+								double lat1, lon1;
+
+								if (detailedShape && BUFFERED_OUTPUT)
+								{
+									for (int i = 1; i < size; ++i) {
+										lat1 = pl.getLat(i);
+										lon1 = pl.getLon(i);
+
+										addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, deadEnds[entry] && i == size - 1, true, bufferSize);
+
+										lon0 = lon1;
+										lat0 = lat1;
+									}
 								}
-							}
-							else
-							{
-								for (int i = 1; i < size; ++i) {
-									lat1 = pl.getLat(i);
-									lon1 = pl.getLon(i);
-
-									addPoint(points, qtree, lon0, lat0, true);
-									if (i == size -1)
-										addPoint(points, qtree, lon1, lat1, true);
-
-									lon0 = lon1;
-									lat0 = lat1;
+								else
+								{
+									for (int i = 1; i < size; ++i) {
+										lat1 = pl.getLat(i);
+										lon1 = pl.getLon(i);
+
+										addPoint(points, qtree, lon0, lat0, true);
+										if (i == size -1)
+											addPoint(points, qtree, lon1, lat1, true);
+
+										lon0 = lon1;
+										lat0 = lat1;
+									}
 								}
 							}
+						} else {
+							addPoint(points, qtree, nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId), true);
 						}
-					} else {
-						addPoint(points, qtree, nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId), true);
 					}
-				}
-			} else {
-				if ((minCost < isolineCost && maxCost >= isolineCost)) 
-				{
+				} else {
+					if ((minCost < isolineCost && maxCost >= isolineCost)) 
+					{
 
-					PointList pl = iter.fetchWayGeometry(3);
+						PointList pl = iter.fetchWayGeometry(3);
 
-					int size = pl.getSize();
-					if (size > 0) {
-						double edgeCost = maxCost - minCost;
-						double edgeDist = iter.getDistance();
-						double costPerMeter = edgeCost / edgeDist;
-						double distPolyline = 0.0;
+						int size = pl.getSize();
+						if (size > 0) {
+							double edgeCost = maxCost - minCost;
+							double edgeDist = iter.getDistance();
+							double costPerMeter = edgeCost / edgeDist;
+							double distPolyline = 0.0;
 
-						double lat0 = pl.getLat(0);
-						double lon0 = pl.getLon(0);
-						double lat1, lon1;
+							double lat0 = pl.getLat(0);
+							double lon0 = pl.getLon(0);
+							double lat1, lon1;
 
-						for (int i = 1; i < size; ++i) {
-							lat1 = pl.getLat(i);
-							lon1 = pl.getLon(i);
+							for (int i = 1; i < size; ++i) {
+								lat1 = pl.getLat(i);
+								lon1 = pl.getLon(i);
 
-							distPolyline += dcFast.calcDist(lat0, lon0, lat1, lon1);
+								distPolyline += dcFast.calcDist(lat0, lon0, lat1, lon1);
 
-							if (BUFFERED_OUTPUT)
-							{
-								double distCost = minCost + distPolyline * costPerMeter;
-								if (distCost >= isolineCost) {
-									double segLength = (1 - (distCost - isolineCost) / edgeCost);
-									double lon2 = lon0 + segLength * (lon1 - lon0);
-									double lat2 = lat0 + segLength * (lat1 - lat0);
+								if (BUFFERED_OUTPUT)
+								{
+									double distCost = minCost + distPolyline * costPerMeter;
+									if (distCost >= isolineCost) {
+										double segLength = (1 - (distCost - isolineCost) / edgeCost);
+										double lon2 = lon0 + segLength * (lon1 - lon0);
+										double lat2 = lat0 + segLength * (lat1 - lat0);
 
-									addBufferPoints(points, qtree, lon0, lat0, lon2, lat2, true, false, bufferSize);
+										addBufferPoints(points, qtree, lon0, lat0, lon2, lat2, true, false, bufferSize);
 
-									break;
-								} else {
-									addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, false, true, bufferSize);
+										break;
+									} else {
+										addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, false, true, bufferSize);
+									}
+								}
+								else
+								{
+									addPoint(points, qtree, lon0, lat0, true);
 								}
-							}
-							else
-							{
-								addPoint(points, qtree, lon0, lat0, true);
-							}
 
-							lat0 = lat1;
-							lon0 = lon1;
+								lat0 = lat1;
+								lon0 = lon1;
+							}
 						}
-					}
-				} 
+					} 
+				}
 			}
-		}
-
-		
-		Geometry[] geometries = new Geometry[points.size()];
 
-		for (int i = 0;i < points.size();++i)
-		{
-			Coordinate c = points.get(i);
-			geometries[i] = _geomFactory.createPoint(c);
-		}
-
-		return new GeometryCollection(geometries, _geomFactory);
-	}
-
-	private void copyConvexHullPoints(Polygon poly)
-	{
-		LineString ring = (LineString)poly.getExteriorRing();		
-		if (prevIsoPoints == null)
-			prevIsoPoints = new ArrayList<Coordinate>(ring.getNumPoints());
-		else
-			prevIsoPoints.clear();
-		for (int i = 0; i< ring.getNumPoints(); ++i)
-		{
-			Point p = ring.getPointN(i);
-			prevIsoPoints.add(new Coordinate(p.getX(), p.getY()));
+			return points;
 		}
 	}
 }
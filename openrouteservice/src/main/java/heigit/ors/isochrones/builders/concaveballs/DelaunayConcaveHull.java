@@ -0,0 +1,740 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.isochrones.builders.concaveballs;
+
+import com.vividsolutions.jts.algorithm.ConvexHull;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import java.util.Arrays;
+
+/**
+ * Computes the concave hull of a set of points with the algorithm of Duckham et al. (2008), "Efficient generation of
+ * simple polygons for characterizing the shape of a set of points in the plane", like the opensphere ConcaveHull: the
+ * longest edge on the border of the Delaunay triangulation is removed together with its triangle as long as it is
+ * longer than the threshold and the border stays a simple polygon.
+ * <p>
+ * The triangulation is a sweep-hull Delaunay triangulation (as in the Delaunator library) kept in primitive arrays:
+ * triangle t consists of the half-edges 3t, 3t+1 and 3t+2, which start at the points _triangles[e] and are ordered
+ * counter-clockwise. _halfedges[e] is the opposite half-edge in the adjacent triangle or -1 on the border. The border
+ * edges to erode are kept in a binary heap of half-edge ids ordered by length, so neither the triangulation nor the
+ * erosion creates any objects per point.
+ * <p>
+ * Points that coincide with a point inserted before, or lie exactly on the hull of the points inserted before them,
+ * are not part of the triangulation. They are still covered by it, but may end up outside of the eroded hull.
+ */
+public class DelaunayConcaveHull
+{
+	private static final double EPSILON = Math.pow(2, -52);
+	private static final double ORIENT_EPSILON = 3.3306690738754716e-16;
+
+	private final GeometryFactory _geomFactory;
+	private final double _threshold;
+	private final double[] _coords;
+	private final int _size;
+
+	private int[] _triangles;
+	private int[] _halfedges;
+	private int _trianglesLen;
+
+	// sweep hull of the triangulation
+	private int[] _hullPrev;
+	private int[] _hullNext;
+	private int[] _hullTri;
+	private int[] _hullHash;
+	private int _hullStart;
+	private int _hashSize;
+	private double _cx;
+	private double _cy;
+
+	private final int[] _edgeStack = new int[512];
+
+	/**
+	 * @param points the points to build the hull of
+	 * @param threshold the maximum length of the edges on the border of the hull, in the units of the coordinates
+	 */
+	public DelaunayConcaveHull(GeometryCollection points, double threshold)
+	{
+		_geomFactory = points.getFactory();
+		_threshold = threshold;
+		_size = points.getNumGeometries();
+		_coords = new double[2 * _size];
+
+		for (int i = 0; i < _size; i++)
+		{
+			Coordinate c = points.getGeometryN(i).getCoordinate();
+			_coords[2 * i] = c.x;
+			_coords[2 * i + 1] = c.y;
+		}
+	}
+
+	/**
+	 * Returns the concave hull of the points.
+	 *
+	 * @return a Polygon if the points span an area, otherwise a LineString, a Point or an empty GeometryCollection
+	 */
+	public Geometry getConcaveHull()
+	{
+		if (_size == 0)
+			return _geomFactory.createGeometryCollection(null);
+		if (_size == 1)
+			return _geomFactory.createPoint(getCoordinate(0));
+		if (_size == 2)
+			return _geomFactory.createLineString(new Coordinate[] { getCoordinate(0), getCoordinate(1) });
+
+		if (!triangulate())
+			return new ConvexHull(getCoordinates(), _geomFactory).getConvexHull();
+
+		int[] ring = erode();
+
+		Coordinate[] shell = new Coordinate[ring.length + 1];
+		for (int i = 0; i < ring.length; i++)
+			shell[i] = getCoordinate(ring[i]);
+		shell[ring.length] = shell[0];
+
+		return _geomFactory.createPolygon(_geomFactory.createLinearRing(shell), null);
+	}
+
+	/**
+	 * Removes the triangles at the longest border edges and returns the points of the remaining border in
+	 * counter-clockwise order.
+	 */
+	private int[] erode()
+	{
+		int edgesLen = _trianglesLen;
+		boolean[] borderPoints = new boolean[_size];
+		EdgeHeap heap = new EdgeHeap(edgesLen);
+
+		for (int e = 0; e < edgesLen; e++)
+		{
+			if (_halfedges[e] == -1)
+			{
+				borderPoints[_triangles[e]] = true;
+				pushIfLong(heap, e);
+			}
+		}
+
+		while (!heap.isEmpty())
+		{
+			int e = heap.poll();
+			int next = nextHalfedge(e);
+			int prev = prevHalfedge(e);
+			int opposite = _triangles[prev];
+
+			// removing the triangle would make the opposite point touch the border twice or leave the triangle
+			// without neighbours; either way the border would no longer be a simple polygon
+			if (borderPoints[opposite])
+				continue;
+
+			// the triangle is removed, the edges shared with its neighbours become border edges
+			int nextTwin = _halfedges[next];
+			int prevTwin = _halfedges[prev];
+			_halfedges[nextTwin] = -1;
+			_halfedges[prevTwin] = -1;
+			_halfedges[e] = -2;
+			_halfedges[next] = -2;
+			_halfedges[prev] = -2;
+
+			borderPoints[opposite] = true;
+			pushIfLong(heap, nextTwin);
+			pushIfLong(heap, prevTwin);
+		}
+
+		// every border point starts exactly one border edge, so the border is traced by following them
+		int[] nextPoint = new int[_size];
+		int start = -1;
+		int count = 0;
+		for (int e = 0; e < edgesLen; e++)
+		{
+			if (_halfedges[e] == -1)
+			{
+				nextPoint[_triangles[e]] = _triangles[nextHalfedge(e)];
+				start = _triangles[e];
+				count++;
+			}
+		}
+
+		int[] ring = new int[count];
+		int p = start;
+		for (int i = 0; i < count; i++)
+		{
+			ring[i] = p;
+			p = nextPoint[p];
+		}
+
+		return ring;
+	}
+
+	private void pushIfLong(EdgeHeap heap, int e)
+	{
+		int p = _triangles[e];
+		int q = _triangles[nextHalfedge(e)];
+		double length = Math.sqrt(dist(_coords[2 * p], _coords[2 * p + 1], _coords[2 * q], _coords[2 * q + 1]));
+		if (length > _threshold)
+			heap.push(e, length);
+	}
+
+	/**
+	 * Builds the Delaunay triangulation by inserting the points ordered by their distance from a seed triangle and
+	 * connecting each one to the edges of the hull it can see, legalizing the new triangles by flipping edges.
+	 *
+	 * @return false if all points are collinear
+	 */
+	private boolean triangulate()
+	{
+		int n = _size;
+		double[] coords = _coords;
+
+		int maxTriangles = Math.max(2 * n - 5, 0);
+		_triangles = new int[maxTriangles * 3];
+		_halfedges = new int[maxTriangles * 3];
+		_trianglesLen = 0;
+
+		_hashSize = (int) Math.ceil(Math.sqrt(n));
+		_hullPrev = new int[n];
+		_hullNext = new int[n];
+		_hullTri = new int[n];
+		_hullHash = new int[_hashSize];
+		Arrays.fill(_hullHash, -1);
+
+		int[] ids = new int[n];
+		double[] dists = new double[n];
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++)
+		{
+			double x = coords[2 * i];
+			double y = coords[2 * i + 1];
+			if (x < minX) minX = x;
+			if (y < minY) minY = y;
+			if (x > maxX) maxX = x;
+			if (y > maxY) maxY = y;
+			ids[i] = i;
+		}
+		double cx = (minX + maxX) / 2;
+		double cy = (minY + maxY) / 2;
+
+		// seed point close to the center, the point closest to it and the third point forming the smallest
+		// circumcircle with them
+		int i0 = 0;
+		int i1 = -1;
+		int i2 = -1;
+
+		double minDist = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < n; i++)
+		{
+			double d = dist(cx, cy, coords[2 * i], coords[2 * i + 1]);
+			if (d < minDist)
+			{
+				i0 = i;
+				minDist = d;
+			}
+		}
+		double i0x = coords[2 * i0];
+		double i0y = coords[2 * i0 + 1];
+
+		minDist = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < n; i++)
+		{
+			if (i == i0)
+				continue;
+			double d = dist(i0x, i0y, coords[2 * i], coords[2 * i + 1]);
+			if (d < minDist && d > 0)
+			{
+				i1 = i;
+				minDist = d;
+			}
+		}
+		if (i1 == -1)
+			return false;
+		double i1x = coords[2 * i1];
+		double i1y = coords[2 * i1 + 1];
+
+		double minRadius = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < n; i++)
+		{
+			if (i == i0 || i == i1)
+				continue;
+			double r = circumradius(i0x, i0y, i1x, i1y, coords[2 * i], coords[2 * i + 1]);
+			if (r < minRadius)
+			{
+				i2 = i;
+				minRadius = r;
+			}
+		}
+		if (i2 == -1 || Double.isInfinite(minRadius) || Double.isNaN(minRadius))
+			return false;
+		double i2x = coords[2 * i2];
+		double i2y = coords[2 * i2 + 1];
+
+		// the seed triangle has to be counter-clockwise
+		if (orient(i0x, i0y, i1x, i1y, i2x, i2y) < 0)
+		{
+			int i = i1;
+			double x = i1x;
+			double y = i1y;
+			i1 = i2;
+			i1x = i2x;
+			i1y = i2y;
+			i2 = i;
+			i2x = x;
+			i2y = y;
+		}
+
+		circumcenter(i0x, i0y, i1x, i1y, i2x, i2y);
+
+		for (int i = 0; i < n; i++)
+			dists[i] = dist(coords[2 * i], coords[2 * i + 1], _cx, _cy);
+		quicksort(ids, dists, 0, n - 1);
+
+		_hullStart = i0;
+		_hullNext[i0] = _hullPrev[i2] = i1;
+		_hullNext[i1] = _hullPrev[i0] = i2;
+		_hullNext[i2] = _hullPrev[i1] = i0;
+
+		_hullTri[i0] = 0;
+		_hullTri[i1] = 1;
+		_hullTri[i2] = 2;
+
+		_hullHash[hashKey(i0x, i0y)] = i0;
+		_hullHash[hashKey(i1x, i1y)] = i1;
+		_hullHash[hashKey(i2x, i2y)] = i2;
+
+		addTriangle(i0, i1, i2, -1, -1, -1);
+
+		double xp = 0;
+		double yp = 0;
+		for (int k = 0; k < n; k++)
+		{
+			int i = ids[k];
+			double x = coords[2 * i];
+			double y = coords[2 * i + 1];
+
+			// skip near-duplicate points
+			if (k > 0 && Math.abs(x - xp) <= EPSILON && Math.abs(y - yp) <= EPSILON)
+				continue;
+			xp = x;
+			yp = y;
+
+			if (i == i0 || i == i1 || i == i2)
+				continue;
+
+			// find a visible edge on the hull using the hash of the angle around the center
+			int start = 0;
+			for (int j = 0, key = hashKey(x, y); j < _hashSize; j++)
+			{
+				start = _hullHash[(key + j) % _hashSize];
+				if (start != -1 && start != _hullNext[start])
+					break;
+			}
+
+			start = _hullPrev[start];
+			int e = start;
+			int q;
+			while (orient(x, y, coords[2 * e], coords[2 * e + 1], coords[2 * (q = _hullNext[e])], coords[2 * q + 1]) >= 0)
+			{
+				e = q;
+				if (e == start)
+				{
+					e = -1;
+					break;
+				}
+			}
+			// the point is inside of the hull, i.e. it coincides with a point inserted before
+			if (e == -1)
+				continue;
+
+			// add the first triangle from the point
+			int t = addTriangle(e, i, _hullNext[e], -1, -1, _hullTri[e]);
+
+			_hullTri[i] = legalize(t + 2);
+			_hullTri[e] = t;
+
+			// walk forward through the hull, adding more triangles
+			int next = _hullNext[e];
+			while (orient(x, y, coords[2 * next], coords[2 * next + 1], coords[2 * (q = _hullNext[next])], coords[2 * q + 1]) < 0)
+			{
+				t = addTriangle(next, i, q, _hullTri[i], -1, _hullTri[next]);
+				_hullTri[i] = legalize(t + 2);
+				// mark as removed
+				_hullNext[next] = next;
+				next = q;
+			}
+
+			// walk backward from the other side, adding more triangles
+			if (e == start)
+			{
+				while (orient(x, y, coords[2 * (q = _hullPrev[e])], coords[2 * q + 1], coords[2 * e], coords[2 * e + 1]) < 0)
+				{
+					t = addTriangle(q, i, e, -1, _hullTri[e], _hullTri[q]);
+					legalize(t + 2);
+					_hullTri[q] = t;
+					_hullNext[e] = e;
+					e = q;
+				}
+			}
+
+			_hullStart = _hullPrev[i] = e;
+			_hullNext[e] = _hullPrev[next] = i;
+			_hullNext[i] = next;
+
+			_hullHash[hashKey(x, y)] = i;
+			_hullHash[hashKey(coords[2 * e], coords[2 * e + 1])] = e;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Flips the edge a and the edges of the triangles created by flipping until they satisfy the Delaunay condition.
+	 *
+	 * @return the half-edge of the triangle of a that precedes a after the flips
+	 */
+	private int legalize(int a)
+	{
+		int i = 0;
+		int ar;
+
+		while (true)
+		{
+			int b = _halfedges[a];
+
+			int a0 = a - a % 3;
+			ar = a0 + (a + 2) % 3;
+
+			if (b == -1)
+			{
+				if (i == 0)
+					break;
+				a = _edgeStack[--i];
+				continue;
+			}
+
+			int b0 = b - b % 3;
+			int al = a0 + (a + 1) % 3;
+			int bl = b0 + (b + 2) % 3;
+
+			int p0 = _triangles[ar];
+			int pr = _triangles[a];
+			int pl = _triangles[al];
+			int p1 = _triangles[bl];
+
+			boolean illegal = inCircle(
+					_coords[2 * p0], _coords[2 * p0 + 1],
+					_coords[2 * pr], _coords[2 * pr + 1],
+					_coords[2 * pl], _coords[2 * pl + 1],
+					_coords[2 * p1], _coords[2 * p1 + 1]);
+
+			if (illegal)
+			{
+				_triangles[a] = p1;
+				_triangles[b] = p0;
+
+				int hbl = _halfedges[bl];
+
+				// the edge has been swapped on the other side of the hull, fix the reference of the hull
+				if (hbl == -1)
+				{
+					int e = _hullStart;
+					do
+					{
+						if (_hullTri[e] == bl)
+						{
+							_hullTri[e] = a;
+							break;
+						}
+						e = _hullPrev[e];
+					}
+					while (e != _hullStart);
+				}
+				link(a, hbl);
+				link(b, _halfedges[ar]);
+				link(ar, bl);
+
+				int br = b0 + (b + 1) % 3;
+
+				// the stack can only overflow for extremely degenerated input
+				if (i < _edgeStack.length)
+					_edgeStack[i++] = br;
+			}
+			else
+			{
+				if (i == 0)
+					break;
+				a = _edgeStack[--i];
+			}
+		}
+
+		return ar;
+	}
+
+	private void link(int a, int b)
+	{
+		_halfedges[a] = b;
+		if (b != -1)
+			_halfedges[b] = a;
+	}
+
+	private int addTriangle(int i0, int i1, int i2, int a, int b, int c)
+	{
+		int t = _trianglesLen;
+		_triangles[t] = i0;
+		_triangles[t + 1] = i1;
+		_triangles[t + 2] = i2;
+		link(t, a);
+		link(t + 1, b);
+		link(t + 2, c);
+		_trianglesLen += 3;
+		return t;
+	}
+
+	private int hashKey(double x, double y)
+	{
+		return (int) Math.floor(pseudoAngle(x - _cx, y - _cy) * _hashSize) % _hashSize;
+	}
+
+	private void circumcenter(double ax, double ay, double bx, double by, double cx, double cy)
+	{
+		double dx = bx - ax;
+		double dy = by - ay;
+		double ex = cx - ax;
+		double ey = cy - ay;
+		double bl = dx * dx + dy * dy;
+		double cl = ex * ex + ey * ey;
+		double d = 0.5 / (dx * ey - dy * ex);
+
+		_cx = ax + (ey * bl - dy * cl) * d;
+		_cy = ay + (dx * cl - ex * bl) * d;
+	}
+
+	private static int nextHalfedge(int e)
+	{
+		return (e % 3 == 2) ? e - 2 : e + 1;
+	}
+
+	private static int prevHalfedge(int e)
+	{
+		return (e % 3 == 0) ? e + 2 : e - 1;
+	}
+
+	/**
+	 * Monotonically increasing with the angle of the vector, in [0, 1].
+	 */
+	private static double pseudoAngle(double dx, double dy)
+	{
+		double p = dx / (Math.abs(dx) + Math.abs(dy));
+		return (dy > 0 ? 3 - p : 1 + p) / 4;
+	}
+
+	private static double dist(double ax, double ay, double bx, double by)
+	{
+		double dx = ax - bx;
+		double dy = ay - by;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Returns a positive value if r lies to the left of the line from p to q, a negative value if it lies to the
+	 * right and 0 if the points are collinear. The products are evaluated in all three orders until the sign is
+	 * certain despite rounding.
+	 */
+	private static double orient(double px, double py, double qx, double qy, double rx, double ry)
+	{
+		double sign = orientIfSure(px, py, qx, qy, rx, ry);
+		if (sign == 0)
+			sign = orientIfSure(qx, qy, rx, ry, px, py);
+		if (sign == 0)
+			sign = orientIfSure(rx, ry, px, py, qx, qy);
+		return sign;
+	}
+
+	private static double orientIfSure(double px, double py, double qx, double qy, double rx, double ry)
+	{
+		double l = (qx - px) * (ry - py);
+		double r = (qy - py) * (rx - px);
+		return Math.abs(l - r) >= ORIENT_EPSILON * Math.abs(l + r) ? l - r : 0;
+	}
+
+	/**
+	 * Returns true if p lies inside the circumcircle of the counter-clockwise triangle a, b, c.
+	 */
+	private static boolean inCircle(double ax, double ay, double bx, double by, double cx, double cy, double px, double py)
+	{
+		double dx = ax - px;
+		double dy = ay - py;
+		double ex = bx - px;
+		double ey = by - py;
+		double fx = cx - px;
+		double fy = cy - py;
+
+		double ap = dx * dx + dy * dy;
+		double bp = ex * ex + ey * ey;
+		double cp = fx * fx + fy * fy;
+
+		return dx * (ey * cp - bp * fy) - dy * (ex * cp - bp * fx) + ap * (ex * fy - ey * fx) > 0;
+	}
+
+	private static double circumradius(double ax, double ay, double bx, double by, double cx, double cy)
+	{
+		double dx = bx - ax;
+		double dy = by - ay;
+		double ex = cx - ax;
+		double ey = cy - ay;
+		double bl = dx * dx + dy * dy;
+		double cl = ex * ex + ey * ey;
+		double d = 0.5 / (dx * ey - dy * ex);
+		double x = (ey * bl - dy * cl) * d;
+		double y = (dx * cl - ex * bl) * d;
+		return x * x + y * y;
+	}
+
+	/**
+	 * Sorts the ids by their distance.
+	 */
+	private static void quicksort(int[] ids, double[] dists, int left, int right)
+	{
+		while (right - left > 20)
+		{
+			int median = (left + right) >>> 1;
+			int i = left + 1;
+			int j = right;
+			swap(ids, median, i);
+			if (dists[ids[left]] > dists[ids[right]]) swap(ids, left, right);
+			if (dists[ids[i]] > dists[ids[right]]) swap(ids, i, right);
+			if (dists[ids[left]] > dists[ids[i]]) swap(ids, left, i);
+
+			int temp = ids[i];
+			double tempDist = dists[temp];
+			while (true)
+			{
+				do i++; while (dists[ids[i]] < tempDist);
+				do j--; while (dists[ids[j]] > tempDist);
+				if (j < i)
+					break;
+				swap(ids, i, j);
+			}
+			ids[left + 1] = ids[j];
+			ids[j] = temp;
+
+			// recurse into the smaller part only
+			if (right - i + 1 >= j - left)
+			{
+				quicksort(ids, dists, left, j - 1);
+				left = i;
+			}
+			else
+			{
+				quicksort(ids, dists, i, right);
+				right = j - 1;
+			}
+		}
+
+		for (int i = left + 1; i <= right; i++)
+		{
+			int temp = ids[i];
+			double tempDist = dists[temp];
+			int j = i - 1;
+			while (j >= left && dists[ids[j]] > tempDist)
+				ids[j + 1] = ids[j--];
+			ids[j + 1] = temp;
+		}
+	}
+
+	private static void swap(int[] arr, int i, int j)
+	{
+		int tmp = arr[i];
+		arr[i] = arr[j];
+		arr[j] = tmp;
+	}
+
+	private Coordinate getCoordinate(int i)
+	{
+		return new Coordinate(_coords[2 * i], _coords[2 * i + 1]);
+	}
+
+	private Coordinate[] getCoordinates()
+	{
+		Coordinate[] coords = new Coordinate[_size];
+		for (int i = 0; i < _size; i++)
+			coords[i] = getCoordinate(i);
+		return coords;
+	}
+
+	/**
+	 * Binary max-heap of half-edge ids ordered by the length of the edges.
+	 */
+	private static class EdgeHeap
+	{
+		private final int[] _edges;
+		private final double[] _lengths;
+		private int _size;
+
+		EdgeHeap(int capacity)
+		{
+			_edges = new int[capacity];
+			_lengths = new double[capacity];
+		}
+
+		boolean isEmpty()
+		{
+			return _size == 0;
+		}
+
+		void push(int edge, double length)
+		{
+			int i = _size++;
+			while (i > 0)
+			{
+				int parent = (i - 1) >>> 1;
+				if (_lengths[parent] >= length)
+					break;
+				_edges[i] = _edges[parent];
+				_lengths[i] = _lengths[parent];
+				i = parent;
+			}
+			_edges[i] = edge;
+			_lengths[i] = length;
+		}
+
+		int poll()
+		{
+			int result = _edges[0];
+			int edge = _edges[--_size];
+			double length = _lengths[_size];
+
+			int i = 0;
+			int half = _size >>> 1;
+			while (i < half)
+			{
+				int child = 2 * i + 1;
+				if (child + 1 < _size && _lengths[child + 1] > _lengths[child])
+					child++;
+				if (length >= _lengths[child])
+					break;
+				_edges[i] = _edges[child];
+				_lengths[i] = _lengths[child];
+				i = child;
+			}
+			_edges[i] = edge;
+			_lengths[i] = length;
+
+			return result;
+		}
+	}
+}
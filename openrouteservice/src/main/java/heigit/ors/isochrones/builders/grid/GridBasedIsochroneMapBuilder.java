@@ -13,58 +13,66 @@
  */
 package heigit.ors.isochrones.builders.grid;
 
-import com.graphhopper.GraphHopper;
-import com.graphhopper.routing.util.EdgeFilter;
-import com.graphhopper.routing.util.FlagEncoder;
-import com.graphhopper.storage.Graph;
-import com.graphhopper.storage.MMapDirectory;
-import com.graphhopper.storage.index.Location2IDQuadtree;
-import com.graphhopper.storage.index.LocationIndex;
-import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint3D;
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import heigit.ors.common.TravelRangeType;
+import heigit.ors.isochrones.GraphEdgeMapFinder;
+import heigit.ors.isochrones.Isochrone;
 import heigit.ors.isochrones.IsochroneMap;
 import heigit.ors.isochrones.IsochroneSearchParameters;
 import heigit.ors.isochrones.builders.AbstractIsochroneMapBuilder;
-import heigit.ors.matrix.MatrixMetricsType;
-import heigit.ors.matrix.MatrixRequest;
-import heigit.ors.matrix.algorithms.MatrixAlgorithm;
-import heigit.ors.matrix.algorithms.MatrixAlgorithmFactory;
 import heigit.ors.routing.RouteSearchContext;
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.util.GeomUtility;
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
-public class GridBasedIsochroneMapBuilder extends AbstractIsochroneMapBuilder 
+/**
+ * Builds isochrones from a raster of the travel costs instead of concave hulls. The costs of the reachable edges are
+ * interpolated along their geometries and sampled onto a regular grid, spread to the grid points next to the roads and
+ * contoured with {@link MarchingSquares}. The grid is built once and shared by all ranges.
+ */
+public class GridBasedIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 {
 	private final Logger LOGGER = Logger.getLogger(GridBasedIsochroneMapBuilder.class.getName());
 
+	private static final int DEFAULT_GRID_SIZE = 256; // number of cells along the longer side of the grid
+	private static final int MIN_GRID_SIZE = 32;
+	private static final double MIN_CELL_SIZE = 20; // measured in meters
+	private static final double BUFFER_SIZE = 100; // maximum distance to a road, measured in meters
+
 	private GeometryFactory _geomFactory;
 	private RouteSearchContext _searchContext;
-	
-	private static LocationIndex _gridIndex;
-	
-	private double _grdiStep = 500; // measured in meters
 
-	public GridBasedIsochroneMapBuilder() 
+	public GridBasedIsochroneMapBuilder()
 	{
-		
+
 	}
 
 	@Override
-	public void initialize(RouteSearchContext searchContext) 
+	public void initialize(RouteSearchContext searchContext)
 	{
 		_geomFactory = new GeometryFactory();
-		_searchContext = searchContext;		
+		_searchContext = searchContext;
 	}
 
 	@Override
 	public IsochroneMap compute(IsochroneSearchParameters parameters) throws Exception {
 		StopWatch swTotal = null;
 		StopWatch sw = null;
-		
+
 		if (LOGGER.isDebugEnabled())
 		{
 			swTotal = new StopWatch();
@@ -73,87 +81,259 @@ public class GridBasedIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 			sw.start();
 		}
 
-		FlagEncoder encoder = _searchContext.getEncoder();
+		double metersPerSecond = getMaximumSpeed(_searchContext.getEncoder()) / 3.6;
+
 		// 1. Find all graph edges for a given cost.
-		double maxSpeed = encoder.getMaxSpeed();
-
-		Coordinate loc = parameters.getLocation();
-		GraphHopper gh = _searchContext.getGraphHopper();
-		//LocationIndexMatch index = new LocationIndexMatch(gh.getGraphHopperStorage(),(LocationIndexTree)gh.getLocationIndex()); 
-		//gh.getGraphHopperStorage().getBounds()
-		//index.setGpxAccuracy(500);
-     	//index.setMinResolutionInMeter(200);
-		
-		if (_gridIndex == null)
+		AccessibilityMap edgeMap = GraphEdgeMapFinder.findEdgeMap(_searchContext, parameters);
+
+		GHPoint3D point = edgeMap.getSnappedPosition();
+		Coordinate loc = (point == null) ? parameters.getLocation() : new Coordinate(point.lon, point.lat);
+
+		IsochroneMap isochroneMap = new IsochroneMap(parameters.getTravellerId(), loc);
+
+		if (LOGGER.isDebugEnabled())
 		{
-			_gridIndex = new Location2IDQuadtree(gh.getGraphHopperStorage().getGraph(Graph.class), new MMapDirectory(gh.getGraphHopperLocation() + "grid_loc2idIndex").create()).
-	                setResolution(500).prepareIndex();
+			sw.stop();
+			LOGGER.debug("Find edges: " + sw.getSeconds());
+
+			sw = new StopWatch();
+			sw.start();
 		}
-		
-		int gridSizeMeters = 500;
-		int[] gridValues = new int[gridSizeMeters*gridSizeMeters];
-		double cx = loc.x;
-		double cy = loc.y;
-		double gridSizeY = Math.toDegrees(gridSizeMeters / 6378100.0);
-		double gridSizeX = gridSizeY / Math.cos(Math.toRadians(cx));
-		double halfN = gridSizeMeters/2;
-		List<Coordinate> gridLocations = new ArrayList<Coordinate>(gridValues.length);
-		
-		for (int xi = 0; xi < gridSizeMeters; xi++)
+
+		if (edgeMap.isEmpty())
+			return isochroneMap;
+
+		// 2. Sample the costs onto a grid that covers all reachable edges.
+		GraphHopperStorage graph = _searchContext.getGraphHopper().getGraphHopperStorage();
+		NodeAccess nodeAccess = graph.getNodeAccess();
+		double maxCost = parameters.getMaximumRange();
+
+		Envelope env = new Envelope(loc);
+		for (int entry = 0; entry < edgeMap.size(); entry++)
 		{
-			double dx = (-halfN + xi)*gridSizeX;
-			
-			for (int yi = 0; yi< gridSizeMeters; yi++)
-			{
-				double dy = (-halfN + yi)*gridSizeX;
-				
-				int p = xi + yi*gridSizeMeters;
-
-				QueryResult res = _gridIndex.findClosest(cy + dy, cx + dx, EdgeFilter.ALL_EDGES);
-				if (res.isValid())
-					gridValues[p] = res.getClosestNode();
-				else
-					gridValues[p] = -1;
-				
-				gridLocations.add(new Coordinate(cx + dx, cy + dy));
-			}
+			if (!isReachableEdge(edgeMap, entry, maxCost, graph.getNodes()))
+				continue;
+
+			int node = edgeMap.getNode(entry);
+			int parentNode = edgeMap.getNode(edgeMap.getParent(entry));
+			env.expandToInclude(nodeAccess.getLon(node), nodeAccess.getLat(node));
+			env.expandToInclude(nodeAccess.getLon(parentNode), nodeAccess.getLat(parentNode));
 		}
-		
-		
-		MatrixRequest mtxReq = new MatrixRequest();
-		mtxReq.setMetrics(MatrixMetricsType.Distance);
-		mtxReq.setFlexibleMode(true);
-		mtxReq.setSources(new Coordinate[] { parameters.getLocation() });
-        Coordinate[] destinations = new Coordinate[gridLocations.size()];
-        gridLocations.toArray(destinations);
-		mtxReq.setDestinations(destinations); 
 
-		MatrixAlgorithm alg = MatrixAlgorithmFactory.createAlgorithm(mtxReq, gh, encoder);
-		
-		if (alg == null)
-			throw new Exception("Unable to create an algorithm to distance/duration matrix.");
+		double cosLat = Math.cos(Math.toRadians(loc.y));
+		double extent = Math.max(GeomUtility.degreesToMetres(env.getWidth()) * cosLat, GeomUtility.degreesToMetres(env.getHeight()));
+		double cellSize = Math.max(MIN_CELL_SIZE, extent / getGridSize(parameters.getSmoothingFactor()));
+		int bufferCells = (int)Math.ceil(BUFFER_SIZE / cellSize);
 
-		//alg.init(mtxReq, gh, _searchContext.getEncoder());
+		double stepY = GeomUtility.metresToDegrees(cellSize);
+		double stepX = stepY / cosLat;
+		// leave room for the buffer and keep the outermost grid points unreachable
+		int border = bufferCells + 2;
+		int width = (int)Math.ceil(env.getWidth() / stepX) + 2 * border + 1;
+		int height = (int)Math.ceil(env.getHeight() / stepY) + 2 * border + 1;
 
-		//MatrixLocationDataResolver locResolver = new MatrixLocationDataResolver(gh.getLocationIndex(), new DefaultEdgeFilter(encoder), new ByteArrayBuffer(), mtxReq.getResolveLocations(), 2000);
+		CostGrid grid = new CostGrid(width, height, env.getMinX() - border * stepX, env.getMinY() - border * stepY, stepX, stepY);
+		grid.setCost(loc.x, loc.y, 0);
 
-	/*	MatrixSearchData srcData = locResolver.resolve(mtxReq.getSources());
-		MatrixSearchData dstData = locResolver.resolve(mtxReq.getDestinations()); 
+		DistanceCalc dcFast = new DistancePlaneProjection();
+
+		for (int entry = 0; entry < edgeMap.size(); entry++)
+		{
+			if (!isReachableEdge(edgeMap, entry, maxCost, graph.getNodes()))
+				continue;
 
-		MatrixResult mtxResult = alg.compute(srcData, dstData, mtxReq.getMetrics()); 
-		*/
-		IsochroneMap isochroneMap = new IsochroneMap(0, loc);
+			EdgeIteratorState iter = graph.getEdgeIteratorState(edgeMap.getEdge(entry), edgeMap.getNode(entry));
+			addEdgeCosts(grid, iter.fetchWayGeometry(3), edgeMap.getWeight(edgeMap.getParent(entry)), edgeMap.getWeight(entry),
+					iter.getDistance(), maxCost, cellSize / 2, dcFast);
+		}
 
-		//AccessibilityMap edgeMap = GraphEdgeMapFinder.findEdgeMap(_searchContext, parameters);
+		// leaving the road costs as much as driving the same distance at the maximum speed
+		double offRoadCost = (parameters.getRangeType() == TravelRangeType.Time) ? cellSize / metersPerSecond : cellSize;
+		grid.spread(bufferCells, offRoadCost);
 
 		if (LOGGER.isDebugEnabled())
 		{
 			sw.stop();
+			LOGGER.debug("Build grid (" + width + "x" + height + "): " + sw.getSeconds());
 
-			LOGGER.debug("Find edges: " + sw.getSeconds());
+			sw = new StopWatch();
+			sw.start();
+		}
+
+		// 3. Extract the contour of every range from the same grid.
+		MarchingSquares contours = new MarchingSquares(grid.getCosts(), width, height, grid.getMinX(), grid.getMinY(), stepX, stepY);
+
+		for (double isoValue : parameters.getRanges())
+		{
+			MultiPolygon polygons = contours.createMultiPolygon(isoValue, _geomFactory);
+			if (polygons == null)
+				continue;
+
+			// areas that are only connected through roads further off than the buffer are separate polygons
+			Geometry geom = (polygons.getNumGeometries() == 1) ? polygons.getGeometryN(0) : polygons;
+
+			double maxRadius = (parameters.getRangeType() == TravelRangeType.Time) ? metersPerSecond * isoValue : isoValue;
+			isochroneMap.addIsochrone(new Isochrone(geom, isoValue, maxRadius));
+		}
+
+		if (LOGGER.isDebugEnabled())
+		{
+			LOGGER.debug("Build contours: " + sw.stop().getSeconds());
+			LOGGER.debug("Total time: " + swTotal.stop().getSeconds());
 		}
-		
 
 		return isochroneMap;
 	}
+
+	private boolean isReachableEdge(AccessibilityMap edgeMap, int entry, double maxCost, int nodesCount)
+	{
+		int parent = edgeMap.getParent(entry);
+		if (edgeMap.getEdge(entry) == -1 || parent < 0 || edgeMap.getWeight(parent) >= maxCost)
+			return false;
+
+		return edgeMap.getNode(entry) < nodesCount && edgeMap.getNode(parent) < nodesCount;
+	}
+
+	/**
+	 * Samples the costs along the edge geometry, which starts at the node reached with minCost. The costs are
+	 * interpolated linearly, sampling stops at the first point beyond maxCost.
+	 */
+	private void addEdgeCosts(CostGrid grid, PointList pl, double minCost, double endCost, double edgeDist, double maxCost,
+			double sampleDist, DistanceCalc dcFast)
+	{
+		int size = pl.getSize();
+		if (size == 0)
+			return;
+
+		double costPerMeter = (edgeDist > 0) ? (endCost - minCost) / edgeDist : 0;
+		double dist = 0;
+		double lat0 = pl.getLat(0);
+		double lon0 = pl.getLon(0);
+
+		grid.setCost(lon0, lat0, minCost);
+
+		for (int i = 1; i < size; ++i)
+		{
+			double lat1 = pl.getLat(i);
+			double lon1 = pl.getLon(i);
+			double segDist = dcFast.calcDist(lat0, lon0, lat1, lon1);
+			int samples = Math.max(1, (int)Math.ceil(segDist / sampleDist));
+
+			for (int s = 1; s <= samples; ++s)
+			{
+				double f = (double)s / samples;
+				double cost = minCost + (dist + f * segDist) * costPerMeter;
+
+				grid.setCost(lon0 + f * (lon1 - lon0), lat0 + f * (lat1 - lat0), cost);
+
+				if (cost > maxCost)
+					return;
+			}
+
+			dist += segDist;
+			lat0 = lat1;
+			lon0 = lon1;
+		}
+	}
+
+	/**
+	 * Lower smoothing factors produce finer grids.
+	 */
+	private int getGridSize(float smoothingFactor)
+	{
+		if (smoothingFactor == -1)
+			return DEFAULT_GRID_SIZE;
+
+		return Math.max(MIN_GRID_SIZE, (int)(2 * DEFAULT_GRID_SIZE * (1 - smoothingFactor / 100.0)));
+	}
+
+	/**
+	 * Minimum costs at the points of a regular grid, unreachable points have an infinite cost.
+	 */
+	private static class CostGrid
+	{
+		private final int _width;
+		private final int _height;
+		private final double _minX;
+		private final double _minY;
+		private final double _stepX;
+		private final double _stepY;
+		private double[] _costs;
+
+		public CostGrid(int width, int height, double minX, double minY, double stepX, double stepY)
+		{
+			_width = width;
+			_height = height;
+			_minX = minX;
+			_minY = minY;
+			_stepX = stepX;
+			_stepY = stepY;
+			_costs = new double[width * height];
+			Arrays.fill(_costs, Double.POSITIVE_INFINITY);
+		}
+
+		/**
+		 * Lowers the cost of the grid point closest to the given location. Locations outside of the grid are moved to
+		 * its inner border.
+		 */
+		public void setCost(double lon, double lat, double cost)
+		{
+			int x = Math.min(_width - 2, Math.max(1, (int)Math.round((lon - _minX) / _stepX)));
+			int y = Math.min(_height - 2, Math.max(1, (int)Math.round((lat - _minY) / _stepY)));
+			int index = y * _width + x;
+
+			if (cost < _costs[index])
+				_costs[index] = cost;
+		}
+
+		/**
+		 * Spreads the costs up to the given number of grid cells away from the sampled points, adding stepCost per cell.
+		 */
+		public void spread(int steps, double stepCost)
+		{
+			double diagonalCost = stepCost * Math.sqrt(2);
+
+			for (int step = 0; step < steps; step++)
+			{
+				double[] costs = _costs.clone();
+
+				for (int y = 1; y < _height - 1; y++)
+				{
+					for (int x = 1; x < _width - 1; x++)
+					{
+						int index = y * _width + x;
+						double cost = costs[index];
+
+						cost = Math.min(cost, _costs[index - 1] + stepCost);
+						cost = Math.min(cost, _costs[index + 1] + stepCost);
+						cost = Math.min(cost, _costs[index - _width] + stepCost);
+						cost = Math.min(cost, _costs[index + _width] + stepCost);
+						cost = Math.min(cost, _costs[index - _width - 1] + diagonalCost);
+						cost = Math.min(cost, _costs[index - _width + 1] + diagonalCost);
+						cost = Math.min(cost, _costs[index + _width - 1] + diagonalCost);
+						cost = Math.min(cost, _costs[index + _width + 1] + diagonalCost);
+
+						costs[index] = cost;
+					}
+				}
+
+				_costs = costs;
+			}
+		}
+
+		public double[] getCosts()
+		{
+			return _costs;
+		}
+
+		public double getMinX()
+		{
+			return _minX;
+		}
+
+		public double getMinY()
+		{
+			return _minY;
+		}
+	}
 }
@@ -0,0 +1,263 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.isochrones.builders.grid;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.vividsolutions.jts.algorithm.CGAlgorithms;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Extracts contour polygons from values sampled at the points of a regular grid (marching squares). The contour
+ * crosses the grid lines at positions interpolated linearly between the values of the adjacent grid points.
+ * <p>
+ * Grid points with a value below or equal to the contour value are inside. The contour segments are oriented so that
+ * the inside lies on their left, which makes shells counter-clockwise and holes clockwise. The grid points of the
+ * outermost rows and columns are always treated as outside, so every contour is closed.
+ */
+public class MarchingSquares
+{
+	// keeps crossing points off the grid points, so that contours touching in a grid point do not share a coordinate
+	private static final double MIN_OFFSET = 0.01;
+
+	private final double[] _values;
+	private final int _width;
+	private final int _height;
+	private final double _minX;
+	private final double _minY;
+	private final double _stepX;
+	private final double _stepY;
+
+	/**
+	 * @param values the values of the grid points row by row, starting at (minX, minY)
+	 */
+	public MarchingSquares(double[] values, int width, int height, double minX, double minY, double stepX, double stepY)
+	{
+		_values = values;
+		_width = width;
+		_height = height;
+		_minX = minX;
+		_minY = minY;
+		_stepX = stepX;
+		_stepY = stepY;
+	}
+
+	/**
+	 * Returns the areas enclosed by the contour of the given value, or null if no grid point is inside. Every shell
+	 * becomes a polygon with the holes it directly encloses, so islands within the holes of another shell are
+	 * polygons of their own.
+	 */
+	public MultiPolygon createMultiPolygon(double isoValue, GeometryFactory geomFactory)
+	{
+		IntIntHashMap segments = new IntIntHashMap();
+		IntArrayList startEdges = new IntArrayList();
+
+		for (int y = 0; y < _height - 1; y++)
+		{
+			for (int x = 0; x < _width - 1; x++)
+				addCellSegments(x, y, isoValue, segments, startEdges);
+		}
+
+		List<Coordinate[]> shells = new ArrayList<Coordinate[]>();
+		List<Coordinate[]> holes = new ArrayList<Coordinate[]>();
+
+		for (int i = 0; i < startEdges.size(); i++)
+		{
+			int startEdge = startEdges.get(i);
+			if (!segments.containsKey(startEdge))
+				continue;
+
+			Coordinate[] ring = traceRing(startEdge, isoValue, segments);
+			if (ring == null)
+				continue;
+
+			double area = getSignedArea(ring);
+			if (area > 0)
+				shells.add(ring);
+			else if (area < 0)
+				holes.add(ring);
+		}
+
+		if (shells.isEmpty())
+			return null;
+
+		// smaller shells first, so that a hole is assigned to the innermost shell enclosing it. The rings do not cross
+		// each other, so testing a single point of the hole is sufficient.
+		Collections.sort(shells, new Comparator<Coordinate[]>() {
+			@Override
+			public int compare(Coordinate[] a, Coordinate[] b) {
+				return Double.compare(getSignedArea(a), getSignedArea(b));
+			}
+		});
+
+		List<List<LinearRing>> shellHoles = new ArrayList<List<LinearRing>>(shells.size());
+		for (int i = 0; i < shells.size(); i++)
+			shellHoles.add(new ArrayList<LinearRing>());
+
+		for (Coordinate[] hole : holes)
+		{
+			for (int i = 0; i < shells.size(); i++)
+			{
+				if (CGAlgorithms.isPointInRing(hole[0], shells.get(i)))
+				{
+					shellHoles.get(i).add(geomFactory.createLinearRing(hole));
+					break;
+				}
+			}
+		}
+
+		// larger shells first
+		Polygon[] polygons = new Polygon[shells.size()];
+		for (int i = 0; i < shells.size(); i++)
+		{
+			int index = shells.size() - 1 - i;
+			List<LinearRing> rings = shellHoles.get(index);
+			polygons[i] = geomFactory.createPolygon(geomFactory.createLinearRing(shells.get(index)), rings.toArray(new LinearRing[rings.size()]));
+		}
+
+		return geomFactory.createMultiPolygon(polygons);
+	}
+
+	/**
+	 * Adds the segments of the cell with the lower left grid point (x, y). The edges of the cell are visited
+	 * counter-clockwise, each segment starts at an edge where the contour leaves the inside and ends at the edge where
+	 * it enters it again. Saddles are resolved with the mean value of the cell.
+	 */
+	private void addCellSegments(int x, int y, double isoValue, IntIntHashMap segments, IntArrayList startEdges)
+	{
+		boolean in0 = isInside(x, y, isoValue);
+		boolean in1 = isInside(x + 1, y, isoValue);
+		boolean in2 = isInside(x + 1, y + 1, isoValue);
+		boolean in3 = isInside(x, y + 1, isoValue);
+
+		if (in0 == in1 && in1 == in2 && in2 == in3)
+			return;
+
+		// corner k is the start of edge k: bottom, right, top, left
+		boolean[] inside = new boolean[] { in0, in1, in2, in3 };
+		int[] edges = new int[] { getHorizontalEdge(x, y), getVerticalEdge(x + 1, y), getHorizontalEdge(x, y + 1), getVerticalEdge(x, y) };
+
+		double mean = (getValue(x, y) + getValue(x + 1, y) + getValue(x + 1, y + 1) + getValue(x, y + 1)) / 4;
+		int direction = (mean <= isoValue) ? 1 : 3;
+
+		for (int k = 0; k < 4; k++)
+		{
+			if (!inside[k] || inside[(k + 1) % 4])
+				continue;
+
+			int j = (k + direction) % 4;
+			while (inside[j] == inside[(j + 1) % 4])
+				j = (j + direction) % 4;
+
+			segments.put(edges[k], edges[j]);
+			startEdges.add(edges[k]);
+		}
+	}
+
+	/**
+	 * Follows the segments from the given edge until the ring is closed and removes them.
+	 *
+	 * @return the closed ring or null if it is degenerated
+	 */
+	private Coordinate[] traceRing(int startEdge, double isoValue, IntIntHashMap segments)
+	{
+		List<Coordinate> coords = new ArrayList<Coordinate>();
+		int edge = startEdge;
+
+		do
+		{
+			if (!segments.containsKey(edge))
+				return null;
+
+			coords.add(getCrossing(edge, isoValue));
+			edge = segments.remove(edge);
+		}
+		while (edge != startEdge);
+
+		if (coords.size() < 3)
+			return null;
+
+		coords.add(new Coordinate(coords.get(0)));
+
+		return coords.toArray(new Coordinate[coords.size()]);
+	}
+
+	private Coordinate getCrossing(int edge, double isoValue)
+	{
+		int point = edge >> 1;
+		int x = point % _width;
+		int y = point / _width;
+		boolean horizontal = (edge & 1) == 0;
+
+		double a = getValue(x, y);
+		double b = horizontal ? getValue(x + 1, y) : getValue(x, y + 1);
+		double t;
+		if (Double.isInfinite(a))
+			t = 1;
+		else if (Double.isInfinite(b))
+			t = 0;
+		else
+			t = (b == a) ? 0.5 : (isoValue - a) / (b - a);
+		t = Math.min(1 - MIN_OFFSET, Math.max(MIN_OFFSET, t));
+
+		if (horizontal)
+			return new Coordinate(_minX + (x + t) * _stepX, _minY + y * _stepY);
+		else
+			return new Coordinate(_minX + x * _stepX, _minY + (y + t) * _stepY);
+	}
+
+	private int getHorizontalEdge(int x, int y)
+	{
+		return (y * _width + x) << 1;
+	}
+
+	private int getVerticalEdge(int x, int y)
+	{
+		return ((y * _width + x) << 1) | 1;
+	}
+
+	private boolean isInside(int x, int y, double isoValue)
+	{
+		return getValue(x, y) <= isoValue;
+	}
+
+	private double getValue(int x, int y)
+	{
+		if (x <= 0 || y <= 0 || x >= _width - 1 || y >= _height - 1)
+			return Double.POSITIVE_INFINITY;
+
+		return _values[y * _width + x];
+	}
+
+	/**
+	 * Returns the area of the closed ring, positive if it is counter-clockwise.
+	 */
+	private static double getSignedArea(Coordinate[] ring)
+	{
+		double sum = 0;
+		for (int i = 0; i < ring.length - 1; i++)
+			sum += ring[i].x * ring[i + 1].y - ring[i + 1].x * ring[i].y;
+
+		return sum / 2;
+	}
+}
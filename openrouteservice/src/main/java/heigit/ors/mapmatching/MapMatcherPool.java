@@ -0,0 +1,55 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.mapmatching;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.graphhopper.GraphHopper;
+
+import heigit.ors.mapmatching.hmm.HiddenMarkovMapMatcher;
+
+/**
+ * Map matchers of one GraphHopper instance. A matcher keeps request state in its fields, so each request borrows one
+ * for its exclusive use. The pool grows to the number of concurrent requests and keeps the matchers with their
+ * buffers for later requests.
+ */
+public class MapMatcherPool {
+	private final GraphHopper _graphHopper;
+	private final ConcurrentLinkedQueue<MapMatcher> _matchers = new ConcurrentLinkedQueue<MapMatcher>();
+
+	public MapMatcherPool(GraphHopper gh) {
+		_graphHopper = gh;
+	}
+
+	public GraphHopper getGraphHopper() {
+		return _graphHopper;
+	}
+
+	/**
+	 * Returns a matcher that is not used by any other thread until it is passed to {@link #release(MapMatcher)}.
+	 * Search radius and edge filter are those of its previous use and have to be set by the caller.
+	 */
+	public MapMatcher acquire() {
+		MapMatcher matcher = _matchers.poll();
+		if (matcher == null) {
+			matcher = new HiddenMarkovMapMatcher();
+			matcher.setGraphHopper(_graphHopper);
+		}
+		return matcher;
+	}
+
+	public void release(MapMatcher matcher) {
+		_matchers.offer(matcher);
+	}
+}
@@ -32,6 +32,7 @@ import heigit.ors.mapmatching.RouteSegmentInfo;
 import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /*
@@ -39,6 +40,7 @@ import java.util.List;
  * 
  * http://research.microsoft.com/en-us/um/people/jckrumm/Publications%202009/map%20matching%20ACM%20GIS%20camera%20ready.pdf
  * 
+ * Instances keep the buffers of the last request and must not be shared between threads, see MapMatcherPool.
  * */
 public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 
@@ -56,6 +58,12 @@ public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 	private double[] longitudes = new double[2];
 	private double[] latitudes = new double[2];
 
+	// row major probability matrices, reused by subsequent requests
+	private double[] transProbs = new double[0];
+	private double[] emissionProbs = new double[0];
+	private double[] startProbs = new double[0];
+	private final ViterbiSolver viterbiSolver = new ViterbiSolver();
+
 	
 	@SuppressWarnings("serial")
 	private class MatchPoint extends Coordinate {
@@ -124,16 +132,23 @@ public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 		if (Nr == 0)
 			return null;
 		
-		double[][] transProbs = new double[Nr][Nr];
-		double[][] emissionProbs = new double[Nr][Nz];
-		double[] startProbs = new double[Nr];
+		if (transProbs.length < Nr * Nr)
+			transProbs = new double[Nr * Nr];
+		if (emissionProbs.length < Nr * Nz)
+			emissionProbs = new double[Nr * Nz];
+		else
+			Arrays.fill(emissionProbs, 0, Nr * Nz, 0.0);
+		if (startProbs.length < Nr)
+			startProbs = new double[Nr];
+		else
+			Arrays.fill(startProbs, 0, Nr, 0.0);
 
-		RouteSegmentInfo seg1 = findRouteSegments(z, x, Nr, Nz, startProbs, emissionProbs, transProbs, edgeFilter);
+		RouteSegmentInfo seg1 = findRouteSegments(z, x, Nr, Nz, edgeFilter);
 		RouteSegmentInfo seg2 = null;
 		
 		if (bothDirections)
 		{
-			startProbs = new double[Nr];
+			Arrays.fill(startProbs, 0, Nr, 0.0);
 
 			for (int i = 0; i < Nz / 2; i++) {
 				Coordinate tempZ = z[i];
@@ -154,7 +169,7 @@ public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 				}
 			}
 
-			seg2 = findRouteSegments(z, x, Nr, Nz, startProbs, emissionProbs, transProbs, edgeFilter);
+			seg2 = findRouteSegments(z, x, Nr, Nz, edgeFilter);
 		}
 		
 		if (seg1 !=  null && seg2 != null)
@@ -186,7 +201,7 @@ public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 		return result;
 	}
 
-	private RouteSegmentInfo findRouteSegments(Coordinate[] z, MatchPoint[][] x, int Nr, int Nz, double[] startProbs, double[][] emissionProbs, double[][] transProbs, EdgeFilter edgeFilter)
+	private RouteSegmentInfo findRouteSegments(Coordinate[] z, MatchPoint[][] x, int Nr, int Nz, EdgeFilter edgeFilter)
 	{
 		// Phase II: Compute distances, probabilities, etc.
 
@@ -204,10 +219,10 @@ public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 				int ri = xi.segmentId;
 				dist = xi.distance;// distCalcEarth.calcDist(zt.lat, zt.lon, xi.lat, xi.lon);
 				if (dist > distThreshold)
-					emissionProbs[ri][t] = defaultProbability;
+					emissionProbs[ri * Nz + t] = defaultProbability;
 				else {
 					v = dist / sigma_z;
-					emissionProbs[ri][t] = Math.exp(-0.5 * v * v) / denom;
+					emissionProbs[ri * Nz + t] = Math.exp(-0.5 * v * v) / denom;
 				}
 
 				if (startProbs[ri] == 0.0)
@@ -289,7 +304,7 @@ public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 					}
 				}
 				
-				transProbs[i][j] = value;
+				transProbs[i * Nr + j] = value;
 			}
 		}
 
@@ -297,8 +312,7 @@ public class HiddenMarkovMapMatcher extends AbstractMapMatcher {
 		// lattice that maximizes the product of the measurement probabilities
 		// and transition probabilities
 
-		ViterbiSolver viterbiSolver = new ViterbiSolver();
-		int[] bestPath = viterbiSolver.findPath(startProbs, transProbs, emissionProbs, true);
+		int[] bestPath = viterbiSolver.findPath(startProbs, transProbs, emissionProbs, Nr, Nz, Nz, true);
 
 		ORSGraphHopper gh = (ORSGraphHopper)_graphHopper;
 		
@@ -13,86 +13,106 @@
  */
 package heigit.ors.mapmatching.hmm;
 
+/**
+ * Viterbi algorithm on flat row major probability matrices. The buffers are reused between calls, so an instance must
+ * not be shared between threads.
+ */
 public class ViterbiSolver {
-	
-	public int[] findPath(double[] startProbability, double[][] transitionProbability, double[][] emissionProbability, boolean scaled)
+	private double[] _delta = new double[0];
+	private int[] _phi = new int[0];
+	private double[] _logTransitions = new double[0];
+
+	/**
+	 * @param startProbability nStates start probabilities
+	 * @param transitionProbability nStates x nStates matrix, the probability of going from state j to i is at
+	 * [j * nStates + i]
+	 * @param emissionProbability nStates x emissionStride matrix, the probability of observation t in state i is at
+	 * [i * emissionStride + t]
+	 * @return the most probable state of each of the nObservations observations
+	 */
+	public int[] findPath(double[] startProbability, double[] transitionProbability, double[] emissionProbability,
+			int nStates, int nObservations, int emissionStride, boolean scaled)
 	{
-		int nObservations = emissionProbability[0].length;
-		int nStates = startProbability.length;
+		// probability that the most probable hidden states ends at state i, [t * nStates + i]
+		if (_delta.length < nObservations * nStates)
+			_delta = new double[nObservations * nStates];
+		double[] delta = _delta;
+
+		// previous hidden state in the most probable state leading up to state i, [(t - 1) * nStates + i]
+		if (_phi.length < (nObservations - 1) * nStates)
+			_phi = new int[(nObservations - 1) * nStates];
+		int[] phi = _phi;
+
+		// initialize the return array
+		int[] sequence = new int[nObservations];
+
+		if (scaled) {
+			for (int i = 0; i < nStates; i++) {
+				delta[i] = Math.log(startProbability[i] * emissionProbability[i * emissionStride]);
+			}
+
+			// the logarithms of the transitions are the same for every observation
+			if (_logTransitions.length < nStates * nStates)
+				_logTransitions = new double[nStates * nStates];
+			double[] logTransitions = _logTransitions;
 
-		// probability that the most probable hidden states ends at state i
-	    double[][] delta = new double[nObservations][nStates];
+			for (int i = 0; i < nStates * nStates; i++)
+				logTransitions[i] = Math.log(transitionProbability[i]);
 
-	    // previous hidden state in the most probable state leading up to state i
-	    int[][] phi = new int[nObservations - 1][nStates];
+			for (int t = 1; t < nObservations; t++) {
+				int prev = (t - 1) * nStates;
+				for (int i = 0; i < nStates; i++) {
+					// find the maximum probability and most likely state leading up to this
+					int maxState = 0;
+					double maxProb = delta[prev] + logTransitions[i];
+					for (int j = 1; j < nStates; j++) {
+						double prob = delta[prev + j] + logTransitions[j * nStates + i];
+						if (prob > maxProb) {
+							maxProb = prob;
+							maxState = j;
+						}
+					}
+					delta[t * nStates + i] = maxProb + Math.log(emissionProbability[i * emissionStride + t]);
+					phi[prev + i] = maxState;
+				}
+			}
+		} else {
+			for (int i = 0; i < nStates; i++) {
+				delta[i] = startProbability[i] * emissionProbability[i * emissionStride];
+			}
 
-	    // initialize the return array
-	    int[] sequence = new int[nObservations];
+			for (int t = 1; t < nObservations; t++) {
+				int prev = (t - 1) * nStates;
+				for (int i = 0; i < nStates; i++) {
+					int maxState = 0;
+					double maxProb = delta[prev] * transitionProbability[i];
+					for (int j = 1; j < nStates; j++) {
+						double prob = delta[prev + j] * transitionProbability[j * nStates + i];
+						if (prob > maxProb) {
+							maxProb = prob;
+							maxState = j;
+						}
+					}
+					delta[t * nStates + i] = maxProb * emissionProbability[i * emissionStride + t];
+					phi[prev + i] = maxState;
+				}
+			}
+		}
 
-	    if (scaled) {
-	        for (int i = 0; i < nStates; i++) {
-	          delta[0][i] = Math.log(startProbability[i] * emissionProbability[i][0]);
-	        }
-	      } else {
+		double maxProb = scaled ? Double.NEGATIVE_INFINITY : 0.0;
+		int last = (nObservations - 1) * nStates;
+		for (int i = 0; i < nStates; i++) {
+			if (delta[last + i] > maxProb) {
+				maxProb = delta[last + i];
+				sequence[nObservations - 1] = i;
+			}
+		}
 
-	        for (int i = 0; i < nStates; i++) {
-	          delta[0][i] = startProbability[i] * emissionProbability[i][0];
-	        }
-	      }
-	    
-	    if (scaled) {
-	      for (int t = 1; t < nObservations; t++) {
-	        for (int i = 0; i < nStates; i++) {
-	          // find the maximum probability and most likely state leading up to this
-	          int maxState = 0;
-	          double maxProb = delta[t - 1][0] + Math.log(transitionProbability[0][i]);
-	          for (int j = 1; j < nStates; j++) {
-	            double prob = delta[t - 1][j] + Math.log(transitionProbability[j][i]);
-	            if (prob > maxProb) {
-	              maxProb = prob;
-	              maxState = j;
-	            }
-	          }
-	          delta[t][i] = maxProb + Math.log(emissionProbability[i][t]);
-	          phi[t - 1][i] = maxState;
-	        }
-	      }
-	    } else {
-	      for (int t = 1; t < nObservations; t++) {
-	        for (int i = 0; i < nStates; i++) {
-	          int maxState = 0;
-	          double maxProb = delta[t - 1][0] * transitionProbability[0][i];
-	          for (int j = 1; j < nStates; j++) {
-	            double prob = delta[t - 1][j] * transitionProbability[j][i];
-	            if (prob > maxProb) {
-	              maxProb = prob;
-	              maxState = j;
-	            }
-	          }
-	          delta[t][i] = maxProb * emissionProbability[i][t];
-	          phi[t - 1][i] = maxState;
-	        }
-	      }
-	    }
-	    
-	    double maxProb;
-	    if (scaled) {
-	      maxProb = Double.NEGATIVE_INFINITY;
-	    } else {
-	      maxProb = 0.0;
-	    }
-	    for (int i = 0; i < nStates; i++) {
-	      if (delta[nObservations - 1][i] > maxProb) {
-	        maxProb = delta[nObservations - 1][i];
-	        sequence[nObservations - 1] = i;
-	      }
-	    }
+		// backtrack
+		for (int t = nObservations - 2; t >= 0; t--) {
+			sequence[t] = phi[t * nStates + sequence[t + 1]];
+		}
 
-	    // backtrack
-	    for (int t = nObservations - 2; t >= 0; t--) {
-	      sequence[t] = phi[t][sequence[t + 1]];
-	    }
-	    
-	    return sequence;
+		return sequence;
 	}
 }
@@ -0,0 +1,70 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.matrix;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import heigit.ors.services.matrix.MatrixServiceSettings;
+import heigit.ors.util.WorkerPool;
+
+/**
+ * Bounded pool of worker threads shared by all matrix requests. A request splits its sources into blocks, the first
+ * block is computed on the request thread and the remaining ones on the pool.
+ */
+public class MatrixWorkerPool {
+	private static final int MIN_SOURCES_PER_BLOCK = 8;
+
+	private static WorkerPool _pool;
+
+	/**
+	 * Returns the number of blocks the given number of sources should be split into.
+	 */
+	public static int getBlocksCount(int sourcesCount) {
+		int parallelism = Math.min(MatrixServiceSettings.getMaximumRequestParallelism(), MatrixServiceSettings.getParallelThreads() + 1);
+		int blocks = (sourcesCount + MIN_SOURCES_PER_BLOCK - 1) / MIN_SOURCES_PER_BLOCK;
+
+		return Math.max(1, Math.min(parallelism, blocks));
+	}
+
+	/**
+	 * Splits the range [0, size) into the given number of contiguous blocks.
+	 *
+	 * @return the block boundaries, block i covers [bounds[i], bounds[i + 1])
+	 */
+	public static int[] getBlockBounds(int size, int blocksCount) {
+		int[] bounds = new int[blocksCount + 1];
+		int blockSize = size / blocksCount;
+		int remainder = size % blocksCount;
+
+		for (int i = 0; i < blocksCount; i++)
+			bounds[i + 1] = bounds[i] + blockSize + (i < remainder ? 1 : 0);
+
+		return bounds;
+	}
+
+	/**
+	 * Runs all tasks and waits for their completion, see {@link WorkerPool#run(List)}.
+	 */
+	public static void run(List<Callable<Void>> tasks) throws Exception {
+		getPool().run(tasks);
+	}
+
+	private static synchronized WorkerPool getPool() {
+		if (_pool == null)
+			_pool = new WorkerPool("ORS-matrix", Math.max(1, MatrixServiceSettings.getParallelThreads()));
+
+		return _pool;
+	}
+}
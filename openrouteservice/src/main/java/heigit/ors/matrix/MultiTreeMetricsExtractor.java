@@ -25,8 +25,10 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 
 import heigit.ors.common.DistanceUnit;
+import heigit.ors.routing.algorithms.MultiTreeSPTable;
 import heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntry;
 import heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntryItem;
+import heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
 import heigit.ors.util.DistanceUnitUtil;
 
 public class MultiTreeMetricsExtractor {
@@ -48,6 +50,7 @@ public class MultiTreeMetricsExtractor {
 	private boolean _reverseOrder = true;
 	private boolean _unpackDistance = true;
 	private GHLongObjectHashMap<MetricsItem> _edgeMetrics;
+	private ShortcutMetricsStorage _shortcutMetrics;
 	private long _maxEdgeId = 0;
 
 	public MultiTreeMetricsExtractor(int metrics, Graph graph, FlagEncoder encoder, Weighting weighting,
@@ -71,6 +74,14 @@ public class MultiTreeMetricsExtractor {
 		_maxEdgeId = _chGraph.getAllEdges().getMaxId();
 	}
 
+	/**
+	 * Sets the precomputed durations and distances of the shortcuts of the CH graph. They are used instead of unpacking
+	 * the shortcuts as long as no weights are requested.
+	 */
+	public void setShortcutMetrics(ShortcutMetricsStorage shortcutMetrics) {
+		_shortcutMetrics = shortcutMetrics;
+	}
+
 	public void setEmptyValues(int sourceIndex, MatrixLocations srcData, MatrixLocations dstData, float[] times,
 			float[] distances, float[] weights) {
 		int i = sourceIndex * dstData.size();
@@ -90,23 +101,28 @@ public class MultiTreeMetricsExtractor {
 
 	public void calcValues(MultiTreeSPEntry[] targets, MatrixLocations srcData, MatrixLocations dstData, float[] times,
 			float[] distances, float[] weights) throws Exception {
+		calcValues(targets, srcData, dstData, 0, srcData.size(), times, distances, weights);
+	}
+
+	/**
+	 * Fills the rows of the sources srcFrom (inclusive) to srcTo (exclusive). The trees of the targets are expected
+	 * to be computed for the valid sources of this range only.
+	 */
+	public void calcValues(MultiTreeSPEntry[] targets, MatrixLocations srcData, MatrixLocations dstData, int srcFrom,
+			int srcTo, float[] times, float[] distances, float[] weights) throws Exception {
 		if (targets == null)
 			throw new IllegalStateException("Target destinations not set");
 
-		// int index = sourceIndex * dstData.size();
 		int index = 0;
 		double pathTime = 0.0, pathDistance = 0.0, pathWeight = 0.0;
-		long entryHash = 0;
 		boolean calcTime = MatrixMetricsType.isSet(_metrics, MatrixMetricsType.Duration);
 		boolean calcDistance = MatrixMetricsType.isSet(_metrics, MatrixMetricsType.Distance);
 		boolean calcWeight = MatrixMetricsType.isSet(_metrics, MatrixMetricsType.Weight);
-		MetricsItem edgeMetricsItem = null;
 		MultiTreeSPEntryItem sptItem = null;
 
 		for (int i = 0; i < targets.length; ++i) {
-			// index = i * dstData.size();
 			int srcNode = 0;
-			for (int j = 0; j < srcData.size(); ++j) {
+			for (int j = srcFrom; j < srcTo; ++j) {
 				pathTime = -1;
 				pathDistance = -1;
 				pathWeight = -1;
@@ -125,78 +141,11 @@ public class MultiTreeMetricsExtractor {
 
 						if (sptItem.parent != null) {
 							while (EdgeIterator.Edge.isValid(sptItem.edge)) {
-								edgeMetricsItem = null;
-								if (_edgeMetrics != null) {
-									entryHash = getMultiTreeSPEntryHash(targetEntry, srcNode);
-									edgeMetricsItem = _edgeMetrics.get(entryHash);
-								}
-
-								if (edgeMetricsItem == null) {
-									if (_chGraph != null) {
-										CHEdgeIteratorState iterState = (CHEdgeIteratorState) _graph
-												.getEdgeIteratorState(sptItem.edge, targetEntry.adjNode);
-
-										if (calcWeight || calcTime || _unpackDistance) {
-											if (iterState.isShortcut()) {
-												if (_chGraph.getLevel(iterState.getBaseNode()) > _chGraph
-														.getLevel(iterState.getAdjNode())) {
-													_reverseOrder = true;
-													extractEdgeValues(iterState, false);
-												} else {
-													_reverseOrder = false;
-													extractEdgeValues(iterState, true);
-												}
-											} else {
-												extractEdgeValues(iterState, false);
-											}
-
-											if (_unpackDistance)
-												_edgeDistance = (_distUnits == DistanceUnit.Meters) ? _edgeDistance
-														: DistanceUnitUtil.convert(_edgeDistance, DistanceUnit.Meters,
-																_distUnits);
-										}
-
-										if (!_unpackDistance && calcDistance)
-											_edgeDistance = (_distUnits == DistanceUnit.Meters)
-													? iterState.getDistance()
-													: DistanceUnitUtil.convert(iterState.getDistance(),
-															DistanceUnit.Meters, _distUnits);
-									} else {
-										EdgeIteratorState iter = _graph.getEdgeIteratorState(sptItem.edge,
-												targetEntry.adjNode);
-
-										if (calcDistance)
-											_edgeDistance = (_distUnits == DistanceUnit.Meters) ? iter.getDistance()
-													: DistanceUnitUtil.convert(iter.getDistance(), DistanceUnit.Meters,
-															_distUnits);
-
-										if (calcTime)
-											_edgeTime = _timeWeighting.calcMillis(iter, false, EdgeIterator.NO_EDGE)
-													/ 1000.0;
-
-										if (calcWeight)
-											_edgeWeight = _weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
-									}
-
-									if (_edgeMetrics != null) {
-										edgeMetricsItem = new MetricsItem();
-										edgeMetricsItem.distance = _edgeDistance;
-										edgeMetricsItem.time = _edgeTime;
-										edgeMetricsItem.weight = _edgeWeight;
-										_edgeMetrics.put(entryHash, edgeMetricsItem);
-									}
-
-									pathDistance += _edgeDistance;
-									pathTime += _edgeTime;
-									pathWeight += _edgeWeight;
-								} else {
-									if (calcDistance)
-										pathDistance += edgeMetricsItem.distance;
-									if (calcTime)
-										pathTime += edgeMetricsItem.time;
-									if (calcWeight)
-										pathWeight += edgeMetricsItem.weight;
-								}
+								calcEdgeValues(sptItem.edge, targetEntry.adjNode, calcTime, calcDistance, calcWeight);
+
+								pathDistance += _edgeDistance;
+								pathTime += _edgeTime;
+								pathWeight += _edgeWeight;
 
 								targetEntry = sptItem.parent;
 
@@ -222,8 +171,171 @@ public class MultiTreeMetricsExtractor {
 		}
 	}
 
-	private long getMultiTreeSPEntryHash(MultiTreeSPEntry entry, int sptEntry) {
-		return entry.adjNode * _maxEdgeId  + entry.getItem(sptEntry).edge;
+	/**
+	 * Same as {@link #calcValues(MultiTreeSPEntry[], MatrixLocations, MatrixLocations, float[], float[], float[])}
+	 * for shortest path trees stored in a {@link MultiTreeSPTable}.
+	 *
+	 * @param targetSlots the table slots of the destinations in the order of dstData, -1 if not reached
+	 */
+	public void calcValues(MultiTreeSPTable table, int[] targetSlots, MatrixLocations srcData, MatrixLocations dstData,
+			float[] times, float[] distances, float[] weights) throws Exception {
+		calcValues(table, targetSlots, srcData, dstData, 0, srcData.size(), times, distances, weights);
+	}
+
+	/**
+	 * Same as {@link #calcValues(MultiTreeSPEntry[], MatrixLocations, MatrixLocations, int, int, float[], float[], float[])}
+	 * for shortest path trees stored in a {@link MultiTreeSPTable}.
+	 */
+	public void calcValues(MultiTreeSPTable table, int[] targetSlots, MatrixLocations srcData, MatrixLocations dstData,
+			int srcFrom, int srcTo, float[] times, float[] distances, float[] weights) throws Exception {
+		if (targetSlots == null)
+			throw new IllegalStateException("Target destinations not set");
+
+		boolean calcTime = MatrixMetricsType.isSet(_metrics, MatrixMetricsType.Duration);
+		boolean calcDistance = MatrixMetricsType.isSet(_metrics, MatrixMetricsType.Distance);
+		boolean calcWeight = MatrixMetricsType.isSet(_metrics, MatrixMetricsType.Weight);
+
+		for (int i = 0; i < targetSlots.length; ++i) {
+			int srcNode = 0;
+			for (int j = srcFrom; j < srcTo; ++j) {
+				double pathTime = -1;
+				double pathDistance = -1;
+				double pathWeight = -1;
+
+				int index = j * dstData.size() + i;
+
+				if (srcData.getNodeId(j) != -1) {
+					int slot = targetSlots[i];
+
+					if (slot != -1) {
+						pathTime = 0.0;
+						pathDistance = 0.0;
+						pathWeight = 0.0;
+
+						if (table.getParent(slot, srcNode) != -1) {
+							int edge = table.getEdge(slot, srcNode);
+
+							while (EdgeIterator.Edge.isValid(edge)) {
+								calcEdgeValues(edge, table.getNode(slot), calcTime, calcDistance, calcWeight);
+
+								pathDistance += _edgeDistance;
+								pathTime += _edgeTime;
+								pathWeight += _edgeWeight;
+
+								slot = table.getParent(slot, srcNode);
+
+								if (slot == -1)
+									break;
+
+								edge = table.getEdge(slot, srcNode);
+							}
+						}
+					}
+					srcNode++;
+				}
+
+				if (calcTime)
+					times[index] = (float) pathTime;
+
+				if (calcDistance)
+					distances[index] = (float) pathDistance;
+
+				if (calcWeight)
+					weights[index] = (float) pathWeight;
+			}
+		}
+	}
+
+	/**
+	 * Sets _edgeDistance, _edgeTime and _edgeWeight to the values of the given edge leading to adjNode, unpacking CH
+	 * shortcuts if necessary. Values are memorized per edge and adjacent node.
+	 */
+	private void calcEdgeValues(int edge, int adjNode, boolean calcTime, boolean calcDistance, boolean calcWeight) {
+		long entryHash = 0;
+
+		if (_edgeMetrics != null) {
+			entryHash = getEdgeHash(adjNode, edge);
+			MetricsItem edgeMetricsItem = _edgeMetrics.get(entryHash);
+
+			if (edgeMetricsItem != null) {
+				_edgeDistance = edgeMetricsItem.distance;
+				_edgeTime = edgeMetricsItem.time;
+				_edgeWeight = edgeMetricsItem.weight;
+				return;
+			}
+		}
+
+		if (_chGraph != null) {
+			CHEdgeIteratorState iterState = (CHEdgeIteratorState) _graph.getEdgeIteratorState(edge, adjNode);
+			boolean precomputed = !calcWeight && iterState.isShortcut() && setShortcutValues(edge, iterState);
+
+			if (!precomputed && (calcWeight || calcTime || _unpackDistance)) {
+				if (iterState.isShortcut()) {
+					if (_chGraph.getLevel(iterState.getBaseNode()) > _chGraph.getLevel(iterState.getAdjNode())) {
+						_reverseOrder = true;
+						extractEdgeValues(iterState, false);
+					} else {
+						_reverseOrder = false;
+						extractEdgeValues(iterState, true);
+					}
+				} else {
+					extractEdgeValues(iterState, false);
+				}
+
+				if (_unpackDistance)
+					_edgeDistance = (_distUnits == DistanceUnit.Meters) ? _edgeDistance
+							: DistanceUnitUtil.convert(_edgeDistance, DistanceUnit.Meters, _distUnits);
+			}
+
+			if (!precomputed && !_unpackDistance && calcDistance)
+				_edgeDistance = (_distUnits == DistanceUnit.Meters) ? iterState.getDistance()
+						: DistanceUnitUtil.convert(iterState.getDistance(), DistanceUnit.Meters, _distUnits);
+		} else {
+			EdgeIteratorState iter = _graph.getEdgeIteratorState(edge, adjNode);
+
+			if (calcDistance)
+				_edgeDistance = (_distUnits == DistanceUnit.Meters) ? iter.getDistance()
+						: DistanceUnitUtil.convert(iter.getDistance(), DistanceUnit.Meters, _distUnits);
+
+			if (calcTime)
+				_edgeTime = _timeWeighting.calcMillis(iter, false, EdgeIterator.NO_EDGE) / 1000.0;
+
+			if (calcWeight)
+				_edgeWeight = _weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
+		}
+
+		if (_edgeMetrics != null) {
+			MetricsItem edgeMetricsItem = new MetricsItem();
+			edgeMetricsItem.distance = _edgeDistance;
+			edgeMetricsItem.time = _edgeTime;
+			edgeMetricsItem.weight = _edgeWeight;
+			_edgeMetrics.put(entryHash, edgeMetricsItem);
+		}
+	}
+
+	/**
+	 * Sets _edgeTime and _edgeDistance to the stored values of the shortcut traversed towards its adjacent node.
+	 *
+	 * @return false if there are no stored values, e.g. for shortcuts of query graphs or inaccessible directions
+	 */
+	private boolean setShortcutValues(int edge, CHEdgeIteratorState iterState) {
+		if (_shortcutMetrics == null || !_shortcutMetrics.isShortcut(edge))
+			return false;
+
+		double time = _shortcutMetrics.getTime(edge, iterState.getAdjNode() > iterState.getBaseNode());
+		if (Double.isNaN(time))
+			return false;
+
+		double distance = _shortcutMetrics.getDistance(edge);
+		_edgeTime = time;
+		_edgeDistance = (_distUnits == DistanceUnit.Meters) ? distance
+				: DistanceUnitUtil.convert(distance, DistanceUnit.Meters, _distUnits);
+		_edgeWeight = 0.0;
+		return true;
+	}
+
+	private long getEdgeHash(int adjNode, int edge) {
+		return adjNode * _maxEdgeId + edge;
 	}
 
 	private void extractEdgeValues(CHEdgeIteratorState iterState, boolean reverse) {
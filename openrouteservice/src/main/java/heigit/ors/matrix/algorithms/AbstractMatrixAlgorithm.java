@@ -13,19 +13,25 @@
  */
 package heigit.ors.matrix.algorithms;
 
+import java.util.function.Supplier;
+
 import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 
 import heigit.ors.matrix.MatrixRequest;
+import heigit.ors.matrix.MatrixWorkerPool;
+import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
 
 public abstract class AbstractMatrixAlgorithm implements MatrixAlgorithm {
   protected GraphHopper _graphHopper;
   protected Graph _graph;
   protected FlagEncoder _encoder;
   protected Weighting _weighting;
-  
+  protected Supplier<Weighting> _weightingSupplier;
+
   public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting)
   {
 	  _graphHopper = gh;
@@ -33,4 +39,54 @@ public abstract class AbstractMatrixAlgorithm implements MatrixAlgorithm {
 	  _encoder = encoder;
 	  _weighting = weighting;
   }
+
+  public void setWeightingSupplier(Supplier<Weighting> weightingSupplier)
+  {
+	  _weightingSupplier = weightingSupplier;
+  }
+
+  /**
+   * Returns the number of blocks the sources are split into. Requests are computed sequentially if no weighting
+   * supplier is available.
+   */
+  protected int getBlocksCount(int sourcesCount)
+  {
+	  return _weightingSupplier == null ? 1 : MatrixWorkerPool.getBlocksCount(sourcesCount);
+  }
+
+  /**
+   * Returns the weighting to be used by the given block. The first block runs on the request thread and uses the
+   * weighting passed to init, all others get their own instance.
+   */
+  protected Weighting getBlockWeighting(int block)
+  {
+	  return (block == 0 || _weightingSupplier == null) ? _weighting : _weightingSupplier.get();
+  }
+
+  /**
+   * Returns the precomputed durations and distances of the shortcuts of the CH graph prepared for the weighting passed
+   * to init, or null if there is no such graph.
+   */
+  protected ShortcutMetricsStorage getShortcutMetrics()
+  {
+	  return _graphHopper instanceof ORSGraphHopper ? ((ORSGraphHopper) _graphHopper).getShortcutMetrics(_weighting) : null;
+  }
+
+  protected static int[] getValidNodeIds(int[] nodeIds)
+  {
+	  int count = 0;
+	  for (int nodeId : nodeIds) {
+		  if (nodeId != -1)
+			  count++;
+	  }
+
+	  int[] res = new int[count];
+	  int i = 0;
+	  for (int nodeId : nodeIds) {
+		  if (nodeId != -1)
+			  res[i++] = nodeId;
+	  }
+
+	  return res;
+  }
 }
@@ -13,6 +13,8 @@
  */
 package heigit.ors.matrix.algorithms;
 
+import java.util.function.Supplier;
+
 import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.Weighting;
@@ -25,5 +27,11 @@ import heigit.ors.matrix.MatrixResult;
 public interface MatrixAlgorithm {
   public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting);
   
+  /**
+   * Sets a supplier of weighting instances equivalent to the one passed to init. Weightings are not thread-safe, so
+   * a request is only computed in parallel if every worker can get its own instance.
+   */
+  public void setWeightingSupplier(Supplier<Weighting> weightingSupplier);
+
   public MatrixResult compute(MatrixLocations srcData, MatrixLocations dstData, int metrics) throws Exception;
 }
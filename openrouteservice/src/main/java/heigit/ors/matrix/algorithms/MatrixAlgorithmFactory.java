@@ -18,14 +18,22 @@ import com.graphhopper.routing.util.FlagEncoder;
 
 import heigit.ors.matrix.MatrixRequest;
 import heigit.ors.matrix.algorithms.dijkstra.DijkstraMatrixAlgorithm;
+import heigit.ors.matrix.algorithms.rphast.FlatRPHASTMatrixAlgorithm;
 import heigit.ors.matrix.algorithms.rphast.RPHASTMatrixAlgorithm;
+import heigit.ors.services.matrix.MatrixServiceSettings;
 
 public class MatrixAlgorithmFactory {
+	public static final String FLAT_RPHAST = "flat_rphast";
+
 	public static MatrixAlgorithm createAlgorithm(MatrixRequest req, GraphHopper gh, FlagEncoder encoder) {
 		MatrixAlgorithm alg = null;
 
-		if (!req.getFlexibleMode() && gh.isCHEnabled())
-			alg = new RPHASTMatrixAlgorithm();
+		if (!req.getFlexibleMode() && gh.isCHEnabled()) {
+			if (MatrixServiceSettings.getUseFlatRPHAST() || FLAT_RPHAST.equalsIgnoreCase(req.getAlgorithm()))
+				alg = new FlatRPHASTMatrixAlgorithm();
+			else
+				alg = new RPHASTMatrixAlgorithm();
+		}
 		else
 			alg = new DijkstraMatrixAlgorithm();
 
@@ -13,6 +13,10 @@
  */
 package heigit.ors.matrix.algorithms.dijkstra;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.TraversalMode;
@@ -24,23 +28,26 @@ import heigit.ors.matrix.MatrixMetricsType;
 import heigit.ors.matrix.MatrixRequest;
 import heigit.ors.matrix.MatrixResult;
 import heigit.ors.matrix.MatrixLocations;
+import heigit.ors.matrix.MatrixWorkerPool;
 import heigit.ors.matrix.PathMetricsExtractor;
 import heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
 import heigit.ors.routing.algorithms.DijkstraOneToManyAlgorithm;
 import heigit.ors.services.matrix.MatrixServiceSettings;
 
 public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
+	private MatrixRequest _request;
 	private PathMetricsExtractor _pathMetricsExtractor;
 
 	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting)
 	{
 		super.init(req, gh, graph, encoder, weighting);
 
+		_request = req;
 		_pathMetricsExtractor = new PathMetricsExtractor(req.getMetrics(), _graph, _encoder, _weighting, req.getUnits());
 	}
 
 	@Override
-	public MatrixResult compute(MatrixLocations srcData, MatrixLocations dstData, int metrics) throws Exception {
+	public MatrixResult compute(final MatrixLocations srcData, final MatrixLocations dstData, int metrics) throws Exception {
 		MatrixResult mtxResult = new MatrixResult(srcData.getLocations(), dstData.getLocations());
 
 		float[] times = null; 
@@ -62,33 +69,28 @@ public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 		}
 		else
 		{
-			DijkstraOneToManyAlgorithm algorithm = new DijkstraOneToManyAlgorithm(_graph, _weighting, TraversalMode.NODE_BASED);
-			algorithm.prepare(srcData.getNodeIds(),  dstData.getNodeIds());
-			algorithm.setMaxVisitedNodes(MatrixServiceSettings.getMaximumVisitedNodes());
-			
-			int sourceId = -1;
-
-			for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) {
-				sourceId = srcData.getNodeId(srcIndex);
-
-				if (sourceId == -1)
-				{
-					_pathMetricsExtractor.setEmptyValues(srcIndex, srcData, dstData, times, distances, weights);
-				}
-				else
-				{
-					algorithm.reset();
-					SPTEntry[] targets = algorithm.calcPaths(sourceId, dstData.getNodeIds());
-
-					if (algorithm.getFoundTargets() != algorithm.getTargetsCount())
-						throw new Exception("Search exceeds the limit of visited nodes.");
-
-					if (targets != null)
-					{
-						_pathMetricsExtractor.calcValues(srcIndex, targets, srcData, dstData, times, distances, weights);
+			int blocksCount = getBlocksCount(srcData.size());
+			int[] bounds = MatrixWorkerPool.getBlockBounds(srcData.size(), blocksCount);
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(blocksCount);
+
+			for (int block = 0; block < blocksCount; block++) {
+				final int blockIndex = block;
+				final int srcFrom = bounds[block];
+				final int srcTo = bounds[block + 1];
+				final float[] blockTimes = times;
+				final float[] blockDistances = distances;
+				final float[] blockWeights = weights;
+
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						computeBlock(blockIndex, srcFrom, srcTo, srcData, dstData, blockTimes, blockDistances, blockWeights);
+						return null;
 					}
-				}
+				});
 			}
+
+			MatrixWorkerPool.run(tasks);
 		}
 
 		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Duration))
@@ -100,4 +102,42 @@ public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 
 		return mtxResult;
 	}
+
+	/**
+	 * Computes the rows of the sources srcFrom (inclusive) to srcTo (exclusive). Every block uses its own algorithm,
+	 * weighting and metrics extractor, only the graph and the result tables are shared.
+	 */
+	private void computeBlock(int block, int srcFrom, int srcTo, MatrixLocations srcData, MatrixLocations dstData, float[] times, float[] distances, float[] weights) throws Exception
+	{
+		Weighting weighting = getBlockWeighting(block);
+		PathMetricsExtractor pathMetricsExtractor = block == 0 ? _pathMetricsExtractor : new PathMetricsExtractor(_request.getMetrics(), _graph, _encoder, weighting, _request.getUnits());
+
+		DijkstraOneToManyAlgorithm algorithm = new DijkstraOneToManyAlgorithm(_graph, weighting, TraversalMode.NODE_BASED);
+		algorithm.prepare(srcData.getNodeIds(),  dstData.getNodeIds());
+		algorithm.setMaxVisitedNodes(MatrixServiceSettings.getMaximumVisitedNodes());
+
+		int sourceId = -1;
+
+		for (int srcIndex = srcFrom; srcIndex < srcTo; srcIndex++) {
+			sourceId = srcData.getNodeId(srcIndex);
+
+			if (sourceId == -1)
+			{
+				pathMetricsExtractor.setEmptyValues(srcIndex, srcData, dstData, times, distances, weights);
+			}
+			else
+			{
+				algorithm.reset();
+				SPTEntry[] targets = algorithm.calcPaths(sourceId, dstData.getNodeIds());
+
+				if (algorithm.getFoundTargets() != algorithm.getTargetsCount())
+					throw new Exception("Search exceeds the limit of visited nodes.");
+
+				if (targets != null)
+				{
+					pathMetricsExtractor.calcValues(srcIndex, targets, srcData, dstData, times, distances, weights);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,158 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.matrix.algorithms.rphast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+
+import heigit.ors.matrix.MatrixLocations;
+import heigit.ors.matrix.MatrixMetricsType;
+import heigit.ors.matrix.MatrixRequest;
+import heigit.ors.matrix.MatrixResult;
+import heigit.ors.matrix.MatrixWorkerPool;
+import heigit.ors.matrix.MultiTreeMetricsExtractor;
+import heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
+import heigit.ors.routing.algorithms.FlatRPHASTAlgorithm;
+import heigit.ors.routing.algorithms.TargetGraphCache;
+import heigit.ors.services.matrix.MatrixServiceSettings;
+
+/**
+ * Variant of {@link RPHASTMatrixAlgorithm} that runs on {@link FlatRPHASTAlgorithm} and produces the same results
+ * without allocating per node shortest path tree entries.
+ */
+public class FlatRPHASTMatrixAlgorithm extends AbstractMatrixAlgorithm {
+	private MatrixRequest _request;
+	private PrepareContractionHierarchies _prepareCH;
+	private MultiTreeMetricsExtractor _pathMetricsExtractor;
+
+	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting) {
+		super.init(req, gh, graph, encoder, weighting);
+
+		_request = req;
+		_prepareCH = _graphHopper.getCHFactoryDecorator().getPreparations().get(0);
+		_pathMetricsExtractor = new MultiTreeMetricsExtractor(req.getMetrics(), graph, _encoder, weighting,
+				req.getUnits());
+		_pathMetricsExtractor.setShortcutMetrics(getShortcutMetrics());
+	}
+
+	@Override
+	public MatrixResult compute(final MatrixLocations srcData, final MatrixLocations dstData, int metrics) throws Exception {
+		MatrixResult mtxResult = new MatrixResult(srcData.getLocations(), dstData.getLocations());
+
+		float[] times = null;
+		float[] distances = null;
+		float[] weights = null;
+
+		int tableSize = srcData.size() * dstData.size();
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Duration))
+			times = new float[tableSize];
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Distance))
+			distances = new float[tableSize];
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Weight))
+			weights = new float[tableSize];
+
+		if (!srcData.hasValidNodes() || !dstData.hasValidNodes())
+		{
+			for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) 
+				_pathMetricsExtractor.setEmptyValues(srcIndex, srcData, dstData, times, distances, weights);
+		}
+		else
+		{
+			final FlatRPHASTAlgorithm algorithm = new FlatRPHASTAlgorithm(_graph, _prepareCH.getPrepareWeighting(),
+					TraversalMode.NODE_BASED);
+			if (MatrixServiceSettings.getTargetGraphCacheSize() > 0)
+				algorithm.setTargetGraphCache(TargetGraphCache.getInstance(_graph, MatrixServiceSettings.getTargetGraphCacheSize()));
+
+			// Phase I is shared by all blocks and skipped if the target graph is cached, only the upward and downward
+			// searches run per block
+			algorithm.prepare(getValidNodeIds(srcData.getNodeIds()), getValidNodeIds(dstData.getNodeIds()));
+
+			int blocksCount = getBlocksCount(srcData.size());
+			int[] bounds = MatrixWorkerPool.getBlockBounds(srcData.size(), blocksCount);
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(blocksCount);
+
+			for (int block = 0; block < blocksCount; block++) {
+				final int blockIndex = block;
+				final int srcFrom = bounds[block];
+				final int srcTo = bounds[block + 1];
+				final float[] blockTimes = times;
+				final float[] blockDistances = distances;
+				final float[] blockWeights = weights;
+
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						computeBlock(blockIndex, srcFrom, srcTo, algorithm, srcData, dstData, blockTimes, blockDistances, blockWeights);
+						return null;
+					}
+				});
+			}
+
+			MatrixWorkerPool.run(tasks);
+		}
+
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Duration))
+			mtxResult.setTable(MatrixMetricsType.Duration, times);
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Distance))
+			mtxResult.setTable(MatrixMetricsType.Distance, distances);
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Weight))
+			mtxResult.setTable(MatrixMetricsType.Weight, weights);
+
+		return mtxResult;
+	}
+
+	/**
+	 * Computes the rows of the sources srcFrom (inclusive) to srcTo (exclusive) on the target graph of the prepared
+	 * algorithm. Blocks running on worker threads use their own algorithm instance and thereby their own table.
+	 */
+	private void computeBlock(int block, int srcFrom, int srcTo, FlatRPHASTAlgorithm preparedAlgorithm,
+			MatrixLocations srcData, MatrixLocations dstData, float[] times, float[] distances, float[] weights) throws Exception {
+		MultiTreeMetricsExtractor pathMetricsExtractor = _pathMetricsExtractor;
+		if (block != 0) {
+			pathMetricsExtractor = new MultiTreeMetricsExtractor(_request.getMetrics(), _graph, _encoder, getBlockWeighting(block), _request.getUnits());
+			pathMetricsExtractor.setShortcutMetrics(getShortcutMetrics());
+		}
+
+		int[] srcIds = getValidNodeIds(Arrays.copyOfRange(srcData.getNodeIds(), srcFrom, srcTo));
+		if (srcIds.length == 0) {
+			for (int srcIndex = srcFrom; srcIndex < srcTo; srcIndex++)
+				pathMetricsExtractor.setEmptyValues(srcIndex, srcData, dstData, times, distances, weights);
+			return;
+		}
+
+		FlatRPHASTAlgorithm algorithm = preparedAlgorithm;
+		if (block != 0) {
+			algorithm = new FlatRPHASTAlgorithm(_graph, _prepareCH.getPrepareWeighting(), TraversalMode.NODE_BASED);
+			algorithm.shareTargetGraph(preparedAlgorithm);
+		}
+
+		try {
+			// unresolved destinations (-1) get no slot, so the result is already aligned with dstData
+			int[] destSlots = algorithm.calcPaths(srcIds, dstData.getNodeIds());
+
+			pathMetricsExtractor.calcValues(algorithm.getTable(), destSlots, srcData, dstData, srcFrom, srcTo, times, distances, weights);
+		} finally {
+			algorithm.release();
+		}
+	}
+}
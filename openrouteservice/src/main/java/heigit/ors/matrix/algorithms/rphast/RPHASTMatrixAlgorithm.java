@@ -14,7 +14,9 @@
 package heigit.ors.matrix.algorithms.rphast;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
@@ -27,25 +29,29 @@ import heigit.ors.matrix.MatrixLocations;
 import heigit.ors.matrix.MatrixMetricsType;
 import heigit.ors.matrix.MatrixRequest;
 import heigit.ors.matrix.MatrixResult;
+import heigit.ors.matrix.MatrixWorkerPool;
 import heigit.ors.matrix.MultiTreeMetricsExtractor;
 import heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
 import heigit.ors.routing.algorithms.RPHASTAlgorithm;
 import heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntry;
 
 public class RPHASTMatrixAlgorithm extends AbstractMatrixAlgorithm {
+	private MatrixRequest _request;
 	private PrepareContractionHierarchies _prepareCH;
 	private MultiTreeMetricsExtractor _pathMetricsExtractor;
 
 	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting) {
 		super.init(req, gh, graph, encoder, weighting);
 
+		_request = req;
 		_prepareCH = _graphHopper.getCHFactoryDecorator().getPreparations().get(0);
 		_pathMetricsExtractor = new MultiTreeMetricsExtractor(req.getMetrics(), graph, _encoder, weighting,
 				req.getUnits());
+		_pathMetricsExtractor.setShortcutMetrics(getShortcutMetrics());
 	}
 
 	@Override
-	public MatrixResult compute(MatrixLocations srcData, MatrixLocations dstData, int metrics) throws Exception {
+	public MatrixResult compute(final MatrixLocations srcData, final MatrixLocations dstData, int metrics) throws Exception {
 		MatrixResult mtxResult = new MatrixResult(srcData.getLocations(), dstData.getLocations());
 
 		float[] times = null;
@@ -67,29 +73,36 @@ public class RPHASTMatrixAlgorithm extends AbstractMatrixAlgorithm {
 		}
 		else
 		{
-			RPHASTAlgorithm algorithm = new RPHASTAlgorithm(_graph, _prepareCH.getPrepareWeighting(),
+			final RPHASTAlgorithm algorithm = new RPHASTAlgorithm(_graph, _prepareCH.getPrepareWeighting(),
 					TraversalMode.NODE_BASED);
-			
-			int[] srcIds = getValidNodeIds(srcData.getNodeIds());
-			int[] destIds = getValidNodeIds(dstData.getNodeIds());
-			
-			algorithm.prepare(srcIds, destIds);
-
-			MultiTreeSPEntry[] destTrees = algorithm.calcPaths(srcIds, destIds);
-
-			MultiTreeSPEntry[] originalDestTrees = new MultiTreeSPEntry[dstData.size()];
-			
-			int j = 0;
-			for (int i = 0; i < dstData.size(); i++) {
-				if (dstData.getNodeIds()[i] != -1) {
-					originalDestTrees[i] = destTrees[j];
-					++j;
-				} else {
-					originalDestTrees[i] = null;
-				}
+
+			final int[] destIds = getValidNodeIds(dstData.getNodeIds());
+
+			// Phase I is shared by all blocks, only the upward and downward searches run per block
+			algorithm.prepare(getValidNodeIds(srcData.getNodeIds()), destIds);
+
+			int blocksCount = getBlocksCount(srcData.size());
+			int[] bounds = MatrixWorkerPool.getBlockBounds(srcData.size(), blocksCount);
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(blocksCount);
+
+			for (int block = 0; block < blocksCount; block++) {
+				final int blockIndex = block;
+				final int srcFrom = bounds[block];
+				final int srcTo = bounds[block + 1];
+				final float[] blockTimes = times;
+				final float[] blockDistances = distances;
+				final float[] blockWeights = weights;
+
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						computeBlock(blockIndex, srcFrom, srcTo, algorithm, destIds, srcData, dstData, blockTimes, blockDistances, blockWeights);
+						return null;
+					}
+				});
 			}
 
-			_pathMetricsExtractor.calcValues(originalDestTrees, srcData, dstData, times, distances, weights);
+			MatrixWorkerPool.run(tasks);
 		}
 
 		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Duration))
@@ -101,20 +114,46 @@ public class RPHASTMatrixAlgorithm extends AbstractMatrixAlgorithm {
 
 		return mtxResult;
 	}
-	
-	private int[] getValidNodeIds(int[] nodeIds)
-	{
-		List<Integer> nodeList = new ArrayList<Integer>();
-		for (int dst : nodeIds) {
-			if (dst != -1)
-				nodeList.add(dst);
 
+	/**
+	 * Computes the rows of the sources srcFrom (inclusive) to srcTo (exclusive) on the target graph of the prepared
+	 * algorithm. The first block reuses the prepared algorithm, all others run on their own instance.
+	 */
+	private void computeBlock(int block, int srcFrom, int srcTo, RPHASTAlgorithm preparedAlgorithm, int[] destIds,
+			MatrixLocations srcData, MatrixLocations dstData, float[] times, float[] distances, float[] weights) throws Exception {
+		MultiTreeMetricsExtractor pathMetricsExtractor = _pathMetricsExtractor;
+		if (block != 0) {
+			pathMetricsExtractor = new MultiTreeMetricsExtractor(_request.getMetrics(), _graph, _encoder, getBlockWeighting(block), _request.getUnits());
+			pathMetricsExtractor.setShortcutMetrics(getShortcutMetrics());
+		}
+
+		int[] srcIds = getValidNodeIds(Arrays.copyOfRange(srcData.getNodeIds(), srcFrom, srcTo));
+		if (srcIds.length == 0) {
+			for (int srcIndex = srcFrom; srcIndex < srcTo; srcIndex++)
+				pathMetricsExtractor.setEmptyValues(srcIndex, srcData, dstData, times, distances, weights);
+			return;
 		}
-		
-		int[] res = new int[nodeList.size()];
-		for (int i = 0; i < nodeList.size(); i++) 
-			res[i] = nodeList.get(i);
-		
-		return res;
+
+		RPHASTAlgorithm algorithm = preparedAlgorithm;
+		if (block != 0) {
+			algorithm = new RPHASTAlgorithm(_graph, _prepareCH.getPrepareWeighting(), TraversalMode.NODE_BASED);
+			algorithm.setTargetGraph(preparedAlgorithm.getTargetGraph());
+		}
+
+		MultiTreeSPEntry[] destTrees = algorithm.calcPaths(srcIds, destIds);
+
+		MultiTreeSPEntry[] originalDestTrees = new MultiTreeSPEntry[dstData.size()];
+
+		int j = 0;
+		for (int i = 0; i < dstData.size(); i++) {
+			if (dstData.getNodeIds()[i] != -1) {
+				originalDestTrees[i] = destTrees[j];
+				++j;
+			} else {
+				originalDestTrees[i] = null;
+			}
+		}
+
+		pathMetricsExtractor.calcValues(originalDestTrees, srcData, dstData, srcFrom, srcTo, times, distances, weights);
 	}
 }
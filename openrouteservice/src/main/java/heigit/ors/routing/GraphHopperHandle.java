@@ -0,0 +1,83 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+
+/**
+ * Reference counted {@link ORSGraphHopper} instance of a {@link RoutingProfile}. The profile holds one reference as
+ * long as the instance is its current one, and every request holds one while it uses the instance. The instance is
+ * closed by whoever releases the last reference, so replacing it neither blocks new requests nor waits for running
+ * ones.
+ */
+public class GraphHopperHandle {
+	private final ORSGraphHopper _graphHopper;
+	private final AtomicInteger _references = new AtomicInteger(1);
+	private final CountDownLatch _closed = new CountDownLatch(1);
+
+	public GraphHopperHandle(ORSGraphHopper graphHopper) {
+		_graphHopper = graphHopper;
+	}
+
+	public ORSGraphHopper getGraphHopper() {
+		return _graphHopper;
+	}
+
+	/**
+	 * Adds a reference unless the instance has already been released by all holders.
+	 *
+	 * @return false if the instance is closed (or about to be closed) and must not be used any more
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int references = _references.get();
+			if (references == 0)
+				return false;
+			if (_references.compareAndSet(references, references + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Removes a reference and closes the instance if it was the last one.
+	 */
+	public void release() {
+		int references = _references.decrementAndGet();
+
+		if (references == 0) {
+			try {
+				_graphHopper.close();
+			} finally {
+				_closed.countDown();
+			}
+		} else if (references < 0) {
+			throw new IllegalStateException("GraphHopper instance has been released more often than acquired.");
+		}
+	}
+
+	public boolean isClosed() {
+		return _closed.getCount() == 0;
+	}
+
+	/**
+	 * Waits until the last reference has been released and the instance is closed. Meant for the thread that replaced
+	 * the instance and wants to reuse its files, never for request threads.
+	 */
+	public void awaitClosed() throws InterruptedException {
+		_closed.await();
+	}
+}
@@ -0,0 +1,197 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+
+import heigit.ors.routing.graphhopper.extensions.SnapCachingLocationIndex;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.EdgeFilterSequence;
+
+/**
+ * Least recently used cache of {@link LocationIndex#findClosest(double, double, EdgeFilter)} results of one graph,
+ * keyed by the coordinate rounded to 1e-6 degrees (about 0.1 m) and a key of the edge filter. Clients sending the same
+ * locations over and over thereby skip the index lookup. It is used by {@link SnapCachingLocationIndex}, so that route,
+ * matrix and isochrone requests share the cached locations.
+ * <p>
+ * Every lookup returns a new {@link QueryResult}, as the results are modified by
+ * {@link com.graphhopper.routing.QueryGraph#lookup(java.util.List)}. The query distance is the one of the first lookup
+ * of the rounded coordinate. Only the snapping itself is cached, search radius limits have to be applied by the caller.
+ * <p>
+ * The cache belongs to a single graph and is dropped together with it when the graph of a profile is updated.
+ */
+public class LocationSnapCache {
+	private static final double COORDINATE_FACTOR = 1e6;
+
+	private final Graph _graph;
+	private final LinkedHashMap<CacheKey, Snap> _entries;
+	private long _hits;
+	private long _misses;
+
+	public LocationSnapCache(Graph graph, final int capacity) {
+		_graph = graph;
+		_entries = new LinkedHashMap<CacheKey, Snap>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, Snap> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the key under which the results of the given filter can be cached, or null if they cannot. This is the
+	 * case for the default filter of an encoder, alone or as only element of a {@link EdgeFilterSequence}, as the
+	 * results of all other filters depend on request parameters. The key consists of the encoder and the accepted
+	 * directions, which {@link DefaultEdgeFilter#toString()} returns.
+	 */
+	public static String getFilterKey(EdgeFilter edgeFilter) {
+		if (edgeFilter instanceof EdgeFilterSequence) {
+			EdgeFilterSequence sequence = (EdgeFilterSequence) edgeFilter;
+			if (sequence.size() != 1)
+				return null;
+			edgeFilter = sequence.get(0);
+		}
+
+		return edgeFilter instanceof DefaultEdgeFilter ? edgeFilter.toString() : null;
+	}
+
+	/**
+	 * Returns a new result of the lookup of the location with a filter of the given key, or null if it is not cached.
+	 *
+	 * @param filterKey see {@link #getFilterKey(EdgeFilter)}
+	 */
+	public QueryResult get(double lat, double lon, String filterKey) {
+		Snap snap;
+		synchronized (this) {
+			snap = _entries.get(new CacheKey(lat, lon, filterKey));
+			if (snap == null)
+				_misses++;
+			else
+				_hits++;
+		}
+
+		return snap == null ? null : snap.createQueryResult(_graph, lat, lon);
+	}
+
+	/**
+	 * Adds the result of the lookup of the location with a filter of the given key.
+	 */
+	public void put(double lat, double lon, String filterKey, QueryResult qr) {
+		Snap snap = new Snap(qr);
+		synchronized (this) {
+			_entries.put(new CacheKey(lat, lon, filterKey), snap);
+		}
+	}
+
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	public synchronized long getHits() {
+		return _hits;
+	}
+
+	public synchronized long getMisses() {
+		return _misses;
+	}
+
+	public synchronized void clear() {
+		_entries.clear();
+	}
+
+	/**
+	 * The values of a {@link QueryResult} as returned by the location index.
+	 */
+	private static final class Snap {
+		private final int _closestNode;
+		private final int _edge;
+		private final int _adjNode;
+		private final int _wayIndex;
+		private final QueryResult.Position _position;
+		private final double _queryDistance;
+
+		public Snap(QueryResult qr) {
+			_closestNode = qr.getClosestNode();
+			if (qr.isValid()) {
+				EdgeIteratorState edge = qr.getClosestEdge();
+				_edge = edge.getEdge();
+				_adjNode = edge.getAdjNode();
+				_wayIndex = qr.getWayIndex();
+				_position = qr.getSnappedPosition();
+				_queryDistance = qr.getQueryDistance();
+			} else {
+				_edge = -1;
+				_adjNode = -1;
+				_wayIndex = -1;
+				_position = null;
+				_queryDistance = Double.MAX_VALUE;
+			}
+		}
+
+		public QueryResult createQueryResult(Graph graph, double lat, double lon) {
+			QueryResult qr = new QueryResult(lat, lon);
+			if (_closestNode < 0)
+				return qr;
+
+			qr.setClosestNode(_closestNode);
+			qr.setClosestEdge(graph.getEdgeIteratorState(_edge, _adjNode));
+			qr.setWayIndex(_wayIndex);
+			qr.setSnappedPosition(_position);
+			qr.setQueryDistance(_queryDistance);
+			// the location index computes the snapped point with the same approximation
+			qr.calcSnappedPoint(Helper.DIST_PLANE);
+			return qr;
+		}
+	}
+
+	private static final class CacheKey {
+		private final long _lat;
+		private final long _lon;
+		private final String _filterKey;
+		private final int _hashCode;
+
+		public CacheKey(double lat, double lon, String filterKey) {
+			_lat = Math.round(lat * COORDINATE_FACTOR);
+			_lon = Math.round(lon * COORDINATE_FACTOR);
+			_filterKey = filterKey;
+			_hashCode = 31 * (31 * Long.hashCode(_lat) + Long.hashCode(_lon)) + filterKey.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return _hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CacheKey))
+				return false;
+
+			CacheKey other = (CacheKey) obj;
+			return _lat == other._lat && _lon == other._lon && _filterKey.equals(other._filterKey);
+		}
+	}
+}
@@ -17,6 +17,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.util.PMap;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 
 public class RouteSearchContext {
 	private GraphHopper _graphhopper;
@@ -24,6 +25,7 @@ public class RouteSearchContext {
 	private FlagEncoder _encoder;
 	
 	private PMap _properties;
+	private TrafficSnapshot _trafficSnapshot;
 
 	public RouteSearchContext(GraphHopper gh, EdgeFilter edgeFilter, FlagEncoder encoder)
 	{
@@ -53,4 +55,18 @@ public class RouteSearchContext {
 	{
 		_properties = value;
 	}
+
+	/**
+	 * Returns the traffic snapshot read for the request, which all parts of the search use, or null if the profile
+	 * does not use traffic information.
+	 */
+	public TrafficSnapshot getTrafficSnapshot()
+	{
+		return _trafficSnapshot;
+	}
+
+	public void setTrafficSnapshot(TrafficSnapshot value)
+	{
+		_trafficSnapshot = value;
+	}
 }
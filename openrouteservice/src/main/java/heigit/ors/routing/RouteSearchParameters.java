@@ -380,6 +380,25 @@ public class RouteSearchParameters {
         this._profileParams = profileParams;
     }
 
+    /**
+     * Returns true if the search depends on options that are not covered by the weightings prepared for contraction
+     * hierarchies, so it has to run on the base graph.
+     */
+    public boolean requiresDynamicWeights() {
+        return requiresNonTrafficDynamicWeights() || (RoutingProfileType.isDriving(_profileType) && getConsiderTraffic());
+    }
+
+    /**
+     * Returns true if the search depends on options other than traffic that are not covered by the weightings
+     * prepared for contraction hierarchies. Traffic alone can be considered on hierarchies customized for it.
+     */
+    public boolean requiresNonTrafficDynamicWeights() {
+        return hasAvoidAreas() || hasAvoidFeatures() || hasAvoidBorders() || hasAvoidCountries()
+                || (RoutingProfileType.isDriving(_profileType) && ((RoutingProfileType.isHeavyVehicle(_profileType) && getVehicleType() > 0) || hasParameters(VehicleParameters.class)))
+                || (getWeightingMethod() == WeightingMethod.SHORTEST || getWeightingMethod() == WeightingMethod.RECOMMENDED)
+                || getConsiderTurnRestrictions();
+    }
+
     public boolean getFlexibleMode() {
         return _flexibleMode;
     }
@@ -22,7 +22,6 @@ package heigit.ors.routing;
 
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
-import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
@@ -42,8 +41,8 @@ import heigit.ors.isochrones.statistics.StatisticsProvider;
 import heigit.ors.isochrones.statistics.StatisticsProviderConfiguration;
 import heigit.ors.isochrones.statistics.StatisticsProviderFactory;
 import heigit.ors.mapmatching.MapMatcher;
+import heigit.ors.mapmatching.MapMatcherPool;
 import heigit.ors.mapmatching.RouteSegmentInfo;
-import heigit.ors.mapmatching.hmm.HiddenMarkovMapMatcher;
 import heigit.ors.matrix.*;
 import heigit.ors.matrix.algorithms.MatrixAlgorithm;
 import heigit.ors.matrix.algorithms.MatrixAlgorithmFactory;
@@ -60,6 +59,7 @@ import heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
 import heigit.ors.routing.parameters.*;
 import heigit.ors.routing.traffic.RealTrafficDataProvider;
 import heigit.ors.routing.traffic.TrafficEdgeAnnotator;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 import heigit.ors.services.isochrones.IsochronesServiceSettings;
 import heigit.ors.services.matrix.MatrixServiceSettings;
 import heigit.ors.services.optimization.OptimizationServiceSettings;
@@ -67,7 +67,6 @@ import heigit.ors.util.DebugUtility;
 import heigit.ors.util.RuntimeUtility;
 import heigit.ors.util.StringUtility;
 import heigit.ors.util.TimeUtility;
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import java.io.File;
@@ -88,16 +87,15 @@ import java.util.*;
  * @author Julian Psotta, julian@openrouteservice.org
  */
 public class RoutingProfile {
+    private static final int PRE_WARM_PAGE_SIZE = 4096;
     private static final Logger LOGGER = Logger.getLogger(RoutingProfileManager.class.getName());
     private static int profileIdentifier = 0;
     private static final Object lockObj = new Object();
 
-    private ORSGraphHopper mGraphHopper;
+    private volatile GraphHopperHandle mGraphHopperHandle;
     private boolean mUseTrafficInfo;
     private Integer[] mRoutePrefs;
-    private Integer mUseCounter;
-    private boolean mUpdateRun;
-    private MapMatcher mMapMatcher;
+    private volatile MapMatcherPool mMapMatcherPool;
 
     private RouteProfileConfiguration _config;
     private String _astarApproximation;
@@ -105,10 +103,9 @@ public class RoutingProfile {
 
     public RoutingProfile(String osmFile, RouteProfileConfiguration rpc, RoutingProfilesCollection profiles, RoutingProfileLoadContext loadCntx) throws Exception {
         mRoutePrefs = rpc.getProfilesTypes();
-        mUseCounter = 0;
         mUseTrafficInfo = /*mHasDynamicWeights &&*/ hasCarPreferences() ? rpc.getUseTrafficInformation() : false;
 
-        mGraphHopper = initGraphHopper(osmFile, rpc, profiles, loadCntx);
+        mGraphHopperHandle = new GraphHopperHandle(initGraphHopper(osmFile, rpc, rpc.getGraphPath(), profiles, loadCntx));
 
         _config = rpc;
 
@@ -121,7 +118,11 @@ public class RoutingProfile {
         }
     }
 
-    public static ORSGraphHopper initGraphHopper(String osmFile, RouteProfileConfiguration config, RoutingProfilesCollection profiles, RoutingProfileLoadContext loadCntx) throws Exception {
+    /**
+     * @param profileGraphPath the configured graph path of the profile, which differs from the one of config when an
+     *                         update is built into a new version folder
+     */
+    public static ORSGraphHopper initGraphHopper(String osmFile, RouteProfileConfiguration config, String profileGraphPath, RoutingProfilesCollection profiles, RoutingProfileLoadContext loadCntx) throws Exception {
         CmdArgs args = createGHSettings(osmFile, config);
 
         RoutingProfile refProfile = null;
@@ -145,7 +146,7 @@ public class RoutingProfile {
 
         GraphProcessContext gpc = new GraphProcessContext(config);
 
-        ORSGraphHopper gh = new ORSGraphHopper(gpc, config.getUseTrafficInformation(), refProfile);
+        ORSGraphHopper gh = new ORSGraphHopper(gpc, config.getUseTrafficInformation(), refProfile, profileGraphPath);
 
         ORSDefaultFlagEncoderFactory flagEncoderFactory = new ORSDefaultFlagEncoderFactory();
         gh.setFlagEncoderFactory(flagEncoderFactory);
@@ -161,7 +162,12 @@ public class RoutingProfile {
             loadCntx.setElevationProvider(gh.getElevationProvider());
         }
         gh.setGraphStorageFactory(new ORSGraphStorageFactory(gpc.getStorageBuilders()));
-        gh.setWeightingFactory(new ORSWeightingFactory(RealTrafficDataProvider.getInstance()));
+        gh.setWeightingFactory(new ORSWeightingFactory(RealTrafficDataProvider.getInstance(), profileGraphPath, gh.getWeightingPresets()));
+
+        if (config.getPreparationOpts() != null && config.getPreparationOpts().hasPath("weighting_presets")) {
+            for (String preset : config.getPreparationOpts().getStringList("weighting_presets"))
+                gh.getWeightingPresets().add(preset);
+        }
 
         gh.importOrLoad();
 
@@ -197,8 +203,14 @@ public class RoutingProfile {
     }
 
     public long getCapacity() {
-        GraphHopperStorage graph = mGraphHopper.getGraphHopperStorage();
-        return graph.getCapacity() + GraphStorageUtils.getCapacity(graph.getExtension());
+        GraphHopperHandle ghHandle = acquireGH();
+
+        try {
+            GraphHopperStorage graph = ghHandle.getGraphHopper().getGraphHopperStorage();
+            return graph.getCapacity() + GraphStorageUtils.getCapacity(graph.getExtension());
+        } finally {
+            ghHandle.release();
+        }
     }
 
     private static CmdArgs createGHSettings(String sourceFile, RouteProfileConfiguration config) {
@@ -313,29 +325,50 @@ public class RoutingProfile {
         return args;
     }
 
-    public HashMap<Integer, Long> getTmcEdges() {
-        return mGraphHopper.getTmcGraphEdges();
-    }
-
-    public HashMap<Long, ArrayList<Integer>> getOsmId2edgeIds() {
-        return mGraphHopper.getOsmId2EdgeIds();
-    }
+    /**
+     * Returns the cache of snapped locations of the current graph or null if it is disabled.
+     */
+    public LocationSnapCache getLocationSnapCache() {
+        GraphHopperHandle ghHandle = acquireGH();
 
-    public ORSGraphHopper getGraphhopper() {
-        return mGraphHopper;
+        try {
+            return ghHandle.getGraphHopper().getLocationSnapCache();
+        } finally {
+            ghHandle.release();
+        }
     }
 
     public BBox getBounds() {
-        return mGraphHopper.getGraphHopperStorage().getBounds();
+        GraphHopperHandle ghHandle = acquireGH();
+
+        try {
+            return ghHandle.getGraphHopper().getGraphHopperStorage().getBounds();
+        } finally {
+            ghHandle.release();
+        }
     }
 
     public StorableProperties getGraphProperties() {
-        StorableProperties props = mGraphHopper.getGraphHopperStorage().getProperties();
-        return props;
+        GraphHopperHandle ghHandle = acquireGH();
+
+        try {
+            return ghHandle.getGraphHopper().getGraphHopperStorage().getProperties();
+        } finally {
+            ghHandle.release();
+        }
     }
 
     public String getGraphLocation() {
-        return mGraphHopper == null ? null : mGraphHopper.getGraphHopperStorage().getDirectory().toString();
+        if (mGraphHopperHandle == null)
+            return null;
+
+        GraphHopperHandle ghHandle = acquireGH();
+
+        try {
+            return ghHandle.getGraphHopper().getGraphHopperStorage().getDirectory().toString();
+        } finally {
+            ghHandle.release();
+        }
     }
 
     public RouteProfileConfiguration getConfiguration() {
@@ -357,85 +390,129 @@ public class RoutingProfile {
 
 
     public boolean isCHEnabled() {
-        return mGraphHopper != null && mGraphHopper.isCHEnabled();
+        if (mGraphHopperHandle == null)
+            return false;
+
+        GraphHopperHandle ghHandle = acquireGH();
+
+        try {
+            return ghHandle.getGraphHopper().isCHEnabled();
+        } finally {
+            ghHandle.release();
+        }
     }
 
     public boolean useTrafficInformation() {
         return mUseTrafficInfo;
     }
 
-    public void close() {
-        mGraphHopper.close();
+    /**
+     * Returns true if the search only needs dynamic weights because of traffic and this profile can route it on its
+     * hierarchy customized for the latest traffic snapshot.
+     */
+    public boolean canUseTrafficCH(RouteSearchParameters searchParams) {
+        if (!mUseTrafficInfo || mGraphHopperHandle == null)
+            return false;
+
+        GraphHopperHandle ghHandle = acquireGH();
+
+        try {
+            return ghHandle.getGraphHopper().isTrafficCHEnabled()
+                    && RealTrafficDataProvider.getInstance().isInitialized()
+                    && RoutingProfileType.isDriving(searchParams.getProfileType()) && searchParams.getConsiderTraffic()
+                    && searchParams.getWeightingMethod() == WeightingMethod.FASTEST
+                    && !searchParams.requiresNonTrafficDynamicWeights();
+        } finally {
+            ghHandle.release();
+        }
     }
 
-    private synchronized boolean isGHUsed() {
-        return mUseCounter > 0;
+    /**
+     * Releases the reference of the profile to its GraphHopper instance, which is closed as soon as the requests
+     * still using it have finished. The profile must not be used afterwards.
+     */
+    public void close() {
+        mGraphHopperHandle.release();
     }
 
-    private synchronized void beginUseGH() {
-        mUseCounter++;
+    /**
+     * Returns the handle of the current GraphHopper instance with a reference held for the caller, which has to
+     * {@link GraphHopperHandle#release()} it when done. Never blocks: while a profile is updated, requests keep
+     * using the instance they started with and new requests get the new one.
+     * <p>
+     * Everything obtained from the instance, such as its storages, indexes or edge iterators, is only valid until
+     * the handle is released.
+     */
+    public GraphHopperHandle acquireGH() {
+        while (true) {
+            GraphHopperHandle handle = mGraphHopperHandle;
+            if (handle.tryAcquire())
+                return handle;
+            // the reference of the profile is only released after the handle has been replaced, unless it is closed
+            if (handle == mGraphHopperHandle)
+                throw new IllegalStateException("The routing profile has been closed.");
+        }
     }
 
-    private synchronized void endUseGH() {
-        mUseCounter--;
+    /**
+     * Makes gh the current instance and releases the reference of the profile to the previous one.
+     *
+     * @return the handle of the previous instance
+     */
+    private synchronized GraphHopperHandle swapGH(ORSGraphHopper gh) {
+        GraphHopperHandle oldHandle = mGraphHopperHandle;
+        mGraphHopperHandle = new GraphHopperHandle(gh);
+        oldHandle.release();
+        return oldHandle;
     }
 
-    public void updateGH(GraphHopper gh) throws Exception {
+    /**
+     * Replaces the graph of the profile by gh, which has to be built into a folder created by
+     * {@link VersionedGraphDirectory#createVersion(String)}. gh has been imported and prepared at this point, so it
+     * takes over new requests right away and is neither copied nor loaded a second time. The folder of the previous
+     * version is deleted once the last request using it has finished.
+     */
+    public void updateGH(ORSGraphHopper gh) throws Exception {
         if (gh == null)
             throw new Exception("GraphHopper instance is null.");
 
-        try {
-            mUpdateRun = true;
-            while (true) {
-                if (!isGHUsed()) {
-                    GraphHopper ghOld = mGraphHopper;
-
-                    ghOld.close();
-                    ghOld.clean();
-
-                    gh.close();
-                    // gh.clean(); // do not remove on-disk files, we need to
-                    // copy them as follows
-
-                    RuntimeUtility.clearMemory(LOGGER);
-
-                    // Change the content of the graph folder
-                    String oldLocation = ghOld.getGraphHopperLocation();
-                    File dstDir = new File(oldLocation);
-                    File srcDir = new File(gh.getGraphHopperLocation());
-                    FileUtils.copyDirectory(srcDir, dstDir, true);
-                    FileUtils.deleteDirectory(srcDir);
+        preWarm(gh);
 
-                    RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
+        String previousVersion;
+        try {
+            previousVersion = VersionedGraphDirectory.activate(_config.getGraphPath(), gh.getGraphHopperLocation());
+        } catch (Exception ex) {
+            gh.close();
+            throw ex;
+        }
 
-                    mGraphHopper = initGraphHopper(ghOld.getDataReaderFile(), _config, RoutingProfileManager.getInstance().getProfiles(), loadCntx);
+        // Do not clean() the old instance, its location is the graph path which now links to the new version
+        GraphHopperHandle oldHandle = swapGH(gh);
 
-                    loadCntx.releaseElevationProviderCacheAfterAllVehicleProfilesHaveBeenProcessed();
+        try {
+            oldHandle.awaitClosed();
 
-                    break;
-                }
+            RuntimeUtility.clearMemory(LOGGER);
 
-                Thread.sleep(2000);
-            }
+            if (previousVersion != null)
+                VersionedGraphDirectory.deleteVersion(previousVersion);
         } catch (Exception ex) {
             LOGGER.error(ex.getMessage());
         }
-
-        mUpdateRun = false;
     }
 
-    private void waitForUpdateCompletion() throws Exception {
-        if (mUpdateRun) {
-            long startTime = System.currentTimeMillis();
-
-            while (mUpdateRun) {
-                long curTime = System.currentTimeMillis();
-                if (curTime - startTime > 600000) {
-                    throw new Exception("The route profile is currently being updated.");
-                }
-
-                Thread.sleep(1000);
-            }
+    /**
+     * Reads one value of every page of the files of gh that are memory mapped, so that the first requests on a new
+     * version do not have to fault them in. Graphs stored in RAM have been read completely by the import already.
+     */
+    private static void preWarm(ORSGraphHopper gh) {
+        for (DataAccess da : gh.getGraphHopperStorage().getDirectory().getAll()) {
+            if (da.getType().isInMemory())
+                continue;
+
+            long capacity = da.getCapacity();
+            for (long pos = 0; pos + 4 <= capacity; pos += PRE_WARM_PAGE_SIZE)
+                da.getInt(pos);
         }
     }
 
@@ -444,9 +521,18 @@ public class RoutingProfile {
     }
 
     public MatrixResult computeMatrix(MatrixRequest req) throws Exception {
+        GraphHopperHandle ghHandle = acquireGH();
+
+        try {
+            return computeMatrix(req, ghHandle.getGraphHopper());
+        } finally {
+            ghHandle.release();
+        }
+    }
+
+    private MatrixResult computeMatrix(MatrixRequest req, final ORSGraphHopper gh) throws Exception {
         MatrixResult mtxResult = null;
 
-        GraphHopper gh = getGraphhopper();
         String encoderName = RoutingProfileType.getEncoderName(req.getProfileType());
         FlagEncoder flagEncoder = gh.getEncodingManager().getEncoder(encoderName);
 
@@ -457,20 +543,21 @@ public class RoutingProfile {
 
         try {
             String weightingStr = Helper.isEmpty(req.getWeightingMethod()) ? "fastest" : req.getWeightingMethod();
-            Graph graph = null;
-            if (!req.getFlexibleMode() && gh.getCHFactoryDecorator().isEnabled() && gh.getCHFactoryDecorator().getWeightingsAsStrings().contains(weightingStr))
-                graph = gh.getGraphHopperStorage().getGraph(CHGraph.class);
-            else
+            Graph graph = req.getFlexibleMode() ? null : gh.getCHGraph(weightingStr);
+            if (graph == null)
                 graph = gh.getGraphHopperStorage().getBaseGraph();
 
             MatrixSearchContextBuilder builder = new MatrixSearchContextBuilder(gh.getLocationIndex(), new DefaultEdgeFilter(flagEncoder), req.getResolveLocations());
             MatrixSearchContext mtxSearchCntx = builder.create(graph, req.getSources(), req.getDestinations(), MatrixServiceSettings.getMaximumSearchRadius());
 
-            HintsMap hintsMap = new HintsMap();
+            final HintsMap hintsMap = new HintsMap();
             hintsMap.setWeighting(weightingStr);
-            Weighting weighting = new ORSWeightingFactory(RealTrafficDataProvider.getInstance()).createWeighting(hintsMap, gh.getTraversalMode(), flagEncoder, graph, null, gh.getGraphHopperStorage());
+            final ORSWeightingFactory weightingFactory = new ORSWeightingFactory(RealTrafficDataProvider.getInstance(), _config.getGraphPath(), gh.getWeightingPresets());
+            final Graph weightingGraph = graph;
+            Weighting weighting = weightingFactory.createWeighting(hintsMap, gh.getTraversalMode(), flagEncoder, graph, null, gh.getGraphHopperStorage());
 
             alg.init(req, gh, mtxSearchCntx.getGraph(), flagEncoder, weighting);
+            alg.setWeightingSupplier(() -> weightingFactory.createWeighting(hintsMap, gh.getTraversalMode(), flagEncoder, weightingGraph, null, gh.getGraphHopperStorage()));
 
             mtxResult = alg.compute(mtxSearchCntx.getSources(), mtxSearchCntx.getDestinations(), req.getMetrics());
         } catch (Exception ex) {
@@ -532,7 +619,7 @@ public class RoutingProfile {
         return optResult;
     }
 
-    private RouteSearchContext createSearchContext(RouteSearchParameters searchParams, RouteSearchMode mode, EdgeFilter customEdgeFilter) throws Exception {
+    private RouteSearchContext createSearchContext(ORSGraphHopper gh, RouteSearchParameters searchParams, RouteSearchMode mode, EdgeFilter customEdgeFilter) throws Exception {
         PMap props = new PMap();
 
         int profileType = searchParams.getProfileType();
@@ -541,13 +628,13 @@ public class RoutingProfile {
         if ("UNKNOWN".equals(encoderName))
             throw new InternalServerException(RoutingErrorCodes.UNKNOWN, "unknown vehicle profile.");
 
-        if (!mGraphHopper.getEncodingManager().supports(encoderName)) {
+        if (!gh.getEncodingManager().supports(encoderName)) {
             throw new IllegalArgumentException("Vehicle " + encoderName + " unsupported. " + "Supported are: "
-                    + mGraphHopper.getEncodingManager());
+                    + gh.getEncodingManager());
         }
 
-        FlagEncoder flagEncoder = mGraphHopper.getEncodingManager().getEncoder(encoderName);
-        GraphStorage gs = mGraphHopper.getGraphHopperStorage();
+        FlagEncoder flagEncoder = gh.getEncodingManager().getEncoder(encoderName);
+        GraphStorage gs = gh.getGraphHopperStorage();
         ProfileParameters profileParams = searchParams.getProfileParameters();
 
         /* Initialize empty edge filter sequence */
@@ -561,7 +648,7 @@ public class RoutingProfile {
         /* Avoid areas */
 
         if (searchParams.hasAvoidAreas()) {
-            edgeFilters.add(new AvoidAreasEdgeFilter(searchParams.getAvoidAreas()));
+            edgeFilters.add(new AvoidAreasEdgeFilter(searchParams.getAvoidAreas(), gh.getEdgeBounds(), gh.getGraphHopperStorage()));
         }
 
         /* Heavy vehicle filter */
@@ -616,52 +703,55 @@ public class RoutingProfile {
 
         /* Live traffic filter - currently disabled */
 
-        if (searchParams.getConsiderTraffic()) {
-            RealTrafficDataProvider trafficData = RealTrafficDataProvider.getInstance();
-            if (RoutingProfileType.isDriving(profileType) && searchParams.getWeightingMethod() != WeightingMethod.SHORTEST && trafficData.isInitialized()) {
+        TrafficSnapshot trafficSnapshot = null;
+        RealTrafficDataProvider trafficData = RealTrafficDataProvider.getInstance();
+        if (RoutingProfileType.isDriving(profileType) && trafficData.isInitialized()) {
+            // read once, so that the edge filter, the weighting and the annotations see the same traffic
+            trafficSnapshot = trafficData.getSnapshot(_config.getGraphPath());
+            if (searchParams.getConsiderTraffic() && searchParams.getWeightingMethod() != WeightingMethod.SHORTEST) {
                 props.put("weighting_traffic_block", true);
-                edgeFilters.add(new BlockedEdgesEdgeFilter(flagEncoder, trafficData.getBlockedEdges(gs), trafficData.getHeavyVehicleBlockedEdges(gs)));
+                props.put(ORSGraphHopper.TRAFFIC_SNAPSHOT, trafficSnapshot.getVersion());
+                edgeFilters.add(new BlockedEdgesEdgeFilter(flagEncoder, trafficSnapshot));
             }
         }
 
-        RouteSearchContext searchCntx = new RouteSearchContext(mGraphHopper, edgeFilters, flagEncoder);
+        RouteSearchContext searchCntx = new RouteSearchContext(gh, edgeFilters, flagEncoder);
         searchCntx.setProperties(props);
+        searchCntx.setTrafficSnapshot(trafficSnapshot);
 
         return searchCntx;
     }
 
     public RouteSegmentInfo[] getMatchedSegments(Coordinate[] locations, double searchRadius, boolean bothDirections)
             throws Exception {
-        RouteSegmentInfo[] rsi = null;
-
-        waitForUpdateCompletion();
-
-        beginUseGH();
+        GraphHopperHandle ghHandle = acquireGH();
 
         try {
-            rsi = getMatchedSegmentsInternal(locations, searchRadius, null, bothDirections);
-
-            endUseGH();
-        } catch (Exception ex) {
-            endUseGH();
-
-            throw ex;
+            return getMatchedSegmentsInternal(ghHandle.getGraphHopper(), locations, searchRadius, null, bothDirections);
+        } finally {
+            ghHandle.release();
         }
-
-        return rsi;
     }
 
-    private RouteSegmentInfo[] getMatchedSegmentsInternal(Coordinate[] locations,
+    private RouteSegmentInfo[] getMatchedSegmentsInternal(ORSGraphHopper gh, Coordinate[] locations,
                                                           double searchRadius, EdgeFilter edgeFilter, boolean bothDirections) {
-        if (mMapMatcher == null) {
-            mMapMatcher = new HiddenMarkovMapMatcher();
-            mMapMatcher.setGraphHopper(mGraphHopper);
+        MapMatcherPool matcherPool = mMapMatcherPool;
+        if (matcherPool == null || matcherPool.getGraphHopper() != gh) {
+            // the matchers of a replaced instance are dropped together with their pool
+            matcherPool = new MapMatcherPool(gh);
+            mMapMatcherPool = matcherPool;
         }
 
-        mMapMatcher.setSearchRadius(searchRadius);
-        mMapMatcher.setEdgeFilter(edgeFilter);
+        MapMatcher mapMatcher = matcherPool.acquire();
+
+        try {
+            mapMatcher.setSearchRadius(searchRadius);
+            mapMatcher.setEdgeFilter(edgeFilter);
 
-        return mMapMatcher.match(locations, bothDirections);
+            return mapMatcher.match(locations, bothDirections);
+        } finally {
+            matcherPool.release(mapMatcher);
+        }
     }
 
     public boolean canProcessRequest(double totalDistance, double longestSegmentDistance, int wayPoints) {
@@ -673,17 +763,29 @@ public class RoutingProfile {
 
     public GHResponse computeRoute(double lat0, double lon0, double lat1, double lon1, WayPointBearing[] bearings, double[] radiuses, boolean directedSegment, RouteSearchParameters searchParams, EdgeFilter customEdgeFilter, RouteProcessContext routeProcCntx, Boolean geometrySimplify)
             throws Exception {
+        GraphHopperHandle ghHandle = acquireGH();
 
-        GHResponse resp = null;
+        try {
+            return computeRoute(ghHandle, lat0, lon0, lat1, lon1, bearings, radiuses, directedSegment, searchParams, customEdgeFilter, routeProcCntx, geometrySimplify);
+        } finally {
+            ghHandle.release();
+        }
+    }
 
-        waitForUpdateCompletion();
+    /**
+     * Computes a route on the instance of ghHandle, which the caller has acquired with {@link #acquireGH()}, so that
+     * all segments of a request and their path processors use the same graph.
+     */
+    GHResponse computeRoute(GraphHopperHandle ghHandle, double lat0, double lon0, double lat1, double lon1, WayPointBearing[] bearings, double[] radiuses, boolean directedSegment, RouteSearchParameters searchParams, EdgeFilter customEdgeFilter, RouteProcessContext routeProcCntx, Boolean geometrySimplify)
+            throws Exception {
 
-        beginUseGH();
+        GHResponse resp = null;
 
         try {
+            ORSGraphHopper gh = ghHandle.getGraphHopper();
             int profileType = searchParams.getProfileType();
             int weightingMethod = searchParams.getWeightingMethod();
-            RouteSearchContext searchCntx = createSearchContext(searchParams, RouteSearchMode.Routing, customEdgeFilter);
+            RouteSearchContext searchCntx = createSearchContext(gh, searchParams, RouteSearchMode.Routing, customEdgeFilter);
 
             boolean flexibleMode = searchParams.getFlexibleMode();
             GHRequest req = null;
@@ -735,20 +837,27 @@ public class RoutingProfile {
                 flexibleMode = true;
             }
 
-            if (RoutingProfileType.isDriving(profileType) && RealTrafficDataProvider.getInstance().isInitialized())
-                req.setEdgeAnnotator(new TrafficEdgeAnnotator(mGraphHopper.getGraphHopperStorage()));
+            if (searchCntx.getTrafficSnapshot() != null)
+                req.setEdgeAnnotator(new TrafficEdgeAnnotator(searchCntx.getTrafficSnapshot()));
 
             req.setEdgeFilter(searchCntx.getEdgeFilter());
             req.setPathProcessor(routeProcCntx.getPathProcessor());
 
-            if (useDynamicWeights(searchParams) || flexibleMode) {
-                if (mGraphHopper.isCHEnabled())
+            boolean trafficCH = !flexibleMode && canUseTrafficCH(searchParams);
+
+            if (trafficCH) {
+                // the customizable hierarchy is searched on the query graph of the base graph
+                req.getHints().put("ch.disable", true);
+                req.getHints().put("lm.disable", true);
+                req.getHints().put(ORSGraphHopper.TRAFFIC_CH, true);
+            } else if (useDynamicWeights(searchParams) || flexibleMode) {
+                if (gh.isCHEnabled())
                     req.getHints().put("ch.disable", true);
-                if (mGraphHopper.getLMFactoryDecorator().isEnabled())
+                if (gh.getLMFactoryDecorator().isEnabled())
                     req.setAlgorithm("astarbi");
                 req.getHints().put("lm.disable", false);
             } else {
-                if (mGraphHopper.isCHEnabled())
+                if (gh.isCHEnabled())
                     req.getHints().put("lm.disable", true);
                 else
                     req.getHints().put("ch.disable", true);
@@ -766,10 +875,10 @@ public class RoutingProfile {
                 req.getHints().put("astarbi.approximation", _astarApproximation);
 
             if (directedSegment) {
-                resp = mGraphHopper.constructFreeHandRoute(req);
+                resp = gh.constructFreeHandRoute(req);
             } else {
-                mGraphHopper.setSimplifyResponse(geometrySimplify);
-                resp = mGraphHopper.route(req);
+                gh.setSimplifyResponse(geometrySimplify);
+                resp = gh.route(req);
             }
             if (DebugUtility.isDebug() && !directedSegment) {
                 LOGGER.info("visited_nodes.average - " + resp.getHints().get("visited_nodes.average", ""));
@@ -777,11 +886,7 @@ public class RoutingProfile {
             if (DebugUtility.isDebug() && directedSegment) {
                 LOGGER.info("skipped segment - " + resp.getHints().get("skipped_segment", ""));
             }
-
-            endUseGH();
         } catch (Exception ex) {
-            endUseGH();
-
             LOGGER.error(ex);
 
             throw new InternalServerException(RoutingErrorCodes.UNKNOWN, "Unable to compute a route");
@@ -819,23 +924,19 @@ public class RoutingProfile {
     public IsochroneMap buildIsochrone(IsochroneSearchParameters parameters) throws Exception {
 
         IsochroneMap result = null;
-        waitForUpdateCompletion();
-
-        beginUseGH();
+        GraphHopperHandle ghHandle = acquireGH();
 
         try {
-            RouteSearchContext searchCntx = createSearchContext(parameters.getRouteParameters(), RouteSearchMode.Isochrones, null);
+            RouteSearchContext searchCntx = createSearchContext(ghHandle.getGraphHopper(), parameters.getRouteParameters(), RouteSearchMode.Isochrones, null);
 
             IsochroneMapBuilderFactory isochroneMapBuilderFactory = new IsochroneMapBuilderFactory(searchCntx);
             result = isochroneMapBuilderFactory.buildMap(parameters);
-
-            endUseGH();
         } catch (Exception ex) {
-            endUseGH();
-
             LOGGER.error(ex);
 
             throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Unable to build an isochrone map.");
+        } finally {
+            ghHandle.release();
         }
 
         String[] attributes = parameters.getAttributes();
@@ -918,8 +1019,16 @@ public class RoutingProfile {
     }
 
     public Geometry getEdgeGeometry(int edgeId, int mode, int adjnodeid) {
-        EdgeIteratorState iter = mGraphHopper.getGraphHopperStorage().getEdgeIteratorState(edgeId, adjnodeid);
-        PointList points = iter.fetchWayGeometry(mode);
+        GraphHopperHandle ghHandle = acquireGH();
+        PointList points;
+
+        try {
+            EdgeIteratorState iter = ghHandle.getGraphHopper().getGraphHopperStorage().getEdgeIteratorState(edgeId, adjnodeid);
+            points = iter.fetchWayGeometry(mode);
+        } finally {
+            ghHandle.release();
+        }
+
         if (points.size() > 1) {
             Coordinate[] coords = new Coordinate[points.size()];
             for (int i = 0; i < points.size(); i++) {
@@ -936,8 +1045,4 @@ public class RoutingProfile {
         //rp.getGraphhopper()
         return null;
     }
-
-    public int hashCode() {
-        return mGraphHopper.getGraphHopperStorage().getDirectory().getLocation().hashCode();
-    }
 }
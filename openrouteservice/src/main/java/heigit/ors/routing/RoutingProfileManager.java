@@ -33,6 +33,7 @@ import heigit.ors.exceptions.RouteNotFoundException;
 import heigit.ors.exceptions.ServerLimitExceededException;
 import heigit.ors.isochrones.IsochroneMap;
 import heigit.ors.isochrones.IsochroneSearchParameters;
+import heigit.ors.isochrones.IsochronesWorkerPool;
 import heigit.ors.mapmatching.MapMatchingRequest;
 import heigit.ors.matrix.MatrixErrorCodes;
 import heigit.ors.matrix.MatrixRequest;
@@ -42,7 +43,6 @@ import heigit.ors.optimization.RouteOptimizationRequest;
 import heigit.ors.optimization.RouteOptimizationResult;
 import heigit.ors.routing.configuration.RouteProfileConfiguration;
 import heigit.ors.routing.configuration.RoutingManagerConfiguration;
-import heigit.ors.routing.parameters.VehicleParameters;
 import heigit.ors.routing.pathprocessors.ElevationSmoothPathProcessor;
 import heigit.ors.routing.pathprocessors.ExtraInfoProcessor;
 import heigit.ors.routing.traffic.RealTrafficDataProvider;
@@ -55,6 +55,7 @@ import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.*;
@@ -207,6 +208,15 @@ public class RoutingProfileManager {
                         Integer[] routeProfiles = rpc.getProfilesTypes();
 
                         if (routeProfiles != null) {
+                            // updated graphs replace the current one through a link, which has to exist before the graph is opened
+                            if (rmc.UpdateConfig != null && rmc.UpdateConfig.Enabled) {
+                                try {
+                                    VersionedGraphDirectory.initialize(rpc.getGraphPath());
+                                } catch (Exception ex) {
+                                    LOGGER.warn("Failed to version graph folder " + rpc.getGraphPath() + ": " + ex.getMessage());
+                                }
+                            }
+
                             Callable<RoutingProfile> task = new RoutingProfileLoader(RoutingServiceSettings.getSourceFile(), rpc,
                                     _routeProfiles, loadCntx);
                             compService.submit(task);
@@ -292,14 +302,24 @@ public class RoutingProfileManager {
         if (req.getCoordinates().length <= 1)
             throw new Exception("Number of coordinates must be greater than 1.");
 
-        List<RouteResult> routes = new ArrayList<RouteResult>(req.getCoordinates().length - 1);
-
         RoutingProfile rp = getRouteProfile(req, true);
+        // all segments and the extra info are computed on the same instance, even if the profile is updated meanwhile
+        GraphHopperHandle ghHandle = rp.acquireGH();
+
+        try {
+            return computeRoutes(rp, ghHandle, req, invertFlow);
+        } finally {
+            ghHandle.release();
+        }
+    }
+
+    private List<RouteResult> computeRoutes(RoutingProfile rp, GraphHopperHandle ghHandle, RoutingRequest req, boolean invertFlow) throws Exception {
+        List<RouteResult> routes = new ArrayList<RouteResult>(req.getCoordinates().length - 1);
         RouteSearchParameters searchParams = req.getSearchParameters();
         PathProcessor pathProcessor = null;
 
         if (req.getExtraInfo() > 0) {
-            pathProcessor = new ExtraInfoProcessor(rp.getGraphhopper(), req);
+            pathProcessor = new ExtraInfoProcessor(ghHandle.getGraphHopper(), req);
         } else {
             if (req.getIncludeElevation())
                 pathProcessor = new ElevationSmoothPathProcessor();
@@ -320,9 +340,9 @@ public class RoutingProfileManager {
             Coordinate c1 = coords[i];
             GHResponse gr = null;
             if (invertFlow)
-                gr = rp.computeRoute(c0.y, c0.x, c1.y, c1.x, null, null, false, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
+                gr = rp.computeRoute(ghHandle, c0.y, c0.x, c1.y, c1.x, null, null, false, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
             else
-                gr = rp.computeRoute(c1.y, c1.x, c0.y, c0.x, null, null, false, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
+                gr = rp.computeRoute(ghHandle, c1.y, c1.x, c0.y, c0.x, null, null, false, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
 
             //if (gr.hasErrors())
             //	throw new InternalServerException(RoutingErrorCodes.UNKNOWN, String.format("Unable to find a route between points %d (%s) and %d (%s)", i, FormatUtility.formatCoordinate(c0), i + 1, FormatUtility.formatCoordinate(c1)));
@@ -347,14 +367,25 @@ public class RoutingProfileManager {
     }
 
     public RouteResult computeRoute(RoutingRequest req) throws Exception {
+        RoutingProfile rp = getRouteProfile(req, false);
+        // all segments and the extra info are computed on the same instance, even if the profile is updated meanwhile
+        GraphHopperHandle ghHandle = rp.acquireGH();
+
+        try {
+            return computeRoute(rp, ghHandle, req);
+        } finally {
+            ghHandle.release();
+        }
+    }
+
+    private RouteResult computeRoute(RoutingProfile rp, GraphHopperHandle ghHandle, RoutingRequest req) throws Exception {
         List<Integer> skipSegments = req.getSkipSegments();
         List<GHResponse> routes = new ArrayList<GHResponse>();
 
-        RoutingProfile rp = getRouteProfile(req, false);
         RouteSearchParameters searchParams = req.getSearchParameters();
         PathProcessor pathProcessor = null;
 
-        pathProcessor = new ExtraInfoProcessor(rp.getGraphhopper(), req);
+        pathProcessor = new ExtraInfoProcessor(ghHandle.getGraphHopper(), req);
 
         Coordinate[] coords = req.getCoordinates();
         Coordinate c0 = coords[0];
@@ -391,9 +422,9 @@ public class RoutingProfileManager {
 
             GHResponse gr;
             if ((skipSegments.contains(i))) {
-                gr = rp.computeRoute(c0.y, c0.x, c1.y, c1.x, bearings, radiuses, true, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
+                gr = rp.computeRoute(ghHandle, c0.y, c0.x, c1.y, c1.x, bearings, radiuses, true, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
             } else {
-                gr = rp.computeRoute(c0.y, c0.x, c1.y, c1.x, bearings, radiuses, false, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
+                gr = rp.computeRoute(ghHandle, c0.y, c0.x, c1.y, c1.x, bearings, radiuses, false, searchParams, customEdgeFilter, routeProcCntx, req.getGeometrySimplify());
             }
 
             if (gr.hasErrors()) {
@@ -507,9 +538,20 @@ public class RoutingProfileManager {
         RouteSearchParameters searchParams = req.getSearchParameters();
         int profileType = searchParams.getProfileType();
 
-        boolean dynamicWeights = (searchParams.hasAvoidAreas() || searchParams.hasAvoidFeatures() || searchParams.hasAvoidBorders() || searchParams.hasAvoidCountries() || (RoutingProfileType.isDriving(profileType) && ((RoutingProfileType.isHeavyVehicle(profileType) && searchParams.getVehicleType() > 0) || searchParams.hasParameters(VehicleParameters.class) || searchParams.getConsiderTraffic())) || (searchParams.getWeightingMethod() == WeightingMethod.SHORTEST || searchParams.getWeightingMethod() == WeightingMethod.RECOMMENDED) || searchParams.getConsiderTurnRestrictions() /*|| RouteExtraInformationFlag.isSet(extraInfo, value) searchParams.getIncludeWaySurfaceInfo()*/);
+        boolean dynamicWeights = searchParams.requiresDynamicWeights();
+        RoutingProfile rp = null;
 
-        RoutingProfile rp = _routeProfiles.getRouteProfile(profileType, !dynamicWeights);
+        // traffic alone is considered on the hierarchy of the CH profile customized for the latest traffic snapshot
+        if (dynamicWeights && !searchParams.requiresNonTrafficDynamicWeights()) {
+            RoutingProfile chProfile = _routeProfiles.getRouteProfile(profileType, true);
+            if (chProfile != null && chProfile.canUseTrafficCH(searchParams)) {
+                rp = chProfile;
+                dynamicWeights = false;
+            }
+        }
+
+        if (rp == null)
+            rp = _routeProfiles.getRouteProfile(profileType, !dynamicWeights);
 
         if (rp == null && dynamicWeights == false)
             rp = _routeProfiles.getRouteProfile(profileType, false);
@@ -580,12 +622,38 @@ public class RoutingProfileManager {
      */
     public IsochroneMap buildIsochrone(IsochroneSearchParameters parameters) throws Exception {
 
-        int profileType = parameters.getRouteParameters().getProfileType();
-        RoutingProfile rp = _routeProfiles.getRouteProfile(profileType, false);
+        RouteSearchParameters searchParams = parameters.getRouteParameters();
+        // the CH profile falls back to a search on its base graph if the isochrone cannot use the CH graph
+        RoutingProfile rp = _routeProfiles.getRouteProfile(searchParams.getProfileType(), !searchParams.requiresDynamicWeights());
 
         return rp.buildIsochrone(parameters);
     }
 
+    /**
+     * Builds the isochrone maps of several locations concurrently.
+     *
+     * @return the maps in the order of the given parameters
+     */
+    public List<IsochroneMap> buildIsochrones(final List<IsochroneSearchParameters> parameters) throws Exception {
+        final List<IsochroneMap> result = new ArrayList<IsochroneMap>(Collections.nCopies(parameters.size(), (IsochroneMap) null));
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(parameters.size());
+
+        for (int i = 0; i < parameters.size(); i++) {
+            final int index = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    result.set(index, buildIsochrone(parameters.get(index)));
+                    return null;
+                }
+            });
+        }
+
+        IsochronesWorkerPool.run(tasks);
+
+        return result;
+    }
+
     public MatrixResult computeMatrix(MatrixRequest req) throws Exception {
         RoutingProfile rp = _routeProfiles.getRouteProfile(req.getProfileType(), !req.getFlexibleMode());
 
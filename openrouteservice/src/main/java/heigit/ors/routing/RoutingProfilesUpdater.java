@@ -13,11 +13,11 @@
  */
 package heigit.ors.routing;
 
-import com.graphhopper.GraphHopper;
 import com.graphhopper.storage.StorableProperties;
 import com.graphhopper.util.Helper;
 import heigit.ors.routing.configuration.RouteProfileConfiguration;
 import heigit.ors.routing.configuration.RouteUpdateConfiguration;
+import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
 import heigit.ors.routing.traffic.RealTrafficDataProvider;
 import heigit.ors.util.DebugUtility;
 import heigit.ors.util.FileUtility;
@@ -236,20 +236,6 @@ public class RoutingProfilesUpdater {
 				File file = new File(osmFile);
 				String newFileStamp = Long.toString(file.length());
 
-				String tempGraphLocation = Paths.get(m_config.WorkingDirectory, "graph").toString();
-
-				try
-				{
-					// Clear directory from a previous build
-					File fileGraph = new File(tempGraphLocation);
-					if (fileGraph.exists())
-						FileUtils.deleteDirectory(fileGraph);	
-				}
-				catch(Exception ex)
-				{}
-
-				FileUtility.makeDirectory(tempGraphLocation);
-
 				RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
 				int nUpdatedProfiles = 0;
 
@@ -280,15 +266,21 @@ public class RoutingProfilesUpdater {
 						}
 					}
 
+					String graphVersion = null;
+
 					try {
 						m_updateStatus = "preparing profile '" + rpc.getProfiles() +"'";
 
+						// The new graph is built next to the current one and replaces it only when it is ready
+						graphVersion = VersionedGraphDirectory.createVersion(rpc.getGraphPath());
+
 						RouteProfileConfiguration rpcNew = rpc.clone();
-						rpcNew.setGraphPath(tempGraphLocation);
-						GraphHopper gh = RoutingProfile.initGraphHopper(osmFile, rpcNew, RoutingProfileManager.getInstance().getProfiles(), loadCntx);
+						rpcNew.setGraphPath(graphVersion);
+						ORSGraphHopper gh = RoutingProfile.initGraphHopper(osmFile, rpcNew, rpc.getGraphPath(), RoutingProfileManager.getInstance().getProfiles(), loadCntx);
 
 						if (gh != null) {
 							profile.updateGH(gh);
+							graphVersion = null;
 
 							if (RealTrafficDataProvider.getInstance().isInitialized())
 							{
@@ -302,6 +294,14 @@ public class RoutingProfilesUpdater {
 						LOGGER.severe("Failed to update graph profile. Message:" + ex.getMessage() + "; StackTrace: " +	StackTraceUtility.getStackTrace(ex));
 					}
 
+					if (graphVersion != null) {
+						try {
+							VersionedGraphDirectory.deleteVersion(graphVersion);
+						} catch (Exception ex) {
+							LOGGER.warning("Failed to delete graph folder " + graphVersion + ": " + ex.getMessage());
+						}
+					}
+
 					m_updateStatus = null;
 				}
 
@@ -0,0 +1,142 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Graph folder of a routing profile that is switched between versions without copying. The configured graph path
+ * is a symbolic link to a sibling folder named &lt;graph path&gt;.&lt;timestamp&gt; that holds the current version.
+ * Updates are built into a new version folder, and the link is replaced atomically once the new graph is ready, so
+ * the configured path always points to a complete graph.
+ * <p>
+ * A graph path that is still a plain folder is turned into the first version by {@link #initialize(String)} when the
+ * profile is loaded, before the graph is opened, as a folder cannot be replaced by a link atomically.
+ */
+public class VersionedGraphDirectory {
+	private static final String TEMP_LINK_SUFFIX = ".link";
+
+	/**
+	 * Makes graphPath a link to a version folder, so that later updates can be activated atomically. A missing graph
+	 * path gets an empty first version for the import, a plain folder is renamed into the first version. Must be
+	 * called before the graph is opened, as the graph path is briefly missing while a plain folder is converted.
+	 */
+	public static void initialize(String graphPath) throws IOException {
+		Path linkPath = Paths.get(graphPath).toAbsolutePath();
+
+		if (Files.isSymbolicLink(linkPath))
+			return;
+
+		if (Files.exists(linkPath)) {
+			moveToVersion(linkPath);
+		} else {
+			Path versionPath = newVersionPath(linkPath);
+			Files.createDirectories(versionPath);
+			replaceLink(linkPath, versionPath);
+		}
+	}
+
+	/**
+	 * Creates an empty folder for a new version of the graph at graphPath.
+	 *
+	 * @return the path of the created folder
+	 */
+	public static String createVersion(String graphPath) throws IOException {
+		Path versionPath = newVersionPath(Paths.get(graphPath).toAbsolutePath());
+		Files.createDirectories(versionPath);
+		return versionPath.toString();
+	}
+
+	/**
+	 * Points graphPath to the given version folder created by {@link #createVersion(String)}. Processes that open
+	 * graphPath afterwards see the new version, files that have already been opened stay valid.
+	 *
+	 * @return the folder of the previous version, which can be deleted once it is no longer in use, or null if there
+	 * was none
+	 */
+	public static String activate(String graphPath, String versionPath) throws IOException {
+		Path linkPath = Paths.get(graphPath).toAbsolutePath();
+		Path targetPath = Paths.get(versionPath).toAbsolutePath();
+		Path previousPath = null;
+
+		if (Files.isSymbolicLink(linkPath)) {
+			previousPath = linkPath.resolveSibling(Files.readSymbolicLink(linkPath));
+		} else if (Files.exists(linkPath)) {
+			// only if initialize() failed when the profile was loaded
+			previousPath = moveToVersion(linkPath);
+		}
+
+		replaceLink(linkPath, targetPath);
+
+		return previousPath == null || previousPath.equals(targetPath) ? null : previousPath.toString();
+	}
+
+	/**
+	 * Deletes a version folder returned by {@link #activate(String, String)} or a version that failed to build.
+	 */
+	public static void deleteVersion(String versionPath) throws IOException {
+		File versionDir = new File(versionPath);
+		if (versionDir.exists() && !Files.isSymbolicLink(versionDir.toPath()))
+			FileUtils.deleteDirectory(versionDir);
+	}
+
+	/**
+	 * Renames the plain folder at linkPath into a new version and links linkPath to it. The link is created before
+	 * the rename, so linkPath is only missing between two renames. Files that have already been opened stay valid.
+	 *
+	 * @return the path of the version folder
+	 */
+	private static Path moveToVersion(Path linkPath) throws IOException {
+		Path versionPath = newVersionPath(linkPath);
+		Path tempLinkPath = createTempLink(linkPath, versionPath);
+
+		Files.move(linkPath, versionPath, StandardCopyOption.ATOMIC_MOVE);
+		Files.move(tempLinkPath, linkPath, StandardCopyOption.ATOMIC_MOVE);
+
+		return versionPath;
+	}
+
+	private static void replaceLink(Path linkPath, Path targetPath) throws IOException {
+		Path tempLinkPath = createTempLink(linkPath, targetPath);
+		Files.move(tempLinkPath, linkPath, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static Path createTempLink(Path linkPath, Path targetPath) throws IOException {
+		// a relative link keeps working if the folder of the graphs is moved or mounted elsewhere
+		Path tempLinkPath = linkPath.resolveSibling(linkPath.getFileName() + TEMP_LINK_SUFFIX);
+		Files.deleteIfExists(tempLinkPath);
+		Files.createSymbolicLink(tempLinkPath, linkPath.getParent().relativize(targetPath));
+		return tempLinkPath;
+	}
+
+	private static Path newVersionPath(Path linkPath) {
+		String prefix = linkPath.getFileName() + "." + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+		Path path = linkPath.resolveSibling(prefix);
+
+		for (int i = 1; Files.exists(path, LinkOption.NOFOLLOW_LINKS); i++)
+			path = linkPath.resolveSibling(prefix + "_" + i);
+
+		return path;
+	}
+}
@@ -0,0 +1,147 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+
+/**
+ * Node based Dijkstra search that stops at a maximum cost, e.g. for isochrones. Instead of one SPTEntry per node the
+ * search keeps the shortest path tree in parallel primitive arrays indexed by the order in which the nodes have been
+ * reached (slots) and uses an {@link IntDoubleMinHeap} of slots.
+ * <p>
+ * The arrays are kept per thread and reused by subsequent searches. Only the entries of the reached nodes are reset,
+ * so the reset does not depend on the size of earlier searches. The arrays of a search reaching more than
+ * {@link #MAX_RETAINED_SLOTS} nodes are dropped instead, so that a single large isochrone does not keep its memory
+ * assigned to the thread. The result is copied into an {@link AccessibilityMap} of exactly the size of the tree, so it
+ * stays valid after later searches.
+ */
+public class CostBoundedDijkstra {
+	private static final ThreadLocal<CostBoundedDijkstra> INSTANCES = ThreadLocal.withInitial(CostBoundedDijkstra::new);
+	static final int MAX_RETAINED_SLOTS = 1 << 17;
+
+	private final IntIntHashMap _nodeSlots = new IntIntHashMap(1024);
+	private final IntDoubleMinHeap _heap = new IntDoubleMinHeap(1024);
+	private int[] _nodes = new int[1024];
+	private int[] _edges = new int[1024];
+	private int[] _parents = new int[1024];
+	private float[] _weights = new float[1024];
+	private int _size;
+
+	private CostBoundedDijkstra() {
+	}
+
+	/**
+	 * Computes the shortest path tree of all nodes reached with a cost of at most maxCost, together with the nodes
+	 * adjacent to them. The latter are reached by edges crossing maxCost and have a cost above it.
+	 *
+	 * @param edgeFilter additional filter for the edges, may be null
+	 * @param reverseDirection if true, the tree contains the paths from the nodes to the start node
+	 */
+	public static AccessibilityMap calcAccessibilityMap(Graph graph, Weighting weighting, EdgeFilter edgeFilter, int from,
+			double maxCost, boolean reverseDirection, GHPoint3D snappedPosition) {
+		CostBoundedDijkstra dijkstra = INSTANCES.get();
+
+		try {
+			dijkstra.search(graph, weighting, edgeFilter, from, maxCost, reverseDirection);
+
+			int size = dijkstra._size;
+			return new AccessibilityMap(Arrays.copyOf(dijkstra._nodes, size), Arrays.copyOf(dijkstra._edges, size),
+					Arrays.copyOf(dijkstra._parents, size), Arrays.copyOf(dijkstra._weights, size), snappedPosition);
+		} finally {
+			if (dijkstra._size > MAX_RETAINED_SLOTS)
+				INSTANCES.remove();
+			else
+				dijkstra.reset();
+		}
+	}
+
+	/**
+	 * Removes the reached nodes from the node to slot map and the heap.
+	 */
+	private void reset() {
+		for (int slot = 0; slot < _size; slot++)
+			_nodeSlots.remove(_nodes[slot]);
+		_heap.clear();
+		_size = 0;
+	}
+
+	private void search(Graph graph, Weighting weighting, EdgeFilter edgeFilter, int from, double maxCost, boolean reverseDirection) {
+		EdgeExplorer explorer = graph.createEdgeExplorer(new DefaultEdgeFilter(weighting.getFlagEncoder(), reverseDirection, !reverseDirection));
+
+		_heap.push(addSlot(from, EdgeIterator.NO_EDGE, -1, 0), 0);
+
+		while (!_heap.isEmpty()) {
+			int slot = _heap.poll();
+			double weight = _weights[slot];
+			if (weight > maxCost)
+				break;
+
+			int prevEdge = _edges[slot];
+			EdgeIterator iter = explorer.setBaseNode(_nodes[slot]);
+
+			while (iter.next()) {
+				// node based traversal, u-turns are not allowed
+				if (iter.getEdge() == prevEdge || (edgeFilter != null && !edgeFilter.accept(iter)))
+					continue;
+
+				double tmpWeight = weighting.calcWeight(iter, reverseDirection, prevEdge) + weight;
+				if (Double.isInfinite(tmpWeight))
+					continue;
+
+				int adjNode = iter.getAdjNode();
+				int adjSlot = _nodeSlots.getOrDefault(adjNode, -1);
+
+				if (adjSlot < 0) {
+					adjSlot = addSlot(adjNode, iter.getEdge(), slot, tmpWeight);
+					_heap.push(adjSlot, _weights[adjSlot]);
+				} else if (_heap.contains(adjSlot) && tmpWeight < _weights[adjSlot]) {
+					_edges[adjSlot] = iter.getEdge();
+					_parents[adjSlot] = slot;
+					_weights[adjSlot] = (float) tmpWeight;
+					_heap.push(adjSlot, _weights[adjSlot]);
+				}
+			}
+		}
+	}
+
+	private int addSlot(int node, int edge, int parent, double weight) {
+		if (_size == _nodes.length) {
+			int newCapacity = _nodes.length + (_nodes.length >> 1);
+			_nodes = Arrays.copyOf(_nodes, newCapacity);
+			_edges = Arrays.copyOf(_edges, newCapacity);
+			_parents = Arrays.copyOf(_parents, newCapacity);
+			_weights = Arrays.copyOf(_weights, newCapacity);
+		}
+
+		int slot = _size++;
+		_nodes[slot] = node;
+		_edges[slot] = edge;
+		_parents[slot] = parent;
+		_weights[slot] = (float) weight;
+		_nodeSlots.put(node, slot);
+
+		return slot;
+	}
+}
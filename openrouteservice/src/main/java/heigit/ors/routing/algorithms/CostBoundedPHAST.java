@@ -0,0 +1,229 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.CHLevelEdgeFilter;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.DownwardSearchEdgeFilter;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.UpwardSearchEdgeFilter;
+
+/**
+ * PHAST one-to-all search on a contraction hierarchies graph that stops at a maximum cost. It returns the same
+ * {@link AccessibilityMap} as {@link CostBoundedDijkstra} on the base graph of the hierarchy.
+ * <p>
+ * The search runs in three phases:
+ * <ol>
+ * <li>an upward Dijkstra search from the start node,</li>
+ * <li>a downward sweep over the nodes in decreasing level order, starting with the upward search space. When a node
+ * is scanned all nodes with a downward edge to it have been scanned before, so its cost is final and it is scanned
+ * exactly once. Nodes beyond the maximum cost are not added, which keeps the sweep bounded by the range,</li>
+ * <li>a linear pass over the reached nodes on the base graph, which selects the parent edge of each node and adds
+ * the nodes behind the edges crossing the maximum cost.</li>
+ * </ol>
+ * Like {@link CostBoundedDijkstra} the arrays are kept per thread and reused by subsequent searches, unless the search
+ * reached more than {@link CostBoundedDijkstra#MAX_RETAINED_SLOTS} nodes.
+ */
+public class CostBoundedPHAST {
+	private static final ThreadLocal<CostBoundedPHAST> INSTANCES = ThreadLocal.withInitial(CostBoundedPHAST::new);
+
+	private final IntIntHashMap _nodeSlots = new IntIntHashMap(1024);
+	private final IntDoubleMinHeap _heap = new IntDoubleMinHeap(1024);
+	private int[] _nodes = new int[1024];
+	private int[] _edges = new int[1024];
+	private int[] _parents = new int[1024];
+	private double[] _weights = new double[1024];
+	private double[] _parentWeights = new double[1024];
+	private int _size;
+
+	private CostBoundedPHAST() {
+	}
+
+	/**
+	 * @param weighting the weighting of the hierarchy, which must be able to weight shortcuts
+	 * @param reverseDirection if true, the tree contains the paths from the nodes to the start node
+	 */
+	public static AccessibilityMap calcAccessibilityMap(CHGraph chGraph, Graph baseGraph, Weighting weighting, int from,
+			double maxCost, boolean reverseDirection, GHPoint3D snappedPosition) {
+		CostBoundedPHAST phast = INSTANCES.get();
+
+		try {
+			phast.searchUpward(chGraph, weighting, from, maxCost, reverseDirection);
+			phast.sweepDownward(chGraph, weighting, maxCost, reverseDirection);
+			phast.buildTree(baseGraph, weighting, reverseDirection);
+
+			int size = phast._size;
+			float[] weights = new float[size];
+			for (int i = 0; i < size; i++)
+				weights[i] = (float) phast._weights[i];
+
+			return new AccessibilityMap(Arrays.copyOf(phast._nodes, size), Arrays.copyOf(phast._edges, size),
+					Arrays.copyOf(phast._parents, size), weights, snappedPosition);
+		} finally {
+			if (phast._size > CostBoundedDijkstra.MAX_RETAINED_SLOTS)
+				INSTANCES.remove();
+			else
+				phast.reset();
+		}
+	}
+
+	/**
+	 * Removes the reached nodes from the node to slot map and the heap.
+	 */
+	private void reset() {
+		for (int slot = 0; slot < _size; slot++)
+			_nodeSlots.remove(_nodes[slot]);
+		_heap.clear();
+		_size = 0;
+	}
+
+	private void searchUpward(CHGraph chGraph, Weighting weighting, int from, double maxCost, boolean reverseDirection) {
+		FlagEncoder encoder = weighting.getFlagEncoder();
+		// the downward filter accepts the edges leading from higher nodes to the base node
+		CHLevelEdgeFilter upwardFilter = reverseDirection ? new DownwardSearchEdgeFilter(chGraph, encoder) : new UpwardSearchEdgeFilter(chGraph, encoder);
+		EdgeExplorer explorer = chGraph.createEdgeExplorer();
+
+		_heap.push(addSlot(from, 0), 0);
+
+		while (!_heap.isEmpty()) {
+			int slot = _heap.poll();
+			int node = _nodes[slot];
+			double weight = _weights[slot];
+
+			upwardFilter.setBaseNode(node);
+			EdgeIterator iter = explorer.setBaseNode(node);
+
+			while (iter.next()) {
+				if (!upwardFilter.accept(iter))
+					continue;
+
+				double tmpWeight = weighting.calcWeight(iter, reverseDirection, EdgeIterator.NO_EDGE) + weight;
+				if (tmpWeight > maxCost)
+					continue;
+
+				int adjNode = iter.getAdjNode();
+				int adjSlot = _nodeSlots.getOrDefault(adjNode, -1);
+
+				if (adjSlot < 0) {
+					adjSlot = addSlot(adjNode, tmpWeight);
+					_heap.push(adjSlot, tmpWeight);
+				} else if (tmpWeight < _weights[adjSlot]) {
+					_weights[adjSlot] = tmpWeight;
+					_heap.push(adjSlot, tmpWeight);
+				}
+			}
+		}
+	}
+
+	private void sweepDownward(CHGraph chGraph, Weighting weighting, double maxCost, boolean reverseDirection) {
+		FlagEncoder encoder = weighting.getFlagEncoder();
+		EdgeExplorer explorer = chGraph.createEdgeExplorer();
+
+		// the heap orders the nodes by decreasing level
+		for (int slot = 0; slot < _size; slot++)
+			_heap.push(slot, -chGraph.getLevel(_nodes[slot]));
+
+		while (!_heap.isEmpty()) {
+			int slot = _heap.poll();
+			int node = _nodes[slot];
+			int level = chGraph.getLevel(node);
+			double weight = _weights[slot];
+
+			EdgeIterator iter = explorer.setBaseNode(node);
+
+			while (iter.next()) {
+				int adjNode = iter.getAdjNode();
+				int adjLevel = chGraph.getLevel(adjNode);
+				if (adjLevel >= level || !(reverseDirection ? iter.isBackward(encoder) : iter.isForward(encoder)))
+					continue;
+
+				double tmpWeight = weighting.calcWeight(iter, reverseDirection, EdgeIterator.NO_EDGE) + weight;
+				if (tmpWeight > maxCost)
+					continue;
+
+				int adjSlot = _nodeSlots.getOrDefault(adjNode, -1);
+
+				if (adjSlot < 0) {
+					adjSlot = addSlot(adjNode, tmpWeight);
+					_heap.push(adjSlot, -adjLevel);
+				} else if (tmpWeight < _weights[adjSlot]) {
+					_weights[adjSlot] = tmpWeight;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Selects the base graph edge on a shortest path to every reached node. The nodes adjacent to the reached ones
+	 * are added with the cost of the cheapest edge leading to them, as they are beyond the maximum cost.
+	 */
+	private void buildTree(Graph baseGraph, Weighting weighting, boolean reverseDirection) {
+		EdgeExplorer explorer = baseGraph.createEdgeExplorer(new DefaultEdgeFilter(weighting.getFlagEncoder(), reverseDirection, !reverseDirection));
+		int reachedCount = _size;
+
+		for (int slot = 0; slot < reachedCount; slot++) {
+			double weight = _weights[slot];
+			EdgeIterator iter = explorer.setBaseNode(_nodes[slot]);
+
+			while (iter.next()) {
+				double tmpWeight = weighting.calcWeight(iter, reverseDirection, EdgeIterator.NO_EDGE) + weight;
+				if (Double.isInfinite(tmpWeight))
+					continue;
+
+				int adjSlot = _nodeSlots.getOrDefault(iter.getAdjNode(), -1);
+				if (adjSlot < 0)
+					adjSlot = addSlot(iter.getAdjNode(), tmpWeight);
+				else if (adjSlot == 0 || (_parents[adjSlot] >= 0 && tmpWeight >= _parentWeights[adjSlot]))
+					continue;
+
+				_edges[adjSlot] = iter.getEdge();
+				_parents[adjSlot] = slot;
+				_parentWeights[adjSlot] = tmpWeight;
+				if (adjSlot >= reachedCount)
+					_weights[adjSlot] = tmpWeight;
+			}
+		}
+	}
+
+	private int addSlot(int node, double weight) {
+		if (_size == _nodes.length) {
+			int newCapacity = _nodes.length + (_nodes.length >> 1);
+			_nodes = Arrays.copyOf(_nodes, newCapacity);
+			_edges = Arrays.copyOf(_edges, newCapacity);
+			_parents = Arrays.copyOf(_parents, newCapacity);
+			_weights = Arrays.copyOf(_weights, newCapacity);
+			_parentWeights = Arrays.copyOf(_parentWeights, newCapacity);
+		}
+
+		int slot = _size++;
+		_nodes[slot] = node;
+		_edges[slot] = EdgeIterator.NO_EDGE;
+		_parents[slot] = -1;
+		_weights[slot] = weight;
+		_nodeSlots.put(node, slot);
+
+		return slot;
+	}
+}
@@ -0,0 +1,293 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.PriorityQueue;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizableHierarchy;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizedShortcutWeights;
+
+/**
+ * Bidirectional search on a {@link CustomizableHierarchy} with the weights customized for a metric. Both searches
+ * only follow the arcs towards nodes contracted later and meet at the highest node of the shortest path.
+ * <p>
+ * The virtual nodes of the query graph are not part of the hierarchy. They are treated as if they were contracted
+ * first, i.e. their virtual edges are followed with the weighting, which has to be the metric the weights have been
+ * customized for. The arcs of the shortest path are unpacked into the edges of the graph by choosing the edge or the
+ * lower triangle the weight of the arc stems from.
+ */
+public class CustomizedCHAlgorithm extends AbstractRoutingAlgorithm {
+	private final CustomizableHierarchy _hierarchy;
+	private final CustomizedShortcutWeights _weights;
+	private final EdgeExplorer _virtualExplorer;
+	private SearchDirection _forward;
+	private SearchDirection _backward;
+	private int _from;
+	private int _to;
+	private int _meetingNode = -1;
+	private double _bestWeight = Double.POSITIVE_INFINITY;
+	private int _visitedNodes;
+
+	private static class Label implements Comparable<Label> {
+		final int node;
+		final double weight;
+		final Label parent;
+		// an arc of the hierarchy or, if the parent is a virtual node, an edge of the query graph
+		final int edge;
+
+		Label(int node, double weight, Label parent, int edge) {
+			this.node = node;
+			this.weight = weight;
+			this.parent = parent;
+			this.edge = edge;
+		}
+
+		@Override
+		public int compareTo(Label other) {
+			return Double.compare(weight, other.weight);
+		}
+	}
+
+	private class SearchDirection {
+		final boolean forward;
+		final IntObjectMap<Label> labels = new GHIntObjectHashMap<Label>();
+		final PriorityQueue<Label> queue = new PriorityQueue<Label>();
+
+		SearchDirection(boolean forward, int node) {
+			this.forward = forward;
+			Label label = new Label(node, 0, null, EdgeIterator.NO_EDGE);
+			labels.put(node, label);
+			queue.add(label);
+		}
+
+		/**
+		 * Returns true if no node left in the queue can improve the best path found so far.
+		 */
+		boolean isFinished() {
+			return queue.isEmpty() || queue.peek().weight >= _bestWeight;
+		}
+
+		void settleNext(SearchDirection other) {
+			Label label = queue.poll();
+			// the node has been reached with a lower weight after the label has been queued
+			if (labels.get(label.node) != label)
+				return;
+
+			_visitedNodes++;
+
+			Label otherLabel = other.labels.get(label.node);
+			if (otherLabel != null && label.weight + otherLabel.weight < _bestWeight) {
+				_bestWeight = label.weight + otherLabel.weight;
+				_meetingNode = label.node;
+			}
+
+			if (isVirtual(label.node)) {
+				EdgeIterator iter = _virtualExplorer.setBaseNode(label.node);
+				while (iter.next())
+					relax(label, iter.getAdjNode(), iter.getEdge(), weighting.calcWeight(iter, !forward, EdgeIterator.NO_EDGE));
+			} else {
+				for (int arc = _hierarchy.getFirstArc(label.node); arc < _hierarchy.getLastArc(label.node); arc++)
+					relax(label, _hierarchy.getHead(arc), arc, _weights.getWeight(arc, forward));
+			}
+		}
+
+		private void relax(Label parent, int node, int edge, double edgeWeight) {
+			if (Double.isInfinite(edgeWeight))
+				return;
+
+			double weight = parent.weight + edgeWeight;
+			Label label = labels.get(node);
+			if (label == null || weight < label.weight) {
+				label = new Label(node, weight, parent, edge);
+				labels.put(node, label);
+				queue.add(label);
+			}
+		}
+	}
+
+	/**
+	 * Path of the edges of the graph the arcs stand for.
+	 */
+	private static class UnpackedPath extends Path {
+		private int _prevEdge = EdgeIterator.NO_EDGE;
+
+		UnpackedPath(Graph graph, Weighting weighting) {
+			super(graph, weighting);
+		}
+
+		void add(int edge, int adjNode) {
+			processEdge(edge, adjNode, _prevEdge);
+			_prevEdge = edge;
+		}
+
+		Path finish(int fromNode, int endNode, double weight) {
+			setFromNode(fromNode);
+			setEndNode(endNode);
+			setWeight(weight);
+			return setFound(true);
+		}
+	}
+
+	/**
+	 * @param graph the query graph of the graph the hierarchy has been built for
+	 * @param weighting the metric the weights have been customized for
+	 */
+	public CustomizedCHAlgorithm(Graph graph, Weighting weighting, CustomizableHierarchy hierarchy, CustomizedShortcutWeights weights) {
+		super(graph, weighting, TraversalMode.NODE_BASED);
+		_hierarchy = hierarchy;
+		_weights = weights;
+		_virtualExplorer = graph.createEdgeExplorer();
+	}
+
+	private boolean isVirtual(int node) {
+		return node >= _hierarchy.getNodes();
+	}
+
+	@Override
+	public Path calcPath(int from, int to) {
+		checkAlreadyRun();
+		_from = from;
+		_to = to;
+		_forward = new SearchDirection(true, from);
+		_backward = new SearchDirection(false, to);
+
+		while (!finished() && !isMaxVisitedNodesExceeded()) {
+			if (_backward.isFinished() || (!_forward.isFinished() && _forward.queue.peek().weight <= _backward.queue.peek().weight))
+				_forward.settleNext(_backward);
+			else
+				_backward.settleNext(_forward);
+		}
+
+		return extractPath();
+	}
+
+	@Override
+	protected boolean finished() {
+		return _forward.isFinished() && _backward.isFinished();
+	}
+
+	@Override
+	protected Path extractPath() {
+		if (_meetingNode < 0)
+			return createEmptyPath();
+
+		UnpackedPath path = new UnpackedPath(graph, weighting);
+
+		// the labels of the forward search lead back from the meeting node to the start
+		IntArrayList forwardLabels = new IntArrayList();
+		Label label = _forward.labels.get(_meetingNode);
+		while (label.parent != null) {
+			forwardLabels.add(label.node);
+			label = label.parent;
+		}
+		for (int i = forwardLabels.size() - 1; i >= 0; i--) {
+			label = _forward.labels.get(forwardLabels.get(i));
+			addEdge(path, label.edge, label.parent.node, label.node);
+		}
+
+		label = _backward.labels.get(_meetingNode);
+		while (label.parent != null) {
+			addEdge(path, label.edge, label.node, label.parent.node);
+			label = label.parent;
+		}
+
+		return path.finish(_from, _to, _bestWeight);
+	}
+
+	/**
+	 * Adds the edges of the graph an arc or a virtual edge traversed from fromNode to toNode stands for.
+	 */
+	private void addEdge(UnpackedPath path, int edge, int fromNode, int toNode) {
+		if (isVirtual(fromNode) || isVirtual(toNode)) {
+			path.add(edge, toNode);
+			return;
+		}
+
+		// arcs and the nodes they are traversed from and to, the last one is unpacked next
+		IntArrayList stack = new IntArrayList();
+		stack.add(edge, fromNode, toNode);
+		while (!stack.isEmpty()) {
+			int to = stack.get(stack.size() - 1);
+			int from = stack.get(stack.size() - 2);
+			int arc = stack.get(stack.size() - 3);
+			stack.elementsCount -= 3;
+
+			int bestEdge = EdgeIterator.NO_EDGE;
+			double bestWeight = Double.POSITIVE_INFINITY;
+			for (int i = _hierarchy.getFirstBaseEdge(arc); i < _hierarchy.getLastBaseEdge(arc); i++) {
+				int baseEdge = _hierarchy.getBaseEdge(i);
+				double weight = weighting.calcWeight(graph.getEdgeIteratorState(baseEdge, to), false, EdgeIterator.NO_EDGE);
+				if (weight < bestWeight) {
+					bestWeight = weight;
+					bestEdge = baseEdge;
+				}
+			}
+
+			// the triangle with the lower arcs from the start and to the end of the arc
+			int firstArc = -1;
+			int secondArc = -1;
+			int i = _hierarchy.getFirstDownArc(from);
+			int j = _hierarchy.getFirstDownArc(to);
+			while (i < _hierarchy.getLastDownArc(from) && j < _hierarchy.getLastDownArc(to)) {
+				int lowerFrom = _hierarchy.getDownArc(i);
+				int lowerTo = _hierarchy.getDownArc(j);
+				int cornerFrom = _hierarchy.getTail(lowerFrom);
+				int cornerTo = _hierarchy.getTail(lowerTo);
+				if (cornerFrom < cornerTo) {
+					i++;
+				} else if (cornerFrom > cornerTo) {
+					j++;
+				} else {
+					double weight = _weights.getWeight(lowerFrom, false) + _weights.getWeight(lowerTo, true);
+					if (weight < bestWeight) {
+						bestWeight = weight;
+						firstArc = lowerFrom;
+						secondArc = lowerTo;
+					}
+					i++;
+					j++;
+				}
+			}
+
+			if (firstArc < 0) {
+				path.add(bestEdge, to);
+			} else {
+				int corner = _hierarchy.getTail(firstArc);
+				stack.add(secondArc, corner, to);
+				stack.add(firstArc, from, corner);
+			}
+		}
+	}
+
+	@Override
+	public int getVisitedNodes() {
+		return _visitedNodes;
+	}
+
+	@Override
+	public String getName() {
+		return "customized_ch";
+	}
+}
@@ -0,0 +1,393 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntArrayDeque;
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import heigit.ors.routing.graphhopper.extensions.edgefilters.DownwardSearchEdgeFilter;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.UpwardSearchEdgeFilter;
+
+/**
+ * RPHAST many-to-many search that produces the same shortest path trees as {@link RPHASTAlgorithm}, but keeps them
+ * in a {@link MultiTreeSPTable} and uses an {@link IntDoubleMinHeap} instead of one object per tree and node.
+ * <p>
+ * Both the table and the heap are kept per thread and reused by subsequent searches, so the result returned by
+ * {@link #calcPaths(int[], int[])} is only valid until the next search is started on the same thread or
+ * {@link #release()} is called. The arrays of a search storing more than {@link #MAX_RETAINED_SLOTS} slots of all trees
+ * are dropped on release, so that a single large matrix does not keep its memory assigned to the thread.
+ * <p>
+ * The target graph of phase I is split into the part on the contraction hierarchies graph, which only depends on
+ * the target nodes and can be taken from a {@link TargetGraphCache}, and a small overlay holding the edges of the
+ * virtual target nodes of the current query graph.
+ */
+public class FlatRPHASTAlgorithm {
+	private static final ThreadLocal<MultiTreeSPTable> SPT_TABLES = ThreadLocal.withInitial(MultiTreeSPTable::new);
+	private static final ThreadLocal<IntDoubleMinHeap> HEAPS = ThreadLocal.withInitial(IntDoubleMinHeap::new);
+	static final int MAX_RETAINED_SLOTS = 1 << 20;
+
+	private final Graph _graph;
+	private final CHGraph _chGraph;
+	private final Weighting _weighting;
+	private final UpwardSearchEdgeFilter _upwardEdgeFilter;
+	private final DownwardSearchEdgeFilter _downwardEdgeFilter;
+	private final EdgeExplorer _outEdgeExplorer;
+	private MultiTreeSPTable _table;
+	private IntDoubleMinHeap _heap;
+	private TargetGraphCache _targetGraphCache;
+	private PreparedTargetGraph _targetGraph;
+	private PreparedTargetGraph _targetOverlay;
+	private int _visitedCountFrom;
+	private int _visitedCountTo;
+
+	public FlatRPHASTAlgorithm(Graph graph, Weighting weighting, TraversalMode traversalMode) {
+		if (traversalMode.isEdgeBased())
+			throw new IllegalStateException("Edge-based behavior not supported");
+
+		_graph = graph;
+		_weighting = weighting;
+
+		CHGraph chGraph = null;
+		if (graph instanceof CHGraph)
+			chGraph = (CHGraph) graph;
+		else if (graph instanceof QueryGraph)
+			chGraph = (CHGraph) ((QueryGraph) graph).getMainGraph();
+
+		_chGraph = chGraph;
+		_upwardEdgeFilter = new UpwardSearchEdgeFilter(chGraph, weighting.getFlagEncoder());
+		_downwardEdgeFilter = new DownwardSearchEdgeFilter(chGraph, weighting.getFlagEncoder());
+		_outEdgeExplorer = graph.createEdgeExplorer();
+	}
+
+	public void setTargetGraphCache(TargetGraphCache cache) {
+		_targetGraphCache = cache;
+	}
+
+	public void prepare(int[] sources, int[] targets) {
+		int mainNodes = _chGraph.getNodes();
+		IntArrayList seeds = new IntArrayList(targets.length);
+		PreparedTargetGraph.Builder overlay = new PreparedTargetGraph.Builder(16);
+		IntArrayDeque queue = new IntArrayDeque(16);
+
+		for (int i = 0; i < targets.length; i++) {
+			int nodeId = targets[i];
+			if (nodeId < 0)
+				continue;
+
+			if (nodeId < mainNodes)
+				seeds.add(nodeId);
+			else if (overlay.addNode(nodeId))
+				queue.addLast(nodeId);
+		}
+
+		// Virtual target nodes only exist in the query graph of this request. Their downward edges go to the overlay,
+		// the real nodes reached from them are treated like additional targets of the cacheable part.
+		while (!queue.isEmpty()) {
+			int baseNode = queue.removeFirst();
+			EdgeIterator iter = _outEdgeExplorer.setBaseNode(baseNode);
+			_downwardEdgeFilter.setBaseNode(baseNode);
+
+			while (iter.next()) {
+				if (!_downwardEdgeFilter.accept(iter))
+					continue;
+
+				int adjNode = iter.getAdjNode();
+				boolean isNew = overlay.addNode(adjNode);
+				overlay.addEdge(adjNode, iter.getEdge(), baseNode, PreparedTargetGraph.calcDownwardWeight(_graph, _weighting, iter.getEdge(), baseNode));
+
+				if (adjNode < mainNodes)
+					seeds.add(adjNode);
+				else if (isNew)
+					queue.addLast(adjNode);
+			}
+		}
+
+		_targetOverlay = overlay.isEmpty() ? null : overlay.build();
+
+		int[] seedNodes = seeds.toArray();
+		Arrays.sort(seedNodes);
+		seedNodes = removeDuplicates(seedNodes);
+
+		String weightingName = _weighting.toString();
+		_targetGraph = _targetGraphCache == null ? null : _targetGraphCache.get(weightingName, seedNodes);
+
+		if (_targetGraph == null) {
+			_targetGraph = PreparedTargetGraph.create(_chGraph, _downwardEdgeFilter, _weighting, seedNodes);
+			if (_targetGraphCache != null)
+				_targetGraphCache.put(weightingName, seedNodes, _targetGraph);
+		}
+	}
+
+	private static int[] removeDuplicates(int[] sorted) {
+		int count = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1])
+				sorted[count++] = sorted[i];
+		}
+		return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+	}
+
+	/**
+	 * Uses the target graph prepared by another instance for the same targets instead of calling prepare. The target
+	 * graph is only read by the downward search, so it can be shared between instances running concurrently.
+	 */
+	public void shareTargetGraph(FlatRPHASTAlgorithm preparedAlgorithm) {
+		_targetGraph = preparedAlgorithm._targetGraph;
+		_targetOverlay = preparedAlgorithm._targetOverlay;
+	}
+
+	public PreparedTargetGraph getTargetGraph() {
+		return _targetGraph;
+	}
+
+	/**
+	 * Computes the shortest path trees of all sources.
+	 *
+	 * @return the slots in {@link #getTable()} of the target nodes, -1 for targets that have not been reached
+	 */
+	public int[] calcPaths(int[] from, int[] to) {
+		// taken when searching, as the instance may have been created on another thread
+		_table = SPT_TABLES.get();
+		_heap = HEAPS.get();
+		_table.init(_graph.getNodes(), from.length);
+		_heap.clear();
+
+		for (int i = 0; i < from.length; i++) {
+			if (from[i] == -1)
+				continue;
+
+			//If two queried points are on the same node, this case can occur
+			int slot = _table.getSlot(from[i]);
+			if (slot >= 0) {
+				_table.setWeight(slot, i, 0.0);
+				continue;
+			}
+
+			slot = _table.addSlot(from[i]);
+			_table.resetUpdate(slot, true);
+			_table.setTotalWeight(slot, Double.POSITIVE_INFINITY);
+			_table.setWeight(slot, i, 0.0);
+			_table.setVisited(slot, true);
+			_heap.push(slot, Double.POSITIVE_INFINITY);
+		}
+
+		while (!_heap.isEmpty()) {
+			fillEdgesUpward(_heap.poll());
+			_visitedCountFrom++;
+		}
+
+		_heap.clear();
+
+		if (_targetGraph.hasTopologicalOrder()) {
+			sweepDownward();
+
+			// the overlay is tiny but may contain cycles between virtual nodes, so it is searched with the queue
+			if (_targetOverlay != null) {
+				for (int i = 0; i < _targetOverlay.getNodesCount(); i++) {
+					int slot = _table.getSlot(_targetOverlay.getNode(i));
+					if (slot >= 0) {
+						_table.setVisited(slot, true);
+						_heap.push(slot, _table.updateTotalWeight(slot));
+					}
+				}
+				runDownwardSearch(false);
+			}
+		} else {
+			int highestSlot = _upwardEdgeFilter.getHighestNode() < 0 ? -1 : _table.getSlot(_upwardEdgeFilter.getHighestNode());
+			if (highestSlot >= 0) {
+				_table.setVisited(highestSlot, true);
+				_table.resetUpdate(highestSlot, true);
+				_heap.push(highestSlot, _table.getTotalWeight(highestSlot));
+			}
+
+			for (int i = 0; i < from.length; i++) {
+				if (from[i] == -1)
+					continue;
+
+				int slot = _table.getSlot(from[i]);
+				_table.setUpdate(slot, i, true);
+				_heap.push(slot, _table.getTotalWeight(slot));
+			}
+
+			runDownwardSearch(true);
+		}
+
+		int[] targetSlots = new int[to.length];
+		for (int i = 0; i < to.length; ++i)
+			targetSlots[i] = to[i] == -1 ? -1 : _table.getSlot(to[i]);
+
+		return targetSlots;
+	}
+
+	public MultiTreeSPTable getTable() {
+		return _table;
+	}
+
+	/**
+	 * Hands the table and the heap of the last search back to the thread once the result has been read. They are
+	 * dropped instead if the table holds more than {@link #MAX_RETAINED_SLOTS} slots of all trees.
+	 */
+	public void release() {
+		if (_table == null)
+			return;
+
+		if ((long) _table.size() * _table.getNumberOfTrees() > MAX_RETAINED_SLOTS) {
+			SPT_TABLES.remove();
+			HEAPS.remove();
+		}
+		_table = null;
+		_heap = null;
+	}
+
+	public int getVisitedNodes() {
+		return _visitedCountFrom + _visitedCountTo;
+	}
+
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	@Override
+	public String toString() {
+		return getName() + "|" + _weighting;
+	}
+
+	private void fillEdgesUpward(int slot) {
+		int baseNode = _table.getNode(slot);
+		EdgeIterator iter = _outEdgeExplorer.setBaseNode(baseNode);
+
+		if (iter == null) // we reach one of the target nodes
+			return;
+
+		_upwardEdgeFilter.setBaseNode(baseNode);
+
+		while (iter.next()) {
+			if (!_upwardEdgeFilter.accept(iter))
+				continue;
+
+			_upwardEdgeFilter.updateHighestNode(iter);
+
+			double edgeWeight = _weighting.calcWeight(iter, false, 0);
+			if (Double.isInfinite(edgeWeight))
+				continue;
+
+			int adjNode = iter.getAdjNode();
+			int adjSlot = _table.getSlot(adjNode);
+
+			if (adjSlot < 0) {
+				adjSlot = _table.addSlot(adjNode);
+				_table.initFromParent(adjSlot, slot, iter.getEdge(), edgeWeight);
+				_heap.push(adjSlot, _table.getTotalWeight(adjSlot));
+			} else if (_table.relax(adjSlot, slot, iter.getEdge(), edgeWeight, true)) {
+				_heap.push(adjSlot, _table.updateTotalWeight(adjSlot));
+			}
+		}
+
+		if (!_targetGraph.containsNode(baseNode) && (_targetOverlay == null || !_targetOverlay.containsNode(baseNode)))
+			_table.resetUpdate(slot, false);
+	}
+
+	/**
+	 * Downward search in topological order of the target graph. When a node is scanned all nodes with an edge to it
+	 * have been scanned before, so its weights are final and every node is scanned exactly once.
+	 */
+	private void sweepDownward() {
+		int nodesCount = _targetGraph.getNodesCount();
+
+		for (int pos = 0; pos < nodesCount; pos++) {
+			int index = _targetGraph.getOrderedIndex(pos);
+			int slot = _table.getSlot(_targetGraph.getNode(index));
+			if (slot < 0)
+				continue;
+
+			int end = _targetGraph.getEdgesEnd(index);
+
+			for (int i = _targetGraph.getEdgesStart(index); i < end; i++) {
+				double edgeWeight = _targetGraph.getWeight(i);
+				if (Double.isInfinite(edgeWeight))
+					continue;
+
+				int adjNode = _targetGraph.getAdjNode(i);
+				int adjSlot = _table.getSlot(adjNode);
+
+				if (adjSlot < 0) {
+					adjSlot = _table.addSlot(adjNode);
+					_table.initFromParent(adjSlot, slot, _targetGraph.getEdge(i), edgeWeight);
+				} else {
+					_table.relax(adjSlot, slot, _targetGraph.getEdge(i), edgeWeight, false);
+				}
+			}
+
+			_visitedCountTo++;
+		}
+	}
+
+	private void runDownwardSearch(boolean includeTargetGraph) {
+		while (!_heap.isEmpty()) {
+			int slot = _heap.poll();
+			int node = _table.getNode(slot);
+			if (includeTargetGraph)
+				fillEdgesDownward(slot, _targetGraph, node);
+			if (_targetOverlay != null)
+				fillEdgesDownward(slot, _targetOverlay, node);
+			_visitedCountTo++;
+		}
+	}
+
+	private void fillEdgesDownward(int slot, PreparedTargetGraph targetGraph, int node) {
+		int index = targetGraph.getNodeIndex(node);
+		if (index < 0)
+			return;
+
+		int end = targetGraph.getEdgesEnd(index);
+
+		for (int i = targetGraph.getEdgesStart(index); i < end; i++) {
+			double edgeWeight = targetGraph.getWeight(i);
+			if (Double.isInfinite(edgeWeight))
+				continue;
+
+			int edge = targetGraph.getEdge(i);
+			int adjNode = targetGraph.getAdjNode(i);
+			int adjSlot = _table.getSlot(adjNode);
+
+			if (adjSlot < 0) {
+				adjSlot = _table.addSlot(adjNode);
+				_table.initFromParent(adjSlot, slot, edge, edgeWeight);
+				_table.setVisited(adjSlot, true);
+				_heap.push(adjSlot, _table.getTotalWeight(adjSlot));
+			} else {
+				boolean improved = _table.relax(adjSlot, slot, edge, edgeWeight, false);
+				double totalWeight = _table.updateTotalWeight(adjSlot);
+
+				if (!_table.isVisited(adjSlot)) {
+					// The node has been assigned a weight in the upward pass. We need to use it in the
+					// downward pass to access lower level nodes.
+					_table.setVisited(adjSlot, true);
+					_heap.push(adjSlot, totalWeight);
+				} else if (improved) {
+					_heap.push(adjSlot, totalWeight);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of non-negative int keys ordered by a double value. Each key is contained at most once, pushing
+ * an existing key updates its value in place. Keys are expected to be dense (e.g. slot or node indices) as the
+ * position of every key is kept in a plain array.
+ */
+public class IntDoubleMinHeap {
+	private int[] _keys;
+	private double[] _values;
+	private int[] _positions;
+	private int _size;
+
+	public IntDoubleMinHeap() {
+		this(64);
+	}
+
+	public IntDoubleMinHeap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		_keys = new int[capacity];
+		_values = new double[capacity];
+		_positions = new int[capacity];
+		Arrays.fill(_positions, -1);
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	public boolean contains(int key) {
+		return key < _positions.length && _positions[key] >= 0;
+	}
+
+	/**
+	 * Inserts the key or, if it is already contained, changes its value.
+	 */
+	public void push(int key, double value) {
+		if (key >= _positions.length)
+			growPositions(key + 1);
+
+		int pos = _positions[key];
+		if (pos < 0) {
+			if (_size == _keys.length) {
+				int newCapacity = _keys.length + (_keys.length >> 1) + 1;
+				_keys = Arrays.copyOf(_keys, newCapacity);
+				_values = Arrays.copyOf(_values, newCapacity);
+			}
+
+			pos = _size++;
+			_keys[pos] = key;
+			_values[pos] = value;
+			_positions[key] = pos;
+			siftUp(pos);
+		} else {
+			double oldValue = _values[pos];
+			_values[pos] = value;
+			if (value < oldValue)
+				siftUp(pos);
+			else if (value > oldValue)
+				siftDown(pos);
+		}
+	}
+
+	public int peekKey() {
+		if (_size == 0)
+			throw new IllegalStateException("Heap is empty");
+		return _keys[0];
+	}
+
+	public double peekValue() {
+		if (_size == 0)
+			throw new IllegalStateException("Heap is empty");
+		return _values[0];
+	}
+
+	/**
+	 * Removes the key with the smallest value and returns it.
+	 */
+	public int poll() {
+		if (_size == 0)
+			throw new IllegalStateException("Heap is empty");
+
+		int key = _keys[0];
+		_positions[key] = -1;
+		_size--;
+
+		if (_size > 0) {
+			_keys[0] = _keys[_size];
+			_values[0] = _values[_size];
+			_positions[_keys[0]] = 0;
+			siftDown(0);
+		}
+
+		return key;
+	}
+
+	/**
+	 * Removes all keys. Only the positions of contained keys are touched, so clearing a reused heap does not depend on
+	 * the largest key ever pushed.
+	 */
+	public void clear() {
+		for (int i = 0; i < _size; i++)
+			_positions[_keys[i]] = -1;
+		_size = 0;
+	}
+
+	private void siftUp(int pos) {
+		int key = _keys[pos];
+		double value = _values[pos];
+
+		while (pos > 0) {
+			int parent = (pos - 1) >> 1;
+			if (_values[parent] <= value)
+				break;
+
+			_keys[pos] = _keys[parent];
+			_values[pos] = _values[parent];
+			_positions[_keys[pos]] = pos;
+			pos = parent;
+		}
+
+		_keys[pos] = key;
+		_values[pos] = value;
+		_positions[key] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int key = _keys[pos];
+		double value = _values[pos];
+		int half = _size >> 1;
+
+		while (pos < half) {
+			int child = (pos << 1) + 1;
+			int right = child + 1;
+			if (right < _size && _values[right] < _values[child])
+				child = right;
+
+			if (value <= _values[child])
+				break;
+
+			_keys[pos] = _keys[child];
+			_values[pos] = _values[child];
+			_positions[_keys[pos]] = pos;
+			pos = child;
+		}
+
+		_keys[pos] = key;
+		_values[pos] = value;
+		_positions[key] = pos;
+	}
+
+	private void growPositions(int minCapacity) {
+		int oldLength = _positions.length;
+		int newLength = Math.max(minCapacity, oldLength + (oldLength >> 1));
+		_positions = Arrays.copyOf(_positions, newLength);
+		Arrays.fill(_positions, oldLength, newLength, -1);
+	}
+}
@@ -0,0 +1,251 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * Array based counterpart of {@link heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntry}. Every
+ * settled node gets a slot, and the per tree values (weight, edge, parent slot, update flag) of a slot are stored
+ * contiguously at <code>slot * numberOfTrees + tree</code> in flat primitive arrays.
+ * <p>
+ * A table is meant to be reused: {@link #init(int, int)} only resets the slots touched by the previous search and
+ * keeps all allocated arrays.
+ */
+public class MultiTreeSPTable {
+	private static final int NO_SLOT = -1;
+
+	private int _numTrees;
+	private int _size;
+
+	private int[] _nodeToSlot = new int[0];
+	private int[] _slotNodes = new int[0];
+	private double[] _totalWeights = new double[0];
+	private boolean[] _visited = new boolean[0];
+
+	private double[] _weights = new double[0];
+	private int[] _edges = new int[0];
+	private int[] _parents = new int[0];
+	private boolean[] _updates = new boolean[0];
+
+	/**
+	 * Prepares the table for a new search.
+	 *
+	 * @param numNodes the number of nodes of the graph the search runs on (including virtual nodes)
+	 * @param numTrees the number of shortest path trees, i.e. the number of sources
+	 */
+	public void init(int numNodes, int numTrees) {
+		if (numNodes > _nodeToSlot.length) {
+			_nodeToSlot = new int[numNodes];
+			Arrays.fill(_nodeToSlot, NO_SLOT);
+		} else {
+			for (int i = 0; i < _size; i++)
+				_nodeToSlot[_slotNodes[i]] = NO_SLOT;
+		}
+
+		_size = 0;
+		_numTrees = numTrees;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public int getNumberOfTrees() {
+		return _numTrees;
+	}
+
+	/**
+	 * Returns the slot of the given node or -1 if the node has not been reached yet.
+	 */
+	public int getSlot(int node) {
+		return _nodeToSlot[node];
+	}
+
+	public int getNode(int slot) {
+		return _slotNodes[slot];
+	}
+
+	/**
+	 * Adds a slot for the node with all trees unreached.
+	 */
+	public int addSlot(int node) {
+		ensureCapacity(_size + 1);
+
+		int slot = _size++;
+		_nodeToSlot[node] = slot;
+		_slotNodes[slot] = node;
+		_totalWeights[slot] = 0.0;
+		_visited[slot] = false;
+
+		int from = slot * _numTrees;
+		int to = from + _numTrees;
+		Arrays.fill(_weights, from, to, Double.POSITIVE_INFINITY);
+		Arrays.fill(_edges, from, to, EdgeIterator.NO_EDGE);
+		Arrays.fill(_parents, from, to, NO_SLOT);
+		Arrays.fill(_updates, from, to, false);
+
+		return slot;
+	}
+
+	/**
+	 * Initializes the trees of a freshly added slot from the parent slot, i.e. every tree that reaches the parent
+	 * reaches the slot via the given edge.
+	 */
+	public void initFromParent(int slot, int parentSlot, int edge, double edgeWeight) {
+		int base = slot * _numTrees;
+		int parentBase = parentSlot * _numTrees;
+		double total = 0.0;
+
+		for (int i = 0; i < _numTrees; ++i) {
+			double entryWeight = _weights[parentBase + i];
+			if (entryWeight == Double.POSITIVE_INFINITY)
+				continue;
+
+			double weight = edgeWeight + entryWeight;
+			_weights[base + i] = weight;
+			_edges[base + i] = edge;
+			_parents[base + i] = parentSlot;
+			_updates[base + i] = true;
+			total += weight;
+		}
+
+		_totalWeights[slot] = total;
+	}
+
+	/**
+	 * Relaxes all trees of the slot over the given edge from the parent slot.
+	 *
+	 * @param onlyUpdated if true, only trees that have been updated in the parent slot are considered
+	 * @return true if the weight of at least one tree has been improved
+	 */
+	public boolean relax(int slot, int parentSlot, int edge, double edgeWeight, boolean onlyUpdated) {
+		int base = slot * _numTrees;
+		int parentBase = parentSlot * _numTrees;
+		boolean improved = false;
+
+		for (int i = 0; i < _numTrees; ++i) {
+			int parentIndex = parentBase + i;
+			double entryWeight = _weights[parentIndex];
+
+			if (entryWeight == Double.POSITIVE_INFINITY)
+				continue;
+
+			if (onlyUpdated && !_updates[parentIndex])
+				continue;
+
+			double weight = edgeWeight + entryWeight;
+			int index = base + i;
+
+			if (_weights[index] > weight) {
+				_weights[index] = weight;
+				_edges[index] = edge;
+				_parents[index] = parentSlot;
+				_updates[index] = true;
+				improved = true;
+			}
+		}
+
+		return improved;
+	}
+
+	/**
+	 * Recomputes the total weight of the slot as the sum of all finite tree weights.
+	 */
+	public double updateTotalWeight(int slot) {
+		int base = slot * _numTrees;
+		double total = 0.0;
+
+		for (int i = 0; i < _numTrees; i++) {
+			double weight = _weights[base + i];
+			if (weight != Double.POSITIVE_INFINITY)
+				total += weight;
+		}
+
+		_totalWeights[slot] = total;
+		return total;
+	}
+
+	public double getTotalWeight(int slot) {
+		return _totalWeights[slot];
+	}
+
+	public void setTotalWeight(int slot, double weight) {
+		_totalWeights[slot] = weight;
+	}
+
+	public boolean isVisited(int slot) {
+		return _visited[slot];
+	}
+
+	public void setVisited(int slot, boolean visited) {
+		_visited[slot] = visited;
+	}
+
+	public void resetUpdate(int slot, boolean value) {
+		int from = slot * _numTrees;
+		Arrays.fill(_updates, from, from + _numTrees, value);
+	}
+
+	public void setUpdate(int slot, int tree, boolean value) {
+		_updates[slot * _numTrees + tree] = value;
+	}
+
+	public double getWeight(int slot, int tree) {
+		return _weights[slot * _numTrees + tree];
+	}
+
+	public void setWeight(int slot, int tree, double weight) {
+		_weights[slot * _numTrees + tree] = weight;
+	}
+
+	public int getEdge(int slot, int tree) {
+		return _edges[slot * _numTrees + tree];
+	}
+
+	/**
+	 * Returns the parent slot of the tree at the given slot or -1 if there is none.
+	 */
+	public int getParent(int slot, int tree) {
+		return _parents[slot * _numTrees + tree];
+	}
+
+	private void ensureCapacity(int slots) {
+		int numTrees = Math.max(_numTrees, 1);
+		int capacity = Math.min(_slotNodes.length, _weights.length / numTrees);
+		if (slots <= capacity)
+			return;
+
+		int newCapacity = Math.max(slots, capacity + (capacity >> 1) + 16);
+
+		if (_slotNodes.length < newCapacity) {
+			_slotNodes = Arrays.copyOf(_slotNodes, newCapacity);
+			_totalWeights = Arrays.copyOf(_totalWeights, newCapacity);
+			_visited = Arrays.copyOf(_visited, newCapacity);
+		}
+
+		long itemsCapacity = (long) newCapacity * numTrees;
+		if (itemsCapacity > Integer.MAX_VALUE - 8)
+			throw new IllegalStateException("Shortest path tree table exceeds the maximum array size.");
+
+		if (_weights.length < itemsCapacity) {
+			_weights = Arrays.copyOf(_weights, (int) itemsCapacity);
+			_edges = Arrays.copyOf(_edges, (int) itemsCapacity);
+			_parents = Arrays.copyOf(_parents, (int) itemsCapacity);
+			_updates = Arrays.copyOf(_updates, (int) itemsCapacity);
+		}
+	}
+}
@@ -0,0 +1,268 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayDeque;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import heigit.ors.routing.graphhopper.extensions.edgefilters.DownwardSearchEdgeFilter;
+
+/**
+ * Immutable target graph of the RPHAST downward search in compressed sparse row layout. The downward edges of the
+ * node with index i are stored at [getEdgesStart(i), getEdgesEnd(i)) of the edge arrays, together with the weight of
+ * traversing them downwards.
+ * <p>
+ * If the graph is acyclic (apart from loops), the nodes are additionally kept in topological order, i.e. every node
+ * comes after all nodes with an edge to it. A downward search can then settle the nodes with one linear scan instead of
+ * a priority queue.
+ * <p>
+ * Instances are not modified after {@link Builder#build()}, so they can be shared between threads and cached.
+ */
+public class PreparedTargetGraph {
+	private final IntIntHashMap _nodeIndex;
+	private final int[] _nodes;
+	private final int[] _edgeOffsets;
+	private final int[] _edgeIds;
+	private final int[] _adjNodes;
+	private final double[] _weights;
+	private final int[] _order;
+
+	private PreparedTargetGraph(IntIntHashMap nodeIndex, int[] nodes, int[] edgeOffsets, int[] edgeIds, int[] adjNodes, double[] weights, int[] order) {
+		_nodeIndex = nodeIndex;
+		_nodes = nodes;
+		_edgeOffsets = edgeOffsets;
+		_edgeIds = edgeIds;
+		_adjNodes = adjNodes;
+		_weights = weights;
+		_order = order;
+	}
+
+	/**
+	 * Phase I of RPHAST: collects all edges accepted by the downward filter on the paths from the highest node to the
+	 * given nodes. Negative node ids are ignored.
+	 */
+	public static PreparedTargetGraph create(Graph graph, DownwardSearchEdgeFilter downwardEdgeFilter, Weighting weighting, int[] nodes) {
+		Builder builder = new Builder(Math.max(nodes.length * 8, 16));
+		IntArrayDeque queue = new IntArrayDeque(Math.max(nodes.length, 16));
+		EdgeExplorer explorer = graph.createEdgeExplorer();
+
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i] >= 0 && builder.addNode(nodes[i]))
+				queue.addLast(nodes[i]);
+		}
+
+		while (!queue.isEmpty()) {
+			int baseNode = queue.removeFirst();
+			EdgeIterator iter = explorer.setBaseNode(baseNode);
+			downwardEdgeFilter.setBaseNode(baseNode);
+
+			while (iter.next()) {
+				if (!downwardEdgeFilter.accept(iter))
+					continue;
+
+				int adjNode = iter.getAdjNode();
+				boolean isNew = builder.addNode(adjNode);
+				builder.addEdge(adjNode, iter.getEdge(), baseNode, calcDownwardWeight(graph, weighting, iter.getEdge(), baseNode));
+
+				if (isNew)
+					queue.addLast(adjNode);
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Returns the weight of traversing the edge towards adjNode, i.e. in the direction of the downward search.
+	 */
+	public static double calcDownwardWeight(Graph graph, Weighting weighting, int edge, int adjNode) {
+		EdgeIteratorState state = graph.getEdgeIteratorState(edge, adjNode);
+		return weighting.calcWeight(state, false, 0);
+	}
+
+	public int getNodesCount() {
+		return _nodes.length;
+	}
+
+	public int getEdgesCount() {
+		return _edgeIds.length;
+	}
+
+	public boolean containsNode(int node) {
+		return _nodeIndex.containsKey(node);
+	}
+
+	/**
+	 * Returns the index of the node or -1 if the node is not part of the graph.
+	 */
+	public int getNodeIndex(int node) {
+		return _nodeIndex.getOrDefault(node, -1);
+	}
+
+	public boolean hasTopologicalOrder() {
+		return _order != null;
+	}
+
+	/**
+	 * Returns the index of the node at the given position of the topological order.
+	 */
+	public int getOrderedIndex(int position) {
+		return _order[position];
+	}
+
+	public int getNode(int index) {
+		return _nodes[index];
+	}
+
+	public int getEdgesStart(int index) {
+		return _edgeOffsets[index];
+	}
+
+	public int getEdgesEnd(int index) {
+		return _edgeOffsets[index + 1];
+	}
+
+	public int getEdge(int edgeIndex) {
+		return _edgeIds[edgeIndex];
+	}
+
+	public int getAdjNode(int edgeIndex) {
+		return _adjNodes[edgeIndex];
+	}
+
+	public double getWeight(int edgeIndex) {
+		return _weights[edgeIndex];
+	}
+
+	public static class Builder {
+		private final IntIntHashMap _nodeIndex;
+		private final IntArrayList _nodes;
+		private final IntArrayList _edgeSources = new IntArrayList();
+		private final IntArrayList _edgeIds = new IntArrayList();
+		private final IntArrayList _adjNodes = new IntArrayList();
+		private final DoubleArrayList _weights = new DoubleArrayList();
+
+		public Builder(int expectedNodes) {
+			_nodeIndex = new IntIntHashMap(expectedNodes);
+			_nodes = new IntArrayList(expectedNodes);
+		}
+
+		/**
+		 * @return true if the node has not been part of the graph before
+		 */
+		public boolean addNode(int node) {
+			if (_nodeIndex.containsKey(node))
+				return false;
+
+			_nodeIndex.put(node, _nodes.size());
+			_nodes.add(node);
+			return true;
+		}
+
+		/**
+		 * Adds the downward edge from baseNode to adjNode. baseNode is added to the graph if necessary.
+		 */
+		public void addEdge(int baseNode, int edge, int adjNode, double weight) {
+			addNode(baseNode);
+
+			_edgeSources.add(_nodeIndex.get(baseNode));
+			_edgeIds.add(edge);
+			_adjNodes.add(adjNode);
+			_weights.add(weight);
+		}
+
+		public boolean isEmpty() {
+			return _nodes.isEmpty();
+		}
+
+		public PreparedTargetGraph build() {
+			int nodesCount = _nodes.size();
+			int edgesCount = _edgeIds.size();
+			int[] offsets = new int[nodesCount + 1];
+
+			for (int i = 0; i < edgesCount; i++)
+				offsets[_edgeSources.get(i) + 1]++;
+			for (int i = 0; i < nodesCount; i++)
+				offsets[i + 1] += offsets[i];
+
+			// counting sort by source node, keeping the insertion order of the edges of each node
+			int[] next = new int[nodesCount];
+			System.arraycopy(offsets, 0, next, 0, nodesCount);
+
+			int[] edgeIds = new int[edgesCount];
+			int[] adjNodes = new int[edgesCount];
+			double[] weights = new double[edgesCount];
+
+			for (int i = 0; i < edgesCount; i++) {
+				int pos = next[_edgeSources.get(i)]++;
+				edgeIds[pos] = _edgeIds.get(i);
+				adjNodes[pos] = _adjNodes.get(i);
+				weights[pos] = _weights.get(i);
+			}
+
+			// the builder may be used further, so the graph gets its own copy of the index
+			return new PreparedTargetGraph(new IntIntHashMap(_nodeIndex), _nodes.toArray(), offsets, edgeIds, adjNodes, weights,
+					createTopologicalOrder(offsets, adjNodes));
+		}
+
+		/**
+		 * Kahn's algorithm, loops are ignored as they never improve a weight.
+		 *
+		 * @return the node indices in topological order or null if the graph contains a cycle
+		 */
+		private int[] createTopologicalOrder(int[] offsets, int[] adjNodes) {
+			int nodesCount = offsets.length - 1;
+			int[] adjIndices = new int[adjNodes.length];
+			int[] inDegrees = new int[nodesCount];
+
+			for (int index = 0; index < nodesCount; index++) {
+				for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+					int adjIndex = _nodeIndex.getOrDefault(adjNodes[i], -1);
+					if (adjIndex == index)
+						adjIndex = -1;
+
+					adjIndices[i] = adjIndex;
+					if (adjIndex >= 0)
+						inDegrees[adjIndex]++;
+				}
+			}
+
+			int[] order = new int[nodesCount];
+			int size = 0;
+
+			for (int index = 0; index < nodesCount; index++) {
+				if (inDegrees[index] == 0)
+					order[size++] = index;
+			}
+
+			for (int pos = 0; pos < size; pos++) {
+				int index = order[pos];
+				for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+					int adjIndex = adjIndices[i];
+					if (adjIndex >= 0 && --inDegrees[adjIndex] == 0)
+						order[size++] = adjIndex;
+				}
+			}
+
+			return size == nodesCount ? order : null;
+		}
+	}
+}
@@ -40,7 +40,7 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 	private PriorityQueue<MultiTreeSPEntry> _prioQueue;
 	private UpwardSearchEdgeFilter _upwardEdgeFilter;
 	private DownwardSearchEdgeFilter _downwardEdgeFilter;
-	private SubGraph _targetGraph;
+	private PreparedTargetGraph _targetGraph;
 	private boolean _finishedFrom;
 	private boolean _finishedTo;
 	private int _visitedCountFrom;
@@ -92,42 +92,23 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 
 	@Override
 	public void prepare(int[] sources, int[] targets) {
-		PriorityQueue<Integer> prioQueue = new PriorityQueue<>(100);
 		_treeEntrySize = sources.length;
 
 		// Phase I: build shortest path tree from all target nodes to the
 		// highest node
-		_targetGraph = new SubGraph(_graph);
-
-		addNodes(_targetGraph, prioQueue, targets);
-
-		while (!prioQueue.isEmpty()) {
-			int adjNode = prioQueue.poll();
-			EdgeIterator iter = _outEdgeExplorer.setBaseNode(adjNode);
-			_downwardEdgeFilter.setBaseNode(adjNode);
-
-			while (iter.next()) {
-				if (!_downwardEdgeFilter.accept(iter))
-					continue;
-
-				if (_targetGraph.addEdge(adjNode, iter, true))
-					prioQueue.add(iter.getAdjNode());
-			}
-		}
+		_targetGraph = PreparedTargetGraph.create(_graph, _downwardEdgeFilter, _weighting, targets);
+	}
 
-		//if (logger.isInfoEnabled())
-		//	_targetGraph.print();
+	public PreparedTargetGraph getTargetGraph() {
+		return _targetGraph;
 	}
 
-	private void addNodes(SubGraph graph, PriorityQueue<Integer> prioQueue, int[] nodes) {
-		for (int i = 0; i < nodes.length; i++) {
-			int nodeId = nodes[i];
-			if (nodeId >= 0) {
-				if (graph != null)
-					graph.addEdge(nodeId, null, true);
-				prioQueue.add(nodeId);
-			}
-		}
+	/**
+	 * Uses a target graph prepared by another instance for the same targets instead of calling prepare. The target
+	 * graph is only read by the downward search, so it can be shared between instances running concurrently.
+	 */
+	public void setTargetGraph(PreparedTargetGraph targetGraph) {
+		_targetGraph = targetGraph;
 	}
 
 	protected void runUpwardSearch() {
@@ -163,7 +144,7 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 			return false;
 
 		_currTo = _prioQueue.poll();
-		fillEdgesDownward(_currTo, _prioQueue, _bestWeightMapFrom, _outEdgeExplorer);
+		fillEdgesDownward(_currTo, _prioQueue, _bestWeightMapFrom);
 		_visitedCountTo++;
 
 		return true;
@@ -171,6 +152,8 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 
 	@Override
 	public MultiTreeSPEntry[] calcPaths(int[] from, int[] to) {
+		_treeEntrySize = from.length;
+
 		for (int i = 0; i < from.length; i++) {
 			if (from[i] == -1)
 			  continue;
@@ -221,7 +204,6 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 			_prioQueue.add(mspTree);
 		}
 
-		_outEdgeExplorer = _targetGraph.createExplorer();
 	//	sw = new StopWatch();
 	//	sw.start();
 		runDownwardSearch();
@@ -320,24 +302,26 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 	}
 
 	private void fillEdgesDownward(MultiTreeSPEntry currEdge, PriorityQueue<MultiTreeSPEntry> prioQueue,
-			IntObjectMap<MultiTreeSPEntry> shortestWeightMap, EdgeExplorer explorer) {
+			IntObjectMap<MultiTreeSPEntry> shortestWeightMap) {
 
-		EdgeIterator iter = explorer.setBaseNode(currEdge.adjNode);
+		int index = _targetGraph.getNodeIndex(currEdge.adjNode);
 
-		if (iter == null)
+		if (index < 0)
 			return;
 
-		while (iter.next()) {
-			_edgeWeight = _weighting.calcWeight(iter, false, 0);
+		for (int edgeIndex = _targetGraph.getEdgesStart(index); edgeIndex < _targetGraph.getEdgesEnd(index); edgeIndex++) {
+			_edgeWeight = _targetGraph.getWeight(edgeIndex);
 
 			if (!Double.isInfinite(_edgeWeight)) {
-				MultiTreeSPEntry ee = shortestWeightMap.get(iter.getAdjNode());
+				int adjNode = _targetGraph.getAdjNode(edgeIndex);
+				int edge = _targetGraph.getEdge(edgeIndex);
+				MultiTreeSPEntry ee = shortestWeightMap.get(adjNode);
 
 				if (ee == null) {
-					ee = new MultiTreeSPEntry(iter.getAdjNode(), iter.getEdge(), _edgeWeight, true, currEdge, currEdge.getSize());
+					ee = new MultiTreeSPEntry(adjNode, edge, _edgeWeight, true, currEdge, currEdge.getSize());
 					ee.visited = true;
 
-					shortestWeightMap.put(iter.getAdjNode(), ee);
+					shortestWeightMap.put(adjNode, ee);
 					prioQueue.add(ee);
 				} else {
 					_addToQueue = false;
@@ -360,7 +344,7 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 
 						if (eeItem.weight > _tmpWeight) {
 							eeItem.weight = _tmpWeight;
-							eeItem.edge = iter.getEdge();
+							eeItem.edge = edge;
 							eeItem.parent = currEdge;
 							eeItem.update = true;
 							
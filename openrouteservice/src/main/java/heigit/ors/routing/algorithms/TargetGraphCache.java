@@ -0,0 +1,126 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.storage.Graph;
+
+/**
+ * Least recently used cache of {@link PreparedTargetGraph}s, keyed by the sorted target node ids and the weighting
+ * the target graph has been prepared with.
+ * <p>
+ * There is one cache per contraction hierarchies graph. The graphs are weakly referenced, so the caches of graphs
+ * that have been replaced by a profile update are released together with the graph.
+ */
+public class TargetGraphCache {
+	private static final Map<Graph, TargetGraphCache> CACHES = new WeakHashMap<Graph, TargetGraphCache>();
+
+	private final LinkedHashMap<CacheKey, PreparedTargetGraph> _entries;
+	private long _hits;
+	private long _misses;
+
+	public TargetGraphCache(final int capacity) {
+		_entries = new LinkedHashMap<CacheKey, PreparedTargetGraph>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, PreparedTargetGraph> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cache of the given graph, query graphs share the cache of their main graph.
+	 */
+	public static TargetGraphCache getInstance(Graph graph, int capacity) {
+		if (graph instanceof QueryGraph)
+			graph = ((QueryGraph) graph).getMainGraph();
+
+		synchronized (CACHES) {
+			TargetGraphCache cache = CACHES.get(graph);
+			if (cache == null) {
+				cache = new TargetGraphCache(capacity);
+				CACHES.put(graph, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * @param weighting the name of the weighting, see {@link com.graphhopper.routing.weighting.Weighting#toString()}
+	 * @param nodes sorted node ids without duplicates
+	 */
+	public synchronized PreparedTargetGraph get(String weighting, int[] nodes) {
+		PreparedTargetGraph graph = _entries.get(new CacheKey(weighting, nodes));
+		if (graph == null)
+			_misses++;
+		else
+			_hits++;
+		return graph;
+	}
+
+	public synchronized void put(String weighting, int[] nodes, PreparedTargetGraph graph) {
+		_entries.put(new CacheKey(weighting, nodes), graph);
+	}
+
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	public synchronized long getHits() {
+		return _hits;
+	}
+
+	public synchronized long getMisses() {
+		return _misses;
+	}
+
+	public synchronized void clear() {
+		_entries.clear();
+	}
+
+	private static final class CacheKey {
+		private final String _weighting;
+		private final int[] _nodes;
+		private final int _hashCode;
+
+		public CacheKey(String weighting, int[] nodes) {
+			_weighting = weighting;
+			_nodes = nodes;
+			_hashCode = 31 * weighting.hashCode() + Arrays.hashCode(nodes);
+		}
+
+		@Override
+		public int hashCode() {
+			return _hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CacheKey))
+				return false;
+
+			CacheKey other = (CacheKey) obj;
+			return _hashCode == other._hashCode && _weighting.equals(other._weighting) && Arrays.equals(_nodes, other._nodes);
+		}
+	}
+}
@@ -13,38 +13,55 @@
  */
 package heigit.ors.routing.graphhopper.extensions;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.util.shapes.GHPoint3D;
 
+/**
+ * Shortest path tree of an isochrone search. The entries are indexed from 0 to size() - 1, the entry of the start
+ * node has no edge and no parent.
+ */
 public class AccessibilityMap {
-    private IntObjectMap<SPTEntry> map;
-    private SPTEntry edgeEntry;
-    private GHPoint3D snappedPosition;
-
-    public AccessibilityMap(IntObjectMap<SPTEntry> map, SPTEntry edgeEntry) {
+    private final int[] nodes;
+    private final int[] edges;
+    private final int[] parents;
+    private final float[] weights;
+    private final GHPoint3D snappedPosition;
 
-        this(map, edgeEntry, null);
+    public AccessibilityMap(int[] nodes, int[] edges, int[] parents, float[] weights, GHPoint3D snappedPosition) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.parents = parents;
+        this.weights = weights;
+        this.snappedPosition = snappedPosition;
     }
 
-    public AccessibilityMap(IntObjectMap<SPTEntry> map, SPTEntry edgeEntry, GHPoint3D snappedPosition) {
+    public boolean isEmpty() {
+        return nodes.length == 0;
+    }
 
-        this.map = map;
-        this.edgeEntry = edgeEntry;
-        this.snappedPosition = snappedPosition;
+    public int size() {
+        return nodes.length;
+    }
 
+    public int getNode(int index) {
+        return nodes[index];
     }
 
-    public boolean isEmpty() {
-        return map.size() == 0;
+    /**
+     * Returns the edge the node of the entry has been reached by or -1 for the start node.
+     */
+    public int getEdge(int index) {
+        return edges[index];
     }
 
-    public IntObjectMap<SPTEntry> getMap() {
-        return map;
+    /**
+     * Returns the index of the entry the node of the entry has been reached from or -1 for the start node.
+     */
+    public int getParent(int index) {
+        return parents[index];
     }
 
-    public SPTEntry getEdgeEntry() {
-        return edgeEntry;
+    public double getWeight(int index) {
+        return weights[index];
     }
 
     public GHPoint3D getSnappedPosition() {
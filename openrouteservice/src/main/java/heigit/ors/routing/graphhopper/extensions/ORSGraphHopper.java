@@ -20,19 +20,16 @@
  */
 package heigit.ors.routing.graphhopper.extensions;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import com.graphhopper.PathWrapper;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.HintsMap;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.EdgeIteratorState;
@@ -44,7 +41,14 @@ import com.graphhopper.util.Translation;
 import com.graphhopper.util.TranslationMap;
 import com.vividsolutions.jts.geom.LineString;
 import heigit.ors.mapmatching.RouteSegmentInfo;
+import heigit.ors.routing.LocationSnapCache;
 import heigit.ors.routing.RoutingProfile;
+import heigit.ors.routing.graphhopper.extensions.storages.EdgeBoundsIndex;
+import heigit.ors.routing.graphhopper.extensions.storages.OsmIdEdgesIndex;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizableHierarchy;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizedShortcutWeights;
+import heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
@@ -52,10 +56,16 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.shapes.GHPoint;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import heigit.ors.services.routing.RoutingServiceSettings;
 import heigit.ors.util.CoordTools;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,22 +74,44 @@ public class ORSGraphHopper extends GraphHopper {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private static final String TRAFFIC_EDGES_INDEX = "ext_traffic_edges";
+
+    /**
+     * Hint of requests that consider traffic on the hierarchy customized for the traffic snapshot, see
+     * {@link TrafficCHAlgorithmFactory}.
+     */
+    public static final String TRAFFIC_CH = "ch.traffic";
+
+    /**
+     * Hint with the version of the traffic snapshot read for a request, see
+     * {@link heigit.ors.routing.traffic.RealTrafficDataProvider#getSnapshot(String, long)}.
+     */
+    public static final String TRAFFIC_SNAPSHOT = "traffic.snapshot";
+
     private GraphProcessContext _procCntx;
-    private HashMap<Long, ArrayList<Integer>> osmId2EdgeIds; // one osm id can correspond to multiple edges
-    private HashMap<Integer, Long> tmcEdges;
+    private OsmIdEdgesIndex.Builder trafficEdgesBuilder; // collects the edges of TMC road types during the import
+    private OsmIdEdgesIndex trafficEdges;
+    private final Map<String, ShortcutMetricsStorage> shortcutMetrics = new HashMap<>();
+    private LocationSnapCache locationSnapCache;
+    private EdgeBoundsIndex edgeBounds;
+    private final WeightingPresets weightingPresets = new WeightingPresets();
+    private boolean useTmc;
+    // the configured graph path of the profile, which identifies its traffic data also after the graph has been swapped
+    private String profileGraphPath;
+    private TrafficCHAlgorithmFactory trafficCHFactory;
 
     // A route profile for referencing which is used to extract names of adjacent streets and other objects.
     private RoutingProfile refRouteProfile;
 
-    public ORSGraphHopper(GraphProcessContext procCntx, boolean useTmc, RoutingProfile refProfile) {
+    public ORSGraphHopper(GraphProcessContext procCntx, boolean useTmc, RoutingProfile refProfile, String profileGraphPath) {
         _procCntx = procCntx;
         this.refRouteProfile = refProfile;
         this.forDesktop();
+        this.useTmc = useTmc;
+        this.profileGraphPath = profileGraphPath;
 
-        if (useTmc) {
-            tmcEdges = new HashMap<Integer, Long>();
-            osmId2EdgeIds = new HashMap<Long, ArrayList<Integer>>();
-        }
+        if (useTmc)
+            trafficEdgesBuilder = new OsmIdEdgesIndex.Builder();
         _procCntx.init(this);
     }
 
@@ -88,7 +120,7 @@ public class ORSGraphHopper extends GraphHopper {
     }
 
     protected DataReader createReader(GraphHopperStorage tmpGraph) {
-        return initDataReader(new ORSOSMReader(tmpGraph, _procCntx, tmcEdges, osmId2EdgeIds, refRouteProfile));
+        return initDataReader(new ORSOSMReader(tmpGraph, _procCntx, trafficEdgesBuilder, refRouteProfile));
     }
 
     public boolean load(String graphHopperFolder) {
@@ -102,54 +134,71 @@ public class ORSGraphHopper extends GraphHopper {
         super.flush();
     }
 
-    @SuppressWarnings("unchecked")
     public GraphHopper importOrLoad() {
         GraphHopper gh = super.importOrLoad();
 
+        if (trafficEdgesBuilder != null) {
+            // the builder is only filled if the graph has been imported, otherwise the index is mapped from the graph folder
+            if (trafficEdgesBuilder.isEmpty())
+                trafficEdges = OsmIdEdgesIndex.load(getGraphHopperStorage().getDirectory(), TRAFFIC_EDGES_INDEX);
+            else
+                trafficEdges = OsmIdEdgesIndex.create(getGraphHopperStorage().getDirectory(), TRAFFIC_EDGES_INDEX, trafficEdgesBuilder);
 
-        if ((tmcEdges != null) && (osmId2EdgeIds != null)) {
-            java.nio.file.Path path = Paths.get(gh.getGraphHopperLocation(), "edges_ors_traffic");
-
-            if ((tmcEdges.size() == 0) || (osmId2EdgeIds.size() == 0)) {
-                // try to load TMC edges from file.
-
-                try {
-                    File file = path.toFile();
-
-                    if (file.exists()) {
-                        FileInputStream fis = new FileInputStream(path.toString());
-                        ObjectInputStream ois = new ObjectInputStream(fis);
-                        tmcEdges = (HashMap<Integer, Long>) ois.readObject();
-                        osmId2EdgeIds = (HashMap<Long, ArrayList<Integer>>) ois.readObject();
-                        ois.close();
-                        fis.close();
-                        System.out.printf("Serialized HashMap data is saved in trafficEdges");
-                    }
-                } catch (IOException ioe) {
-                    ioe.printStackTrace();
-                } catch (ClassNotFoundException c) {
-                    System.out.println("Class not found");
-                    c.printStackTrace();
-                }
-            } else {
-                // save TMC edges if needed.
-                try {
-                    FileOutputStream fos = new FileOutputStream(path.toString());
-                    ObjectOutputStream oos = new ObjectOutputStream(fos);
-                    oos.writeObject(tmcEdges);
-                    oos.writeObject(osmId2EdgeIds);
-                    oos.close();
-                    fos.close();
-                    System.out.printf("Serialized HashMap data is saved in trafficEdges");
-                } catch (IOException ioe) {
-                    ioe.printStackTrace();
-                }
-            }
+            trafficEdgesBuilder = null;
+        }
+
+        // stored in the graph folder, so this only takes time after the CH preparation
+        for (PrepareContractionHierarchies prepare : getCHFactoryDecorator().getPreparations()) {
+            // the CH graph is registered for the weighting of the preparation, not for the PreparationWeighting wrapping it
+            Weighting weighting = prepare.getWeighting();
+            shortcutMetrics.put(AbstractWeighting.weightingToFileName(weighting), ShortcutMetricsStorage.loadOrCreate(
+                    getGraphHopperStorage().getDirectory(), getGraphHopperStorage().getGraph(CHGraph.class, weighting), weighting));
+        }
+
+        // profiles for fast routing consider traffic on a hierarchy of their own, which is customized per traffic update
+        if (useTmc && getCHFactoryDecorator().isEnabled()) {
+            trafficCHFactory = new TrafficCHAlgorithmFactory(getGraphHopperStorage(), getEncodingManager().fetchEdgeEncoders().get(0),
+                    CustomizableHierarchy.loadOrCreate(getGraphHopperStorage().getDirectory(), getGraphHopperStorage()), profileGraphPath);
         }
 
+        edgeBounds = EdgeBoundsIndex.loadOrCreate(getGraphHopperStorage().getDirectory(), getGraphHopperStorage());
+
+        // the custom weightings do not depend on the encoder apart from the durations, which are not precomputed
+        if (!weightingPresets.isEmpty())
+            weightingPresets.load(getGraphHopperStorage(), getEncodingManager().fetchEdgeEncoders().get(0));
+
         return gh;
     }
 
+    @Override
+    public void close() {
+        super.close();
+
+        if (locationSnapCache != null)
+            locationSnapCache.clear();
+
+        if (trafficEdges != null)
+            trafficEdges.close();
+        for (ShortcutMetricsStorage storage : shortcutMetrics.values())
+            storage.close();
+        if (edgeBounds != null)
+            edgeBounds.close();
+        weightingPresets.close();
+    }
+
+    /**
+     * Routes on the hierarchy customized for the traffic if the request has the {@link #TRAFFIC_CH} hint. As the
+     * factory is not one of the CH preparations, such requests have to disable CH and are routed on the query graph
+     * of the base graph.
+     */
+    @Override
+    public RoutingAlgorithmFactory getAlgorithmFactory(HintsMap map) {
+        if (trafficCHFactory != null && map.getBool(TRAFFIC_CH, false))
+            return trafficCHFactory;
+
+        return super.getAlgorithmFactory(map);
+    }
+
     public RouteSegmentInfo getRouteSegment(double[] latitudes, double[] longitudes, String vehicle, EdgeFilter edgeFilter) {
         RouteSegmentInfo result = null;
 
@@ -215,14 +264,37 @@ public class ORSGraphHopper extends GraphHopper {
 
     private int _minNetworkSize = 200;
     private int _minOneWayNetworkSize = 0;
+    // same defaults as in GraphHopper, whose fields are private
+    private int _indexResolution = 300;
+    private int _indexMaxRegionSearch = 4;
     @Override
     public GraphHopper init(CmdArgs args) {
         GraphHopper ret = super.init(args);
         _minNetworkSize = args.getInt("prepare.min_network_size", _minNetworkSize);
         _minOneWayNetworkSize = args.getInt("prepare.min_one_way_network_size", _minOneWayNetworkSize);
+        _indexResolution = args.getInt("index.high_resolution", _indexResolution);
+        _indexMaxRegionSearch = args.getInt("index.max_region_search", _indexMaxRegionSearch);
         return ret;
     }
 
+    /**
+     * Creates the location index like GraphHopper does, but with a cache of snapped locations if it is enabled.
+     */
+    @Override
+    protected LocationIndex createLocationIndex(Directory dir) {
+        if (RoutingServiceSettings.getSnapCacheSize() <= 0)
+            return super.createLocationIndex(dir);
+
+        locationSnapCache = new LocationSnapCache(getGraphHopperStorage(), RoutingServiceSettings.getSnapCacheSize());
+        SnapCachingLocationIndex index = new SnapCachingLocationIndex(getGraphHopperStorage(), dir, locationSnapCache);
+        index.setResolution(_indexResolution);
+        index.setMaxRegionSearch(_indexMaxRegionSearch);
+        if (!index.loadExisting())
+            index.prepareIndex();
+
+        return index;
+    }
+
     @Override
     protected void cleanUp() {
         logger.info("call cleanUp for '" + getGraphHopperLocation() + "' ");
@@ -302,11 +374,80 @@ public class ORSGraphHopper extends GraphHopper {
         return new GeometryFactory().createLineString(coords);
     }
 
-    public HashMap<Integer, Long> getTmcGraphEdges() {
-        return tmcEdges;
+    /**
+     * Returns the index of OSM ids and edges of the TMC road types, or null if the graph has been built without traffic
+     * information.
+     */
+    public OsmIdEdgesIndex getTrafficEdges() {
+        return trafficEdges;
+    }
+
+    /**
+     * Returns the cache of snapped locations or null if it is disabled.
+     */
+    public LocationSnapCache getLocationSnapCache() {
+        return locationSnapCache;
+    }
+
+    /**
+     * Returns the spatial index of the edges by their bounding boxes.
+     */
+    public EdgeBoundsIndex getEdgeBounds() {
+        return edgeBounds;
+    }
+
+    /**
+     * Returns the precomputed combinations of custom weightings. Presets added before the graph is loaded are computed
+     * or loaded from the graph folder by {@link #importOrLoad()}.
+     */
+    public WeightingPresets getWeightingPresets() {
+        return weightingPresets;
+    }
+
+    /**
+     * Returns the durations and distances of the shortcuts of the CH graph prepared for the given weighting or null if
+     * there is no such graph. The weighting of a request matches the one of the preparation if it has been created
+     * from the same weighting name for the same encoder.
+     */
+    public ShortcutMetricsStorage getShortcutMetrics(Weighting weighting) {
+        return shortcutMetrics.get(AbstractWeighting.weightingToFileName(weighting));
+    }
+
+    /**
+     * Returns the CH preparation for the weighting with the given name, e.g. "fastest", or null if there is none.
+     */
+    public PrepareContractionHierarchies getCHPreparation(String weighting) {
+        if (!getCHFactoryDecorator().isEnabled())
+            return null;
+
+        int index = getCHFactoryDecorator().getWeightingsAsStrings().indexOf(weighting);
+        if (index < 0 || index >= getCHFactoryDecorator().getPreparations().size())
+            return null;
+
+        return getCHFactoryDecorator().getPreparations().get(index);
+    }
+
+    /**
+     * Returns the CH graph prepared for the weighting with the given name, e.g. "fastest", or null if there is none.
+     */
+    public CHGraph getCHGraph(String weighting) {
+        PrepareContractionHierarchies prepare = getCHPreparation(weighting);
+        return prepare == null ? null : getGraphHopperStorage().getGraph(CHGraph.class, prepare.getWeighting());
+    }
+
+    /**
+     * Returns true if routes with traffic can use the customizable hierarchy, i.e. the graph has been loaded with
+     * traffic information and CH is enabled for it.
+     */
+    public boolean isTrafficCHEnabled() {
+        return trafficCHFactory != null;
     }
 
-    public HashMap<Long, ArrayList<Integer>> getOsmId2EdgeIds() {
-        return osmId2EdgeIds;
+    /**
+     * Computes the shortcut weights for the traffic of the given snapshot or returns null if routes with traffic do
+     * not use the customizable hierarchy.
+     */
+    public CustomizedShortcutWeights customizeTrafficCH(TrafficSnapshot snapshot) {
+        return trafficCHFactory == null ? null : trafficCHFactory.customize(snapshot);
     }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import com.vividsolutions.jts.geom.*;
 import heigit.ors.routing.RoutingProfile;
 import heigit.ors.routing.graphhopper.extensions.reader.osmfeatureprocessors.OSMFeatureFilter;
 import heigit.ors.routing.graphhopper.extensions.reader.osmfeatureprocessors.WheelchairWayFilter;
+import heigit.ors.routing.graphhopper.extensions.storages.OsmIdEdgesIndex;
 import heigit.ors.routing.graphhopper.extensions.storages.builders.BordersGraphStorageBuilder;
 import heigit.ors.routing.graphhopper.extensions.storages.builders.GraphStorageBuilder;
 import heigit.ors.routing.graphhopper.extensions.storages.builders.RoadAccessRestrictionsGraphStorageBuilder;
@@ -40,8 +41,7 @@ public class ORSOSMReader extends OSMReader {
 	private static Logger LOGGER = Logger.getLogger(ORSOSMReader.class.getName());
 
 	private GraphProcessContext _procCntx;
-	private HashMap<Integer, Long> tmcEdges;
-	private HashMap<Long, ArrayList<Integer>> osmId2EdgeIds;
+	private OsmIdEdgesIndex.Builder trafficEdges;
 	private RoutingProfile refProfile;
 	// MARQ24: REMOVED SINCE code that handles 'enrichInstructions = true' is already inactive!
 	//private boolean enrichInstructions;
@@ -61,14 +61,13 @@ public class ORSOSMReader extends OSMReader {
 
 	private HashSet<String> extraTagKeys;
 
-	public ORSOSMReader(GraphHopperStorage storage, GraphProcessContext procCntx, HashMap<Integer, Long> tmcEdges,  HashMap<Long, ArrayList<Integer>> osmId2EdgeIds, RoutingProfile refProfile) {
+	public ORSOSMReader(GraphHopperStorage storage, GraphProcessContext procCntx, OsmIdEdgesIndex.Builder trafficEdges, RoutingProfile refProfile) {
 		super(storage);
 
 		setCalcDistance3D(false);
 		this._procCntx = procCntx;
 		this._readerCntx = new OSMDataReaderContext(this);
-		this.tmcEdges = tmcEdges;
-		this.osmId2EdgeIds = osmId2EdgeIds;
+		this.trafficEdges = trafficEdges;
 		this.refProfile = refProfile;
 
 		// MARQ24: REMOVED SINCE code that handles 'enrichInstructions = true' is already inactive!
@@ -380,23 +379,14 @@ public class ORSOSMReader extends OSMReader {
 		// by MARQ24 }
 
 		try {
-			if ((tmcEdges != null) && (osmId2EdgeIds!=null)) {
+			if (trafficEdges != null) {
 				String highwayValue = way.getTag("highway");
 
 				if (!Helper.isEmpty(highwayValue)) {
 
 					for (int i = 0; i < TMC_ROAD_TYPES.length; i++) {
 						if (TMC_ROAD_TYPES[i].equalsIgnoreCase(highwayValue)) {
-							tmcEdges.put(edge.getEdge(), way.getId());
-
-							if (osmId2EdgeIds.containsKey(way.getId())){
-								osmId2EdgeIds.get(way.getId()).add(edge.getEdge());
-
-							} else{								
-								ArrayList<Integer> edgeIds = new ArrayList<Integer>();
-								edgeIds.add(edge.getEdge()); 
-								osmId2EdgeIds.put(way.getId(), edgeIds);		
-							} 							
+							trafficEdges.add(edge.getEdge(), way.getId());
 
 							break;
 						}
@@ -39,12 +39,22 @@ import java.util.Map;
 public class ORSWeightingFactory extends DefaultWeightingFactory {
 
 	private RealTrafficDataProvider m_trafficDataProvider;
+	// the configured graph path of the profile, by which the traffic snapshots are looked up
+	private String m_profileGraphPath;
 	private Map<Object, TurnCostExtension> m_turnCostExtensions;
+	private WeightingPresets m_weightingPresets;
 
-	public ORSWeightingFactory(RealTrafficDataProvider trafficProvider)
+	public ORSWeightingFactory(RealTrafficDataProvider trafficProvider, String profileGraphPath)
+	{
+		this(trafficProvider, profileGraphPath, null);
+	}
+
+	public ORSWeightingFactory(RealTrafficDataProvider trafficProvider, String profileGraphPath, WeightingPresets weightingPresets)
 	{
 		m_trafficDataProvider = trafficProvider;
+		m_profileGraphPath = profileGraphPath;
 		m_turnCostExtensions = new HashMap<Object, TurnCostExtension>();
+		m_weightingPresets = weightingPresets;
 	}
 
 	public Weighting createWeighting(HintsMap hintsMap, TraversalMode tMode, FlagEncoder encoder, Graph graph, LocationIndex locationIndex, GraphHopperStorage graphStorage) {
@@ -89,7 +99,7 @@ public class ORSWeightingFactory extends DefaultWeightingFactory {
 		if (hintsMap.getBool("weighting_traffic_block", false))
 		{
 			//String strPref = weighting.substring(weighting.indexOf("-") + 1);
-			result = new TrafficAvoidWeighting(result, encoder, m_trafficDataProvider.getAvoidEdges(graphStorage));
+			result = new TrafficAvoidWeighting(result, encoder, m_trafficDataProvider.getSnapshot(m_profileGraphPath, hintsMap.getLong(ORSGraphHopper.TRAFFIC_SNAPSHOT, 0)));
 		}
 
 		if (encoder.supports(TurnWeighting.class) && !isFootBasedFlagEncoder(encoder) && graphStorage != null && !tMode.equals(TraversalMode.NODE_BASED)) {
@@ -124,28 +134,18 @@ public class ORSWeightingFactory extends DefaultWeightingFactory {
 			}
 
 			List<Weighting> softWeightings = new ArrayList<Weighting>();
+			Map<String, PMap> softWeightingProps = new HashMap<String, PMap>();
 
 			for (int i = 0; i < weightingNames.size(); i++)
 			{
 				String weightingName = weightingNames.get(i);
+				PMap props = getWeightingProps(weightingName, map);
+				Weighting weighting = createCustomWeighting(weightingName, encoder, props, graphStorage);
 
-				switch(weightingName)
+				if (weighting != null)
 				{
-				case "steepness_difficulty":
-					softWeightings.add(new SteepnessDifficultyWeighting(encoder, getWeightingProps(weightingName, map), graphStorage));
-					break;
-				case "avoid_hills":
-					softWeightings.add(new AvoidHillsWeighting(encoder, getWeightingProps(weightingName, map), graphStorage));
-					break;
-				case "green":
-					softWeightings.add(new GreenWeighting(encoder, getWeightingProps(weightingName, map), graphStorage));
-					break;
-				case "quiet":
-					softWeightings.add(new QuietWeighting(encoder, getWeightingProps(weightingName, map), graphStorage));
-					break;
-				case "acceleration":
-					softWeightings.add(new AccelerationWeighting(encoder, getWeightingProps(weightingName, map), graphStorage));
-					break;
+					softWeightings.add(weighting);
+					softWeightingProps.put(weightingName, props);
 				}
 			}
 
@@ -153,13 +153,56 @@ public class ORSWeightingFactory extends DefaultWeightingFactory {
 			{
 				Weighting[] arrWeightings = new Weighting[softWeightings.size()];
 				arrWeightings = softWeightings.toArray(arrWeightings);
-				result = new AdditionWeighting(arrWeightings, result, encoder, hintsMap, graphStorage);
+				AdditionWeighting additionWeighting = new AdditionWeighting(arrWeightings, result, encoder, hintsMap, graphStorage);
+				if (m_weightingPresets != null)
+					additionWeighting.setPreset(m_weightingPresets.get(softWeightingProps));
+				result = additionWeighting;
 			}
 		}
 
 		return result;
 	}
 
+	/**
+	 * Creates the custom weighting with the given name, or returns null if there is no such weighting.
+	 */
+	public static Weighting createCustomWeighting(String weightingName, FlagEncoder encoder, PMap props, GraphHopperStorage graphStorage)
+	{
+		switch(weightingName)
+		{
+		case "steepness_difficulty":
+			return new SteepnessDifficultyWeighting(encoder, props, graphStorage);
+		case "avoid_hills":
+			return new AvoidHillsWeighting(encoder, props, graphStorage);
+		case "green":
+			return new GreenWeighting(encoder, props, graphStorage);
+		case "quiet":
+			return new QuietWeighting(encoder, props, graphStorage);
+		case "acceleration":
+			return new AccelerationWeighting(encoder, props, graphStorage);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if the custom weighting with the given name only depends on the edge and its direction, so that it
+	 * can be precomputed per edge.
+	 */
+	public static boolean isEdgeBasedCustomWeighting(String weightingName)
+	{
+		switch(weightingName)
+		{
+		case "steepness_difficulty":
+		case "avoid_hills":
+		case "green":
+		case "quiet":
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	private boolean isFootBasedFlagEncoder(FlagEncoder encoder){
 		return encoder instanceof FootFlagEncoder;
 	}
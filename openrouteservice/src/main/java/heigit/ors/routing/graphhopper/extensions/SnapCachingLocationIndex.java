@@ -0,0 +1,55 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+
+import heigit.ors.routing.LocationSnapCache;
+
+/**
+ * Location index of a graph that answers lookups with cacheable edge filters from a {@link LocationSnapCache}. It is
+ * the location index of {@link ORSGraphHopper}, so the snapping of the route points inside GraphHopper uses the cache
+ * as well as matrices and isochrones. Being a {@link LocationIndexTree} it can still be used by the map matching.
+ */
+public class SnapCachingLocationIndex extends LocationIndexTree {
+    private final LocationSnapCache snapCache;
+
+    public SnapCachingLocationIndex(Graph graph, Directory dir, LocationSnapCache snapCache) {
+        super(graph, dir);
+        this.snapCache = snapCache;
+    }
+
+    public LocationSnapCache getSnapCache() {
+        return snapCache;
+    }
+
+    @Override
+    public QueryResult findClosest(double queryLat, double queryLon, EdgeFilter edgeFilter) {
+        String filterKey = LocationSnapCache.getFilterKey(edgeFilter);
+        if (filterKey == null)
+            return super.findClosest(queryLat, queryLon, edgeFilter);
+
+        QueryResult qr = snapCache.get(queryLat, queryLon, filterKey);
+        if (qr == null) {
+            qr = super.findClosest(queryLat, queryLon, edgeFilter);
+            snapCache.put(queryLat, queryLon, filterKey, qr);
+        }
+
+        return qr;
+    }
+}
@@ -0,0 +1,83 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphHopperStorage;
+import heigit.ors.routing.algorithms.CustomizedCHAlgorithm;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.HeavyVehicleFlagEncoder;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizableHierarchy;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizedShortcutWeights;
+import heigit.ors.routing.graphhopper.extensions.weighting.TrafficCHWeighting;
+import heigit.ors.routing.traffic.RealTrafficDataProvider;
+import heigit.ors.routing.traffic.TrafficSnapshot;
+
+/**
+ * Routes with the traffic of a {@link TrafficSnapshot} on a {@link CustomizableHierarchy}. The weights of the
+ * hierarchy are customized once for the free flow and, whenever the traffic is updated, for the arcs affected by the
+ * traffic by {@link #customize(TrafficSnapshot)}, so the searches themselves run at the speed of contraction
+ * hierarchies. The routes are the ones on the base graph with the {@link TrafficCHWeighting}.
+ * <p>
+ * The hierarchy is independent of the contraction hierarchies prepared by GraphHopper, so requests are routed on the
+ * query graph of the base graph and {@link ORSGraphHopper#getAlgorithmFactory} returns this factory for them.
+ */
+public class TrafficCHAlgorithmFactory implements RoutingAlgorithmFactory {
+    private final GraphHopperStorage ghStorage;
+    private final String profileGraphPath;
+    private final FlagEncoder encoder;
+    private final CustomizableHierarchy hierarchy;
+    private final CustomizedShortcutWeights freeFlowWeights;
+    private final boolean heavyVehicle;
+
+    /**
+     * @param profileGraphPath the configured graph path of the profile the traffic snapshots are published for
+     */
+    public TrafficCHAlgorithmFactory(GraphHopperStorage ghStorage, FlagEncoder encoder, CustomizableHierarchy hierarchy, String profileGraphPath) {
+        this.ghStorage = ghStorage;
+        this.profileGraphPath = profileGraphPath;
+        this.encoder = encoder;
+        this.hierarchy = hierarchy;
+        this.freeFlowWeights = CustomizedShortcutWeights.customize(hierarchy, ghStorage, new TrafficCHWeighting(encoder, TrafficSnapshot.EMPTY));
+        this.heavyVehicle = encoder instanceof HeavyVehicleFlagEncoder;
+    }
+
+    /**
+     * Computes the weights of the arcs affected by the traffic of the snapshot.
+     */
+    public CustomizedShortcutWeights customize(TrafficSnapshot snapshot) {
+        return CustomizedShortcutWeights.customize(hierarchy, ghStorage, new TrafficCHWeighting(encoder, snapshot),
+                freeFlowWeights, snapshot.getChangedEdges(heavyVehicle));
+    }
+
+    @Override
+    public RoutingAlgorithm createAlgo(Graph graph, AlgorithmOptions opts) {
+        TrafficSnapshot snapshot = RealTrafficDataProvider.getInstance().getSnapshot(profileGraphPath, opts.getHints().getLong(ORSGraphHopper.TRAFFIC_SNAPSHOT, 0));
+
+        CustomizedShortcutWeights weights = snapshot.getShortcutWeights();
+        if (weights == null) {
+            // snapshots with traffic are only published once they have been customized
+            if (!snapshot.isEmpty())
+                throw new IllegalStateException("The shortcut weights have not been customized for the traffic snapshot " + snapshot.getVersion() + ".");
+            weights = freeFlowWeights;
+        }
+
+        CustomizedCHAlgorithm algo = new CustomizedCHAlgorithm(graph, new TrafficCHWeighting(encoder, snapshot), hierarchy, weights);
+        algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
+        return algo;
+    }
+}
@@ -0,0 +1,132 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.PMap;
+import heigit.ors.routing.graphhopper.extensions.storages.WeightingPresetStorage;
+import heigit.ors.util.TimeUtility;
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The combinations of custom weightings of a profile whose factors are precomputed per edge. A preset is configured as
+ * the weightings separated by '+', each with its parameters, e.g. "green:factor=1" or
+ * "green:factor=0.5+quiet:factor=0.5". Requests with exactly these weightings and parameters use the stored factors.
+ */
+public class WeightingPresets {
+    private static final Logger LOGGER = Logger.getLogger(WeightingPresets.class.getName());
+
+    private final Map<String, Map<String, PMap>> presets = new LinkedHashMap<>();
+    private final Map<String, WeightingPresetStorage> storages = new HashMap<>();
+
+    public void add(String spec) {
+        Map<String, PMap> weightings = new HashMap<>();
+
+        for (String weightingSpec : spec.split("\\+")) {
+            String[] parts = weightingSpec.trim().split(":", 2);
+            String name = parts[0].trim().toLowerCase();
+            if (!ORSWeightingFactory.isEdgeBasedCustomWeighting(name))
+                throw new IllegalArgumentException("Weighting '" + name + "' of preset '" + spec + "' can not be precomputed.");
+
+            PMap params = new PMap();
+            if (parts.length > 1) {
+                for (String param : parts[1].split(",")) {
+                    String[] kv = param.split("=", 2);
+                    if (kv.length != 2)
+                        throw new IllegalArgumentException("Invalid parameter '" + param + "' in weighting preset '" + spec + "'.");
+                    params.put(kv[0].trim(), kv[1].trim());
+                }
+            }
+            weightings.put(name, params);
+        }
+
+        presets.put(createKey(weightings), weightings);
+    }
+
+    public boolean isEmpty() {
+        return presets.isEmpty();
+    }
+
+    /**
+     * Loads the stored factors of all presets, computing those that are missing in the graph folder.
+     */
+    public void load(GraphHopperStorage graph, FlagEncoder encoder) {
+        for (Map.Entry<String, Map<String, PMap>> preset : presets.entrySet()) {
+            long startTime = System.currentTimeMillis();
+
+            Weighting[] weightings = new Weighting[preset.getValue().size()];
+            int i = 0;
+            for (Map.Entry<String, PMap> weighting : preset.getValue().entrySet())
+                weightings[i++] = ORSWeightingFactory.createCustomWeighting(weighting.getKey(), encoder, weighting.getValue(), graph);
+
+            storages.put(preset.getKey(), WeightingPresetStorage.loadOrCreate(graph.getDirectory(), preset.getKey(), graph, weightings));
+
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info(String.format("Weighting preset '%s' loaded in %s.", preset.getKey(), TimeUtility.getElapsedTime(startTime, true)));
+        }
+    }
+
+    /**
+     * Returns the stored factors for the given custom weightings and their parameters or null if they are not a
+     * configured preset.
+     */
+    public WeightingPresetStorage get(Map<String, PMap> weightings) {
+        if (storages.isEmpty())
+            return null;
+
+        return storages.get(createKey(weightings));
+    }
+
+    public void close() {
+        for (WeightingPresetStorage storage : storages.values())
+            storage.close();
+        storages.clear();
+    }
+
+    /**
+     * Creates a key that does not depend on the order of the weightings and parameters or the notation of numbers.
+     */
+    static String createKey(Map<String, PMap> weightings) {
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, PMap> weighting : new TreeMap<>(weightings).entrySet()) {
+            if (sb.length() > 0)
+                sb.append('+');
+            sb.append(weighting.getKey());
+
+            char separator = ':';
+            for (Map.Entry<String, String> param : new TreeMap<>(weighting.getValue().getMap()).entrySet()) {
+                sb.append(separator).append(param.getKey()).append('=').append(normalizeValue(param.getValue()));
+                separator = ',';
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String normalizeValue(String value) {
+        try {
+            return Double.toString(Double.parseDouble(value));
+        } catch (NumberFormatException ex) {
+            return value.trim().toLowerCase();
+        }
+    }
+}
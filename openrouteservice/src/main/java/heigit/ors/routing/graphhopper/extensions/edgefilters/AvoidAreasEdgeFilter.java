@@ -13,320 +13,114 @@
  */
 package heigit.ors.routing.graphhopper.extensions.edgefilters;
 
-import java.io.Serializable;
-
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PointList;
 
 import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+import heigit.ors.routing.graphhopper.extensions.storages.EdgeBoundsIndex;
 
 public class AvoidAreasEdgeFilter implements EdgeFilter {
 
 	private Envelope env; 
-	private Polygon[] polys;
-	private DefaultCoordinateSequence coordSequence;
+	private PreparedGeometry[] polys;
 	private GeometryFactory geomFactory = new GeometryFactory();
-	
-	private double eMinX = Double.MAX_VALUE;
-	private double eMinY = Double.MAX_VALUE;
-	private double eMaxX = Double.MIN_VALUE;
-	private double eMaxY = Double.MIN_VALUE;
-	
+	private IntHashSet blockedEdges;
+	private int indexedEdges;
+
 	/**
-	 * Creates an edges filter which accepts both direction of the specified vehicle.
+	 * Creates an edges filter which rejects the edges within or crossing one of the polygons. The geometry of every
+	 * edge is tested when it is accepted.
 	 */
 	public AvoidAreasEdgeFilter(Polygon[] polys)
 	{
-		this.polys = polys;
-
 		if (polys != null && polys.length > 0)
 		{
-			double minX = Double.MAX_VALUE;
-			double minY = Double.MAX_VALUE;
-			double maxX = Double.MIN_VALUE;
-			double maxY = Double.MIN_VALUE;
+			env = new Envelope();
+			this.polys = new PreparedGeometry[polys.length];
 
-			for (int i = 0; i< polys.length; i++)
+			for (int i = 0; i < polys.length; i++)
 			{
-				Polygon poly = polys[i];
-				Envelope env = poly.getEnvelopeInternal();
-				if (env.getMinX() < minX)
-					minX = env.getMinX();
-				if (env.getMinY() < minY)
-					minY = env.getMinY();
-				if (env.getMaxX() > maxX)
-					maxX = env.getMaxX();
-				if (env.getMaxY() > maxY)
-					maxY = env.getMaxY();
+				env.expandToInclude(polys[i].getEnvelopeInternal());
+				this.polys[i] = PreparedGeometryFactory.prepare(polys[i]);
 			}
-
-			env = new Envelope(minX, maxX, minY, maxY);
-
-			coordSequence = new DefaultCoordinateSequence(new Coordinate[1], 1);
 		}
 	}
 
-	@Override
-	public final boolean accept(EdgeIteratorState iter ) {
-		if (env == null)
-			return true;
-
-		boolean inEnv = false;
-		//   PointList pl = iter.fetchWayGeometry(2); // does not work
-		PointList pl = iter.fetchWayGeometry(3);
-		int size = pl.getSize();
+	/**
+	 * Creates an edges filter which determines the rejected edges of the graph once, by testing the edges found in the
+	 * envelopes of the polygons by the index. Accepting an edge is a lookup then, only edges which are not part of the
+	 * index, i.e. the virtual edges of a query graph, are tested by their geometry.
+	 */
+	public AvoidAreasEdgeFilter(Polygon[] polys, EdgeBoundsIndex index, Graph graph)
+	{
+		this(polys);
 
-		eMinX = Double.MAX_VALUE;
-		eMinY = Double.MAX_VALUE;
-		eMaxX = Double.MIN_VALUE;
-		eMaxY = Double.MIN_VALUE;
+		if (env == null || index == null)
+			return;
 
-		for (int j = 0; j < pl.getSize(); j++)
-		{
-			double x = pl.getLon(j);
-			double y = pl.getLat(j);
-			if (env.contains(x, y))
-			{
-				inEnv = true;
-				break;
-			}
+		blockedEdges = new IntHashSet();
+		indexedEdges = index.getEdgesCount();
 
-			if (x < eMinX)
-				eMinX = x;
-			if (y < eMinY)
-				eMinY = y;
-			if (x > eMaxX)
-				eMaxX = x;
-			if (y > eMaxY)
-				eMaxY = y;
-		}
+		IntHashSet candidates = new IntHashSet();
+		for (int i = 0; i < polys.length; i++)
+			candidates.addAll(index.getEdges(polys[i].getEnvelopeInternal()));
 
-		if (inEnv || !(eMinX > env.getMaxX() || eMaxX < env.getMinX() || eMinY > env.getMaxY() || eMaxY < env.getMinY()))
+		for (IntCursor edge : candidates)
 		{
-			// We have to reset the coordinate sequence else for some reason the envelopes for the edge are wrong
-			coordSequence = new DefaultCoordinateSequence(new Coordinate[1], 1);
-			if (size >= 2)
-			{
-				// resize sequence if needed
-				coordSequence.resize(size);
-
-				for (int j = 0; j < size; j++)
-				{
-					double x = pl.getLon(j);
-					double y = pl.getLat(j);
-					Coordinate c =  coordSequence.getCoordinate(j);
-
-					if (c == null)
-					{
-						c = new Coordinate(x, y);
-						coordSequence.setCoordinate(j, c);
-					}
-					else
-					{
-						c.x = x;
-						c.y = y;
-					}
-				}
+			EdgeIteratorState iter = graph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE);
+			if (isBlocked(iter.fetchWayGeometry(3)))
+				blockedEdges.add(edge.value);
+		}
+	}
 
-				LineString ls = geomFactory.createLineString(coordSequence);
+	@Override
+	public final boolean accept(EdgeIteratorState iter ) {
+		if (env == null)
+			return true;
 
-				for (int i = 0; i < polys.length; i++)
-				{
-					Polygon poly = polys[i];
-					if (poly.contains(ls) || ls.crosses(poly))
-					{
-						return false;
-					}
-				}
-			}
-			else
-			{
-				return false;
-			}
-		}
-			/*else
-			{
-				// Check if edge geomery intersects env.
-				if (!(eMinX > env.getMaxX() || eMaxX < env.getMinX() || eMinY > env.getMaxY() || eMaxY < env.getMinY()))
-				{
-					
-				}
-			}	*/
+		if (blockedEdges != null && iter.getEdge() < indexedEdges)
+			return !blockedEdges.contains(iter.getEdge());
 
-		return true;
+		return !isBlocked(iter.fetchWayGeometry(3));
 	}
 
-	/**
-	 * The CoordinateSequence implementation that Geometries use by default. In
-	 * this implementation, Coordinates returned by #toArray and #get are live --
-	 * parties that change them are actually changing the
-	 * DefaultCoordinateSequence's underlying data.
-	 *
-	 * @version 1.7
-	 */
-	class DefaultCoordinateSequence implements CoordinateSequence, Serializable
+	private boolean isBlocked(PointList pl)
 	{
-		//With contributions from Markus Schaber [schabios@logi-track.com] 2004-03-26
-		private static final long serialVersionUID = -915438501601840650L;
-		private Coordinate[] coordinates;
-		private int size;
-		/**
-		 * Constructs a DefaultCoordinateSequence based on the given array (the
-		 * array is not copied).
-		 *
-		 * @param coordinates the coordinate array that will be referenced.
-		 */
-		public DefaultCoordinateSequence(Coordinate[] coordinates, int size) {
-			if (coordinates == null)
-			{
-				throw new IllegalArgumentException("Null coordinate");
-			}
-			this.coordinates = coordinates;
-			this.size = size;
-		}
+		int size = pl.getSize();
+		Envelope edgeEnv = new Envelope();
+		for (int j = 0; j < size; j++)
+			edgeEnv.expandToInclude(pl.getLon(j), pl.getLat(j));
 
-		/**
-		 * @see com.vividsolutions.jts.geom.CoordinateSequence#getDimension()
-		 */
-		public int getDimension() { return 3; }
-		/**
-		 * Get the Coordinate with index i.
-		 *
-		 * @param i
-		 * the index of the coordinate
-		 * @return the requested Coordinate instance
-		 */
-		public Coordinate getCoordinate(int i) {
-			return coordinates[i];
-		}
+		if (!env.intersects(edgeEnv))
+			return false;
 
-		public void setCoordinate(int i, Coordinate c) {
-			coordinates[i] = c;
-		}
+		if (size < 2)
+			return true;
 
-		/**
-		 * Get a copy of the Coordinate with index i.
-		 *
-		 * @param i the index of the coordinate
-		 * @return a copy of the requested Coordinate
-		 */
-		public Coordinate getCoordinateCopy(int i) {
-			return new Coordinate(coordinates[i]);
-		}
-		/**
-		 * @see com.vividsolutions.jts.geom.CoordinateSequence#getX(int)
-		 */
-		public void getCoordinate(int index, Coordinate coord) {
-			coord.x = coordinates[index].x;
-			coord.y = coordinates[index].y;
-		}
-		/**
-		 * @see com.vividsolutions.jts.geom.CoordinateSequence#getX(int)
-		 */
-		public double getX(int index) {
-			return coordinates[index].x;
-		}
-		/**
-		 * @see com.vividsolutions.jts.geom.CoordinateSequence#getY(int)
-		 */
-		public double getY(int index) {
-			return coordinates[index].y;
-		}
-		/**
-		 * @see com.vividsolutions.jts.geom.CoordinateSequence#getOrdinate(int, int)
-		 */
-		public double getOrdinate(int index, int ordinateIndex)
-		{
-			switch (ordinateIndex) {
-			case CoordinateSequence.X: return coordinates[index].x;
-			case CoordinateSequence.Y: return coordinates[index].y;
-			case CoordinateSequence.Z: return coordinates[index].z;
-			}
-			return Double.NaN;
-		}
-		/**
-		 * @see com.vividsolutions.jts.geom.CoordinateSequence#setOrdinate(int, int, double)
-		 */
-		public void setOrdinate(int index, int ordinateIndex, double value)
-		{
-			switch (ordinateIndex) {
-			case CoordinateSequence.X: coordinates[index].x = value;
-			case CoordinateSequence.Y: coordinates[index].y = value;
-			case CoordinateSequence.Z: coordinates[index].z = value;
-			}
-		}
-		/**
-		 * Creates a deep copy of the Object
-		 *
-		 * @return The deep copy
-		 */
-		public Object clone() {
-			Coordinate[] cloneCoordinates = new Coordinate[size()];
-			for (int i = 0; i < coordinates.length; i++) {
-				cloneCoordinates[i] = (Coordinate) coordinates[i].clone();
-			}
-			return new DefaultCoordinateSequence(cloneCoordinates, size);
-		}
+		Coordinate[] coords = new Coordinate[size];
+		for (int j = 0; j < size; j++)
+			coords[j] = new Coordinate(pl.getLon(j), pl.getLat(j));
 
-		/**
-		 * Returns the size of the coordinate sequence
-		 *
-		 * @return the number of coordinates
-		 */
-		public int size() {
-			return size;
-		}
+		LineString ls = geomFactory.createLineString(coords);
 
-		public void resize(int size)
+		for (int i = 0; i < polys.length; i++)
 		{
-			if (size > this.size)
-			{
-				coordinates = new Coordinate[size];
-			}
-
-			this.size = size;
+			PreparedGeometry poly = polys[i];
+			if (poly.intersects(ls) && (poly.contains(ls) || poly.crosses(ls)))
+				return true;
 		}
 
-		/**
-		 * This method exposes the internal Array of Coordinate Objects
-		 *
-		 * @return the Coordinate[] array.
-		 */
-		public Coordinate[] toCoordinateArray() {
-			return coordinates;
-		}
-		public Envelope expandEnvelope(Envelope env)
-		{
-			for (int i = 0; i < coordinates.length; i++ ) {
-				env.expandToInclude(coordinates[i]);
-			}
-			return env;
-		}
-		/**
-		 * Returns the string Representation of the coordinate array
-		 *
-		 * @return The string
-		 */
-		public String toString() {
-			if (coordinates.length > 0) {
-				StringBuffer strBuf = new StringBuffer(17 * coordinates.length);
-				strBuf.append('(');
-				strBuf.append(coordinates[0]);
-				for (int i = 1; i < coordinates.length; i++) {
-					strBuf.append(", ");
-					strBuf.append(coordinates[i]);
-				}
-				strBuf.append(')');
-				return strBuf.toString();
-			} else {
-				return "()";
-			}
-		}
+		return false;
 	}
 }
@@ -18,27 +18,20 @@ import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.util.EdgeIteratorState;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.HeavyVehicleFlagEncoder;
-
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 
 public class BlockedEdgesEdgeFilter implements EdgeFilter {
-	private Set<Integer> blockedEdges;
-
-	public BlockedEdgesEdgeFilter(FlagEncoder encoder, List<Integer> edges, List<Integer> edges_hv) {
-		// use HashSet which has O(1) performance compared to O(n) for List<Integer>
-		this.blockedEdges = new HashSet<Integer>();
-		this.blockedEdges.addAll(edges);
+	private final TrafficSnapshot snapshot;
+	private final boolean heavyVehicle;
 
-		if (encoder instanceof HeavyVehicleFlagEncoder)
-			this.blockedEdges.addAll(edges_hv);
+	public BlockedEdgesEdgeFilter(FlagEncoder encoder, TrafficSnapshot snapshot) {
+		this.snapshot = snapshot;
+		this.heavyVehicle = encoder instanceof HeavyVehicleFlagEncoder;
 	}
 
 	@Override
 	public boolean accept(EdgeIteratorState iter) {
-		return !blockedEdges.contains(EdgeIteratorStateHelper.getOriginalEdge(iter));
-
+		return !snapshot.isBlocked(EdgeIteratorStateHelper.getOriginalEdge(iter), heavyVehicle);
 	}
 
 }
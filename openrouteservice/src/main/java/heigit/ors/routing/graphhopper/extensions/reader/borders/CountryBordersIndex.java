@@ -0,0 +1,191 @@
+/*
+ *  Licensed to GIScience Research Group, Heidelberg University (GIScience)
+ *
+ *   http://www.giscience.uni-hd.de
+ *   http://www.heigit.org
+ *
+ *  under one or more contributor license agreements. See the NOTICE file
+ *  distributed with this work for additional information regarding copyright
+ *  ownership. The GIScience licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package heigit.ors.routing.graphhopper.extensions.reader.borders;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial index over the country polygons of a set of hierarchies used for looking up the countries of the nodes of
+ * the ways during the import.
+ *
+ * The polygons are held in an STRtree of their bounding boxes, which is only queried once for each cell of a regular
+ * grid. For every cell it is determined once which polygons contain the whole cell and which ones are only touched by
+ * it, so that points in the interior of a country are answered without any point in polygon test and only points in
+ * cells on a border are tested against the borders.
+ *
+ * The results are returned in the order of the hierarchies and polygons the index has been created from, which is the
+ * order that the lookups iterating over all hierarchies return them in.
+ */
+public class CountryBordersIndex {
+    public static final double DEFAULT_CELL_SIZE = 0.1;
+
+    // the cells are enlarged by this margin so that rounding of the cell bounds can never put a point on a border
+    // into a cell that is considered to be completely inside of a country
+    private static final double CELL_MARGIN = 1e-9;
+
+    private static final byte OUTSIDE = 0;
+    private static final byte BORDER = 1;
+    private static final byte INSIDE = 2;
+
+    private final double cellSize;
+    private final CountryBordersHierarchy[] hierarchies;
+    private final CountryBordersPolygon[] polygons;
+    private final STRtree tree = new STRtree();
+    private final ConcurrentHashMap<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final GeometryFactory gf = new GeometryFactory();
+
+    public CountryBordersIndex(Collection<CountryBordersHierarchy> hierarchies) {
+        this(hierarchies, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Create the index for the polygons of the given hierarchies. The hierarchies must not be changed afterwards.
+     *
+     * @param hierarchies       The hierarchies containing the country polygons
+     * @param cellSize          The size of the cells of the grid in degrees
+     */
+    public CountryBordersIndex(Collection<CountryBordersHierarchy> hierarchies, double cellSize) {
+        this.cellSize = cellSize;
+
+        ArrayList<CountryBordersHierarchy> hs = new ArrayList<>();
+        ArrayList<CountryBordersPolygon> ps = new ArrayList<>();
+        for(CountryBordersHierarchy h : hierarchies) {
+            for(CountryBordersPolygon cp : h.getPolygons()) {
+                double[] bb = cp.getBBox();
+                tree.insert(new Envelope(bb[0], bb[1], bb[2], bb[3]), ps.size());
+                hs.add(h);
+                ps.add(cp);
+            }
+        }
+        tree.build();
+
+        this.hierarchies = hs.toArray(new CountryBordersHierarchy[hs.size()]);
+        this.polygons = ps.toArray(new CountryBordersPolygon[ps.size()]);
+    }
+
+    /**
+     * Get the polygons that contain the given point.
+     *
+     * @param c     The coordinate to lookup
+     * @return      An array of the polygons containing the point
+     */
+    public CountryBordersPolygon[] getCountry(Coordinate c) {
+        if(Double.isNaN(c.x) || Double.isNaN(c.y))
+            return new CountryBordersPolygon[0];
+
+        Cell cell = getCell(c);
+        ArrayList<CountryBordersPolygon> countries = new ArrayList<>(cell.polygons.length);
+        for(int i = 0; i < cell.polygons.length; i++) {
+            CountryBordersPolygon cp = polygons[cell.polygons[i]];
+            if(cell.states[i] == INSIDE || (cell.states[i] == BORDER && cp.inArea(c)))
+                countries.add(cp);
+        }
+
+        return countries.toArray(new CountryBordersPolygon[countries.size()]);
+    }
+
+    /**
+     * Get the polygons whose bounding box, and the bounding box of their hierarchy, contain the given point.
+     *
+     * @param c     The coordinate to lookup
+     * @return      An array of the candidate polygons for the point
+     */
+    public CountryBordersPolygon[] getCandidateCountry(Coordinate c) {
+        if(Double.isNaN(c.x) || Double.isNaN(c.y))
+            return new CountryBordersPolygon[0];
+
+        Cell cell = getCell(c);
+        ArrayList<CountryBordersPolygon> countries = new ArrayList<>(cell.polygons.length);
+        for(int i = 0; i < cell.polygons.length; i++) {
+            int p = cell.polygons[i];
+            if(hierarchies[p].inBbox(c) && polygons[p].inBbox(c))
+                countries.add(polygons[p]);
+        }
+
+        return countries.toArray(new CountryBordersPolygon[countries.size()]);
+    }
+
+    private Cell getCell(Coordinate c) {
+        int x = (int) Math.floor(c.x / cellSize);
+        int y = (int) Math.floor(c.y / cellSize);
+        long key = ((long) x << 32) | (y & 0xFFFFFFFFL);
+
+        Cell cell = cells.get(key);
+        if(cell == null) {
+            cell = createCell(x, y);
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Classify the polygons whose bounding box intersects the cell at the given grid position.
+     */
+    private Cell createCell(int x, int y) {
+        Envelope env = new Envelope(x * cellSize - CELL_MARGIN, (x + 1) * cellSize + CELL_MARGIN,
+                y * cellSize - CELL_MARGIN, (y + 1) * cellSize + CELL_MARGIN);
+
+        List<Integer> found = new ArrayList<>();
+        for(Object item : tree.query(env))
+            found.add((Integer) item);
+        Collections.sort(found);
+
+        Geometry area = gf.toGeometry(env);
+        int[] ps = new int[found.size()];
+        byte[] states = new byte[found.size()];
+        for(int i = 0; i < ps.length; i++) {
+            ps[i] = found.get(i);
+            CountryBordersPolygon cp = polygons[ps[i]];
+            if(cp.containsProperly(area))
+                states[i] = INSIDE;
+            else if(cp.intersects(area))
+                states[i] = BORDER;
+            else
+                states[i] = OUTSIDE;
+        }
+
+        return new Cell(ps, states);
+    }
+
+    /**
+     * The polygons whose bounding box intersects a grid cell, in index order, and whether the cell is completely
+     * inside of, on the border of or outside of each of them.
+     */
+    private static class Cell {
+        final int[] polygons;
+        final byte[] states;
+
+        Cell(int[] polygons, byte[] states) {
+            this.polygons = polygons;
+            this.states = states;
+        }
+    }
+}
@@ -21,15 +21,22 @@
 package heigit.ors.routing.graphhopper.extensions.reader.borders;
 
 import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import org.apache.log4j.Logger;
 
 import java.io.InvalidObjectException;
 
 public class CountryBordersPolygon {
     private static final Logger LOGGER = Logger.getLogger(CountryBordersPolygon.class);
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
     private String name;
     private MultiPolygon boundary;
     private Geometry boundaryLine;
+    // prepared geometries index the segments of the borders on their first use, so that each test against the full
+    // resolution borders only looks at the segments near the tested geometry
+    private PreparedGeometry preparedBoundary;
+    private PreparedGeometry preparedBoundaryLine;
     private double area = 0;
     private long hierarchyId;
     private double minLat = 180f, minLon = 180f, maxLat = -180f, maxLon = -180f;
@@ -56,6 +63,8 @@ public class CountryBordersPolygon {
         }
         this.boundaryLine = boundary.getBoundary();
         this.area = this.boundary.getArea();
+        this.preparedBoundary = PreparedGeometryFactory.prepare(this.boundary);
+        this.preparedBoundaryLine = PreparedGeometryFactory.prepare(this.boundaryLine);
         // calculate lat and lon values
         Geometry bbox = boundary.getEnvelope();
         for(Coordinate c : bbox.getCoordinates()) {
@@ -78,7 +87,7 @@ public class CountryBordersPolygon {
 
     public boolean crossesBoundary(LineString line) {
         // Check if the given linestring crosses the boundary of this country
-        return this.boundaryLine.intersects(line);
+        return this.preparedBoundaryLine.intersects(line);
     }
 
     public String getName() {
@@ -98,14 +107,33 @@ public class CountryBordersPolygon {
 
     public boolean inArea(Coordinate c) {
         if(!Double.isNaN(c.x) && !Double.isNaN(c.y) && inBbox(c)) {
-            GeometryFactory gf = new GeometryFactory();
-
-            return boundary.contains(gf.createPoint(c));
+            return preparedBoundary.contains(GEOMETRY_FACTORY.createPoint(c));
         }
 
         return false;
     }
 
+    /**
+     * Check if the given area is completely within the interior of the boundary, i.e. it does not even touch the
+     * border, so that every point in the area is within this country.
+     *
+     * @param area      The area to check
+     * @return
+     */
+    public boolean containsProperly(Geometry area) {
+        return preparedBoundary.containsProperly(area);
+    }
+
+    /**
+     * Check if the given area has at least one point in common with the boundary.
+     *
+     * @param area      The area to check
+     * @return
+     */
+    public boolean intersects(Geometry area) {
+        return preparedBoundary.intersects(area);
+    }
+
     public double getArea() {
         return this.area;
     }
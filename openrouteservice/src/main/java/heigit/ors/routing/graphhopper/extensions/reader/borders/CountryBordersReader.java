@@ -53,6 +53,8 @@ public class CountryBordersReader {
     private HashMap<String, Integer> isoCodes = new HashMap<>();
 
     private HashMap<Long, CountryBordersHierarchy> hierarchies = new HashMap<>();
+    // created on the first lookup, after all hierarchies have been added
+    private CountryBordersIndex index = null;
 
     private static CountryBordersReader currentInstance = null;
 
@@ -107,6 +109,7 @@ public class CountryBordersReader {
     public void addHierarchy(Long id, CountryBordersHierarchy hierarchy) {
         if(!hierarchies.containsKey(id)) {
             hierarchies.put(id, hierarchy);
+            index = null;
         }
     }
 
@@ -280,23 +283,7 @@ public class CountryBordersReader {
      * @return      An array of CountryBorderPolygons that the point is within the geometry of.
      */
     public CountryBordersPolygon[] getCountry(Coordinate c) {
-        ArrayList<CountryBordersPolygon> countries = new ArrayList<>();
-        Iterator it = hierarchies.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Long, CountryBordersHierarchy> pair = (Map.Entry)it.next();
-            CountryBordersHierarchy h =  pair.getValue();
-            if(h.inBbox(c)) {
-                // Now need to check the countries
-                ArrayList<CountryBordersPolygon> ps = h.getPolygons();
-                for(CountryBordersPolygon cp : ps) {
-                    if(cp.inBbox(c) && cp.inArea(c)) {
-                        countries.add(cp);
-                    }
-                }
-            }
-        }
-
-        return countries.toArray(new CountryBordersPolygon[countries.size()]);
+        return getIndex().getCountry(c);
     }
 
     /**
@@ -309,23 +296,14 @@ public class CountryBordersReader {
      * @return      An array of CountryBorderPolygons that the point is within the geometry of.
      */
     public CountryBordersPolygon[] getCandidateCountry(Coordinate c) {
-        ArrayList<CountryBordersPolygon> countries = new ArrayList<>();
-        Iterator it = hierarchies.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Long, CountryBordersHierarchy> pair = (Map.Entry)it.next();
-            CountryBordersHierarchy h =  pair.getValue();
-            if(h.inBbox(c)) {
-                // Now need to check the countries
-                ArrayList<CountryBordersPolygon> ps = h.getPolygons();
-                for(CountryBordersPolygon cp : ps) {
-                    if(cp.inBbox(c)) {
-                        countries.add(cp);
-                    }
-                }
-            }
-        }
+        return getIndex().getCandidateCountry(c);
+    }
+
+    private synchronized CountryBordersIndex getIndex() {
+        if(index == null)
+            index = new CountryBordersIndex(hierarchies.values());
 
-        return countries.toArray(new CountryBordersPolygon[countries.size()]);
+        return index;
     }
 
     /**
@@ -0,0 +1,513 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchy whose contraction order and shortcuts do not depend on a metric, so that its weights can be
+ * customized for any metric of the graph, see {@link CustomizedShortcutWeights}. No witness searches are run: when a
+ * node is contracted all its neighbours contracted after it are connected, which makes every shortcut available that
+ * any metric may need.
+ * <p>
+ * The contraction order is a nested dissection by the node coordinates. Each cell is split at the median of its wider
+ * extent and the nodes of one half that are adjacent to the other half are contracted after both halves. Each pair of
+ * adjacent nodes is connected by a single arc, which is stored at the node contracted first (its tail) together with
+ * the edges of the graph between both nodes. The arcs are numbered in the contraction order of their tails.
+ * <p>
+ * The hierarchy only depends on the graph, so it is built once and stored in the graph folder.
+ */
+public class CustomizableHierarchy {
+    private static final int VERSION = 1;
+    // cells of at most this size are not dissected any further
+    private static final int LEAF_SIZE = 16;
+
+    private final int nodes;
+    private final int[] ranks;
+    private final int[] order;
+    // the arcs of the node with the given rank start at firstArcs[rank]
+    private final int[] firstArcs;
+    private final int[] heads;
+    private final int[] tails;
+    private final int[] firstBaseEdges;
+    private final int[] baseEdges;
+    private final int[] edgeArcs;
+    // the arcs ending at a node, sorted by their tails
+    private final int[] firstDownArcs;
+    private final int[] downArcs;
+
+    private CustomizableHierarchy(int edges, int[] ranks, int[] firstArcs, int[] heads, int[] firstBaseEdges, int[] baseEdges) {
+        this.nodes = ranks.length;
+        this.ranks = ranks;
+        this.firstArcs = firstArcs;
+        this.heads = heads;
+        this.firstBaseEdges = firstBaseEdges;
+        this.baseEdges = baseEdges;
+
+        int arcs = heads.length;
+        order = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+            order[ranks[node]] = node;
+
+        tails = new int[arcs];
+        for (int rank = 0; rank < nodes; rank++)
+            Arrays.fill(tails, firstArcs[rank], firstArcs[rank + 1], order[rank]);
+
+        edgeArcs = new int[edges];
+        Arrays.fill(edgeArcs, -1);
+        for (int arc = 0; arc < arcs; arc++) {
+            for (int i = firstBaseEdges[arc]; i < firstBaseEdges[arc + 1]; i++)
+                edgeArcs[baseEdges[i]] = arc;
+        }
+
+        // adding the arcs by ascending tail sorts the arcs of each head
+        firstDownArcs = new int[nodes + 1];
+        for (int arc = 0; arc < arcs; arc++)
+            firstDownArcs[heads[arc] + 1]++;
+        for (int node = 0; node < nodes; node++)
+            firstDownArcs[node + 1] += firstDownArcs[node];
+        downArcs = new int[arcs];
+        int[] next = Arrays.copyOf(firstDownArcs, nodes);
+        for (int node = 0; node < nodes; node++) {
+            for (int arc = getFirstArc(node); arc < getLastArc(node); arc++)
+                downArcs[next[heads[arc]]++] = arc;
+        }
+    }
+
+    /**
+     * Loads the hierarchy of the graph, or builds and stores it if it does not exist yet or belongs to a different
+     * graph.
+     */
+    public static CustomizableHierarchy loadOrCreate(Directory dir, Graph graph) {
+        DataAccess data = dir.find("customizable_hierarchy");
+        int nodes = graph.getNodes();
+        int edges = graph.getAllEdges().getMaxId();
+        CustomizableHierarchy hierarchy = null;
+
+        if (data.loadExisting()) {
+            if (data.getHeader(0) == VERSION && data.getHeader(4) == nodes && data.getHeader(8) == edges)
+                hierarchy = load(data, nodes, edges);
+        } else {
+            data.create(1000);
+        }
+
+        if (hierarchy == null) {
+            hierarchy = create(graph);
+            hierarchy.store(data, edges);
+        }
+
+        // the arrays are kept in memory, as the searches and the customization access them randomly
+        data.close();
+        return hierarchy;
+    }
+
+    /**
+     * Builds the hierarchy of the graph. The neighbours contracted after a node are the ones of the graph plus the
+     * ones passed on by its children in the elimination tree, i.e. by the contracted nodes whose next contracted
+     * neighbour it is.
+     */
+    private static CustomizableHierarchy create(Graph graph) {
+        int nodes = graph.getNodes();
+        int edges = graph.getAllEdges().getMaxId();
+
+        // neighbours in the graph regardless of the access, loops are of no use for shortest paths
+        int[] firstNeighbors = new int[nodes + 1];
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.getBaseNode() != iter.getAdjNode()) {
+                firstNeighbors[iter.getBaseNode() + 1]++;
+                firstNeighbors[iter.getAdjNode() + 1]++;
+            }
+        }
+        for (int node = 0; node < nodes; node++)
+            firstNeighbors[node + 1] += firstNeighbors[node];
+        int[] neighbors = new int[firstNeighbors[nodes]];
+        int[] next = Arrays.copyOf(firstNeighbors, nodes);
+        iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.getBaseNode() != iter.getAdjNode()) {
+                neighbors[next[iter.getBaseNode()]++] = iter.getAdjNode();
+                neighbors[next[iter.getAdjNode()]++] = iter.getBaseNode();
+            }
+        }
+
+        int[] ranks = new NestedDissection(graph.getNodeAccess(), nodes, firstNeighbors, neighbors).computeRanks();
+        int[] order = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+            order[ranks[node]] = node;
+
+        int[] firstArcs = new int[nodes + 1];
+        IntArrayList heads = new IntArrayList(firstNeighbors[nodes]);
+        int[] firstChildren = new int[nodes];
+        int[] nextSiblings = new int[nodes];
+        int[] marks = new int[nodes];
+        Arrays.fill(firstChildren, -1);
+        Arrays.fill(marks, -1);
+        IntArrayList up = new IntArrayList();
+
+        for (int rank = 0; rank < nodes; rank++) {
+            int node = order[rank];
+            up.clear();
+
+            for (int i = firstNeighbors[node]; i < firstNeighbors[node + 1]; i++) {
+                int neighbor = neighbors[i];
+                if (ranks[neighbor] > rank && marks[neighbor] != rank) {
+                    marks[neighbor] = rank;
+                    up.add(neighbor);
+                }
+            }
+            for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+                for (int arc = firstArcs[ranks[child]]; arc < firstArcs[ranks[child] + 1]; arc++) {
+                    int neighbor = heads.get(arc);
+                    if (neighbor != node && marks[neighbor] != rank) {
+                        marks[neighbor] = rank;
+                        up.add(neighbor);
+                    }
+                }
+            }
+
+            Arrays.sort(up.buffer, 0, up.size());
+            heads.add(up.buffer, 0, up.size());
+            firstArcs[rank + 1] = heads.size();
+
+            // the neighbour contracted next inherits the others
+            if (!up.isEmpty()) {
+                int parent = up.get(0);
+                for (int i = 1; i < up.size(); i++) {
+                    if (ranks[up.get(i)] < ranks[parent])
+                        parent = up.get(i);
+                }
+                nextSiblings[node] = firstChildren[parent];
+                firstChildren[parent] = node;
+            }
+        }
+
+        int[] headsArray = heads.toArray();
+        int[] edgeArcs = new int[edges];
+        int[] firstBaseEdges = new int[headsArray.length + 1];
+        iter = graph.getAllEdges();
+        while (iter.next()) {
+            int arc = iter.getBaseNode() == iter.getAdjNode() ? -1 : findArc(ranks, firstArcs, headsArray, iter.getBaseNode(), iter.getAdjNode());
+            edgeArcs[iter.getEdge()] = arc;
+            if (arc >= 0)
+                firstBaseEdges[arc + 1]++;
+        }
+        for (int arc = 0; arc < headsArray.length; arc++)
+            firstBaseEdges[arc + 1] += firstBaseEdges[arc];
+        int[] baseEdges = new int[firstBaseEdges[headsArray.length]];
+        next = Arrays.copyOf(firstBaseEdges, headsArray.length);
+        for (int edge = 0; edge < edges; edge++) {
+            if (edgeArcs[edge] >= 0)
+                baseEdges[next[edgeArcs[edge]]++] = edge;
+        }
+
+        return new CustomizableHierarchy(edges, ranks, firstArcs, headsArray, firstBaseEdges, baseEdges);
+    }
+
+    private static CustomizableHierarchy load(DataAccess data, int nodes, int edges) {
+        int arcs = data.getHeader(12);
+        int baseEdgesCount = data.getHeader(16);
+
+        long index = 0;
+        int[] ranks = readInts(data, index, nodes);
+        int[] firstArcs = readInts(data, index += nodes, nodes + 1);
+        int[] heads = readInts(data, index += nodes + 1, arcs);
+        int[] firstBaseEdges = readInts(data, index += arcs, arcs + 1);
+        int[] baseEdges = readInts(data, index + arcs + 1, baseEdgesCount);
+
+        return new CustomizableHierarchy(edges, ranks, firstArcs, heads, firstBaseEdges, baseEdges);
+    }
+
+    private void store(DataAccess data, int edges) {
+        int arcs = heads.length;
+        data.ensureCapacity(Math.max(4L * (2L * nodes + 2L * arcs + 2 + baseEdges.length), 4));
+
+        long index = 0;
+        writeInts(data, index, ranks);
+        writeInts(data, index += nodes, firstArcs);
+        writeInts(data, index += nodes + 1, heads);
+        writeInts(data, index += arcs, firstBaseEdges);
+        writeInts(data, index + arcs + 1, baseEdges);
+
+        data.setHeader(0, VERSION);
+        data.setHeader(4, nodes);
+        data.setHeader(8, edges);
+        data.setHeader(12, arcs);
+        data.setHeader(16, baseEdges.length);
+        data.flush();
+    }
+
+    private static int[] readInts(DataAccess data, long index, int length) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++)
+            values[i] = data.getInt((index + i) * 4);
+        return values;
+    }
+
+    private static void writeInts(DataAccess data, long index, int[] values) {
+        for (int i = 0; i < values.length; i++)
+            data.setInt((index + i) * 4, values[i]);
+    }
+
+    private static int findArc(int[] ranks, int[] firstArcs, int[] heads, int nodeA, int nodeB) {
+        int tail = ranks[nodeA] < ranks[nodeB] ? nodeA : nodeB;
+        int head = tail == nodeA ? nodeB : nodeA;
+        int arc = Arrays.binarySearch(heads, firstArcs[ranks[tail]], firstArcs[ranks[tail] + 1], head);
+        return arc < 0 ? -1 : arc;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getArcs() {
+        return heads.length;
+    }
+
+    /**
+     * Returns the position of the node in the contraction order.
+     */
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    /**
+     * Returns the first arc to the neighbours contracted after the node.
+     */
+    public int getFirstArc(int node) {
+        return firstArcs[ranks[node]];
+    }
+
+    /**
+     * Returns the arc following the last one to the neighbours contracted after the node.
+     */
+    public int getLastArc(int node) {
+        return firstArcs[ranks[node] + 1];
+    }
+
+    /**
+     * Returns the end node of the arc contracted first.
+     */
+    public int getTail(int arc) {
+        return tails[arc];
+    }
+
+    /**
+     * Returns the end node of the arc contracted last.
+     */
+    public int getHead(int arc) {
+        return heads[arc];
+    }
+
+    /**
+     * Returns the arc between the two nodes or -1 if they are not adjacent in the hierarchy.
+     */
+    public int findArc(int nodeA, int nodeB) {
+        return findArc(ranks, firstArcs, heads, nodeA, nodeB);
+    }
+
+    /**
+     * Returns the arc containing the edge of the graph or -1 if the edge is a loop.
+     */
+    public int getArc(int edge) {
+        return edgeArcs[edge];
+    }
+
+    public int getFirstBaseEdge(int arc) {
+        return firstBaseEdges[arc];
+    }
+
+    public int getLastBaseEdge(int arc) {
+        return firstBaseEdges[arc + 1];
+    }
+
+    /**
+     * Returns the edge of the graph at the given position between {@link #getFirstBaseEdge(int)} and
+     * {@link #getLastBaseEdge(int)} of its arc.
+     */
+    public int getBaseEdge(int index) {
+        return baseEdges[index];
+    }
+
+    /**
+     * Returns the first of the arcs from the neighbours contracted before the node, which are sorted by their tails.
+     * The common tails of the arcs of two nodes are the lower corners of the triangles above the arc connecting them.
+     */
+    public int getFirstDownArc(int node) {
+        return firstDownArcs[node];
+    }
+
+    public int getLastDownArc(int node) {
+        return firstDownArcs[node + 1];
+    }
+
+    /**
+     * Returns the arc at the given position between {@link #getFirstDownArc(int)} and {@link #getLastDownArc(int)} of
+     * its head.
+     */
+    public int getDownArc(int index) {
+        return downArcs[index];
+    }
+
+    /**
+     * Computes the contraction order by recursively splitting the cells of nodes at the median of their coordinates.
+     */
+    private static class NestedDissection {
+        private final float[] lats;
+        private final float[] lons;
+        private final int[] firstNeighbors;
+        private final int[] neighbors;
+        private final int[] cellNodes;
+        private final int[] sides;
+        private final int[] ranks;
+        // side marks of the cells, 0 is left for the nodes not marked yet
+        private int sideMarks = 1;
+        private int nextRank;
+
+        NestedDissection(NodeAccess nodeAccess, int nodes, int[] firstNeighbors, int[] neighbors) {
+            this.firstNeighbors = firstNeighbors;
+            this.neighbors = neighbors;
+            lats = new float[nodes];
+            lons = new float[nodes];
+            cellNodes = new int[nodes];
+            sides = new int[nodes];
+            ranks = new int[nodes];
+            for (int node = 0; node < nodes; node++) {
+                lats[node] = (float) nodeAccess.getLatitude(node);
+                lons[node] = (float) nodeAccess.getLongitude(node);
+                cellNodes[node] = node;
+            }
+        }
+
+        int[] computeRanks() {
+            dissect(0, cellNodes.length);
+            return ranks;
+        }
+
+        private void dissect(int from, int to) {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++)
+                    ranks[cellNodes[i]] = nextRank++;
+                return;
+            }
+
+            float minLat = Float.MAX_VALUE, maxLat = -Float.MAX_VALUE, minLon = Float.MAX_VALUE, maxLon = -Float.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                int node = cellNodes[i];
+                minLat = Math.min(minLat, lats[node]);
+                maxLat = Math.max(maxLat, lats[node]);
+                minLon = Math.min(minLon, lons[node]);
+                maxLon = Math.max(maxLon, lons[node]);
+            }
+            float[] keys = (maxLon - minLon) * Math.cos(Math.toRadians((minLat + maxLat) / 2)) >= maxLat - minLat ? lons : lats;
+
+            int mid = (from + to) >>> 1;
+            select(keys, from, to, mid);
+
+            int firstSide = sideMarks++;
+            int secondSide = sideMarks++;
+            for (int i = from; i < mid; i++)
+                sides[cellNodes[i]] = firstSide;
+            for (int i = mid; i < to; i++)
+                sides[cellNodes[i]] = secondSide;
+
+            // the smaller boundary separates the halves
+            if (countBoundary(from, mid, secondSide) <= countBoundary(mid, to, firstSide)) {
+                int separator = moveBoundaryToEnd(from, mid, secondSide);
+                dissect(from, separator);
+                dissect(mid, to);
+                for (int i = separator; i < mid; i++)
+                    ranks[cellNodes[i]] = nextRank++;
+            } else {
+                int separator = moveBoundaryToEnd(mid, to, firstSide);
+                dissect(from, mid);
+                dissect(mid, separator);
+                for (int i = separator; i < to; i++)
+                    ranks[cellNodes[i]] = nextRank++;
+            }
+        }
+
+        private boolean isBoundary(int node, int otherSide) {
+            for (int i = firstNeighbors[node]; i < firstNeighbors[node + 1]; i++) {
+                if (sides[neighbors[i]] == otherSide)
+                    return true;
+            }
+            return false;
+        }
+
+        private int countBoundary(int from, int to, int otherSide) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (isBoundary(cellNodes[i], otherSide))
+                    count++;
+            }
+            return count;
+        }
+
+        /**
+         * Moves the nodes adjacent to the other side behind the remaining ones and returns the position of the first.
+         */
+        private int moveBoundaryToEnd(int from, int to, int otherSide) {
+            int end = to;
+            for (int i = from; i < end; ) {
+                if (isBoundary(cellNodes[i], otherSide))
+                    swap(i, --end);
+                else
+                    i++;
+            }
+            return end;
+        }
+
+        /**
+         * Partially sorts the cell so that the nodes before k have no greater and the ones after k no smaller key than
+         * the node at k.
+         */
+        private void select(float[] keys, int from, int to, int k) {
+            int left = from;
+            int right = to - 1;
+            while (right > left) {
+                float pivot = keys[cellNodes[(left + right) >>> 1]];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (keys[cellNodes[i]] < pivot)
+                        i++;
+                    while (keys[cellNodes[j]] > pivot)
+                        j--;
+                    if (i <= j)
+                        swap(i++, j--);
+                }
+                if (k <= j)
+                    right = j;
+                else if (k >= i)
+                    left = i;
+                else
+                    break;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int node = cellNodes[i];
+            cellNodes[i] = cellNodes[j];
+            cellNodes[j] = node;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Weights of the arcs of a {@link CustomizableHierarchy} for a metric of the graph. The weight of an arc is the
+ * minimum of the weights of the edges it contains and of the paths over the lower triangles, i.e. over the
+ * neighbours contracted before both of its end nodes. Both directions are stored: upwards from the tail to the head of
+ * the arc and downwards.
+ * <p>
+ * The arcs are customized bottom-up in the order of their ids, which is the contraction order of their tails, so the
+ * arcs of a lower triangle always have their final weights. Weights customized for a metric that differs from a fully
+ * customized one on a few edges, like the traffic of an update, only store the arcs whose weight has changed.
+ */
+public class CustomizedShortcutWeights {
+    private final CustomizedShortcutWeights baseWeights;
+    // the customized arcs in ascending order or null if all arcs are, the fields only change during the customization
+    private int[] arcs;
+    private float[] weights;
+    private int size;
+
+    private CustomizedShortcutWeights(CustomizedShortcutWeights baseWeights, int[] arcs, float[] weights) {
+        this.baseWeights = baseWeights;
+        this.arcs = arcs;
+        this.weights = weights;
+    }
+
+    /**
+     * Customizes all arcs for the weighting of the graph.
+     */
+    public static CustomizedShortcutWeights customize(CustomizableHierarchy hierarchy, Graph graph, Weighting weighting) {
+        CustomizedShortcutWeights result = new CustomizedShortcutWeights(null, null, new float[2 * hierarchy.getArcs()]);
+
+        double[] arcWeights = new double[2];
+        for (int arc = 0; arc < hierarchy.getArcs(); arc++) {
+            result.computeArc(hierarchy, graph, weighting, arc, arcWeights);
+            result.weights[2 * arc] = (float) arcWeights[0];
+            result.weights[2 * arc + 1] = (float) arcWeights[1];
+        }
+        result.size = hierarchy.getArcs();
+
+        return result;
+    }
+
+    /**
+     * Customizes the arcs affected by the edges whose weight differs from the one the base weights have been
+     * customized for. An arc is affected if it contains one of the edges or if one of the arcs of its lower triangles
+     * has changed, which is always an arc with a lower id.
+     *
+     * @param baseWeights the weights of all arcs for the metric the weighting is derived from
+     * @param changedEdges the edges whose weight differs from the one of the base weights, this set is not modified
+     */
+    public static CustomizedShortcutWeights customize(CustomizableHierarchy hierarchy, Graph graph, Weighting weighting,
+                                                      CustomizedShortcutWeights baseWeights, BitSet changedEdges) {
+        if (baseWeights.arcs != null)
+            throw new IllegalArgumentException("The base weights have to be customized for all arcs.");
+
+        BitSet affected = new BitSet(hierarchy.getArcs());
+        for (int edge = changedEdges.nextSetBit(0); edge >= 0; edge = changedEdges.nextSetBit(edge + 1)) {
+            int arc = hierarchy.getArc(edge);
+            if (arc >= 0)
+                affected.set(arc);
+        }
+
+        CustomizedShortcutWeights result = new CustomizedShortcutWeights(baseWeights, new int[16], new float[32]);
+
+        double[] arcWeights = new double[2];
+        for (int arc = affected.nextSetBit(0); arc >= 0; arc = affected.nextSetBit(arc + 1)) {
+            result.computeArc(hierarchy, graph, weighting, arc, arcWeights);
+            float upwards = (float) arcWeights[0];
+            float downwards = (float) arcWeights[1];
+            if (upwards == baseWeights.getWeight(arc, true) && downwards == baseWeights.getWeight(arc, false))
+                continue;
+
+            result.add(arc, upwards, downwards);
+
+            // the arc is a lower one of the triangles with its tail as lowest corner
+            int tail = hierarchy.getTail(arc);
+            int head = hierarchy.getHead(arc);
+            for (int other = hierarchy.getFirstArc(tail); other < hierarchy.getLastArc(tail); other++) {
+                if (other != arc)
+                    affected.set(hierarchy.findArc(head, hierarchy.getHead(other)));
+            }
+        }
+
+        result.arcs = Arrays.copyOf(result.arcs, result.size);
+        result.weights = Arrays.copyOf(result.weights, 2 * result.size);
+        return result;
+    }
+
+    /**
+     * Appends the weights of an arc with a higher id than the ones customized so far.
+     */
+    private void add(int arc, float upwards, float downwards) {
+        if (size == arcs.length) {
+            arcs = Arrays.copyOf(arcs, 2 * size);
+            weights = Arrays.copyOf(weights, 4 * size);
+        }
+        arcs[size] = arc;
+        weights[2 * size] = upwards;
+        weights[2 * size + 1] = downwards;
+        size++;
+    }
+
+    /**
+     * Computes the weights of the arc upwards and downwards from the weights of its edges and of its lower triangles.
+     */
+    private void computeArc(CustomizableHierarchy hierarchy, Graph graph, Weighting weighting, int arc, double[] result) {
+        int tail = hierarchy.getTail(arc);
+        int head = hierarchy.getHead(arc);
+        double upwards = Double.POSITIVE_INFINITY;
+        double downwards = Double.POSITIVE_INFINITY;
+
+        for (int i = hierarchy.getFirstBaseEdge(arc); i < hierarchy.getLastBaseEdge(arc); i++) {
+            int edge = hierarchy.getBaseEdge(i);
+            upwards = Math.min(upwards, weighting.calcWeight(graph.getEdgeIteratorState(edge, head), false, EdgeIterator.NO_EDGE));
+            downwards = Math.min(downwards, weighting.calcWeight(graph.getEdgeIteratorState(edge, tail), false, EdgeIterator.NO_EDGE));
+        }
+
+        // the common tails of the arcs ending at both nodes, which are sorted by their tails
+        int i = hierarchy.getFirstDownArc(tail);
+        int j = hierarchy.getFirstDownArc(head);
+        while (i < hierarchy.getLastDownArc(tail) && j < hierarchy.getLastDownArc(head)) {
+            int lowerTail = hierarchy.getDownArc(i);
+            int lowerHead = hierarchy.getDownArc(j);
+            int cornerTail = hierarchy.getTail(lowerTail);
+            int cornerHead = hierarchy.getTail(lowerHead);
+            if (cornerTail < cornerHead) {
+                i++;
+            } else if (cornerTail > cornerHead) {
+                j++;
+            } else {
+                upwards = Math.min(upwards, getWeight(lowerTail, false) + getWeight(lowerHead, true));
+                downwards = Math.min(downwards, getWeight(lowerHead, false) + getWeight(lowerTail, true));
+                i++;
+                j++;
+            }
+        }
+
+        result[0] = upwards;
+        result[1] = downwards;
+    }
+
+    /**
+     * Returns the number of customized arcs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the weight of traversing the arc from its tail to its head if upwards is true, or from its head to its
+     * tail otherwise. The weight is infinite if the arc cannot be traversed in that direction.
+     */
+    public double getWeight(int arc, boolean upwards) {
+        if (arcs == null)
+            return weights[2 * arc + (upwards ? 0 : 1)];
+
+        int index = Arrays.binarySearch(arcs, 0, size, arc);
+        if (index < 0)
+            return baseWeights.getWeight(arc, upwards);
+        return weights[2 * index + (upwards ? 0 : 1)];
+    }
+}
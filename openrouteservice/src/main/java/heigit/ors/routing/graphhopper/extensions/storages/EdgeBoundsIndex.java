@@ -0,0 +1,213 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Spatial index of the edges of a graph by their bounding boxes. The bounds of the graph are divided into a regular
+ * grid of cells and every edge is listed in all cells its bounding box overlaps. It is computed once and stored in
+ * the graph folder, so that the edges within an area can be found without iterating over the whole graph.
+ * <p>
+ * Layout: the offsets of the edge lists of the cells (one more than the number of cells) followed by the edge ids of
+ * all cells. The grid is described by the header: 0 version, 4 number of edges, 8 columns, 12 rows, 16 min longitude,
+ * 20 min latitude, 24 cell width, 28 cell height, the coordinates as float bits.
+ */
+public class EdgeBoundsIndex {
+    private static final int VERSION = 1;
+    private static final int EDGES_PER_CELL = 8;
+
+    private final DataAccess data;
+    private final int edges;
+    private final int columns;
+    private final int rows;
+    private final float minLon;
+    private final float minLat;
+    private final float cellWidth;
+    private final float cellHeight;
+
+    private EdgeBoundsIndex(DataAccess data) {
+        this.data = data;
+        edges = data.getHeader(4);
+        columns = data.getHeader(8);
+        rows = data.getHeader(12);
+        minLon = Float.intBitsToFloat(data.getHeader(16));
+        minLat = Float.intBitsToFloat(data.getHeader(20));
+        cellWidth = Float.intBitsToFloat(data.getHeader(24));
+        cellHeight = Float.intBitsToFloat(data.getHeader(28));
+    }
+
+    /**
+     * Loads the index of the graph, or computes and stores it if it does not exist yet or belongs to a different
+     * graph.
+     */
+    public static EdgeBoundsIndex loadOrCreate(Directory dir, Graph graph) {
+        DataAccess data = dir.find("edge_bounds");
+        int edges = graph.getAllEdges().getMaxId();
+
+        if (data.loadExisting()) {
+            if (data.getHeader(0) == VERSION && data.getHeader(4) == edges)
+                return new EdgeBoundsIndex(data);
+        } else {
+            data.create(1000);
+        }
+
+        compute(data, graph, edges);
+        return new EdgeBoundsIndex(data);
+    }
+
+    /**
+     * Fills the index in two passes over the edges. The first one counts the edges per cell, the second one writes
+     * the edge ids at the offsets derived from the counts.
+     */
+    private static void compute(DataAccess data, Graph graph, int edges) {
+        BBox bounds = graph.getBounds();
+        double width = Math.max(bounds.maxLon - bounds.minLon, 1e-6);
+        double height = Math.max(bounds.maxLat - bounds.minLat, 1e-6);
+        int cells = Math.max(1, edges / EDGES_PER_CELL);
+        int columns = Math.max(1, (int) Math.round(Math.sqrt(cells * width / height)));
+        int rows = Math.max(1, cells / columns);
+
+        data.setHeader(0, VERSION);
+        data.setHeader(4, edges);
+        data.setHeader(8, columns);
+        data.setHeader(12, rows);
+        data.setHeader(16, Float.floatToRawIntBits((float) bounds.minLon));
+        data.setHeader(20, Float.floatToRawIntBits((float) bounds.minLat));
+        data.setHeader(24, Float.floatToRawIntBits((float) (width / columns)));
+        data.setHeader(28, Float.floatToRawIntBits((float) (height / rows)));
+        EdgeBoundsIndex index = new EdgeBoundsIndex(data);
+
+        int[] cellRange = new int[4];
+        int[] counts = new int[columns * rows];
+        EdgeIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            index.getCellRange(iter.fetchWayGeometry(3), cellRange);
+            for (int y = cellRange[1]; y <= cellRange[3]; y++) {
+                for (int x = cellRange[0]; x <= cellRange[2]; x++)
+                    counts[y * columns + x]++;
+            }
+        }
+
+        long total = counts.length + 1;
+        for (int count : counts)
+            total += count;
+        if (total > Integer.MAX_VALUE)
+            throw new IllegalStateException("Unable to create the edge bounds index, too many entries.");
+
+        data.ensureCapacity(total * 4);
+
+        // the counts become the positions at which the next edge of a cell is written
+        int offset = counts.length + 1;
+        for (int cell = 0; cell < counts.length; cell++) {
+            data.setInt((long) cell * 4, offset);
+            int count = counts[cell];
+            counts[cell] = offset;
+            offset += count;
+        }
+        data.setInt((long) counts.length * 4, offset);
+
+        iter = graph.getAllEdges();
+        while (iter.next()) {
+            index.getCellRange(iter.fetchWayGeometry(3), cellRange);
+            for (int y = cellRange[1]; y <= cellRange[3]; y++) {
+                for (int x = cellRange[0]; x <= cellRange[2]; x++)
+                    data.setInt((long) counts[y * columns + x]++ * 4, iter.getEdge());
+            }
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Returns the number of edges of the graph the index has been built for. Edges with higher ids, e.g. virtual edges
+     * of a query graph, are not part of it.
+     */
+    public int getEdgesCount() {
+        return edges;
+    }
+
+    /**
+     * Returns the ids of all edges whose bounding box may intersect the envelope. The result can contain edges which
+     * are close to the envelope but do not intersect it.
+     */
+    public IntHashSet getEdges(Envelope env) {
+        IntHashSet result = new IntHashSet();
+        int minX = getColumn(env.getMinX());
+        int maxX = getColumn(env.getMaxX());
+        int minY = getRow(env.getMinY());
+        int maxY = getRow(env.getMaxY());
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                long cell = (long) y * columns + x;
+                int end = data.getInt((cell + 1) * 4);
+                for (int i = data.getInt(cell * 4); i < end; i++)
+                    result.add(data.getInt((long) i * 4));
+            }
+        }
+
+        return result;
+    }
+
+    public long getCapacity() {
+        return data.getCapacity();
+    }
+
+    public void close() {
+        data.close();
+    }
+
+    /**
+     * Sets the range of cells covered by the bounding box of the points as min column, min row, max column, max row.
+     */
+    private void getCellRange(PointList points, int[] range) {
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+
+        for (int i = 0; i < points.getSize(); i++) {
+            double x = points.getLon(i);
+            double y = points.getLat(i);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+
+        range[0] = getColumn(minX);
+        range[1] = getRow(minY);
+        range[2] = getColumn(maxX);
+        range[3] = getRow(maxY);
+    }
+
+    /**
+     * Locations outside of the grid are assigned to its border cells, so that no edge is missed due to rounding.
+     */
+    private int getColumn(double lon) {
+        return Math.min(columns - 1, Math.max(0, (int) Math.floor((lon - minLon) / cellWidth)));
+    }
+
+    private int getRow(double lat) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((lat - minLat) / cellHeight)));
+    }
+}
@@ -0,0 +1,237 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+/**
+ * Index of the OSM way ids of edges and of the edges of OSM ways, stored in the graph folder and memory mapped on
+ * load. The pairs of OSM id and edge id are stored twice, sorted by OSM id and sorted by edge id, so that both
+ * directions are binary searches directly on the mapped data.
+ * <p>
+ * Layout: header 0 entry bytes, header 4 number of pairs. The pairs sorted by OSM id come first, each as OSM id
+ * (high int, low int) and edge id. They are followed by the pairs sorted by edge id, each as edge id and OSM id.
+ */
+public class OsmIdEdgesIndex {
+    public static final long NO_OSM_ID = -1;
+
+    private static final int ENTRY_BYTES = 12;
+
+    private final DataAccess data;
+    private int size;
+
+    private OsmIdEdgesIndex(DataAccess data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Writes the pairs collected by the builder to the index file in the given directory.
+     */
+    public static OsmIdEdgesIndex create(Directory dir, String name, Builder builder) {
+        int size = builder.size();
+        long[] osmIds = new long[size];
+        long[] edgeIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            osmIds[i] = builder.osmIds.get(i);
+            edgeIds[i] = builder.edgeIds.get(i);
+        }
+
+        DataAccess data = dir.find(name, DAType.MMAP);
+        data.create(Math.max((long) size * ENTRY_BYTES * 2, 8));
+
+        sortPairs(osmIds, edgeIds, 0, size - 1);
+        for (int i = 0; i < size; i++) {
+            long pointer = (long) i * ENTRY_BYTES;
+            data.setInt(pointer, (int) (osmIds[i] >>> 32));
+            data.setInt(pointer + 4, (int) osmIds[i]);
+            data.setInt(pointer + 8, (int) edgeIds[i]);
+        }
+
+        sortPairs(edgeIds, osmIds, 0, size - 1);
+        long offset = (long) size * ENTRY_BYTES;
+        for (int i = 0; i < size; i++) {
+            long pointer = offset + (long) i * ENTRY_BYTES;
+            data.setInt(pointer, (int) edgeIds[i]);
+            data.setInt(pointer + 4, (int) (osmIds[i] >>> 32));
+            data.setInt(pointer + 8, (int) osmIds[i]);
+        }
+
+        data.setHeader(0, ENTRY_BYTES);
+        data.setHeader(4, size);
+        data.flush();
+
+        return new OsmIdEdgesIndex(data, size);
+    }
+
+    /**
+     * Maps an index file written by {@link #create(Directory, String, Builder)}. A graph without such a file, which
+     * has no edges of TMC road types or has been built before the index existed, gets an empty index.
+     */
+    public static OsmIdEdgesIndex load(Directory dir, String name) {
+        DataAccess data = dir.find(name, DAType.MMAP);
+        if (!data.loadExisting()) {
+            dir.remove(data);
+            return create(dir, name, new Builder());
+        }
+
+        if (data.getHeader(0) != ENTRY_BYTES)
+            throw new IllegalStateException("Unable to load storage '" + name + "'. Unsupported entry size " + data.getHeader(0) + ".");
+
+        return new OsmIdEdgesIndex(data, data.getHeader(4));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the OSM id of the edge or {@link #NO_OSM_ID} if the edge is not part of the index.
+     */
+    public long getOsmId(int edgeId) {
+        long offset = (long) size * ENTRY_BYTES;
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long pointer = offset + (long) mid * ENTRY_BYTES;
+            int value = data.getInt(pointer);
+
+            if (value < edgeId)
+                low = mid + 1;
+            else if (value > edgeId)
+                high = mid - 1;
+            else
+                return readLong(pointer + 4);
+        }
+
+        return NO_OSM_ID;
+    }
+
+    /**
+     * Returns the position of the first edge of the given OSM way or -1 if there is none. The edges of the way are at
+     * the consecutive positions for which {@link #getOsmIdAt(int)} returns osmId.
+     */
+    public int indexOfOsmId(long osmId) {
+        int low = 0;
+        int high = size - 1;
+        int result = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = getOsmIdAt(mid);
+
+            if (value < osmId) {
+                low = mid + 1;
+            } else {
+                if (value == osmId)
+                    result = mid;
+                high = mid - 1;
+            }
+        }
+
+        return result;
+    }
+
+    public long getOsmIdAt(int index) {
+        return readLong((long) index * ENTRY_BYTES);
+    }
+
+    public int getEdgeIdAt(int index) {
+        return data.getInt((long) index * ENTRY_BYTES + 8);
+    }
+
+    public long getCapacity() {
+        return data.getCapacity();
+    }
+
+    public void close() {
+        data.close();
+    }
+
+    private long readLong(long pointer) {
+        return ((long) data.getInt(pointer) << 32) | (data.getInt(pointer + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Sorts the pairs of both arrays by keys, then values.
+     */
+    private static void sortPairs(long[] keys, long[] values, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            long pivotKey = keys[mid];
+            long pivotValue = values[mid];
+            int i = from;
+            int j = to;
+
+            while (i <= j) {
+                while (compare(keys[i], values[i], pivotKey, pivotValue) < 0)
+                    i++;
+                while (compare(keys[j], values[j], pivotKey, pivotValue) > 0)
+                    j--;
+
+                if (i <= j) {
+                    long tmp = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = tmp;
+                    tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            // recurse into the smaller part to bound the stack depth
+            if (j - from < to - i) {
+                sortPairs(keys, values, from, j);
+                from = i;
+            } else {
+                sortPairs(keys, values, i, to);
+                to = j;
+            }
+        }
+    }
+
+    private static int compare(long key1, long value1, long key2, long value2) {
+        int res = Long.compare(key1, key2);
+        return res != 0 ? res : Long.compare(value1, value2);
+    }
+
+    /**
+     * Collects the pairs of OSM way id and edge id during the import.
+     */
+    public static class Builder {
+        private final LongArrayList osmIds = new LongArrayList();
+        private final IntArrayList edgeIds = new IntArrayList();
+
+        public void add(int edgeId, long osmId) {
+            edgeIds.add(edgeId);
+            osmIds.add(osmId);
+        }
+
+        public int size() {
+            return edgeIds.size();
+        }
+
+        public boolean isEmpty() {
+            return edgeIds.isEmpty();
+        }
+    }
+}
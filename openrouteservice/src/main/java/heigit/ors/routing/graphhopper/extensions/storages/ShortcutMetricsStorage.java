@@ -0,0 +1,194 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.BitSet;
+
+/**
+ * Durations and distances of the shortcuts of a contraction hierarchies graph, i.e. the sums over the original edges a
+ * shortcut stands for. They are computed once after the CH preparation and stored in the graph folder, so that matrix
+ * metrics can be summed up per shortcut instead of unpacking every shortcut again per request.
+ * <p>
+ * The duration is stored for both directions: towards the end node with the higher and towards the one with the lower
+ * node id. It is NaN if the shortcut cannot be traversed in that direction.
+ */
+public class ShortcutMetricsStorage {
+    private static final int ENTRY_BYTES = 12;
+    private static final int TIME_TO_HIGHER = 0;
+    private static final int TIME_TO_LOWER = 4;
+    private static final int DISTANCE = 8;
+
+    private final DataAccess data;
+    private final int baseEdges;
+    private final int shortcuts;
+
+    private ShortcutMetricsStorage(DataAccess data, int baseEdges, int shortcuts) {
+        this.data = data;
+        this.baseEdges = baseEdges;
+        this.shortcuts = shortcuts;
+    }
+
+    /**
+     * Loads the metrics of the CH graph prepared for the given weighting, or computes and stores them if they do not
+     * exist yet or belong to a different preparation. The weighting has to be the one the CH graph is registered for.
+     */
+    public static ShortcutMetricsStorage loadOrCreate(Directory dir, CHGraph chGraph, Weighting weighting) {
+        DataAccess data = dir.find("shortcut_metrics_" + AbstractWeighting.weightingToFileName(weighting));
+        int baseEdges = chGraph.getBaseGraph().getAllEdges().getMaxId();
+        int shortcuts = chGraph.getAllEdges().getMaxId() - baseEdges;
+
+        if (data.loadExisting()) {
+            if (data.getHeader(0) == ENTRY_BYTES && data.getHeader(4) == baseEdges && data.getHeader(8) == shortcuts)
+                return new ShortcutMetricsStorage(data, baseEdges, shortcuts);
+        } else {
+            data.create(1000);
+        }
+
+        ShortcutMetricsStorage storage = new ShortcutMetricsStorage(data, baseEdges, shortcuts);
+        storage.compute(chGraph, weighting);
+        return storage;
+    }
+
+    /**
+     * Fills the entries bottom-up. A shortcut is only computed after the shortcuts it skips, which may have higher ids
+     * than the shortcut itself as the preparation updates existing shortcuts in place. An explicit stack is used, as
+     * shortcuts can be nested as deeply as the hierarchy has levels.
+     */
+    private void compute(CHGraph chGraph, Weighting weighting) {
+        data.ensureCapacity(Math.max((long) shortcuts * ENTRY_BYTES, 4));
+
+        BitSet computed = new BitSet(shortcuts);
+        IntArrayList stack = new IntArrayList();
+
+        for (int edge = baseEdges; edge < baseEdges + shortcuts; edge++) {
+            if (computed.get(edge - baseEdges))
+                continue;
+
+            stack.add(edge);
+            while (!stack.isEmpty()) {
+                int top = stack.get(stack.size() - 1);
+                CHEdgeIteratorState state = (CHEdgeIteratorState) chGraph.getEdgeIteratorState(top, Integer.MIN_VALUE);
+
+                int skipped1 = state.getSkippedEdge1();
+                int skipped2 = state.getSkippedEdge2();
+                if (isShortcut(skipped1) && !computed.get(skipped1 - baseEdges)) {
+                    stack.add(skipped1);
+                } else if (isShortcut(skipped2) && !computed.get(skipped2 - baseEdges)) {
+                    stack.add(skipped2);
+                } else {
+                    computeShortcut(chGraph, weighting, state);
+                    computed.set(top - baseEdges);
+                    stack.removeAt(stack.size() - 1);
+                }
+            }
+        }
+
+        data.setHeader(0, ENTRY_BYTES);
+        data.setHeader(4, baseEdges);
+        data.setHeader(8, shortcuts);
+        data.flush();
+    }
+
+    /**
+     * Sums up the values of the two edges skipped by the shortcut, which have to be available already.
+     */
+    private void computeShortcut(CHGraph chGraph, Weighting weighting, CHEdgeIteratorState state) {
+        int baseNode = state.getBaseNode();
+        int adjNode = state.getAdjNode();
+
+        // find the skipped edge at the base node, the other one connects the via node with adjNode
+        int baseSkipped = state.getSkippedEdge1();
+        int adjSkipped = state.getSkippedEdge2();
+        EdgeIteratorState baseSkippedState = chGraph.getEdgeIteratorState(baseSkipped, baseNode);
+        if (baseSkippedState == null) {
+            baseSkipped = state.getSkippedEdge2();
+            adjSkipped = state.getSkippedEdge1();
+            baseSkippedState = chGraph.getEdgeIteratorState(baseSkipped, baseNode);
+        }
+        int viaNode = baseSkippedState.getBaseNode();
+
+        double distance = getDistance(chGraph, baseSkipped, baseNode) + getDistance(chGraph, adjSkipped, adjNode);
+        double forwardTime = getTime(chGraph, weighting, baseSkipped, baseNode, viaNode) + getTime(chGraph, weighting, adjSkipped, viaNode, adjNode);
+        double backwardTime = getTime(chGraph, weighting, adjSkipped, adjNode, viaNode) + getTime(chGraph, weighting, baseSkipped, viaNode, baseNode);
+
+        long pointer = (long) (state.getEdge() - baseEdges) * ENTRY_BYTES;
+        setFloat(pointer + TIME_TO_HIGHER, adjNode > baseNode ? forwardTime : backwardTime);
+        setFloat(pointer + TIME_TO_LOWER, adjNode > baseNode ? backwardTime : forwardTime);
+        setFloat(pointer + DISTANCE, distance);
+    }
+
+    private double getDistance(CHGraph chGraph, int edge, int adjNode) {
+        if (isShortcut(edge))
+            return getDistance(edge);
+
+        return chGraph.getEdgeIteratorState(edge, adjNode).getDistance();
+    }
+
+    private double getTime(CHGraph chGraph, Weighting weighting, int edge, int fromNode, int toNode) {
+        if (isShortcut(edge))
+            return getTime(edge, toNode > fromNode);
+
+        try {
+            return weighting.calcMillis(chGraph.getEdgeIteratorState(edge, toNode), false, EdgeIterator.NO_EDGE) / 1000.0;
+        } catch (IllegalStateException ex) {
+            // the edge is not accessible in this direction
+            return Double.NaN;
+        }
+    }
+
+    public boolean isShortcut(int edge) {
+        return edge >= baseEdges && edge < baseEdges + shortcuts;
+    }
+
+    /**
+     * Returns the duration in seconds of traversing the shortcut towards the end node with the higher node id if
+     * towardsHigherNode is true, or towards the other end node otherwise. NaN if the direction is not accessible.
+     */
+    public double getTime(int edge, boolean towardsHigherNode) {
+        return getFloat((long) (edge - baseEdges) * ENTRY_BYTES + (towardsHigherNode ? TIME_TO_HIGHER : TIME_TO_LOWER));
+    }
+
+    /**
+     * Returns the length of the shortcut in meters.
+     */
+    public double getDistance(int edge) {
+        return getFloat((long) (edge - baseEdges) * ENTRY_BYTES + DISTANCE);
+    }
+
+    public long getCapacity() {
+        return data.getCapacity();
+    }
+
+    public void close() {
+        data.close();
+    }
+
+    private void setFloat(long pointer, double value) {
+        data.setInt(pointer, Float.floatToRawIntBits((float) value));
+    }
+
+    private float getFloat(long pointer) {
+        return Float.intBitsToFloat(data.getInt(pointer));
+    }
+}
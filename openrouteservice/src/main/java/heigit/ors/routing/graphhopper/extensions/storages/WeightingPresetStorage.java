@@ -0,0 +1,115 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * The summed factors of a fixed combination of custom weightings (e.g. green and quiet with given factors) per edge.
+ * They are computed once when the graph is loaded and stored in the graph folder, so that such a combination costs
+ * one read per edge instead of one lookup per weighting and graph extension.
+ * <p>
+ * The custom weightings depend on whether the base node id of the edge state is lower than the adjacent one, so both
+ * cases are stored.
+ */
+public class WeightingPresetStorage {
+    private static final int ENTRY_BYTES = 8;
+    private static final int BASE_NODE_LOWER = 0;
+    private static final int BASE_NODE_HIGHER = 4;
+
+    private final DataAccess data;
+    private final int edges;
+
+    private WeightingPresetStorage(DataAccess data, int edges) {
+        this.data = data;
+        this.edges = edges;
+    }
+
+    /**
+     * Loads the factors of the preset with the given key, or computes and stores them if they do not exist yet or
+     * belong to a different graph or preset.
+     */
+    public static WeightingPresetStorage loadOrCreate(Directory dir, String key, GraphHopperStorage graph, Weighting[] weightings) {
+        DataAccess data = dir.find("weighting_preset_" + key.replaceAll("[^A-Za-z0-9]", "_"));
+        int edges = graph.getEdges();
+
+        if (data.loadExisting()) {
+            if (data.getHeader(0) == ENTRY_BYTES && data.getHeader(4) == edges && data.getHeader(8) == key.hashCode())
+                return new WeightingPresetStorage(data, edges);
+        } else {
+            data.create(1000);
+        }
+
+        WeightingPresetStorage storage = new WeightingPresetStorage(data, edges);
+        storage.compute(graph, weightings);
+        data.setHeader(8, key.hashCode());
+        data.flush();
+        return storage;
+    }
+
+    private void compute(GraphHopperStorage graph, Weighting[] weightings) {
+        data.ensureCapacity(Math.max((long) edges * ENTRY_BYTES, 4));
+
+        for (int edge = 0; edge < edges; edge++) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            int baseNode = state.getBaseNode();
+            int adjNode = state.getAdjNode();
+            double factor = calcFactor(weightings, state);
+            double reverseFactor = baseNode == adjNode ? factor : calcFactor(weightings, graph.getEdgeIteratorState(edge, baseNode));
+
+            long pointer = (long) edge * ENTRY_BYTES;
+            setFloat(pointer + BASE_NODE_LOWER, baseNode < adjNode ? factor : reverseFactor);
+            setFloat(pointer + BASE_NODE_HIGHER, baseNode < adjNode ? reverseFactor : factor);
+        }
+
+        data.setHeader(0, ENTRY_BYTES);
+        data.setHeader(4, edges);
+    }
+
+    private static double calcFactor(Weighting[] weightings, EdgeIteratorState state) {
+        double factor = 0;
+        for (Weighting weighting : weightings)
+            factor += weighting.calcWeight(state, false, EdgeIterator.NO_EDGE);
+        return factor;
+    }
+
+    public boolean contains(int edge) {
+        return edge >= 0 && edge < edges;
+    }
+
+    /**
+     * Returns the summed factor of the weightings for an edge state of the given edge whose base node id is lower than
+     * the adjacent one if baseNodeLower is true, or higher otherwise.
+     */
+    public double getFactor(int edge, boolean baseNodeLower) {
+        return Float.intBitsToFloat(data.getInt((long) edge * ENTRY_BYTES + (baseNodeLower ? BASE_NODE_LOWER : BASE_NODE_HIGHER)));
+    }
+
+    public long getCapacity() {
+        return data.getCapacity();
+    }
+
+    public void close() {
+        data.close();
+    }
+
+    private void setFloat(long pointer, double value) {
+        data.setInt(pointer, Float.floatToRawIntBits((float) value));
+    }
+}
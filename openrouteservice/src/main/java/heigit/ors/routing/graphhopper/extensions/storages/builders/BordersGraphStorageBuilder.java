@@ -28,7 +28,9 @@ import heigit.ors.routing.graphhopper.extensions.storages.BordersGraphStorage;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.MissingResourceException;
 
 /**
@@ -227,12 +229,14 @@ public class BordersGraphStorageBuilder extends AbstractGraphStorageBuilder {
                 // there is an overlap
                 Coordinate c = coords[i];
                 if(!Double.isNaN(c.x) && !Double.isNaN(c.y)) {
-                    // Check each country candidate
+                    // Check each country candidate. The reader answers points away from any border from its index, so
+                    // only points near a border are actually tested against the polygons
                     boolean found = false;
                     int countriesFound = 0;
+                    List<CountryBordersPolygon> containing = Arrays.asList(cbReader.getCountry(c));
 
                     for(CountryBordersPolygon cbp : countries) {
-                        if (cbp.inArea(c)) {
+                        if (containing.contains(cbp)) {
                             found = true;
                             countriesFound++;
                             if(!temp.contains(cbp)) {
@@ -13,6 +13,8 @@
  */
 package heigit.ors.routing.graphhopper.extensions.storages.builders;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.LongArrayList;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.storage.GraphExtension;
@@ -22,9 +24,6 @@ import com.graphhopper.util.Helper;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
 import heigit.ors.routing.graphhopper.extensions.storages.GreenIndexGraphStorage;
 
@@ -33,10 +32,9 @@ import heigit.ors.routing.graphhopper.extensions.storages.GreenIndexGraphStorage
  */
 public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
     private GreenIndexGraphStorage _storage;
-    private Map<Long, Double> _greenIndices = new HashMap<>();
+    private OsmIdLevelTable _greenLevels;
     private static int TOTAL_LEVEL = 64;
     private static int DEFAULT_LEVEL = TOTAL_LEVEL - 1;
-    private Map<Byte, SlotRange> _slots = new HashMap<>(TOTAL_LEVEL);
 
     public GreenIndexGraphStorageBuilder() {
 
@@ -50,25 +48,15 @@ public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
         // TODO Check if the _greenIndexFile exists
         String csvFile = _parameters.get("filepath");
         readGreenIndicesFromCSV(csvFile);
-        prepareGreenIndexSlots();
         _storage = new GreenIndexGraphStorage();
 
         return _storage;
     }
 
-    private void prepareGreenIndexSlots() {
-        double max = Collections.max(_greenIndices.values());
-        double min = Collections.min(_greenIndices.values());
-        double step = (max - min) / TOTAL_LEVEL;
-        // Divide the range of raw green index values into TOTAL_LEVEL,
-        // then map the raw value to [0..TOTAL_LEVEL - 1]
-        for (byte i = 0; i < TOTAL_LEVEL; i++) {
-            _slots.put(i, new SlotRange(min + i * step, min + (i + 1) * step));
-        }
-    }
-
     private void readGreenIndicesFromCSV(String csvFile) throws IOException {
         BufferedReader csvBuffer = null;
+        LongArrayList osmIds = new LongArrayList();
+        DoubleArrayList greenIndices = new DoubleArrayList();
         
         try {
             String row;
@@ -83,7 +71,8 @@ public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
                 if (!parseCSVrow(row, separator, rowValues)) 
                 	continue;
                 
-                _greenIndices.put(Long.parseLong(rowValues[0]), Double.parseDouble(rowValues[1]));
+                osmIds.add(Long.parseLong(rowValues[0]));
+                greenIndices.add(Double.parseDouble(rowValues[1]));
             }
 
         } catch (IOException openFileEx) {
@@ -93,6 +82,45 @@ public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
             if (csvBuffer != null) 
             	csvBuffer.close();
         }
+
+        _greenLevels = OsmIdLevelTable.create(osmIds.buffer, calcGreenLevels(greenIndices), osmIds.size());
+    }
+
+    /**
+     * Divides the range of raw green index values into TOTAL_LEVEL slots [min + i * step, min + (i + 1) * step] and
+     * maps each value to the first slot containing it, i.e. to [0..TOTAL_LEVEL - 1].
+     */
+    private byte[] calcGreenLevels(DoubleArrayList greenIndices) {
+        int size = greenIndices.size();
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, greenIndices.get(i));
+            max = Math.max(max, greenIndices.get(i));
+        }
+
+        double step = (max - min) / TOTAL_LEVEL;
+        byte[] levels = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            double value = greenIndices.get(i);
+            if (!(step > 0)) {
+                levels[i] = 0;
+                continue;
+            }
+
+            int level = Math.min((int) ((value - min) / step), TOTAL_LEVEL - 1);
+            // values on the border of two slots belong to the lower one
+            if (level > 0 && value <= min + level * step)
+                level--;
+            else if (level < TOTAL_LEVEL - 1 && value > min + (level + 1) * step)
+                level++;
+
+            levels[i] = (byte) level;
+        }
+
+        return levels;
     }
 
     private boolean parseCSVrow(String row, char separator,  String[] rowValues) {
@@ -124,37 +152,11 @@ public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
         _storage.setEdgeValue(edge.getEdge(), calcGreenIndex(way.getId()));
     }
 
-    private class SlotRange {
-        double left = 0.0;
-        double right = 0.0;
-
-        SlotRange(double l, double r) {
-            this.left = l;
-            this.right = r;
-        }
-
-        boolean within(double val) {
-            // check if the @val falls in [left, right] range
-            if ((val < left) || (val > right)) return false;
-            return true;
-        }
-    }
-
     private byte calcGreenIndex(long id) {
-        Double gi = _greenIndices.get(id);
-
-        // No such @id key in the _greenIndices, or the value of it is null
-        // We set its green level to TOTAL_LEVEL/2 indicating the middle value for such cases
+        // No such @id key in the green indices, we set its green level to DEFAULT_LEVEL
         // TODO this DEFAULT_LEVEL should be put in the app.config file and
         // injected back in the code
-        if (gi == null)
-            return (byte) (DEFAULT_LEVEL);
-
-        for (Map.Entry<Byte, SlotRange> s : _slots.entrySet()) {
-            if (s.getValue().within(gi))
-                return s.getKey();
-        }
-        return (byte) (DEFAULT_LEVEL);
+        return _greenLevels.get(id, (byte) DEFAULT_LEVEL);
     }
 
     @Override
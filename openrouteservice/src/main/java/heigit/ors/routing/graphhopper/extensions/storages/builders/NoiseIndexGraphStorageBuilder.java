@@ -13,6 +13,8 @@
  */
 package heigit.ors.routing.graphhopper.extensions.storages.builders;
 
+import com.carrotsearch.hppc.ByteArrayList;
+import com.carrotsearch.hppc.LongArrayList;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.storage.GraphExtension;
@@ -22,8 +24,6 @@ import com.graphhopper.util.Helper;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 import heigit.ors.routing.graphhopper.extensions.storages.NoiseIndexGraphStorage;
 
@@ -32,7 +32,7 @@ import heigit.ors.routing.graphhopper.extensions.storages.NoiseIndexGraphStorage
  */
 public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
     private NoiseIndexGraphStorage _storage;
-    private Map<Long, Integer> osmId2noiseLevel = new HashMap<>();
+    private OsmIdLevelTable osmId2noiseLevel;
     // currently noise level is only from 0 to 3
     private int max_level = 8;
 
@@ -55,6 +55,9 @@ public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
 
     private void readNoiseIndicesFromCSV(String csvFile) throws IOException {
         BufferedReader csvBuffer = null;
+        LongArrayList osmIds = new LongArrayList();
+        ByteArrayList noiseLevels = new ByteArrayList();
+
         try {
             String row;
             csvBuffer = new BufferedReader(new FileReader(csvFile));
@@ -66,7 +69,8 @@ public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
                 if (!parseCSVrow(row, rowValues)) 
                 	continue;
                 
-                osmId2noiseLevel.put(Long.parseLong(rowValues[0]), Integer.parseInt(rowValues[1]));
+                osmIds.add(Long.parseLong(rowValues[0]));
+                noiseLevels.add((byte) Integer.parseInt(rowValues[1]));
             }
 
         } catch (IOException openFileEx) {
@@ -76,6 +80,8 @@ public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
             if (csvBuffer != null) 
             	csvBuffer.close();
         }
+
+        osmId2noiseLevel = OsmIdLevelTable.create(osmIds.buffer, noiseLevels.buffer, osmIds.size());
     }
 
     private boolean parseCSVrow(String row,  String[] rowValues) {
@@ -110,16 +116,9 @@ public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
     }
 
     private byte getNoiseLevel(long id) {
-        Integer gi = osmId2noiseLevel.get(id);
-
-        // No such @id key in the _noiseIndices, or the value of it is null
+        // No such @id key in the _noiseIndices
         // We set its noise level to zero (no noise)
-        if (gi == null)
-            return (byte) (0);
-        if (gi.intValue() > max_level)
-        	new AssertionError("The noise level of osm way, id = "+ id + " is " + gi +", which is larger than than max level!");
-        
-        return (byte) (gi.intValue());
+        return osmId2noiseLevel.get(id, (byte) 0);
     }
 
     @Override
@@ -0,0 +1,113 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages.builders;
+
+/**
+ * Read only map of OSM way ids to byte levels, kept as a sorted primitive id array and a parallel level array. Uses
+ * 9 bytes per way and looks values up with a binary search without allocating.
+ */
+class OsmIdLevelTable {
+    private final long[] ids;
+    private final byte[] levels;
+    private final int size;
+
+    private OsmIdLevelTable(long[] ids, byte[] levels, int size) {
+        this.ids = ids;
+        this.levels = levels;
+        this.size = size;
+    }
+
+    /**
+     * Creates the table from the first size entries of the given arrays, which are sorted in place and taken over by
+     * the table. If an id occurs more than once, its last level is used.
+     */
+    static OsmIdLevelTable create(long[] ids, byte[] levels, int size) {
+        if (!isSorted(ids, size)) {
+            // a stable sort keeps duplicates in the order of the input
+            long[] tmpIds = new long[size];
+            byte[] tmpLevels = new byte[size];
+            System.arraycopy(ids, 0, tmpIds, 0, size);
+            System.arraycopy(levels, 0, tmpLevels, 0, size);
+            mergeSort(tmpIds, tmpLevels, ids, levels, 0, size);
+        }
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (i + 1 < size && ids[i + 1] == ids[i])
+                continue;
+
+            ids[count] = ids[i];
+            levels[count] = levels[i];
+            count++;
+        }
+
+        return new OsmIdLevelTable(ids, levels, count);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the level of the way or defaultLevel if the way is not part of the table.
+     */
+    byte get(long id, byte defaultLevel) {
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = ids[mid];
+
+            if (value < id)
+                low = mid + 1;
+            else if (value > id)
+                high = mid - 1;
+            else
+                return levels[mid];
+        }
+
+        return defaultLevel;
+    }
+
+    private static boolean isSorted(long[] ids, int size) {
+        for (int i = 1; i < size; i++) {
+            if (ids[i - 1] > ids[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sorts [from, to) of srcIds into dstIds, both arrays must hold the same values in that range.
+     */
+    private static void mergeSort(long[] srcIds, byte[] srcLevels, long[] dstIds, byte[] dstLevels, int from, int to) {
+        if (to - from < 2)
+            return;
+
+        int mid = (from + to) >>> 1;
+        mergeSort(dstIds, dstLevels, srcIds, srcLevels, from, mid);
+        mergeSort(dstIds, dstLevels, srcIds, srcLevels, mid, to);
+
+        for (int i = from, left = from, right = mid; i < to; i++) {
+            if (right >= to || (left < mid && srcIds[left] <= srcIds[right])) {
+                dstIds[i] = srcIds[left];
+                dstLevels[i] = srcLevels[left++];
+            } else {
+                dstIds[i] = srcIds[right];
+                dstLevels[i] = srcLevels[right++];
+            }
+        }
+    }
+}
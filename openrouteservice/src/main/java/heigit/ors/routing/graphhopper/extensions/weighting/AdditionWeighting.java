@@ -13,16 +13,19 @@
  */
 package heigit.ors.routing.graphhopper.extensions.weighting;
 
+import com.graphhopper.routing.EdgeIteratorStateHelper;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.AbstractWeighting;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
+import heigit.ors.routing.graphhopper.extensions.storages.WeightingPresetStorage;
 
 public class AdditionWeighting extends AbstractWeighting {
 	private Weighting _superWeighting;
     private WeightCalc _weightCalc;
+    private WeightingPresetStorage _preset;
 
     public AdditionWeighting(Weighting[] weightings, Weighting superWeighting, FlagEncoder encoder, PMap map, GraphStorage graphStorage) {
         super(encoder);
@@ -41,6 +44,14 @@ public class AdditionWeighting extends AbstractWeighting {
             _weightCalc = new FiveWeightCalc(weightings);
     }
     
+    /**
+     * Sets the precomputed factors of the weightings, which are used instead of the weightings for all edges of the
+     * base graph. Passing null disables them.
+     */
+    public void setPreset(WeightingPresetStorage preset) {
+        _preset = preset;
+    }
+
     public abstract class WeightCalc
     {
     	public abstract double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId);
@@ -154,7 +165,12 @@ public class AdditionWeighting extends AbstractWeighting {
 
     @Override
     public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
-        
+        if (_preset != null) {
+            int edge = EdgeIteratorStateHelper.getOriginalEdge(edgeState);
+            if (_preset.contains(edge))
+                return _superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId) * _preset.getFactor(edge, edgeState.getBaseNode() < edgeState.getAdjNode());
+        }
+
     	return _superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId) * _weightCalc.calcWeight(edgeState, reverse, prevOrNextEdgeId);
     }
 
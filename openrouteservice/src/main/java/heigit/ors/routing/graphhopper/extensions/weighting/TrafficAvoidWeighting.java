@@ -22,12 +22,7 @@ import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.CarFlagEncoder;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.currentlynotinuse.ExGhORSCarFlagEncoder;
-import heigit.ors.routing.traffic.AvoidEdgeInfo;
-import heigit.ors.routing.traffic.TmcEventCodesTable;
-import heigit.ors.routing.traffic.TmcMode;
-import heigit.ors.routing.traffic.TrafficEventInfo;
-
-import java.util.HashMap;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 
 public class TrafficAvoidWeighting extends AbstractWeighting {
 
@@ -37,7 +32,8 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
      */
     protected final static double SPEED_CONV = 1;
     private double maxSpeed;
-	private HashMap<Integer, AvoidEdgeInfo> forbiddenEdges;
+	private TrafficSnapshot snapshot;
+	private boolean isCar;
 
     public TrafficAvoidWeighting( FlagEncoder encoder, PMap map)
     {
@@ -55,10 +51,11 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
     }
 
 
-    public TrafficAvoidWeighting(Weighting defultWeighting, FlagEncoder encoder, HashMap<Integer, AvoidEdgeInfo> forbiddenEdges)
+    public TrafficAvoidWeighting(Weighting defultWeighting, FlagEncoder encoder, TrafficSnapshot snapshot)
     {
         this(encoder, new PMap(0));
-		this.forbiddenEdges = forbiddenEdges;     
+		this.snapshot = snapshot;
+		this.isCar = isCarFlagEncoder(encoder);
     }
 
     
@@ -76,59 +73,15 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
             return Double.POSITIVE_INFINITY;
 
     
-	    AvoidEdgeInfo ei = forbiddenEdges.get(edge.getEdge());
-		if (ei!= null){
-
-			short[] codes = ei.getCodes();
-			TrafficEventInfo tec = null;
-			double givenSpeed = Double.MAX_VALUE;
-			double speedFactor = 1;
-			double givenDelay = -1;
-			for (int i = 0; i < codes.length; i++) {
-				int code = codes[i];
-				tec = TmcEventCodesTable.getEventInfo(code);
-				
-				if ((tec.getTmcMode() == TmcMode.HEAVY_VEHICLE) && isCarFlagEncoder(flagEncoder))
-					continue; 				
-				
-				if (tec!=null) {
-					if (tec.isDelay()) {
-                        // use the max delay in the routing 
-						givenDelay = Math.max(givenDelay, tec.getDelay());
-					}  
-
-					if(tec.getSpeedFactor()>1){
-
-						givenSpeed = Math.min(givenSpeed, tec.getSpeedFactor());
-
-					} else {
-   
-						speedFactor = Math.min(speedFactor, tec.getSpeedFactor()); 
-
-					}
-
-				} // end for tec null 
-			} // end for codes
-			
-
-		
-			if (givenDelay > 0 ){
-				
-	            return givenDelay * 60 + calcTravelTimeInSec(edge.getDistance(), normal_speed); 			
-	       
-			} else if (givenSpeed < Double.MAX_VALUE){
-			
-				return calcTravelTimeInSec(edge.getDistance(), givenSpeed); 		
-					
-			} else if (speedFactor <= 1){
-				
-				return calcTravelTimeInSec(edge.getDistance(), speedFactor * normal_speed); 	
-
-			} else {
-				
-				 System.err.println("traffic weighting method didn't give the weight");
-				 throw new IllegalStateException("edge " + EdgeIteratorStateHelper.getOriginalEdge(edge) +
-						   "has no considered event codes " + ei.getCodesAsString());
+		int penalty = snapshot == null ? -1 : snapshot.getPenaltyIndex(EdgeIteratorStateHelper.getOriginalEdge(edge), isCar);
+		if (penalty >= 0) {
+			switch (snapshot.getPenaltyType(penalty)) {
+				case TrafficSnapshot.PENALTY_DELAY:
+					return snapshot.getPenaltyValue(penalty) + calcTravelTimeInSec(edge.getDistance(), normal_speed);
+				case TrafficSnapshot.PENALTY_SPEED:
+					return calcTravelTimeInSec(edge.getDistance(), snapshot.getPenaltyValue(penalty));
+				default:
+					return calcTravelTimeInSec(edge.getDistance(), snapshot.getPenaltyValue(penalty) * normal_speed);
 			}
 		}
 		
@@ -0,0 +1,66 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.weighting;
+
+import com.graphhopper.routing.EdgeIteratorStateHelper;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.HeavyVehicleFlagEncoder;
+import heigit.ors.routing.traffic.TrafficSnapshot;
+
+/**
+ * Metric of the traffic of a {@link TrafficSnapshot} the customizable hierarchy is customized for. The edges are
+ * weighted by {@link TrafficAvoidWeighting}, blocked edges and closed directions are not passable, so routes on the
+ * hierarchy match the ones on the base graph with that weighting and the
+ * {@link heigit.ors.routing.graphhopper.extensions.edgefilters.BlockedEdgesEdgeFilter}.
+ */
+public class TrafficCHWeighting extends AbstractWeighting {
+    private final TrafficSnapshot snapshot;
+    private final TrafficAvoidWeighting avoidWeighting;
+    private final boolean heavyVehicle;
+
+    public TrafficCHWeighting(FlagEncoder encoder, TrafficSnapshot snapshot) {
+        super(encoder);
+        this.snapshot = snapshot;
+        this.avoidWeighting = new TrafficAvoidWeighting(null, encoder, snapshot);
+        this.heavyVehicle = encoder instanceof HeavyVehicleFlagEncoder;
+    }
+
+    @Override
+    public double getMinWeight(double distance) {
+        return avoidWeighting.getMinWeight(distance);
+    }
+
+    @Override
+    public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+        // the searches on the base graph only explore the accessible directions, the hierarchy relies on the weights
+        if (reverse ? !edgeState.isBackward(flagEncoder) : !edgeState.isForward(flagEncoder))
+            return Double.POSITIVE_INFINITY;
+        if (snapshot.isBlocked(EdgeIteratorStateHelper.getOriginalEdge(edgeState), heavyVehicle))
+            return Double.POSITIVE_INFINITY;
+
+        return avoidWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+    }
+
+    @Override
+    public long calcMillis(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+        return avoidWeighting.calcMillis(edgeState, reverse, prevOrNextEdgeId);
+    }
+
+    @Override
+    public String getName() {
+        return "traffic_ch";
+    }
+}
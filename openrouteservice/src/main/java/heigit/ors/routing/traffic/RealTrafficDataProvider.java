@@ -13,17 +13,19 @@
  */
 package heigit.ors.routing.traffic;
 
-import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.Helper;
 import com.vividsolutions.jts.geom.*;
 import com.vividsolutions.jts.index.quadtree.Quadtree;
+import heigit.ors.routing.GraphHopperHandle;
 import heigit.ors.routing.RoutingProfile;
 import heigit.ors.routing.RoutingProfileLoadContext;
 import heigit.ors.routing.RoutingProfilesCollection;
 import heigit.ors.routing.configuration.RouteProfileConfiguration;
 import heigit.ors.routing.configuration.RoutingManagerConfiguration;
 import heigit.ors.routing.configuration.TrafficInformationConfiguration;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizedShortcutWeights;
+import heigit.ors.routing.graphhopper.extensions.storages.OsmIdEdgesIndex;
 import heigit.ors.routing.traffic.providers.TrafficInfoDataSource;
 import heigit.ors.routing.traffic.providers.TrafficInfoDataSourceFactory;
 import heigit.ors.services.routing.RoutingServiceSettings;
@@ -35,12 +37,16 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
+import java.lang.ref.WeakReference;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 public class RealTrafficDataProvider {
@@ -58,22 +64,19 @@ public class RealTrafficDataProvider {
 	}
 
 	private class RouteProfileTmcData {
-		private HashMap<Integer, EdgeInfo> m_edges;
-		private HashMap<Integer, AvoidEdgeInfo> m_avoidEdges;
-		private List<Integer> m_blockedEdges;
-		private HashMap<Integer, Integer> m_edgeIdsMap;
+		private volatile TrafficSnapshot m_snapshot;
+		// the published snapshots by version as long as requests reference them
+		private final HashMap<Long, WeakReference<TrafficSnapshot>> m_snapshots;
+		private volatile TrafficSnapshot m_pendingSnapshot;
+		private long m_lastVersion;
 		private RoutingProfile m_routeProfile;
-		private List<Integer> m_blockedEdges_hv; // for heavy vehicles
 		private HashMap<Integer, TrafficFeatureInfo> m_edgeId2trafficFeature;  // one edge corresponds to one TrafficFeatureInfo
 
 		public RouteProfileTmcData(RoutingProfile rp) {
 			m_routeProfile = rp;
-			m_edges = new HashMap<Integer, EdgeInfo>();
-			m_avoidEdges = new HashMap<Integer, AvoidEdgeInfo>();
-			m_blockedEdges = new ArrayList<Integer>();
-			m_edgeIdsMap = new HashMap<Integer, Integer>();
-			m_blockedEdges_hv =  new ArrayList<Integer>();			
+			m_snapshots = new HashMap<Long, WeakReference<TrafficSnapshot>>();
 			m_edgeId2trafficFeature = new HashMap<Integer, TrafficFeatureInfo>();
+			publish(TrafficSnapshot.EMPTY);
 		}
 
 		public RoutingProfile getRouteProfile() {
@@ -84,29 +87,70 @@ public class RealTrafficDataProvider {
 		public HashMap<Integer, TrafficFeatureInfo> getMapEdgeId2trafficFeature() {
 			return m_edgeId2trafficFeature;
 		}
-		
-		public List<Integer> getBlockedEdges() {
-			return m_blockedEdges;
-		}
-		
-		public List<Integer> getHeavyVehicleBlockedEdges() {
-			return m_blockedEdges_hv;
+
+		public TrafficSnapshot getSnapshot() {
+			return m_snapshot;
 		}
 
-		public HashMap<Integer, AvoidEdgeInfo> getAvoidEdges() {
-			return m_avoidEdges;
+		public TrafficSnapshot getSnapshot(long version) {
+			synchronized (m_snapshots) {
+				WeakReference<TrafficSnapshot> ref = m_snapshots.get(version);
+				return ref == null ? null : ref.get();
+			}
 		}
 
-		public HashMap<Integer, EdgeInfo> getEdges() {
-			return m_edges;
+		private void publish(TrafficSnapshot snapshot) {
+			synchronized (m_snapshots) {
+				m_snapshots.values().removeIf(ref -> ref.get() == null);
+				m_snapshots.put(snapshot.getVersion(), new WeakReference<TrafficSnapshot>(snapshot));
+			}
+			m_snapshot = snapshot;
 		}
 
 		public void update(HashMap<Integer, EdgeInfo> edges, HashMap<Integer, AvoidEdgeInfo> avoidEdges,
-				List<Integer> blockedEdges, List<Integer> blockedEdges_hv) {
-			m_avoidEdges = avoidEdges;
-			m_blockedEdges = blockedEdges;
-			m_edges = edges;
-			m_blockedEdges_hv = blockedEdges_hv;
+				BitSet blockedEdges, BitSet blockedEdges_hv) {
+			final TrafficSnapshot snapshot = new TrafficSnapshot(++m_lastVersion, edges, avoidEdges, blockedEdges, blockedEdges_hv);
+
+			GraphHopperHandle ghHandle = m_routeProfile.acquireGH();
+			try {
+				if (!ghHandle.getGraphHopper().isTrafficCHEnabled()) {
+					publish(snapshot);
+					return;
+				}
+			} finally {
+				ghHandle.release();
+			}
+
+			// the snapshot is published once the hierarchy has been customized for it, so CH requests always find the
+			// weights. Requests keep using the previous snapshot in the meantime.
+			m_pendingSnapshot = snapshot;
+			getCustomizationExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					customize(snapshot);
+				}
+			});
+		}
+
+		private void customize(TrafficSnapshot snapshot) {
+			// a newer snapshot is waiting to be customized
+			if (m_pendingSnapshot != snapshot)
+				return;
+
+			long startTime = System.currentTimeMillis();
+			CustomizedShortcutWeights shortcutWeights;
+			GraphHopperHandle ghHandle = m_routeProfile.acquireGH();
+			try {
+				shortcutWeights = ghHandle.getGraphHopper().customizeTrafficCH(snapshot);
+			} catch (Exception ex) {
+				logger.warning("TMC: customizing the hierarchy failed: " + ex.getMessage());
+				return;
+			} finally {
+				ghHandle.release();
+			}
+
+			logger.info("TMC: customized " + shortcutWeights.size() + " arcs in " + (System.currentTimeMillis() - startTime) + " ms.");
+			publish(snapshot.withShortcutWeights(shortcutWeights));
 		}
 		
 		public void setMapEddgeId2trafficFeature(HashMap<Integer, TrafficFeatureInfo> m_edgeId2trafficFeature){
@@ -166,8 +210,11 @@ public class RealTrafficDataProvider {
 
 	private RoutingProfile m_tmcRouteProfile;
 	private TmcSegmentsCollection m_tmcSegments;
-	private HashMap<Integer, RouteProfileTmcData> m_routeProfilesMap;
+	// the traffic data of the profiles by their configured graph path, which does not change when a graph is swapped
+	private HashMap<String, RouteProfileTmcData> m_routeProfilesMap;
 	private Timer m_timer;
+	// customizes the hierarchies for the traffic updates without blocking the timer
+	private ExecutorService m_customizationExecutor;
 	private boolean m_updateIsRunning = false;
 	private boolean m_initialized;
 	private TrafficInformationConfiguration m_config;
@@ -184,7 +231,7 @@ public class RealTrafficDataProvider {
 	}
 
 	public RealTrafficDataProvider() {
-		m_routeProfilesMap = new HashMap<Integer, RealTrafficDataProvider.RouteProfileTmcData>();
+		m_routeProfilesMap = new HashMap<String, RealTrafficDataProvider.RouteProfileTmcData>();
 	}
 
 	public void initialize(RoutingManagerConfiguration rmc, RoutingProfilesCollection profiles) throws Exception {
@@ -243,7 +290,7 @@ public class RealTrafficDataProvider {
 
 						updateRouteProfile(rptd, updateInfo, true);
 
-						m_routeProfilesMap.put(rp.hashCode(), rptd);
+						m_routeProfilesMap.put(rp.getConfiguration().getGraphPath(), rptd);
 					}
 				}
 			}catch(Exception ex)
@@ -331,38 +378,55 @@ public class RealTrafficDataProvider {
 	}
 
 	private void updateRouteProfile(RouteProfileTmcData rptd, TmcUpdateInfo updateInfo, boolean loadExisting) {
-		
-        HashMap<Integer, TrafficFeatureInfo> m_edgeId2trafficFeature = new HashMap<Integer, TrafficFeatureInfo>();
-        List<Integer> edgeIds = new ArrayList<Integer>();
-        
-		for (TrafficFeatureInfo tmcFeature:updateInfo.features) {
-			for (int i=0; i < tmcFeature.getEdgeIds().size(); i++){
+		HashMap<Integer, TrafficFeatureInfo> m_edgeId2trafficFeature = new HashMap<Integer, TrafficFeatureInfo>();
+		List<Integer> edgeIds = new ArrayList<Integer>();
+		// the indexes belong to the current instances, which are held until all features are matched
+		GraphHopperHandle tmcHandle = m_tmcRouteProfile.acquireGH();
+		GraphHopperHandle ghHandle = rptd.getRouteProfile().acquireGH();
+		try {
+			OsmIdEdgesIndex tmcEdges = tmcHandle.getGraphHopper().getTrafficEdges();
+			OsmIdEdgesIndex trafficEdges = ghHandle.getGraphHopper().getTrafficEdges();
+
+			List<TrafficFeatureInfo> features = updateInfo.features;
+			// profiles without traffic information have no index
+			if (tmcEdges == null || trafficEdges == null) {
+				logger.warning("TMC: profile " + rptd.getRouteProfile().getConfiguration().getProfiles() + " has no index of traffic edges, no edges are matched.");
+				features = Collections.emptyList();
+			}
+
+			for (TrafficFeatureInfo tmcFeature:features) {
+				for (int i=0; i < tmcFeature.getEdgeIds().size(); i++){
 			    
-				int edgeId  = tmcFeature.getEdgeIds().get(i);
-				long osmId  = m_tmcRouteProfile.getTmcEdges().get(edgeId); // todo: use graphhopperstorage to obtain osmid
-				
-				if (rptd.getRouteProfile().getOsmId2edgeIds().containsKey(osmId)) { 
+					int edgeId  = tmcFeature.getEdgeIds().get(i);
+					long osmId  = tmcEdges.getOsmId(edgeId);
+					int osmIdIndex = osmId == OsmIdEdgesIndex.NO_OSM_ID ? -1 : trafficEdges.indexOfOsmId(osmId);
+
+					if (osmIdIndex >= 0) { 
 				    	
-				    	ArrayList<Integer> newEdgeIds = rptd.getRouteProfile().getOsmId2edgeIds().get(osmId);
-					    boolean foundMatched = false;
-						for (Integer newEdgeId : newEdgeIds) {
-							// one edge of an osm way has trafficInfo doesnt mean that all edges of the same osm way have the same trafficInfo
-							// so check if there is a newEdgeId corresponding to (match) edgeid in tmc graph
-							boolean isMatched = isEdgesMatched(edgeId, m_tmcRouteProfile, newEdgeId, rptd.getRouteProfile());
+						    boolean foundMatched = false;
+							for (int k = osmIdIndex; k < trafficEdges.size() && trafficEdges.getOsmIdAt(k) == osmId; k++) {
+								int newEdgeId = trafficEdges.getEdgeIdAt(k);
+								// one edge of an osm way has trafficInfo doesnt mean that all edges of the same osm way have the same trafficInfo
+								// so check if there is a newEdgeId corresponding to (match) edgeid in tmc graph
+								boolean isMatched = isEdgesMatched(edgeId, m_tmcRouteProfile, newEdgeId, rptd.getRouteProfile());
 							
-							if (isMatched) {
-							    edgeIds.add(newEdgeId);
-							    m_edgeId2trafficFeature.put(newEdgeId, tmcFeature);
-							    foundMatched = true;
-							}
-						} // end for all new edge ids						
-						 // if (!foundMatched){System.err.println("tmc edge " + edgeId+ " doesnt have matched newEdgeId " 
-						 //		+ rptd.getRouteProfile().getGraphLocation());}
+								if (isMatched) {
+								    edgeIds.add(newEdgeId);
+								    m_edgeId2trafficFeature.put(newEdgeId, tmcFeature);
+								    foundMatched = true;
+								}
+							} // end for all new edge ids						
+							 // if (!foundMatched){System.err.println("tmc edge " + edgeId+ " doesnt have matched newEdgeId " 
+							 //		+ rptd.getRouteProfile().getGraphLocation());}
 						
-				} // end if contains osm id 
+					} // end if contains osm id 
 
-		     } // end for tmc edgeIds
-		} // end for tmc features 	
+			     } // end for tmc edgeIds
+			} // end for tmc features 	
+		} finally {
+			ghHandle.release();
+			tmcHandle.release();
+		}
 	
 	
 		rptd.setMapEddgeId2trafficFeature(m_edgeId2trafficFeature);
@@ -399,7 +463,7 @@ public class RealTrafficDataProvider {
 
 		try {
 			TmcUpdateInfo updateInfo = getUpdateInfo();
-			for (Entry<Integer, RouteProfileTmcData> entry0 : m_routeProfilesMap.entrySet()) {
+			for (Entry<String, RouteProfileTmcData> entry0 : m_routeProfilesMap.entrySet()) {
 				updateRouteProfile(entry0.getValue(), updateInfo, loadExisting);
 			}
 		} catch (Exception ex) {
@@ -420,7 +484,7 @@ public class RealTrafficDataProvider {
 			long startTime = System.currentTimeMillis();
 
 			TmcUpdateInfo updateInfo = getUpdateInfo();
-			for (Entry<Integer, RouteProfileTmcData> entry : m_routeProfilesMap.entrySet()) {
+			for (Entry<String, RouteProfileTmcData> entry : m_routeProfilesMap.entrySet()) {
 				updateRouteProfile(entry.getValue(), updateInfo, true);
 			}
 
@@ -464,8 +528,8 @@ public class RealTrafficDataProvider {
 			return;
 
 		HashMap<Integer, AvoidEdgeInfo> avoidEdges = new HashMap<Integer, AvoidEdgeInfo>();
-		List<Integer> blockedEdges = new ArrayList<Integer>();
-		List<Integer> blockedEdges_hv = new ArrayList<Integer>();
+		BitSet blockedEdges = new BitSet();
+		BitSet blockedEdges_hv = new BitSet();
 		HashMap<Integer, EdgeInfo> edges = new HashMap<Integer, EdgeInfo>();
 
 		try {
@@ -517,13 +581,11 @@ public class RealTrafficDataProvider {
 								
 							 } else if (codeType == TrafficEventType.BLOCKED && mode == TmcMode.CAR) {
 								 
-									    if (!blockedEdges.contains(newEdgeId))
-									        blockedEdges.add(newEdgeId);
+									    blockedEdges.set(newEdgeId);
 							
 							 } else if (codeType == TrafficEventType.BLOCKED && mode == TmcMode.HEAVY_VEHICLE) {
 								 
-								        if (!blockedEdges_hv.contains(newEdgeId))
-								        	blockedEdges_hv.add(newEdgeId);
+								        blockedEdges_hv.set(newEdgeId);
 						
 						     }  else if (codeType != TrafficEventType.ANY) {
 								
@@ -542,8 +604,7 @@ public class RealTrafficDataProvider {
 			logger.info(ex.toString());
 		}
 
-		// TODO make it thread safe.
-	    // System.out.println("edges size " +  edges.size() + " ; avoid edges size = "+ avoidEdges.size() + " ; blocked edges size = " + blockedEdges.size());
+		// publishes a new immutable snapshot, requests still running keep the one they have picked up
 		rptd.update(edges, avoidEdges, blockedEdges, blockedEdges_hv);
 		
 		// System.out.println("traffic edges size " + edges.keySet().toString());
@@ -576,11 +637,33 @@ public class RealTrafficDataProvider {
 				m_timer.cancel();
 				m_timer = null;
 			}
+
+			synchronized (this) {
+				if (m_customizationExecutor != null) {
+					m_customizationExecutor.shutdownNow();
+					m_customizationExecutor = null;
+				}
+			}
 		}
 
 		m_initialized = false;
 	}
 	
+	private synchronized ExecutorService getCustomizationExecutor() {
+		if (m_customizationExecutor == null) {
+			m_customizationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "TrafficCustomization");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		return m_customizationExecutor;
+	}
+	
 	public String getTimeStamp()
 	{
 		if (m_lastUpdateInfo != null)
@@ -732,62 +815,44 @@ public class RealTrafficDataProvider {
 	    return result;	
 	}
 
-	public String getEdgeMessage(GraphStorage graphStorage, int edgeId) {
-		RouteProfileTmcData rptd = getRouteProfileTmcData(graphStorage);
-
-		if (rptd == null)
-			return "";
-		else {
-			EdgeInfo ei = rptd.getEdges().get(edgeId);
-
-			if (ei != null)
-				return ei.getCodesAsString() + " | " + ei.getMessage();
-			else
-				return null;
+	/**
+	 * Publishes a snapshot for the profile with the given configured graph path like an update of its traffic.
+	 */
+	void publish(String profileGraphPath, TrafficSnapshot snapshot) {
+		RouteProfileTmcData rptd = m_routeProfilesMap.get(profileGraphPath);
+		if (rptd == null) {
+			rptd = new RouteProfileTmcData(null);
+			m_routeProfilesMap.put(profileGraphPath, rptd);
 		}
+		rptd.publish(snapshot);
 	}
 
-	public List<Integer> getBlockedEdges(GraphStorage graphStorage) {
-		RouteProfileTmcData rptd = getRouteProfileTmcData(graphStorage);
+	/**
+	 * Returns the latest traffic snapshot of the profile with the given configured graph path or an empty one if the
+	 * profile does not use traffic information.
+	 */
+	public TrafficSnapshot getSnapshot(String profileGraphPath) {
+		RouteProfileTmcData rptd = m_routeProfilesMap.get(profileGraphPath);
 
-		if (rptd == null)
-			return null;
-		else
-			return rptd.getBlockedEdges();
-		 //Test AAS 
-		 /*{
-			List<Integer> list = new ArrayList();
-			for(Entry<Integer, AvoidEdgeInfo> entry: rptd.getAvoidEdges().entrySet())
-			{
-				list.add(entry.getValue().getEdgeId());
-			}
-			
-			return list;
-		}*/
+		return rptd == null ? TrafficSnapshot.EMPTY : rptd.getSnapshot();
 	}
 
-	public HashMap<Integer, AvoidEdgeInfo> getAvoidEdges(GraphStorage graphStorage) {
-		RouteProfileTmcData rptd = getRouteProfileTmcData(graphStorage);
-
-		if (rptd == null)
-			return null;
-		else
-			return rptd.getAvoidEdges();
-	}
-	
-	private RouteProfileTmcData getRouteProfileTmcData(GraphStorage graphStorage)
-	{
-		return m_routeProfilesMap.get(graphStorage.getDirectory().getLocation().hashCode());
-	}
-	
-	
-	public List<Integer> getHeavyVehicleBlockedEdges(GraphStorage graphStorage) {
-		RouteProfileTmcData rptd = getRouteProfileTmcData(graphStorage);
+	/**
+	 * Returns the snapshot with the given version of the profile with the given configured graph path, which stays
+	 * the same when the graph of the profile is swapped. A request reads the latest snapshot once and looks it up by
+	 * its version where it cannot be passed, e.g. in the weighting factory, so that all parts of the request see the
+	 * same traffic. The snapshot is found as long as the request references it.
+	 */
+	public TrafficSnapshot getSnapshot(String profileGraphPath, long version) {
+		RouteProfileTmcData rptd = m_routeProfilesMap.get(profileGraphPath);
+		TrafficSnapshot snapshot = rptd == null ? null : rptd.getSnapshot(version);
+
+		if (snapshot == null) {
+			if (version == TrafficSnapshot.EMPTY.getVersion())
+				return TrafficSnapshot.EMPTY;
+			throw new IllegalStateException("The traffic snapshot " + version + " is not referenced anymore.");
+		}
 
-		if (rptd == null)
-			return null;
-	
-		else
-			return rptd.getHeavyVehicleBlockedEdges();
+		return snapshot;
 	}
 }
@@ -15,6 +15,7 @@ package heigit.ors.routing.traffic;
 
 import java.util.List;
 
+import com.carrotsearch.hppc.LongIntHashMap;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.shapes.BBox;
@@ -32,12 +33,52 @@ public class TmcSegmentsCollection
 	private Quadtree quadTree;
 	private GeometryFactory geomFactory;
 	private DistanceCalc distanceCalc;
+	// first segment + 1 per pair of location codes in either order, further segments of the same pair are chained in _nextSegment
+	private LongIntHashMap _firstSegment;
+	private int[] _nextSegment;
 
 	public TmcSegmentsCollection(List<TmcSegment> segments)
 	{
 		this.segments = segments;
 		this.geomFactory = new GeometryFactory();
 		this.distanceCalc = new DistanceCalcEarth();
+
+		buildLocationCodesIndex();
+	}
+
+	private void buildLocationCodesIndex()
+	{
+		_firstSegment = new LongIntHashMap(segments.size());
+		_nextSegment = new int[segments.size()];
+
+		// insert in reverse order so that the segments of a pair are visited in the order of the list
+		for (int i = segments.size() - 1; i >= 0; i--) {
+			TmcSegment seg = segments.get(i);
+			long key = getLocationCodesKey(seg.getFrom(), seg.getTo());
+			_nextSegment[i] = _firstSegment.get(key) - 1;
+			_firstSegment.put(key, i + 1);
+		}
+	}
+
+	private static long getLocationCodesKey(int lcd1, int lcd2)
+	{
+		int min = Math.min(lcd1, lcd2);
+		int max = Math.max(lcd1, lcd2);
+		return ((long)min << 32) | (max & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the index of the first segment between the two location codes in either direction or -1 if there is
+	 * none. The following ones are returned by {@link #getNextSegmentIndex(int)}.
+	 */
+	public int getFirstSegmentIndex(int lcd1, int lcd2)
+	{
+		return _firstSegment.get(getLocationCodesKey(lcd1, lcd2)) - 1;
+	}
+
+	public int getNextSegmentIndex(int index)
+	{
+		return _nextSegment[index];
 	}
 	
 	private void buildQuadTree()
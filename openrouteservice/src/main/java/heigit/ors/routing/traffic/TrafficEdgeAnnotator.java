@@ -14,18 +14,19 @@
 package heigit.ors.routing.traffic;
 
 import com.graphhopper.routing.util.EdgeAnnotator;
-import com.graphhopper.storage.GraphStorage;
 
 public class TrafficEdgeAnnotator implements EdgeAnnotator {
-	private GraphStorage storage;
+	private TrafficSnapshot snapshot;
 	
-	public TrafficEdgeAnnotator(GraphStorage gs)
+	public TrafficEdgeAnnotator(TrafficSnapshot snapshot)
 	{
-		storage = gs;
+		this.snapshot = snapshot;
 	}
 	
 	public String getAnnotation(int edgeId)
 	{
-		return RealTrafficDataProvider.getInstance().getEdgeMessage(storage, edgeId);
+		EdgeInfo ei = snapshot.getEdgeInfo(edgeId);
+
+		return ei == null ? null : ei.getCodesAsString() + " | " + ei.getMessage();
 	}
 }
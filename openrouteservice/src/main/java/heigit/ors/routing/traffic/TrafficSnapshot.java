@@ -0,0 +1,180 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.traffic;
+
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizedShortcutWeights;
+
+import java.util.*;
+
+/**
+ * The traffic state of a routing profile at the time of one update. A snapshot is never modified after it has been
+ * created, so requests can keep using the one they picked up while a newer one is published.
+ * <p>
+ * Blocked edges are kept in bitsets and the penalties of the edges to avoid are precomputed into primitive arrays
+ * sorted by edge id, so that the edge filter and the weighting neither build sets nor box edge ids. For profiles with
+ * a customizable hierarchy the snapshot also holds the weights of its arcs customized for its traffic.
+ */
+public class TrafficSnapshot {
+	public static final TrafficSnapshot EMPTY = new TrafficSnapshot(0, new HashMap<Integer, EdgeInfo>(),
+			new HashMap<Integer, AvoidEdgeInfo>(), new BitSet(), new BitSet());
+
+	public static final byte PENALTY_SPEED_FACTOR = 0;
+	public static final byte PENALTY_SPEED = 1;
+	public static final byte PENALTY_DELAY = 2;
+
+	private final long m_version;
+	private final Map<Integer, EdgeInfo> m_edges;
+	private final BitSet m_blockedEdges;
+	private final BitSet m_blockedEdges_hv;
+	private final int[] m_avoidEdges;
+	// two entries per edge to avoid, the first one for heavy vehicles and the second one for cars
+	private final byte[] m_penaltyTypes;
+	private final double[] m_penaltyValues;
+	private final CustomizedShortcutWeights m_shortcutWeights;
+
+	public TrafficSnapshot(long version, Map<Integer, EdgeInfo> edges, Map<Integer, AvoidEdgeInfo> avoidEdges,
+			BitSet blockedEdges, BitSet blockedEdges_hv) {
+		m_version = version;
+		m_edges = Collections.unmodifiableMap(edges);
+		m_blockedEdges = blockedEdges;
+		m_blockedEdges_hv = blockedEdges_hv;
+
+		m_avoidEdges = new int[avoidEdges.size()];
+		int i = 0;
+		for (Integer edgeId : avoidEdges.keySet())
+			m_avoidEdges[i++] = edgeId;
+		Arrays.sort(m_avoidEdges);
+
+		m_penaltyTypes = new byte[m_avoidEdges.length * 2];
+		m_penaltyValues = new double[m_avoidEdges.length * 2];
+		for (i = 0; i < m_avoidEdges.length; i++) {
+			short[] codes = avoidEdges.get(m_avoidEdges[i]).getCodes();
+			setPenalty(2 * i, codes, false);
+			setPenalty(2 * i + 1, codes, true);
+		}
+
+		m_shortcutWeights = null;
+	}
+
+	private TrafficSnapshot(TrafficSnapshot snapshot, CustomizedShortcutWeights shortcutWeights) {
+		m_version = snapshot.m_version;
+		m_edges = snapshot.m_edges;
+		m_blockedEdges = snapshot.m_blockedEdges;
+		m_blockedEdges_hv = snapshot.m_blockedEdges_hv;
+		m_avoidEdges = snapshot.m_avoidEdges;
+		m_penaltyTypes = snapshot.m_penaltyTypes;
+		m_penaltyValues = snapshot.m_penaltyValues;
+		m_shortcutWeights = shortcutWeights;
+	}
+
+	/**
+	 * Returns a snapshot with the same traffic and the given arc weights customized for it.
+	 */
+	public TrafficSnapshot withShortcutWeights(CustomizedShortcutWeights shortcutWeights) {
+		return new TrafficSnapshot(this, shortcutWeights);
+	}
+
+	private void setPenalty(int index, short[] codes, boolean car) {
+		double givenSpeed = Double.MAX_VALUE;
+		double speedFactor = 1;
+		double givenDelay = -1;
+
+		for (int i = 0; i < codes.length; i++) {
+			TrafficEventInfo tec = TmcEventCodesTable.getEventInfo(codes[i]);
+			if (tec == null || (car && tec.getTmcMode() == TmcMode.HEAVY_VEHICLE))
+				continue;
+
+			// use the max delay in the routing
+			if (tec.isDelay())
+				givenDelay = Math.max(givenDelay, tec.getDelay());
+
+			if (tec.getSpeedFactor() > 1)
+				givenSpeed = Math.min(givenSpeed, tec.getSpeedFactor());
+			else
+				speedFactor = Math.min(speedFactor, tec.getSpeedFactor());
+		}
+
+		if (givenDelay > 0) {
+			m_penaltyTypes[index] = PENALTY_DELAY;
+			m_penaltyValues[index] = givenDelay * 60;
+		} else if (givenSpeed < Double.MAX_VALUE) {
+			m_penaltyTypes[index] = PENALTY_SPEED;
+			m_penaltyValues[index] = givenSpeed;
+		} else {
+			m_penaltyTypes[index] = PENALTY_SPEED_FACTOR;
+			m_penaltyValues[index] = speedFactor;
+		}
+	}
+
+	public long getVersion() {
+		return m_version;
+	}
+
+	public boolean isEmpty() {
+		return m_edges.isEmpty() && m_avoidEdges.length == 0 && m_blockedEdges.isEmpty() && m_blockedEdges_hv.isEmpty();
+	}
+
+	public boolean isBlocked(int edgeId, boolean heavyVehicle) {
+		if (edgeId < 0)
+			return false;
+
+		return m_blockedEdges.get(edgeId) || (heavyVehicle && m_blockedEdges_hv.get(edgeId));
+	}
+
+	/**
+	 * Returns the index of the penalty of the given edge or -1 if the edge is not to be avoided. Cars ignore the
+	 * events that only concern heavy vehicles.
+	 */
+	public int getPenaltyIndex(int edgeId, boolean car) {
+		if (m_avoidEdges.length == 0)
+			return -1;
+
+		int i = Arrays.binarySearch(m_avoidEdges, edgeId);
+		return i < 0 ? -1 : (car ? 2 * i + 1 : 2 * i);
+	}
+
+	public byte getPenaltyType(int index) {
+		return m_penaltyTypes[index];
+	}
+
+	/**
+	 * Returns the speed factor, the given speed in km/h or the delay in seconds depending on the penalty type.
+	 */
+	public double getPenaltyValue(int index) {
+		return m_penaltyValues[index];
+	}
+
+	/**
+	 * Returns the edges whose weight is changed by the traffic, i.e. the blocked edges and the edges to avoid.
+	 */
+	public BitSet getChangedEdges(boolean heavyVehicle) {
+		BitSet result = (BitSet) m_blockedEdges.clone();
+		if (heavyVehicle)
+			result.or(m_blockedEdges_hv);
+		for (int edgeId : m_avoidEdges)
+			result.set(edgeId);
+		return result;
+	}
+
+	/**
+	 * Returns the arc weights customized for this snapshot or null if there are none.
+	 */
+	public CustomizedShortcutWeights getShortcutWeights() {
+		return m_shortcutWeights;
+	}
+
+	public EdgeInfo getEdgeInfo(int edgeId) {
+		return m_edges.get(edgeId);
+	}
+}
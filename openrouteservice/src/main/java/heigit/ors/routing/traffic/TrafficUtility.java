@@ -34,6 +34,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -63,7 +64,8 @@ public class TrafficUtility {
 	
 	private static DistanceCalc distCalc = new DistanceCalcEarth();
 	// 2015-11-13T14:30:00
-	private static DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+	// SimpleDateFormat is not thread safe and the messages are processed concurrently
+	private static final ThreadLocal<DateFormat> df = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss"));
 
 	public static List<TmcSegment> detectSegments(File segments, File roads, File points, File poffsets,
 			RoutingProfile routeProfile) {
@@ -442,98 +444,108 @@ public class TrafficUtility {
 
 	public static List<TrafficFeatureInfo> extractTmcFeatures(String tmcMessage, TmcSegmentsCollection segments,
 			long timeThreshold, TrafficLocationGraph graph, Logger logger) {
-		List<TrafficFeatureInfo> result = new ArrayList<TrafficFeatureInfo>();
-
 		List<TrafficMessageData> messages = TrafficMessageData.parse(tmcMessage, "ISO-8859-1", segments, graph);
 
 		GeometryFactory geomFactory = new GeometryFactory();
 
-		for (int i = 0; i < messages.size(); i++) {
-			try {
-				TrafficMessageData m = (TrafficMessageData) messages.get(i);
-
-				// event codes see
-				// http://wiki.openstreetmap.org/wiki/TMC/Event_Code_List
-
-				if (m.locationCodes.size() > 1) {
-					boolean bAdd = false;
-					List<Geometry> geoms = new ArrayList<Geometry>();
-					List<Geometry> geoms_reverse = new ArrayList<Geometry>();
-					List<Integer> edgeIds = new ArrayList<Integer>();
-					List<Integer> edgeIds_reverse = new ArrayList<Integer>();
-
-					for (int j = 0; j < m.locationCodes.size() - 1; j++) {
-						Integer lcl_fr = m.locationCodes.get(j);
-						Integer lcl_to = m.locationCodes.get(j + 1);
-						
-						for (int si = 0; si < segments.size(); si++) {
-							TmcSegment seg = segments.get(si);
-
-							int osm_fr = seg.getFrom();
-							int osm_to = seg.getTo();
-
-							if ((lcl_fr == osm_fr && lcl_to == osm_to) || (lcl_fr == osm_to && lcl_to == osm_fr)) {
-								if (m.bothDirections || m.direction != seg.getDirection()) {
-									/*
-									 * in unserem XML kodiert das Element LDR
-									 * die Richtungsangabe. Dabei ist 0 =
-									 * positive Richtung und 1 = negative
-									 * Richtung. Dies bezieht sich auf die
-									 * Verknüpfungsrichtung in der TMC Tabelle.
-									 * Beispiel: In der TMC Tabelle ist A
-									 * positiv verknüpft ist mit B. Auf der
-									 * Strecke von A nach B ist bei B ein Unfall
-									 * passiert und es Staut sich zurück bis
-									 * nach A.
-									 * 
-									 * Dann ist die Meldung wie folgt kodiert:
-									 * PrimaryLocation = B (hier ist der Unfall)
-									 * SecondaryLocation = A (bis hier reicht
-									 * der Stau) LocationDirection = 1 (negativ)
-									 * 
-									 * Die LocationDirection (LDR) ist negative,
-									 * weil man vom PrimaryLocation zum
-									 * SecondaryLocation nur kommt, indem man
-									 * sich rückwärts (negativ) durch die TMC
-									 * Verknüpfung hangelt.
-									 */
-									if ((lcl_fr == osm_to && lcl_to == osm_fr))
-									{
-										geoms_reverse.add(seg.getGeometry());
-										edgeIds_reverse.addAll(seg.getEdgeIDs());
-									}
-									else
-									{
-										geoms.add(seg.getGeometry());
-										edgeIds.addAll(seg.getEdgeIDs());
-									}
-									bAdd = true;
+		// the messages are independent of each other, so they are matched concurrently
+		List<List<TrafficFeatureInfo>> features = messages.parallelStream()
+				.map(m -> extractTmcFeatures(m, segments, timeThreshold, geomFactory, logger))
+				.collect(Collectors.toList());
+
+		List<TrafficFeatureInfo> result = new ArrayList<TrafficFeatureInfo>();
+		for (List<TrafficFeatureInfo> list : features)
+			result.addAll(list);
+
+		return result;
+	}
+
+	private static List<TrafficFeatureInfo> extractTmcFeatures(TrafficMessageData m, TmcSegmentsCollection segments,
+			long timeThreshold, GeometryFactory geomFactory, Logger logger) {
+		List<TrafficFeatureInfo> result = new ArrayList<TrafficFeatureInfo>();
+
+		try {
+			// event codes see
+			// http://wiki.openstreetmap.org/wiki/TMC/Event_Code_List
+
+			if (m.locationCodes.size() > 1) {
+				boolean bAdd = false;
+				List<Geometry> geoms = new ArrayList<Geometry>();
+				List<Geometry> geoms_reverse = new ArrayList<Geometry>();
+				List<Integer> edgeIds = new ArrayList<Integer>();
+				List<Integer> edgeIds_reverse = new ArrayList<Integer>();
+
+				for (int j = 0; j < m.locationCodes.size() - 1; j++) {
+					int lcl_fr = m.locationCodes.get(j);
+					int lcl_to = m.locationCodes.get(j + 1);
+
+					for (int si = segments.getFirstSegmentIndex(lcl_fr, lcl_to); si >= 0; si = segments.getNextSegmentIndex(si)) {
+						TmcSegment seg = segments.get(si);
+
+						int osm_fr = seg.getFrom();
+						int osm_to = seg.getTo();
+
+						if ((lcl_fr == osm_fr && lcl_to == osm_to) || (lcl_fr == osm_to && lcl_to == osm_fr)) {
+							if (m.bothDirections || m.direction != seg.getDirection()) {
+								/*
+								 * in unserem XML kodiert das Element LDR
+								 * die Richtungsangabe. Dabei ist 0 =
+								 * positive Richtung und 1 = negative
+								 * Richtung. Dies bezieht sich auf die
+								 * Verknüpfungsrichtung in der TMC Tabelle.
+								 * Beispiel: In der TMC Tabelle ist A
+								 * positiv verknüpft ist mit B. Auf der
+								 * Strecke von A nach B ist bei B ein Unfall
+								 * passiert und es Staut sich zurück bis
+								 * nach A.
+								 * 
+								 * Dann ist die Meldung wie folgt kodiert:
+								 * PrimaryLocation = B (hier ist der Unfall)
+								 * SecondaryLocation = A (bis hier reicht
+								 * der Stau) LocationDirection = 1 (negativ)
+								 * 
+								 * Die LocationDirection (LDR) ist negative,
+								 * weil man vom PrimaryLocation zum
+								 * SecondaryLocation nur kommt, indem man
+								 * sich rückwärts (negativ) durch die TMC
+								 * Verknüpfung hangelt.
+								 */
+								if ((lcl_fr == osm_to && lcl_to == osm_fr))
+								{
+									geoms_reverse.add(seg.getGeometry());
+									edgeIds_reverse.addAll(seg.getEdgeIDs());
+								}
+								else
+								{
+									geoms.add(seg.getGeometry());
+									edgeIds.addAll(seg.getEdgeIDs());
 								}
+								bAdd = true;
 							}
 						}
 					}
-					
-					if (bAdd)
-					{
-						List<TrafficFeatureInfo> tei = createTrafficFeatureInfo(m, edgeIds, geoms, geomFactory, timeThreshold);
-						if (tei != null)
-							result.addAll(tei);
-						
-						List<TrafficFeatureInfo> tei_reverse = createTrafficFeatureInfo(m, edgeIds_reverse, geoms_reverse, geomFactory, timeThreshold);
-						if (tei_reverse != null)
-							result.addAll(tei_reverse);
-					}
-				} else {
-					if (m.location != null)
-					{
-						TrafficFeatureInfo tei = new TrafficFeatureInfo(m.eventDataCodes, m.messageDataText, null);
-						tei.setGeometry(geomFactory.createPoint(m.location));
-						result.add(tei);
-					}
 				}
-			} catch (Exception e) {
-				logger.warning(e.getMessage());
+
+				if (bAdd)
+				{
+					List<TrafficFeatureInfo> tei = createTrafficFeatureInfo(m, edgeIds, geoms, geomFactory, timeThreshold);
+					if (tei != null)
+						result.addAll(tei);
+
+					List<TrafficFeatureInfo> tei_reverse = createTrafficFeatureInfo(m, edgeIds_reverse, geoms_reverse, geomFactory, timeThreshold);
+					if (tei_reverse != null)
+						result.addAll(tei_reverse);
+				}
+			} else {
+				if (m.location != null)
+				{
+					TrafficFeatureInfo tei = new TrafficFeatureInfo(m.eventDataCodes, m.messageDataText, null);
+					tei.setGeometry(geomFactory.createPoint(m.location));
+					result.add(tei);
+				}
 			}
+		} catch (Exception e) {
+			logger.warning(e.getMessage());
 		}
 
 		return result;
@@ -554,17 +566,17 @@ public class TrafficUtility {
 			tei.setGeometry(geom);
 			
 			if (!Helper.isEmpty(m.expTime) && Helper.isEmpty(m.endTime)) {
-				Date expTime = df.parse(m.expTime);
+				Date expTime = df.get().parse(m.expTime);
 				if (now.compareTo(expTime) > 0)
 					return null;
 			} else {
 				if (!Helper.isEmpty(m.startTime) || !Helper.isEmpty(m.endTime)) {
-					Date beginTime = Helper.isEmpty(m.startTime) ? null : df.parse(m.startTime);
-					Date endTime = Helper.isEmpty(m.endTime) ? null : df.parse(m.endTime);
+					Date beginTime = Helper.isEmpty(m.startTime) ? null : df.get().parse(m.startTime);
+					Date endTime = Helper.isEmpty(m.endTime) ? null : df.get().parse(m.endTime);
 					tei.setDuration(beginTime, endTime);
 
 					if (timeThreshold > 0 && (!Helper.isEmpty(m.uptTime) && Helper.isEmpty(m.endTime))) {
-						Date uptTime = Helper.isEmpty(m.uptTime) ? null : df.parse(m.uptTime);
+						Date uptTime = Helper.isEmpty(m.uptTime) ? null : df.get().parse(m.uptTime);
 						if (endTime != null) {
 							if (uptTime.compareTo(endTime) > 0)
 								return null;
@@ -572,7 +584,7 @@ public class TrafficUtility {
 					}
 				} else {
 					/*if (timeThreshold > 0 && !Helper.isEmpty(m.uptTime)) {
-					Date uptTime = Helper.isEmpty(m.uptTime) ? null : df.parse(m.uptTime);
+					Date uptTime = Helper.isEmpty(m.uptTime) ? null : df.get().parse(m.uptTime);
 
 					long diff = now.getTime() - uptTime.getTime();
 					if (diff > timeThreshold)
@@ -37,6 +37,9 @@ public class IsochronesServiceSettings {
 	private static boolean allowComputeArea = true;
 	private static Map<String, StatisticsProviderConfiguration> statsProviders;
 	private static String attribution = "";
+	private static int parallelThreads = Runtime.getRuntime().availableProcessors();
+	private static String calcMethod = "concaveballs";
+	private static Map<Integer, String> profileCalcMethods;
 
 	static 
 	{
@@ -80,6 +83,22 @@ public class IsochronesServiceSettings {
 		value = AppConfig.Global().getServiceParameter("isochrones", "allow_compute_area");
 		if (value != null)
 			allowComputeArea = Boolean.parseBoolean(value);
+		value = AppConfig.Global().getServiceParameter("isochrones", "parallel_threads");
+		if (value != null)
+			parallelThreads = Math.max(0, Integer.parseInt(value));
+		value = AppConfig.Global().getServiceParameter("isochrones", "calc_method");
+		if (value != null)
+			calcMethod = value;
+		else
+		{
+			List<? extends ConfigObject> params = AppConfig.Global().getObjectList("isochrones", "calc_method");
+			if (params != null)
+			{
+				profileCalcMethods = getStringParameters(params);
+				if (profileCalcMethods.containsKey(-1))
+					calcMethod = profileCalcMethods.get(-1);
+			}
+		}
 
 		statsProviders = new HashMap<String, StatisticsProviderConfiguration>();
 
@@ -144,6 +163,28 @@ public class IsochronesServiceSettings {
 		return result;
 	}
 
+	private static Map<Integer, String> getStringParameters(List<? extends ConfigObject> params)
+	{
+		Map<Integer, String> result = new HashMap<Integer, String>();
+
+		for(ConfigObject cfgObj : params)
+		{
+			if (cfgObj.containsKey("profiles") && cfgObj.containsKey("value"))
+			{
+				String[] profiles = cfgObj.toConfig().getString("profiles").split(",");
+				for (String profileStr : profiles)
+				{
+					profileStr = profileStr.trim();
+					Integer profile = ("any".equalsIgnoreCase(profileStr)) ? -1 : RoutingProfileType.getFromString(profileStr);
+					if (profile != RoutingProfileType.UNKNOWN)
+						result.put(profile, cfgObj.toConfig().getString("value"));
+				}
+			}
+		}
+
+		return result;
+	}
+
 	public static boolean getEnabled() {
 		return enabled;
 	}
@@ -200,5 +241,19 @@ public class IsochronesServiceSettings {
 
 	public static String getAttribution() {
 		return attribution;
-	}	
+	}
+
+	public static int getParallelThreads() {
+		return parallelThreads;
+	}
+
+	/**
+	 * Returns the method used to build the isochrones of requests that do not specify one.
+	 */
+	public static String getCalcMethod(int profileType) {
+		if (profileCalcMethods != null && profileCalcMethods.containsKey(profileType))
+			return profileCalcMethods.get(profileType);
+
+		return calcMethod;
+	}
 }
@@ -17,8 +17,6 @@ import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.LineString;
-import com.vividsolutions.jts.geom.Polygon;
 import heigit.ors.common.*;
 import heigit.ors.config.AppConfig;
 import heigit.ors.exceptions.ParameterOutOfRangeException;
@@ -95,11 +93,12 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
 
             IsochroneMapCollection isoMaps = new IsochroneMapCollection();
 
-            for (int i = 0; i < travellers.size(); ++i) {
-                IsochroneSearchParameters searchParams = req.getSearchParameters(i);
-                IsochroneMap isochroneMap = RoutingProfileManager.getInstance().buildIsochrone(searchParams);
+            List<IsochroneSearchParameters> searchParams = new ArrayList<IsochroneSearchParameters>(travellers.size());
+            for (int i = 0; i < travellers.size(); ++i)
+                searchParams.add(req.getSearchParameters(i));
+
+            for (IsochroneMap isochroneMap : RoutingProfileManager.getInstance().buildIsochrones(searchParams))
                 isoMaps.add(isochroneMap);
-            }
             writeResponse(response, req, isoMaps);
         }
     }
@@ -129,15 +128,15 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
             traveller = request.getTravellers().get(isoMap.getTravellerId());
 
             for (Isochrone isoLine : isoMap.getIsochrones()) {
-                Polygon isoPoly = (Polygon) isoLine.getGeometry();
-                LineString shell = isoPoly.getExteriorRing();
+                // the grid method returns a multi polygon if the reachable area is not contiguous
+                Geometry isoGeom = isoLine.getGeometry();
                 JSONObject jFeature = new JSONObject(true);
                 jFeature.put("type", "Feature");
 
                 JSONObject jPolygon = new JSONObject(true);
-                jPolygon.put("type", "Polygon");
+                jPolygon.put("type", isoGeom.getGeometryType());
 
-                jPolygon.put("coordinates", GeometryJSON.toJSON(isoPoly));
+                jPolygon.put("coordinates", GeometryJSON.toJSON(isoGeom, null));
 
                 jFeature.put("geometry", jPolygon);
 
@@ -192,7 +191,7 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
 
                 jFeatures.put(jFeature);
 
-                Envelope env = shell.getEnvelopeInternal();
+                Envelope env = isoGeom.getEnvelopeInternal();
                 bbox = constructIsochroneBBox(env);
 
             }
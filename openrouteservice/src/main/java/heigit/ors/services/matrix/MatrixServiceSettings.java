@@ -24,6 +24,10 @@ public class MatrixServiceSettings
 	private static boolean allowResolveLocations = true;
 	private static String attribution = "";
 	private static boolean enabled = true;
+	private static boolean useFlatRPHAST = false;
+	private static int parallelThreads = Runtime.getRuntime().availableProcessors();
+	private static int maximumRequestParallelism = Math.min(4, Runtime.getRuntime().availableProcessors());
+	private static int targetGraphCacheSize = 32;
 	
 	static 
 	{
@@ -48,6 +52,18 @@ public class MatrixServiceSettings
 		value = AppConfig.Global().getServiceParameter("matrix", "attribution");
 		if (value != null)
 			attribution = value;
+		value = AppConfig.Global().getServiceParameter("matrix", "use_flat_rphast");
+		if (value != null)
+			useFlatRPHAST = Boolean.parseBoolean(value);
+		value = AppConfig.Global().getServiceParameter("matrix", "parallel_threads");
+		if (value != null)
+			parallelThreads = Math.max(0, Integer.parseInt(value));
+		value = AppConfig.Global().getServiceParameter("matrix", "maximum_request_parallelism");
+		if (value != null)
+			maximumRequestParallelism = Math.max(1, Integer.parseInt(value));
+		value = AppConfig.Global().getServiceParameter("matrix", "target_graph_cache_size");
+		if (value != null)
+			targetGraphCacheSize = Math.max(0, Integer.parseInt(value));
 	}
 	
 	public static Boolean getEnabled() {
@@ -70,6 +86,31 @@ public class MatrixServiceSettings
 		return maximumSearchRadius;
 	}
 	
+	public static boolean getUseFlatRPHAST() {
+		return useFlatRPHAST;
+	}
+
+	/**
+	 * Returns the number of worker threads shared by all matrix requests.
+	 */
+	public static int getParallelThreads() {
+		return parallelThreads;
+	}
+
+	/**
+	 * Returns the maximum number of threads (including the request thread) a single matrix request may use.
+	 */
+	public static int getMaximumRequestParallelism() {
+		return maximumRequestParallelism;
+	}
+
+	/**
+	 * Returns the number of prepared RPHAST target graphs kept per profile, 0 disables the cache.
+	 */
+	public static int getTargetGraphCacheSize() {
+		return targetGraphCacheSize;
+	}
+
 	public static String getAttribution() {
 		return attribution;
 	}
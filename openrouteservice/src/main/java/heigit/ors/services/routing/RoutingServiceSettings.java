@@ -28,6 +28,7 @@ public class RoutingServiceSettings {
 	private static boolean distanceApproximation = false;
 	private static String storageFormat = "Native";
 	private static String attribution = "";
+	private static int snapCacheSize = 10000;
 	private static AppConfig _config;
 	
 	static 
@@ -70,6 +71,10 @@ public class RoutingServiceSettings {
 		value = config.getServiceParameter("routing", "attribution");
 		if (value != null)
 			attribution = value;
+
+		value = config.getServiceParameter("routing", "snap_cache_size");
+		if (value != null)
+			snapCacheSize = Math.max(0, Integer.parseInt(value));
 	}
 	
 	public static Boolean getEnabled()
@@ -97,6 +102,10 @@ public class RoutingServiceSettings {
 		return storageFormat;
 	}
 
+	public static int getSnapCacheSize() {
+		return snapCacheSize;
+	}
+
 	public static String getParameter(String paramName) 
 	{
 	   return _config.getServiceParameter("routing", paramName);	
@@ -31,13 +31,10 @@ import heigit.ors.routing.RoutingErrorCodes;
 import heigit.ors.routing.RoutingProfileManager;
 import heigit.ors.routing.RoutingRequest;
 import heigit.ors.globalResponseProcessor.GlobalResponseProcessor;
-import heigit.ors.services.routing.requestprocessors.json.JsonRoutingResponseWriter;
+import heigit.ors.services.routing.requestprocessors.json.JsonRoutingResponseStreamWriter;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
 import heigit.ors.servlet.util.ServletUtility;
 
-import org.json.JSONObject;
-
-
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -72,21 +69,14 @@ public class RoutingRequestProcessor extends AbstractHttpRequestProcessor {
     public void process(HttpServletResponse response) throws Exception {
         // Get the routing Request to send it to the calculation function
         RoutingRequest rreq = RoutingRequestParser.parseFromRequestParams(_request);
-        JSONObject json = null;
-        JSONObject geojson = null;
         String gpx;
         String respFormat = _request.getParameter("format");
         String geometryFormat = rreq.getGeometryFormat();
 
         if (Helper.isEmpty(respFormat) || "json".equalsIgnoreCase(respFormat)) {
             RouteResult result = RoutingProfileManager.getInstance().computeRoute(rreq);
-            json = JsonRoutingResponseWriter.toJson(rreq, new RouteResult[]{result});
-            if (json != null) {
-                ServletUtility.write(response, json, "UTF-8");
-
-            } else {
-                throw new EmptyElementException(RoutingErrorCodes.EMPTY_ELEMENT, "JSON was empty and therefore could not be exported.");
-            }
+            JsonRoutingResponseStreamWriter writer = new JsonRoutingResponseStreamWriter(rreq, new RouteResult[]{result});
+            ServletUtility.write(response, writer::writeJson);
 
         } else if ("geojson".equalsIgnoreCase(respFormat)) {
             // Manually set the geometryFormat to geojson. Else an encoded polyline could be parsed by accident and cause problems.
@@ -95,13 +85,8 @@ public class RoutingRequestProcessor extends AbstractHttpRequestProcessor {
                 rreq.setGeometryFormat("geojson");
             }
             RouteResult result = RoutingProfileManager.getInstance().computeRoute(rreq);
-            geojson = new GlobalResponseProcessor(rreq, new RouteResult[]{result}).toGeoJson();
-            if (geojson != null) {
-                ServletUtility.write(response, geojson, "UTF-8");
-            } else {
-                throw new EmptyElementException(RoutingErrorCodes.EMPTY_ELEMENT, "GeoJSON was empty and therefore could not be exported.");
-            }
-
+            JsonRoutingResponseStreamWriter writer = new JsonRoutingResponseStreamWriter(rreq, new RouteResult[]{result});
+            ServletUtility.write(response, writer::writeGeoJson);
 
         } else if ("gpx".equalsIgnoreCase(respFormat)) {
             // Manually set the geometryFormat to geojson. Else an encoded polyline could be parsed by accident and cause problems.
@@ -0,0 +1,435 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.services.routing.requestprocessors.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import com.vividsolutions.jts.geom.Coordinate;
+import heigit.ors.common.DistanceUnit;
+import heigit.ors.config.AppConfig;
+import heigit.ors.exceptions.StatusCodeException;
+import heigit.ors.routing.*;
+import heigit.ors.services.routing.RoutingServiceSettings;
+import heigit.ors.util.AppInfo;
+import heigit.ors.util.DistanceUnitUtil;
+import heigit.ors.util.FormatUtility;
+import heigit.ors.util.PolylineEncoder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes route responses directly to a JSON generator, in the JSON format of {@link JsonRoutingResponseWriter} and the
+ * GeoJSON format of {@link heigit.ors.globalResponseProcessor.geoJson.GeoJsonResponseWriter}. Unlike these, it does
+ * not build a tree of JSON objects and a string of the whole response, which take several times the memory of the
+ * route for long routes with elevation and extra info.
+ * <p>
+ * Numbers are formatted like in org.json, i.e. without trailing zeros.
+ */
+public class JsonRoutingResponseStreamWriter {
+	private static final int COORDINATE_PRECISION = 6;
+
+	private final RoutingRequest _request;
+	private final RouteResult[] _routeResults;
+	// per route and extra info, null for empty extra info
+	private final List<List<List<ExtraSummaryItem>>> _extraSummaries;
+	private final BBox _bbox;
+	private final PolylineEncoder _polylineEncoder = new PolylineEncoder();
+
+	/**
+	 * Computes the parts of the response that may fail, so that writing the response does not stop halfway.
+	 */
+	public JsonRoutingResponseStreamWriter(RoutingRequest request, RouteResult[] routeResults) throws StatusCodeException {
+		_request = request;
+		_routeResults = routeResults;
+		_extraSummaries = new ArrayList<>(routeResults.length);
+		_bbox = new BBox(0, 0, 0, 0);
+
+		for (RouteResult route : routeResults) {
+			List<List<ExtraSummaryItem>> summaries = new ArrayList<>();
+			if (route.getExtraInfo() != null) {
+				for (RouteExtraInfo extraInfo : route.getExtraInfo())
+					summaries.add(extraInfo.isEmpty() ? null : extraInfo.getSummary(request.getUnits(), route.getSummary().getDistance(), true));
+			}
+			_extraSummaries.add(summaries);
+
+			BBox bboxRoute = route.getSummary().getBBox();
+			if (bboxRoute != null) {
+				if (!_bbox.isValid()) {
+					_bbox.minLat = bboxRoute.minLat;
+					_bbox.maxLat = bboxRoute.maxLat;
+					_bbox.minLon = bboxRoute.minLon;
+					_bbox.maxLon = bboxRoute.maxLon;
+				} else {
+					_bbox.update(bboxRoute.minLat, bboxRoute.minLon);
+					_bbox.update(bboxRoute.maxLat, bboxRoute.maxLon);
+				}
+			}
+		}
+	}
+
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+
+		gen.writeArrayFieldStart("routes");
+		for (int i = 0; i < _routeResults.length; i++) {
+			gen.writeStartObject();
+			writeRoute(gen, i, false);
+			gen.writeEndObject();
+		}
+		gen.writeEndArray();
+
+		gen.writeFieldName("bbox");
+		writeBBox(gen, _bbox);
+		writeInfo(gen);
+
+		gen.writeEndObject();
+	}
+
+	public void writeGeoJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		gen.writeStringField("type", "FeatureCollection");
+
+		gen.writeArrayFieldStart("features");
+		for (int i = 0; i < _routeResults.length; i++) {
+			gen.writeStartObject();
+			gen.writeStringField("type", "Feature");
+
+			gen.writeObjectFieldStart("geometry");
+			gen.writeStringField("type", "LineString");
+			gen.writeArrayFieldStart("coordinates");
+			Coordinate[] points = _routeResults[i].getGeometry();
+			if (points != null) {
+				for (Coordinate c : points) {
+					gen.writeStartArray();
+					writeNumber(gen, FormatUtility.roundToDecimals(c.x, COORDINATE_PRECISION));
+					writeNumber(gen, FormatUtility.roundToDecimals(c.y, COORDINATE_PRECISION));
+					if (!Double.isNaN(c.z))
+						writeNumber(gen, FormatUtility.roundToDecimals(c.z, COORDINATE_PRECISION));
+					gen.writeEndArray();
+				}
+			}
+			gen.writeEndArray();
+			gen.writeEndObject();
+
+			gen.writeObjectFieldStart("properties");
+			writeRoute(gen, i, true);
+			gen.writeEndObject();
+
+			gen.writeStringField("id", SimpleFeatureBuilder.createDefaultFeatureId());
+			gen.writeEndObject();
+		}
+		gen.writeEndArray();
+
+		gen.writeFieldName("bbox");
+		writeBBox(gen, _bbox);
+		writeInfo(gen);
+
+		gen.writeEndObject();
+	}
+
+	/**
+	 * Writes the fields of a route. The GeoJSON properties of a route only contain objects and arrays, and the summary
+	 * is wrapped in an array for backwards compatibility.
+	 */
+	private void writeRoute(JsonGenerator gen, int routeIndex, boolean geoJson) throws IOException {
+		RouteResult route = _routeResults[routeIndex];
+		RouteSummary rSummary = route.getSummary();
+
+		boolean attrDetourFactor = _request.hasAttribute("detourfactor");
+		boolean attrPercentage = _request.hasAttribute("percentage");
+		boolean attrAvgSpeed = _request.hasAttribute("avgspeed");
+
+		if (route.getWarnings().size() != 0) {
+			gen.writeArrayFieldStart("warnings");
+			for (RouteWarning warning : route.getWarnings()) {
+				gen.writeStartObject();
+				gen.writeNumberField("code", warning.getWarningCode());
+				gen.writeStringField("message", warning.getWarningMessage());
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+		}
+
+		if (_request.getIncludeElevation() && !geoJson)
+			gen.writeBooleanField("elevation", true);
+
+		gen.writeFieldName("summary");
+		if (geoJson)
+			gen.writeStartArray();
+		gen.writeStartObject();
+		writeNumberField(gen, "distance", rSummary.getDistance());
+		writeNumberField(gen, "duration", rSummary.getDuration());
+		if (rSummary.getAscent() != 0.0 || rSummary.getDescent() != 0.0) {
+			writeNumberField(gen, "ascent", rSummary.getAscent());
+			writeNumberField(gen, "descent", rSummary.getDescent());
+		}
+		if (attrAvgSpeed)
+			writeNumberField(gen, "avgspeed", rSummary.getAverageSpeed());
+		gen.writeEndObject();
+		if (geoJson)
+			gen.writeEndArray();
+
+		if (_request.getIncludeGeometry()) {
+			if (!geoJson) {
+				if (_request.getGeometryFormat() != null)
+					gen.writeStringField("geometry_format", _request.getGeometryFormat());
+
+				gen.writeFieldName("geometry");
+				writeGeometry(gen, route.getGeometry());
+			}
+
+			if (_request.getIncludeInstructions() && route.getSegments().size() > 0) {
+				gen.writeArrayFieldStart("segments");
+
+				for (RouteSegment seg : route.getSegments()) {
+					gen.writeStartObject();
+					writeNumberField(gen, "distance", seg.getDistance());
+					writeNumberField(gen, "duration", seg.getDuration());
+
+					if (_request.getIncludeElevation() && (seg.getAscent() != 0.0 || seg.getDescent() != 0.0)) {
+						writeNumberField(gen, "ascent", seg.getAscent());
+						writeNumberField(gen, "descent", seg.getDescent());
+					}
+
+					if (attrDetourFactor)
+						writeNumberField(gen, "detourfactor", seg.getDetourFactor());
+					if (attrPercentage)
+						writeNumberField(gen, "percentage", FormatUtility.roundToDecimals(seg.getDistance() * 100 / rSummary.getDistance(), 2));
+					if (attrAvgSpeed) {
+						double distFactor = _request.getUnits() == DistanceUnit.Meters ? 1000 : 1;
+						writeNumberField(gen, "avgspeed", FormatUtility.roundToDecimals(seg.getDistance() / distFactor / (seg.getDuration() / 3600), 2));
+					}
+
+					gen.writeArrayFieldStart("steps");
+					for (RouteStep step : seg.getSteps())
+						writeStep(gen, step);
+					gen.writeEndArray();
+
+					gen.writeEndObject();
+				}
+
+				gen.writeEndArray();
+			}
+
+			if (route.getWayPointsIndices() != null) {
+				gen.writeFieldName("way_points");
+				writeIntArray(gen, route.getWayPointsIndices());
+			}
+
+			List<RouteExtraInfo> extras = route.getExtraInfo();
+			if (extras != null && extras.size() > 0) {
+				gen.writeObjectFieldStart("extras");
+
+				for (int j = 0; j < extras.size(); ++j) {
+					RouteExtraInfo extraInfo = extras.get(j);
+					if (extraInfo.isEmpty())
+						continue;
+
+					gen.writeObjectFieldStart(extraInfo.getName());
+
+					gen.writeArrayFieldStart("values");
+					for (RouteSegmentItem segExtra : extraInfo.getSegments()) {
+						gen.writeStartArray();
+						gen.writeNumber(segExtra.getFrom());
+						gen.writeNumber(segExtra.getTo());
+						if (extraInfo.getFactor() == 1.0)
+							gen.writeNumber(segExtra.getValue());
+						else
+							writeNumber(gen, FormatUtility.roundToDecimals(segExtra.getValue() / extraInfo.getFactor(), 1));
+						gen.writeEndArray();
+					}
+					gen.writeEndArray();
+
+					List<ExtraSummaryItem> summaryItems = _extraSummaries.get(routeIndex).get(j);
+					if (summaryItems.size() > 0) {
+						gen.writeArrayFieldStart("summary");
+						for (ExtraSummaryItem esi : summaryItems) {
+							gen.writeStartObject();
+							writeNumberField(gen, "value", esi.getValue());
+							writeNumberField(gen, "distance", esi.getDistance());
+							writeNumberField(gen, "amount", esi.getAmount());
+							gen.writeEndObject();
+						}
+						gen.writeEndArray();
+					}
+
+					gen.writeEndObject();
+				}
+
+				gen.writeEndObject();
+			}
+		}
+
+		BBox bboxRoute = rSummary.getBBox();
+		if (bboxRoute != null) {
+			gen.writeFieldName("bbox");
+			writeBBox(gen, bboxRoute);
+		}
+	}
+
+	private void writeStep(JsonGenerator gen, RouteStep step) throws IOException {
+		gen.writeStartObject();
+		writeNumberField(gen, "distance", step.getDistance());
+		writeNumberField(gen, "duration", step.getDuration());
+		gen.writeNumberField("type", step.getType());
+		gen.writeStringField("instruction", step.getInstruction());
+		if (step.getName() != null)
+			gen.writeStringField("name", step.getName());
+		if (step.getMessage() != null) {
+			gen.writeStringField("message", step.getMessage());
+			gen.writeNumberField("message_type", step.getMessageType());
+		}
+
+		if (step.getExitNumber() != -1)
+			gen.writeNumberField("exit_number", step.getExitNumber());
+
+		if (_request.getIncludeManeuvers()) {
+			RouteStepManeuver maneuver = step.getManeuver();
+			if (maneuver != null) {
+				gen.writeObjectFieldStart("maneuver");
+				gen.writeNumberField("bearing_before", maneuver.getBearingBefore());
+				gen.writeNumberField("bearing_after", maneuver.getBearingAfter());
+				if (maneuver.getLocation() != null) {
+					gen.writeArrayFieldStart("location");
+					writeNumber(gen, FormatUtility.roundToDecimals(maneuver.getLocation().x, COORDINATE_PRECISION));
+					writeNumber(gen, FormatUtility.roundToDecimals(maneuver.getLocation().y, COORDINATE_PRECISION));
+					gen.writeEndArray();
+				}
+				gen.writeEndObject();
+			}
+		}
+
+		if (_request.getIncludeRoundaboutExits() && step.getRoundaboutExitBearings() != null) {
+			gen.writeFieldName("exit_bearings");
+			writeIntArray(gen, step.getRoundaboutExitBearings());
+		}
+
+		gen.writeFieldName("way_points");
+		writeIntArray(gen, step.getWayPoints());
+		gen.writeEndObject();
+	}
+
+	private void writeGeometry(JsonGenerator gen, Coordinate[] points) throws IOException {
+		String format = _request.getGeometryFormat();
+
+		if (points == null) {
+			gen.writeString("");
+		} else if (Helper.isEmpty(format) || "encodedpolyline".equalsIgnoreCase(format)) {
+			_polylineEncoder.encode(points, _request.getIncludeElevation());
+			gen.writeString(_polylineEncoder.getChars(), 0, _polylineEncoder.getLength());
+		} else if ("geojson".equalsIgnoreCase(format)) {
+			gen.writeStartObject();
+			gen.writeStringField("type", "LineString");
+			gen.writeFieldName("coordinates");
+			writeCoordinates(gen, points, _request.getIncludeElevation());
+			gen.writeEndObject();
+		} else if ("polyline".equalsIgnoreCase(format)) {
+			writeCoordinates(gen, points, _request.getIncludeElevation());
+		} else {
+			gen.writeString("");
+		}
+	}
+
+	private void writeInfo(JsonGenerator gen) throws IOException {
+		RouteSearchParameters searchParams = _request.getSearchParameters();
+
+		gen.writeObjectFieldStart("info");
+		gen.writeStringField("service", "routing");
+		gen.writeFieldName("engine");
+		gen.writeRawValue(AppInfo.getEngineInfo().toString());
+		if (!Helper.isEmpty(RoutingServiceSettings.getAttribution()))
+			gen.writeStringField("attribution", RoutingServiceSettings.getAttribution());
+		gen.writeNumberField("timestamp", System.currentTimeMillis());
+
+		if (AppConfig.hasValidMD5Hash())
+			gen.writeStringField("osm_file_md5_hash", AppConfig.getMD5Hash());
+
+		gen.writeObjectFieldStart("query");
+		gen.writeStringField("profile", RoutingProfileType.getName(searchParams.getProfileType()));
+		gen.writeStringField("preference", WeightingMethod.getName(searchParams.getWeightingMethod()));
+		gen.writeFieldName("coordinates");
+		writeCoordinates(gen, _request.getCoordinates(), _request.getIncludeElevation());
+
+		if (_request.getLanguage() != null)
+			gen.writeStringField("language", _request.getLanguage());
+
+		if (_request.getUnits() != null)
+			gen.writeStringField("units", DistanceUnitUtil.toString(_request.getUnits()));
+
+		gen.writeBooleanField("geometry", _request.getIncludeGeometry());
+		if (_request.getIncludeGeometry()) {
+			gen.writeStringField("geometry_format", Helper.isEmpty(_request.getGeometryFormat()) ? "encodedpolyline" : _request.getGeometryFormat());
+
+			if (_request.getIncludeInstructions())
+				gen.writeStringField("instructions_format", _request.getInstructionsFormat().toString().toLowerCase());
+
+			gen.writeBooleanField("instructions", _request.getIncludeInstructions());
+			gen.writeBooleanField("elevation", _request.getIncludeElevation());
+		}
+
+		if (!Helper.isEmpty(searchParams.getOptions())) {
+			gen.writeFieldName("options");
+			gen.writeRawValue(new JSONObject(searchParams.getOptions()).toString());
+		}
+
+		if (!Helper.isEmpty(_request.getId()))
+			gen.writeStringField("id", _request.getId());
+
+		gen.writeEndObject();
+		gen.writeEndObject();
+	}
+
+	private static void writeCoordinates(JsonGenerator gen, Coordinate[] coords, boolean includeElevation) throws IOException {
+		gen.writeStartArray();
+		for (Coordinate c : coords) {
+			gen.writeStartArray();
+			writeNumber(gen, FormatUtility.roundToDecimals(c.x, COORDINATE_PRECISION));
+			writeNumber(gen, FormatUtility.roundToDecimals(c.y, COORDINATE_PRECISION));
+			if (includeElevation)
+				writeNumber(gen, FormatUtility.roundToDecimals(c.z, 1));
+			gen.writeEndArray();
+		}
+		gen.writeEndArray();
+	}
+
+	private static void writeBBox(JsonGenerator gen, BBox bbox) throws IOException {
+		gen.writeStartArray();
+		writeNumber(gen, FormatUtility.roundToDecimals(bbox.minLon, COORDINATE_PRECISION));
+		writeNumber(gen, FormatUtility.roundToDecimals(bbox.minLat, COORDINATE_PRECISION));
+		writeNumber(gen, FormatUtility.roundToDecimals(bbox.maxLon, COORDINATE_PRECISION));
+		writeNumber(gen, FormatUtility.roundToDecimals(bbox.maxLat, COORDINATE_PRECISION));
+		gen.writeEndArray();
+	}
+
+	private static void writeIntArray(JsonGenerator gen, int[] values) throws IOException {
+		gen.writeStartArray();
+		for (int value : values)
+			gen.writeNumber(value);
+		gen.writeEndArray();
+	}
+
+	private static void writeNumberField(JsonGenerator gen, String name, double value) throws IOException {
+		gen.writeFieldName(name);
+		writeNumber(gen, value);
+	}
+
+	private static void writeNumber(JsonGenerator gen, double value) throws IOException {
+		gen.writeNumber(JSONObject.numberToString(value));
+	}
+}
@@ -14,6 +14,7 @@
 package heigit.ors.servlet.filters;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
@@ -22,7 +23,15 @@ import javax.servlet.http.HttpServletResponse;
 
 import heigit.ors.io.ByteArrayOutputStreamEx;
 
+/**
+ * Compresses the response while it is written. The compressed data is buffered up to {@link #MAX_BUFFERED_SIZE}
+ * bytes, so that most responses are sent with their content length. Larger responses are streamed without content
+ * length instead of being kept in memory as a whole.
+ */
 class GZIPResponseStream extends ServletOutputStream { 
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_BUFFERED_SIZE = 1 << 20;
+
 	private ByteArrayOutputStreamEx _bufferStream = null;
 	private GZIPOutputStream _gzipstream = null;
 	private ServletOutputStream _outputStream = null;
@@ -34,8 +43,10 @@ class GZIPResponseStream extends ServletOutputStream {
 		
 		this._response = response;
 		this._outputStream = response.getOutputStream();
-		_bufferStream = new ByteArrayOutputStreamEx();
-		_gzipstream = new GZIPOutputStream(_bufferStream);
+		// the header has to be set before the response is committed by the first buffer of compressed data
+		_response.addHeader("Content-Encoding", ContentEncodingType.GZIP);
+		_bufferStream = new ByteArrayOutputStreamEx(BUFFER_SIZE);
+		_gzipstream = new GZIPOutputStream(new CompressedOutputStream(), BUFFER_SIZE);
 	}
 
 	public void close() throws IOException {
@@ -44,14 +55,13 @@ class GZIPResponseStream extends ServletOutputStream {
 		
 		_gzipstream.finish();
 
-		byte[] bytes = _bufferStream.getBuffer();
-		int bytesLength = _bufferStream.size();
-				
-		_response.setContentLength(bytesLength); 
-        _response.addHeader("Content-Encoding", ContentEncodingType.GZIP);
+		if (_bufferStream != null) {
+			_response.setContentLength(_bufferStream.size());
+			_outputStream.write(_bufferStream.getBuffer(), 0, _bufferStream.size());
+			_bufferStream = null;
+		}
 
-        _outputStream.write(bytes, 0, bytesLength);
-        _outputStream.close();
+		_outputStream.close();
 		_closed = true;
 	}
 	
@@ -96,4 +106,33 @@ class GZIPResponseStream extends ServletOutputStream {
 	@Override
 	public void setWriteListener(WriteListener arg0) {
 	}
+
+	/**
+	 * Receives the compressed data and buffers it until it exceeds {@link #MAX_BUFFERED_SIZE} bytes.
+	 */
+	private class CompressedOutputStream extends OutputStream {
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		public void write(byte b[], int off, int len) throws IOException {
+			if (_bufferStream != null) {
+				if (_bufferStream.size() + len <= MAX_BUFFERED_SIZE) {
+					_bufferStream.write(b, off, len);
+					return;
+				}
+
+				// the response is committed without content length from here on
+				_outputStream.write(_bufferStream.getBuffer(), 0, _bufferStream.size());
+				_bufferStream = null;
+			}
+
+			_outputStream.write(b, off, len);
+		}
+
+		public void flush() throws IOException {
+			if (_bufferStream == null)
+				_outputStream.flush();
+		}
+	}
 }
\ No newline at end of file
@@ -20,6 +20,9 @@
  */
 package heigit.ors.servlet.util;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import heigit.ors.common.StatusCode;
 import heigit.ors.util.StreamUtility;
 import heigit.ors.util.StringUtility;
@@ -33,6 +36,16 @@ import java.io.OutputStream;
 
 public class ServletUtility
 {
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * Writes the content of a JSON response to a generator.
+	 */
+	public interface JsonContentWriter
+	{
+		void write(JsonGenerator generator) throws IOException;
+	}
+
 	public static String readRequestContent(HttpServletRequest request) throws IOException
 	{
 		InputStream in = request.getInputStream();
@@ -61,6 +74,22 @@ public class ServletUtility
 		write(response, bytes, "application/json", encoding);
 	}
 
+	/**
+	 * Streams the JSON content to the response. Unlike the methods taking a {@link JSONObject}, the response is not
+	 * held in memory as a string and a byte array, so an uncompressed response has no content length.
+	 */
+	public static void write(HttpServletResponse response, JsonContentWriter writer) throws IOException
+	{
+		response.setCharacterEncoding("UTF-8");
+		response.setContentType("application/json");
+		response.addHeader("Vary", "Accept-Encoding");
+
+		// closing the generator also closes the output stream
+		JsonGenerator generator = JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+		writer.write(generator);
+		generator.close();
+	}
+
 	public static void write(HttpServletResponse response, JSONObject json, int statusCode) throws IOException
 	{
 		write(response, json, "UTF-8", statusCode);
@@ -210,13 +210,11 @@ public class GeomUtility {
 	public static double getArea(Geometry geom, Boolean inMeters) throws InternalServerException {
 		try {
 			if (inMeters) {
-				if (geom instanceof Polygon) {
+				if (geom instanceof Polygon || geom instanceof MultiPolygon) {
 
 					// https://gis.stackexchange.com/questions/265481/geotools-unexpected-result-reprojecting-bounding-box-to-epsg3035
 					System.setProperty("org.geotools.referencing.forceXY", "true");
 
-					Polygon poly = (Polygon) geom;
-
 					CoordinateReferenceSystem sourceCRS = CRS.decode("EPSG:4326");
 
 					String mollweideProj = "PROJCS[\"World_Mollweide\",GEOGCS[\"GCS_WGS_1984\",DATUM[\"WGS_1984\",SPHEROID[\"WGS_1984\",6378137,298.257223563]],PRIMEM[\"Greenwich\",0],UNIT[\"Degree\",0.017453292519943295]],PROJECTION[\"Mollweide\"],PARAMETER[\"False_Easting\",0],PARAMETER[\"False_Northing\",0],PARAMETER[\"Central_Meridian\",0],UNIT[\"Meter\",1],AUTHORITY[\"EPSG\",\"54009\"]]";
@@ -224,7 +222,7 @@ public class GeomUtility {
 					CoordinateReferenceSystem targetCRS = CRS.parseWKT(mollweideProj);
 
 					MathTransform transform = CRS.findMathTransform(sourceCRS, targetCRS);
-					Geometry targetGeometry = JTS.transform(poly, transform);
+					Geometry targetGeometry = JTS.transform(geom, transform);
 
 					double area = targetGeometry.getArea();
 
@@ -15,46 +15,77 @@ package heigit.ors.util;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
+import java.util.Arrays;
+
+/**
+ * Encodes coordinates in the encoded polyline format. Instances encode into a character array that is reused for
+ * every geometry, so that the result can be written to a stream without creating a string first.
+ */
 public class PolylineEncoder {
+	private char[] _chars = new char[256];
+	private int _length;
+
 	public static String encode(final Coordinate[] coords, boolean includeElevation, StringBuffer buffer) {
+		PolylineEncoder encoder = new PolylineEncoder();
+		encoder.encode(coords, includeElevation);
+
+		buffer.setLength(0);
+		buffer.append(encoder._chars, 0, encoder._length);
+		return buffer.toString();
+	}
+
+	/**
+	 * Encodes the coordinates into the character array returned by {@link #getChars()}, replacing the previous result.
+	 */
+	public void encode(final Coordinate[] coords, boolean includeElevation) {
 		long lat, lon;
-	    long prevLat = 0;
-	    long prevLon = 0;
-	    long elev = 0;
-	    long prevEle = 0;
-	    
-	    buffer.setLength(0);
-
-	    for (final Coordinate c : coords) {
-	      lat = Math.round(c.y * 1e5);
-	      lon = Math.round(c.x * 1e5);
-
-	      encode(lat - prevLat, buffer);
-	      encode(lon - prevLon, buffer);
-	      
-	      if (includeElevation)
-	      {
-	    	  elev = (long)Math.floor(c.z * 100);
-	    	  encode(elev - prevEle, buffer);
-              prevEle = elev;
-	      }
-	      
-	      prevLat = lat;
-	      prevLon = lon;
-	    }
-	    
-	    return buffer.toString();
+		long prevLat = 0;
+		long prevLon = 0;
+		long elev = 0;
+		long prevEle = 0;
+
+		_length = 0;
+
+		for (final Coordinate c : coords) {
+			lat = Math.round(c.y * 1e5);
+			lon = Math.round(c.x * 1e5);
+
+			append(lat - prevLat);
+			append(lon - prevLon);
+
+			if (includeElevation)
+			{
+				elev = (long)Math.floor(c.z * 100);
+				append(elev - prevEle);
+				prevEle = elev;
+			}
+
+			prevLat = lat;
+			prevLon = lon;
+		}
+	}
+
+	public char[] getChars() {
+		return _chars;
+	}
+
+	public int getLength() {
+		return _length;
 	}
-		
-	private static void encode(long v, StringBuffer buffer) {
-	    v = v < 0 ? ~(v << 1) : v << 1;
-	    
-	    while (v >= 0x20) 
-	    {
-	      buffer.append(Character.toChars((int) ((0x20 | (v & 0x1f)) + 63)));
-	      v >>= 5;
-	    }
-	    
-	    buffer.append(Character.toChars((int) (v + 63)));
+
+	private void append(long v) {
+		// a long value has at most 13 characters
+		if (_length + 13 > _chars.length)
+			_chars = Arrays.copyOf(_chars, Math.max(_chars.length * 2, _length + 13));
+
+		v = v < 0 ? ~(v << 1) : v << 1;
+
+		while (v >= 0x20)
+		{
+			_chars[_length++] = (char) ((0x20 | (v & 0x1f)) + 63);
+			v >>= 5;
+		}
+
+		_chars[_length++] = (char) (v + 63);
 	}
 }
@@ -0,0 +1,121 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of daemon worker threads for computing parts of a request concurrently. The threads are started with
+ * the first request that runs more than one task.
+ * <p>
+ * The calling thread takes part in the work: it runs the first task and every task no worker has picked up by the time
+ * the caller waits for it. Requests therefore never wait for busy workers, and tasks may run tasks on the same pool
+ * themselves without blocking it.
+ */
+public class WorkerPool {
+	private final String _name;
+	private final int _threads;
+	private ExecutorService _executor;
+
+	/**
+	 * @param threads number of worker threads, tasks are run on the calling thread only if it is 0
+	 */
+	public WorkerPool(String name, int threads) {
+		_name = name;
+		_threads = threads;
+	}
+
+	/**
+	 * Runs all tasks and waits for their completion. The first exception thrown by a task is rethrown once the tasks
+	 * running at that point have completed, tasks that have not been started are skipped.
+	 */
+	public void run(List<? extends Callable<Void>> tasks) throws Exception {
+		if (tasks.size() == 1 || _threads <= 0) {
+			for (Callable<Void> task : tasks)
+				task.call();
+			return;
+		}
+
+		ExecutorService executor = getExecutor();
+		final AtomicBoolean aborted = new AtomicBoolean();
+		List<FutureTask<Void>> futures = new ArrayList<FutureTask<Void>>(tasks.size() - 1);
+		for (int i = 1; i < tasks.size(); i++) {
+			final Callable<Void> task = tasks.get(i);
+			FutureTask<Void> future = new FutureTask<Void>(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					// tasks not started before a failure are skipped
+					return aborted.get() ? null : task.call();
+				}
+			});
+			futures.add(future);
+			executor.execute(future);
+		}
+
+		Exception error = null;
+
+		try {
+			tasks.get(0).call();
+		} catch (Exception ex) {
+			error = ex;
+			aborted.set(true);
+		}
+
+		// Every task is waited for, also after a failure, so that no task of the request outlives the call and works
+		// on state the caller releases. Tasks running at that point are not interrupted, as the searches do not check
+		// for interrupts anyway.
+		for (FutureTask<Void> future : futures) {
+			// does nothing if a worker has started the task already
+			future.run();
+
+			try {
+				future.get();
+			} catch (ExecutionException ex) {
+				if (error == null) {
+					Throwable cause = ex.getCause();
+					error = (cause instanceof Exception) ? (Exception) cause : ex;
+					aborted.set(true);
+				}
+			}
+		}
+
+		if (error != null)
+			throw error;
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (_executor == null) {
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			_executor = Executors.newFixedThreadPool(_threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, _name + "-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		return _executor;
+	}
+}
@@ -0,0 +1,76 @@
+package heigit.ors.api.responses.matrix;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import heigit.ors.api.requests.matrix.MatrixRequest;
+import heigit.ors.matrix.MatrixMetricsType;
+import heigit.ors.matrix.MatrixResult;
+import heigit.ors.matrix.ResolvedLocation;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+public class BinaryMatrixResponseTest {
+    private MatrixResult matrixResult;
+    private MatrixRequest matrixRequest;
+
+    @Before
+    public void setUp() {
+        ResolvedLocation[] sources = new ResolvedLocation[]{
+                new ResolvedLocation(new Coordinate(8.681495, 49.41461), "foo", 0.0),
+                new ResolvedLocation(new Coordinate(8.686507, 49.41943), "foo", 0.0)
+        };
+        ResolvedLocation[] destinations = new ResolvedLocation[]{
+                new ResolvedLocation(new Coordinate(8.681495, 49.41461), "foo", 0.0),
+                new ResolvedLocation(new Coordinate(8.686507, 49.41943), "foo", 0.0),
+                new ResolvedLocation(new Coordinate(8.687872, 49.420318), "foo", 0.0)
+        };
+
+        matrixResult = new MatrixResult(sources, destinations);
+        matrixResult.setTable(MatrixMetricsType.Duration, new float[]{0, 1.5f, 2, 3, -1, 5});
+        matrixResult.setTable(MatrixMetricsType.Distance, new float[]{0, 10, 20, 30, -1, 50.25f});
+        matrixRequest = new MatrixRequest(new ArrayList<>());
+    }
+
+    @Test
+    public void writeTo() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryMatrixResponse(matrixResult, matrixRequest).writeTo(out);
+
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(20 + 2 * 6 * 4, buffer.remaining());
+
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        Assert.assertArrayEquals(new byte[]{'O', 'R', 'S', 'M'}, magic);
+        Assert.assertEquals(BinaryMatrixResponse.VERSION, buffer.getInt());
+        Assert.assertEquals(2, buffer.getInt());
+        Assert.assertEquals(3, buffer.getInt());
+        Assert.assertEquals(MatrixMetricsType.Duration | MatrixMetricsType.Distance, buffer.getInt());
+
+        float[] durations = new float[6];
+        buffer.asFloatBuffer().get(durations);
+        buffer.position(buffer.position() + 6 * 4);
+        Assert.assertArrayEquals(new float[]{0, 1.5f, 2, 3, Float.NaN, 5}, durations, 0);
+
+        float[] distances = new float[6];
+        buffer.asFloatBuffer().get(distances);
+        Assert.assertArrayEquals(new float[]{0, 10, 20, 30, Float.NaN, 50.25f}, distances, 0);
+    }
+
+    @Test
+    public void writeToWithoutTables() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryMatrixResponse(new MatrixResult(new ResolvedLocation[0], new ResolvedLocation[0]), matrixRequest).writeTo(out);
+
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(20, buffer.remaining());
+        buffer.position(16);
+        Assert.assertEquals(0, buffer.getInt());
+    }
+}
@@ -1,5 +1,7 @@
 package heigit.ors.api.responses.matrix.JSONMatrixResponseObjects;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vividsolutions.jts.geom.Coordinate;
 import heigit.ors.api.requests.common.APIEnums;
 import heigit.ors.api.requests.matrix.MatrixRequest;
@@ -118,6 +120,18 @@ public class JSONIndividualMatrixResponseTest {
 
     }
 
+    @Test
+    public void serializeTables() throws JsonProcessingException {
+        String json = new ObjectMapper().writeValueAsString(combinedMatrixResponse);
+        Assert.assertTrue(json.contains("\"durations\":[[0.0,1.0,2.0],[3.0,4.0,5.0],[6.0,7.0,8.0]]"));
+        Assert.assertTrue(json.contains("\"distances\":[[0.0,1.0,2.0],[3.0,4.0,5.0],[6.0,7.0,8.0]]"));
+
+        durationsMatrixResponse.setDurations(new Double[][]{{1.004, null}, {2.5, 0.0}});
+        json = new ObjectMapper().writeValueAsString(durationsMatrixResponse);
+        Assert.assertTrue(json.contains("\"durations\":[[1.0,null],[2.5,0.0]]"));
+        Assert.assertFalse(json.contains("\"distances\""));
+    }
+
     @Test
     public void getDestinations() {
         Assert.assertEquals(3, distancesMatrixResponse.getDestinations().size());
@@ -0,0 +1,127 @@
+package heigit.ors.isochrones.builders.concaveballs;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opensphere.geometry.algorithm.ConcaveHull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DelaunayConcaveHullTest {
+    private final GeometryFactory geomFactory = new GeometryFactory();
+
+    private GeometryCollection createPoints(Coordinate... coords) {
+        Geometry[] points = new Geometry[coords.length];
+        for (int i = 0; i < coords.length; i++)
+            points[i] = geomFactory.createPoint(coords[i]);
+        return new GeometryCollection(points, geomFactory);
+    }
+
+    /**
+     * Points of a 7 x 7 grid shaped like a U opening to the right, slightly shifted so that no four points are
+     * cocircular.
+     */
+    private GeometryCollection createUShapedPoints() {
+        List<Coordinate> coords = new ArrayList<>();
+        for (int x = 0; x <= 6; x++) {
+            for (int y = 0; y <= 6; y++) {
+                if (x >= 3 && y >= 2 && y <= 4)
+                    continue;
+                coords.add(new Coordinate(x + 0.05 * ((3 * x + 7 * y) % 5), y + 0.05 * ((7 * x + 3 * y) % 5)));
+            }
+        }
+        return createPoints(coords.toArray(new Coordinate[coords.size()]));
+    }
+
+    /**
+     * Random points in a unit disk with a few empty wedges, so that the hull has to erode deep bays. The coordinates
+     * are random doubles, so no two edges have the same length and no four points are cocircular.
+     */
+    private GeometryCollection createRandomPoints(int count, long seed) {
+        Random random = new Random(seed);
+        Coordinate[] coords = new Coordinate[count];
+
+        int i = 0;
+        while (i < count) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double radius = Math.sqrt(random.nextDouble());
+            // leave out every fourth of 16 wedges beyond a third of the radius
+            if (radius > 1.0 / 3 && ((int) (angle / (Math.PI / 8))) % 4 == 0)
+                continue;
+            coords[i++] = new Coordinate(radius * Math.cos(angle), radius * Math.sin(angle));
+        }
+
+        return createPoints(coords);
+    }
+
+    @Test
+    public void erodesLongBorderEdges() {
+        GeometryCollection points = createUShapedPoints();
+
+        Geometry hull = new DelaunayConcaveHull(points, 1.5).getConcaveHull();
+
+        Assert.assertTrue(hull instanceof Polygon);
+        Assert.assertTrue(hull.isValid());
+        for (int i = 0; i < points.getNumGeometries(); i++)
+            Assert.assertTrue(hull.covers(points.getGeometryN(i)));
+        Assert.assertFalse(hull.contains(geomFactory.createPoint(new Coordinate(4.5, 3))));
+        Assert.assertEquals(21.1875, hull.getArea(), 1e-9);
+    }
+
+    @Test
+    public void keepsConvexHullForLargeThreshold() {
+        GeometryCollection points = createUShapedPoints();
+
+        Geometry hull = new DelaunayConcaveHull(points, 10).getConcaveHull();
+
+        Assert.assertTrue(hull.isValid());
+        Assert.assertEquals(points.convexHull().getArea(), hull.getArea(), 1e-9);
+    }
+
+    @Test
+    public void ignoresDuplicatePoints() {
+        GeometryCollection points = createPoints(new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(0, 0),
+                new Coordinate(1, 1), new Coordinate(0, 1), new Coordinate(1, 1));
+
+        Geometry hull = new DelaunayConcaveHull(points, 0.5).getConcaveHull();
+
+        Assert.assertTrue(hull.isValid());
+        Assert.assertEquals(5, hull.getNumPoints());
+        Assert.assertEquals(1, hull.getArea(), 1e-9);
+    }
+
+    @Test
+    public void returnsDegeneratedGeometries() {
+        Assert.assertTrue(new DelaunayConcaveHull(createPoints(), 1).getConcaveHull().isEmpty());
+        Assert.assertTrue(new DelaunayConcaveHull(createPoints(new Coordinate(1, 1)), 1).getConcaveHull() instanceof Point);
+        Assert.assertTrue(new DelaunayConcaveHull(createPoints(new Coordinate(1, 1), new Coordinate(2, 2)), 1).getConcaveHull() instanceof LineString);
+        Assert.assertTrue(new DelaunayConcaveHull(createPoints(new Coordinate(1, 1), new Coordinate(2, 2), new Coordinate(3, 3)), 1).getConcaveHull() instanceof LineString);
+    }
+
+    @Test
+    public void matchesOpensphereConcaveHull() {
+        int[] counts = { 100, 500, 3000 };
+        for (int i = 0; i < counts.length; i++) {
+            GeometryCollection points = createRandomPoints(counts[i], 31 + i);
+            // a threshold of a few times the mean distance of the points erodes the wedges, but not the disk
+            double threshold = 4 / Math.sqrt(counts[i]);
+
+            Geometry expected = new ConcaveHull(points, threshold, false).getConcaveHull();
+            Geometry hull = new DelaunayConcaveHull(points, threshold).getConcaveHull();
+
+            String message = counts[i] + " points";
+            Assert.assertTrue(message, hull.isValid());
+            Assert.assertTrue(message, hull.getArea() < points.convexHull().getArea());
+            Assert.assertEquals(message, expected.getArea(), hull.getArea(), 1e-9);
+            Assert.assertTrue(message, hull.equalsTopo(expected));
+        }
+    }
+}
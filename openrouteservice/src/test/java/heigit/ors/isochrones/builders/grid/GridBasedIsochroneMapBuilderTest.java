@@ -0,0 +1,120 @@
+package heigit.ors.isochrones.builders.grid;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import heigit.ors.isochrones.IsochroneMap;
+import heigit.ors.isochrones.IsochroneSearchParameters;
+import heigit.ors.routing.RouteSearchContext;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GridBasedIsochroneMapBuilderTest {
+    private static final int SIZE = 21;
+    private static final double MIN_LAT = 49.40;
+    private static final double MIN_LON = 8.66;
+    private static final double STEP_LAT = 0.002;
+    private static final double STEP_LON = 0.003;
+
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+    private final GeometryFactory geomFactory = new GeometryFactory();
+
+    private GraphHopper gh;
+
+    /**
+     * GraphHopper instance for the given graph without contraction hierarchies.
+     */
+    private static class TestGraphHopper extends GraphHopper {
+        public TestGraphHopper(GraphHopperStorage graph) {
+            setCHEnabled(false);
+            setGraphHopperStorage(graph);
+
+            LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+            index.prepareIndex();
+            setLocationIndex(index);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        GraphHopperStorage graph = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+
+        // grid of roads with about 220 m between the crossings
+        DistanceCalcEarth distCalc = new DistanceCalcEarth();
+        NodeAccess nodes = graph.getNodeAccess();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int node = y * SIZE + x;
+                nodes.setNode(node, getLat(y), getLon(x));
+                if (x > 0)
+                    graph.edge(node - 1, node, distCalc.calcDist(getLat(y), getLon(x - 1), getLat(y), getLon(x)), true);
+                if (y > 0)
+                    graph.edge(node - SIZE, node, distCalc.calcDist(getLat(y - 1), getLon(x), getLat(y), getLon(x)), true);
+            }
+        }
+
+        gh = new TestGraphHopper(graph);
+    }
+
+    private static double getLat(double y) {
+        return MIN_LAT + y * STEP_LAT;
+    }
+
+    private static double getLon(double x) {
+        return MIN_LON + x * STEP_LON;
+    }
+
+    private IsochroneMap compute(double... ranges) throws Exception {
+        GridBasedIsochroneMapBuilder builder = new GridBasedIsochroneMapBuilder();
+        builder.initialize(new RouteSearchContext(gh, new DefaultEdgeFilter(encoder), encoder));
+
+        IsochroneSearchParameters parameters = new IsochroneSearchParameters(0, new Coordinate(getLon(10), getLat(10)), ranges);
+        return builder.compute(parameters);
+    }
+
+    private boolean contains(Geometry geom, double x, double y) {
+        return geom.contains(geomFactory.createPoint(new Coordinate(getLon(x), getLat(y))));
+    }
+
+    @Test
+    public void createsNestedIsochrones() throws Exception {
+        // about 1000 m and 2000 m along the roads
+        IsochroneMap map = compute(60, 120);
+
+        Assert.assertEquals(2, map.getIsochronesCount());
+        Geometry inner = map.getIsochrone(0).getGeometry();
+        Geometry outer = map.getIsochrone(1).getGeometry();
+
+        for (Geometry geom : new Geometry[] { inner, outer }) {
+            // the reachable roads are contiguous, so each range is a single polygon
+            Assert.assertTrue(geom instanceof Polygon);
+            Assert.assertTrue(geom.isValid());
+            Assert.assertTrue(contains(geom, 10, 10));
+        }
+
+        Assert.assertTrue(outer.getArea() > inner.getArea());
+
+        // about 1550 m along the road from the start
+        Assert.assertFalse(contains(inner, 10, 17));
+        Assert.assertTrue(contains(outer, 10, 17));
+        Assert.assertFalse(contains(outer, 10, 20));
+    }
+}
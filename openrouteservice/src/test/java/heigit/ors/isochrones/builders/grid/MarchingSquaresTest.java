@@ -0,0 +1,132 @@
+package heigit.ors.isochrones.builders.grid;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MarchingSquaresTest {
+    private final GeometryFactory geomFactory = new GeometryFactory();
+
+    private static double[] createGrid(int size, double value) {
+        double[] values = new double[size * size];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private static void setValue(double[] values, int size, int x, int y, double value) {
+        values[y * size + x] = value;
+    }
+
+    private static void setValues(double[] values, int size, int minX, int minY, int maxX, int maxY, double value) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++)
+                setValue(values, size, x, y, value);
+        }
+    }
+
+    private Polygon createSinglePolygon(MarchingSquares contours, double isoValue) {
+        MultiPolygon polygons = contours.createMultiPolygon(isoValue, geomFactory);
+        Assert.assertNotNull(polygons);
+        Assert.assertEquals(1, polygons.getNumGeometries());
+        return (Polygon) polygons.getGeometryN(0);
+    }
+
+    @Test
+    public void createsShellAroundInsidePoints() {
+        double[] values = createGrid(7, 10);
+        setValues(values, 7, 2, 2, 4, 4, 0);
+
+        Polygon poly = createSinglePolygon(new MarchingSquares(values, 7, 7, 0, 0, 1, 1), 5);
+
+        Assert.assertTrue(poly.isValid());
+        Assert.assertEquals(0, poly.getNumInteriorRing());
+        // the contour crosses halfway between the grid points with the values 0 and 10, cutting off the corners
+        Assert.assertEquals(8.5, poly.getArea(), 1e-9);
+        Assert.assertTrue(poly.contains(geomFactory.createPoint(new Coordinate(3, 3))));
+    }
+
+    @Test
+    public void createsHoleAroundOutsidePoints() {
+        double[] values = createGrid(9, 0);
+        setValue(values, 9, 4, 4, 10);
+
+        Polygon poly = createSinglePolygon(new MarchingSquares(values, 9, 9, 0, 0, 1, 1), 5);
+
+        Assert.assertTrue(poly.isValid());
+        Assert.assertEquals(1, poly.getNumInteriorRing());
+        Assert.assertFalse(poly.contains(geomFactory.createPoint(new Coordinate(4, 4))));
+        Assert.assertTrue(poly.contains(geomFactory.createPoint(new Coordinate(2, 2))));
+    }
+
+    @Test
+    public void returnsAllShells() {
+        double[] values = createGrid(11, 10);
+        setValue(values, 11, 2, 2, 0);
+        setValues(values, 11, 5, 5, 8, 8, 0);
+
+        MultiPolygon polygons = new MarchingSquares(values, 11, 11, 0, 0, 1, 1).createMultiPolygon(5, geomFactory);
+
+        Assert.assertTrue(polygons.isValid());
+        Assert.assertEquals(2, polygons.getNumGeometries());
+        // larger shells first
+        Assert.assertTrue(polygons.getGeometryN(0).contains(geomFactory.createPoint(new Coordinate(6.5, 6.5))));
+        Assert.assertTrue(polygons.getGeometryN(1).contains(geomFactory.createPoint(new Coordinate(2, 2))));
+    }
+
+    @Test
+    public void keepsIslandsInHoles() {
+        // a ring of inside points around a hole with an island in its center
+        double[] values = createGrid(13, 10);
+        setValues(values, 13, 2, 2, 10, 10, 0);
+        setValues(values, 13, 4, 4, 8, 8, 10);
+        setValue(values, 13, 6, 6, 0);
+
+        MultiPolygon polygons = new MarchingSquares(values, 13, 13, 0, 0, 1, 1).createMultiPolygon(5, geomFactory);
+
+        Assert.assertTrue(polygons.isValid());
+        Assert.assertEquals(2, polygons.getNumGeometries());
+
+        Polygon outer = (Polygon) polygons.getGeometryN(0);
+        Assert.assertEquals(1, outer.getNumInteriorRing());
+        Assert.assertTrue(outer.contains(geomFactory.createPoint(new Coordinate(3, 3))));
+        Assert.assertFalse(outer.contains(geomFactory.createPoint(new Coordinate(5, 5))));
+
+        Polygon island = (Polygon) polygons.getGeometryN(1);
+        Assert.assertEquals(0, island.getNumInteriorRing());
+        Assert.assertTrue(island.contains(geomFactory.createPoint(new Coordinate(6, 6))));
+        Assert.assertTrue(polygons.contains(geomFactory.createPoint(new Coordinate(6, 6))));
+    }
+
+    @Test
+    public void assignsHolesToInnermostShell() {
+        // the island in the hole has a hole of its own
+        double[] values = createGrid(17, 10);
+        setValues(values, 17, 2, 2, 14, 14, 0);
+        setValues(values, 17, 4, 4, 12, 12, 10);
+        setValues(values, 17, 6, 6, 10, 10, 0);
+        setValue(values, 17, 8, 8, 10);
+
+        MultiPolygon polygons = new MarchingSquares(values, 17, 17, 0, 0, 1, 1).createMultiPolygon(5, geomFactory);
+
+        Assert.assertTrue(polygons.isValid());
+        Assert.assertEquals(2, polygons.getNumGeometries());
+        Assert.assertEquals(1, ((Polygon) polygons.getGeometryN(0)).getNumInteriorRing());
+        Assert.assertEquals(1, ((Polygon) polygons.getGeometryN(1)).getNumInteriorRing());
+        Assert.assertFalse(polygons.contains(geomFactory.createPoint(new Coordinate(8, 8))));
+        Assert.assertTrue(polygons.contains(geomFactory.createPoint(new Coordinate(7, 7))));
+        Assert.assertFalse(polygons.contains(geomFactory.createPoint(new Coordinate(5, 5))));
+    }
+
+    @Test
+    public void ignoresBorderPoints() {
+        double[] values = createGrid(5, 10);
+        setValue(values, 5, 0, 2, 0);
+
+        Assert.assertNull(new MarchingSquares(values, 5, 5, 0, 0, 1, 1).createMultiPolygon(5, geomFactory));
+    }
+}
@@ -0,0 +1,35 @@
+package heigit.ors.mapmatching.hmm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ViterbiSolverTest {
+    // states healthy (0) and fever (1), observations normal, cold and dizzy
+    private static final double[] START = { 0.6, 0.4 };
+    private static final double[] TRANSITIONS = { 0.7, 0.3, 0.4, 0.6 };
+    private static final double[] EMISSIONS = { 0.5, 0.4, 0.1, 0.1, 0.3, 0.6 };
+
+    @Test
+    public void TestFindPath() {
+        ViterbiSolver solver = new ViterbiSolver();
+
+        assertArrayEquals(new int[] { 0, 0, 1 }, solver.findPath(START, TRANSITIONS, EMISSIONS, 2, 3, 3, false));
+        assertArrayEquals(new int[] { 0, 0, 1 }, solver.findPath(START, TRANSITIONS, EMISSIONS, 2, 3, 3, true));
+    }
+
+    @Test
+    public void TestReusedBuffers() {
+        ViterbiSolver solver = new ViterbiSolver();
+
+        // a larger problem first, so that the second call runs on oversized buffers
+        double[] start = { 0.2, 0.2, 0.6 };
+        double[] transitions = { 0.1, 0.1, 0.8, 0.1, 0.1, 0.8, 0.1, 0.1, 0.8 };
+        double[] emissions = { 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5 };
+        assertArrayEquals(new int[] { 2, 2, 2, 2 }, solver.findPath(start, transitions, emissions, 3, 4, 4, true));
+
+        // only the first two observations of the emission rows are used
+        double[] emissions2 = { 0.5, 0.4, 0.0, 0.1, 0.3, 0.0 };
+        assertArrayEquals(new int[] { 0, 0 }, solver.findPath(START, TRANSITIONS, emissions2, 2, 2, 3, true));
+    }
+}
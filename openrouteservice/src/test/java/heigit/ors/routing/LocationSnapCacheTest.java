@@ -0,0 +1,142 @@
+package heigit.ors.routing;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import com.vividsolutions.jts.geom.Polygon;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.SnapCachingLocationIndex;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.AvoidAreasEdgeFilter;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.EdgeFilterSequence;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocationSnapCacheTest {
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+
+    private GraphHopperStorage graph;
+    private LocationIndexTree locationIndex;
+
+    @Before
+    public void setUp() {
+        graph = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+
+        NodeAccess nodes = graph.getNodeAccess();
+        nodes.setNode(0, 49.40, 8.68);
+        nodes.setNode(1, 49.41, 8.68);
+        nodes.setNode(2, 49.41, 8.69);
+        graph.edge(0, 1, 1112, true);
+        graph.edge(1, 2, 725, true);
+
+        locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+    }
+
+    private SnapCachingLocationIndex createCachingIndex(LocationSnapCache cache) {
+        SnapCachingLocationIndex index = new SnapCachingLocationIndex(graph, new RAMDirectory(), cache);
+        index.prepareIndex();
+        return index;
+    }
+
+    @Test
+    public void TestCachedResults() {
+        LocationSnapCache cache = new LocationSnapCache(graph, 10);
+        SnapCachingLocationIndex cachingIndex = createCachingIndex(cache);
+        EdgeFilter filter = new DefaultEdgeFilter(encoder);
+
+        QueryResult first = cachingIndex.findClosest(49.405, 8.681, filter);
+        QueryResult second = cachingIndex.findClosest(49.405, 8.681, filter);
+        QueryResult expected = locationIndex.findClosest(49.405, 8.681, filter);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+        assertNotSame(first, second);
+
+        for (QueryResult qr : new QueryResult[]{first, second}) {
+            assertEquals(expected.getClosestNode(), qr.getClosestNode());
+            assertEquals(expected.getClosestEdge().getEdge(), qr.getClosestEdge().getEdge());
+            assertEquals(expected.getSnappedPosition(), qr.getSnappedPosition());
+            assertEquals(expected.getQueryDistance(), qr.getQueryDistance(), 1e-6);
+            assertEquals(expected.getSnappedPoint().getLat(), qr.getSnappedPoint().getLat(), 1e-7);
+            assertEquals(expected.getSnappedPoint().getLon(), qr.getSnappedPoint().getLon(), 1e-7);
+        }
+
+        // modifications by a query graph do not reach the cache
+        second.setClosestNode(100);
+        assertEquals(expected.getClosestNode(), cachingIndex.findClosest(49.405, 8.681, filter).getClosestNode());
+    }
+
+    @Test
+    public void TestFilterKeys() {
+        String bothKey = LocationSnapCache.getFilterKey(new DefaultEdgeFilter(encoder));
+        String outKey = LocationSnapCache.getFilterKey(new DefaultEdgeFilter(encoder, false, true));
+        String inKey = LocationSnapCache.getFilterKey(new DefaultEdgeFilter(encoder, true, false));
+        assertNotNull(bothKey);
+        assertFalse(bothKey.equals(outKey));
+        assertFalse(bothKey.equals(inKey));
+        assertFalse(inKey.equals(outKey));
+
+        EdgeFilterSequence sequence = new EdgeFilterSequence();
+        sequence.add(new DefaultEdgeFilter(encoder));
+        assertEquals(bothKey, LocationSnapCache.getFilterKey(sequence));
+
+        sequence.add(new AvoidAreasEdgeFilter(new Polygon[0]));
+        assertNull(LocationSnapCache.getFilterKey(sequence));
+
+        LocationSnapCache cache = new LocationSnapCache(graph, 10);
+        SnapCachingLocationIndex cachingIndex = createCachingIndex(cache);
+        cachingIndex.findClosest(49.405, 8.681, sequence);
+        cachingIndex.findClosest(49.405, 8.681, sequence);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void TestDirectionsCachedSeparately() {
+        LocationSnapCache cache = new LocationSnapCache(graph, 10);
+        SnapCachingLocationIndex cachingIndex = createCachingIndex(cache);
+
+        cachingIndex.findClosest(49.405, 8.681, new DefaultEdgeFilter(encoder, true, false));
+        cachingIndex.findClosest(49.405, 8.681, new DefaultEdgeFilter(encoder, false, true));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+
+        cachingIndex.findClosest(49.405, 8.681, new DefaultEdgeFilter(encoder, false, true));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void TestCapacity() {
+        LocationSnapCache cache = new LocationSnapCache(graph, 2);
+        SnapCachingLocationIndex cachingIndex = createCachingIndex(cache);
+        EdgeFilter filter = new DefaultEdgeFilter(encoder);
+
+        cachingIndex.findClosest(49.401, 8.68, filter);
+        cachingIndex.findClosest(49.402, 8.68, filter);
+        cachingIndex.findClosest(49.403, 8.68, filter);
+        assertEquals(2, cache.size());
+
+        // the first location has been evicted
+        cachingIndex.findClosest(49.401, 8.68, filter);
+        assertEquals(4, cache.getMisses());
+
+        QueryResult outside = cachingIndex.findClosest(10, 10, filter);
+        assertEquals(outside.isValid(), cachingIndex.findClosest(10, 10, filter).isValid());
+    }
+}
@@ -0,0 +1,107 @@
+package heigit.ors.routing.algorithms;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.weighting.DistanceWeighting;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CostBoundedDijkstraTest {
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+    private final Weighting weighting = new DistanceWeighting(encoder);
+
+    private GraphHopperStorage graph;
+
+    @Before
+    public void setUp() {
+        graph = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+
+        // 0 - 1 - 2 - 3 and a one way edge from 1 to 4
+        graph.edge(0, 1, 100, true);
+        graph.edge(1, 2, 200, true);
+        graph.edge(2, 3, 300, true);
+        graph.edge(1, 4, 50, false);
+    }
+
+    private static int getEntry(AccessibilityMap map, int node) {
+        for (int i = 0; i < map.size(); i++) {
+            if (map.getNode(i) == node)
+                return i;
+        }
+        return -1;
+    }
+
+    @Test
+    public void TestCostLimit() {
+        AccessibilityMap map = CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, null, 0, 250, false, null);
+
+        // node 2 is reached by the edge crossing the limit, node 3 is not reached at all
+        assertEquals(4, map.size());
+        assertEquals(-1, getEntry(map, 3));
+
+        int start = getEntry(map, 0);
+        assertEquals(-1, map.getEdge(start));
+        assertEquals(-1, map.getParent(start));
+        assertEquals(0, map.getWeight(start), 1e-6);
+
+        int entry = getEntry(map, 4);
+        assertEquals(150, map.getWeight(entry), 1e-3);
+        assertEquals(1, map.getNode(map.getParent(entry)));
+        assertEquals(3, map.getEdge(entry));
+
+        entry = getEntry(map, 2);
+        assertEquals(300, map.getWeight(entry), 1e-3);
+        assertEquals(getEntry(map, 1), map.getParent(entry));
+    }
+
+    @Test
+    public void TestReverseDirection() {
+        assertEquals(1, CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, null, 4, 1000, false, null).size());
+
+        AccessibilityMap map = CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, null, 4, 1000, true, null);
+
+        assertEquals(5, map.size());
+        assertEquals(50, map.getWeight(getEntry(map, 1)), 1e-3);
+        assertEquals(550, map.getWeight(getEntry(map, 3)), 1e-3);
+    }
+
+    @Test
+    public void TestReusedSearchResults() {
+        AccessibilityMap first = CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, null, 0, 1000, false, null);
+        AccessibilityMap second = CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, null, 3, 100, false, null);
+
+        assertEquals(5, first.size());
+        assertEquals(600, first.getWeight(getEntry(first, 3)), 1e-3);
+        assertEquals(2, second.size());
+        assertEquals(-1, getEntry(second, 0));
+    }
+
+    @Test
+    public void TestSearchBeyondRetainedSize() {
+        GraphHopperStorage chain = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        chain.create(3);
+        int nodes = CostBoundedDijkstra.MAX_RETAINED_SLOTS + 10;
+        for (int node = 1; node < nodes; node++)
+            chain.edge(node - 1, node, 1, true);
+
+        AccessibilityMap large = CostBoundedDijkstra.calcAccessibilityMap(chain, weighting, null, 0, nodes, false, null);
+        assertEquals(nodes, large.size());
+
+        // the search after the dropped arrays starts from scratch
+        AccessibilityMap map = CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, null, 0, 1000, false, null);
+        assertEquals(5, map.size());
+        assertEquals(600, map.getWeight(getEntry(map, 3)), 1e-3);
+    }
+}
@@ -0,0 +1,124 @@
+package heigit.ors.routing.algorithms;
+
+import com.carrotsearch.hppc.IntDoubleHashMap;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CostBoundedPHASTTest {
+    private static final int SIZE = 5;
+
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+    private final Weighting weighting = new FastestWeighting(encoder);
+
+    private GraphHopperStorage graph;
+    private CHGraph chGraph;
+    private Weighting chWeighting;
+
+    @Before
+    public void setUp() {
+        graph = new GraphHopperStorage(Collections.singletonList(weighting), new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+
+        // grid with varying lengths and a few one way edges
+        NodeAccess nodes = graph.getNodeAccess();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int node = y * SIZE + x;
+                nodes.setNode(node, 49.0 + y * 0.01, 8.0 + x * 0.01);
+                if (x > 0)
+                    graph.edge(node - 1, node, 700 + 37 * ((node * 7) % 11), node % 4 != 1);
+                if (y > 0)
+                    graph.edge(node - SIZE, node, 1100 + 53 * ((node * 5) % 7), node % 6 != 2);
+            }
+        }
+
+        graph.freeze();
+
+        chGraph = graph.getGraph(CHGraph.class, weighting);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_STORE), graph, chGraph, weighting, TraversalMode.NODE_BASED);
+        prepare.doWork();
+        chWeighting = prepare.getPrepareWeighting();
+    }
+
+    private static IntDoubleHashMap getWeights(AccessibilityMap map) {
+        IntDoubleHashMap weights = new IntDoubleHashMap();
+        for (int i = 0; i < map.size(); i++)
+            weights.put(map.getNode(i), map.getWeight(i));
+        return weights;
+    }
+
+    private void assertSameCosts(int from, double maxCost, boolean reverseDirection) {
+        AccessibilityMap expected = CostBoundedDijkstra.calcAccessibilityMap(graph, weighting, null, from, maxCost, reverseDirection, null);
+        AccessibilityMap actual = CostBoundedPHAST.calcAccessibilityMap(chGraph, graph, chWeighting, from, maxCost, reverseDirection, null);
+
+        assertEquals(expected.size(), actual.size());
+
+        IntDoubleHashMap expectedWeights = getWeights(expected);
+        for (int i = 0; i < actual.size(); i++) {
+            int node = actual.getNode(i);
+            assertTrue(expectedWeights.containsKey(node));
+            assertEquals(expectedWeights.get(node), actual.getWeight(i), 1e-2);
+
+            int parent = actual.getParent(i);
+            if (node == from) {
+                assertEquals(-1, parent);
+            } else {
+                // the parent edge connects the node to its parent on a shortest path
+                assertTrue(parent >= 0);
+                assertTrue(actual.getWeight(parent) <= maxCost);
+                assertEquals(actual.getNode(parent), graph.getEdgeIteratorState(actual.getEdge(i), node).getBaseNode());
+            }
+        }
+    }
+
+    @Test
+    public void TestSameCostsAsDijkstra() {
+        for (int from = 0; from < SIZE * SIZE; from += 3) {
+            assertSameCosts(from, 60, false);
+            assertSameCosts(from, 150, false);
+            assertSameCosts(from, 10000, false);
+        }
+    }
+
+    @Test
+    public void TestSameCostsAsDijkstraInReverseDirection() {
+        for (int from = 1; from < SIZE * SIZE; from += 4) {
+            assertSameCosts(from, 60, true);
+            assertSameCosts(from, 150, true);
+        }
+    }
+
+    @Test
+    public void TestStartNodeOnly() {
+        AccessibilityMap map = CostBoundedPHAST.calcAccessibilityMap(chGraph, graph, chWeighting, 12, 0, false, null);
+
+        assertEquals(12, map.getNode(0));
+        assertEquals(0, map.getWeight(0), 0.0);
+        assertEquals(-1, map.getEdge(0));
+        // the neighbours are reached by the edges crossing the maximum cost
+        for (int i = 1; i < map.size(); i++) {
+            assertEquals(0, map.getParent(i));
+            assertTrue(map.getWeight(i) > 0);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package heigit.ors.routing.algorithms;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.BlockedEdgesEdgeFilter;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizableHierarchy;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizedShortcutWeights;
+import heigit.ors.routing.graphhopper.extensions.weighting.TrafficAvoidWeighting;
+import heigit.ors.routing.graphhopper.extensions.weighting.TrafficCHWeighting;
+import heigit.ors.routing.traffic.AvoidEdgeInfo;
+import heigit.ors.routing.traffic.EdgeInfo;
+import heigit.ors.routing.traffic.TrafficSnapshot;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the routes on the customized hierarchy with the ones of Dijkstra on the base graph with the traffic
+ * weighting and the blocked edges filter.
+ */
+public class CustomizedCHAlgorithmTest {
+    private static final int SIZE = 15;
+    private static final double MIN_LAT = 49.40;
+    private static final double MIN_LON = 8.66;
+    private static final double STEP_LAT = 0.002;
+    private static final double STEP_LON = 0.003;
+
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphHopperStorage graph;
+    private CustomizableHierarchy hierarchy;
+    private CustomizedShortcutWeights freeFlowWeights;
+
+    @Before
+    public void setUp() {
+        graph = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+
+        // grid of roads with different speeds, some of them one way
+        Random random = new Random(42);
+        DistanceCalcEarth distCalc = new DistanceCalcEarth();
+        NodeAccess nodes = graph.getNodeAccess();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int node = y * SIZE + x;
+                nodes.setNode(node, getLat(y), getLon(x));
+                if (x > 0)
+                    addEdge(random, node - 1, node, distCalc.calcDist(getLat(y), getLon(x - 1), getLat(y), getLon(x)));
+                if (y > 0)
+                    addEdge(random, node - SIZE, node, distCalc.calcDist(getLat(y - 1), getLon(x), getLat(y), getLon(x)));
+            }
+        }
+
+        hierarchy = CustomizableHierarchy.loadOrCreate(new RAMDirectory(), graph);
+        freeFlowWeights = CustomizedShortcutWeights.customize(hierarchy, graph, new TrafficCHWeighting(encoder, TrafficSnapshot.EMPTY));
+    }
+
+    private void addEdge(Random random, int from, int to, double distance) {
+        int speed = 10 * (2 + random.nextInt(8));
+        boolean bothDirections = random.nextInt(10) > 0;
+        graph.edge(from, to).setDistance(distance).setFlags(encoder.setProperties(speed, true, bothDirections));
+    }
+
+    private static double getLat(double y) {
+        return MIN_LAT + y * STEP_LAT;
+    }
+
+    private static double getLon(double x) {
+        return MIN_LON + x * STEP_LON;
+    }
+
+    private TrafficSnapshot createSnapshot(BitSet blocked) {
+        HashMap<Integer, AvoidEdgeInfo> avoidEdges = new HashMap<>();
+        // reduced speed and delays
+        for (int edge = 3; edge < graph.getAllEdges().getMaxId(); edge += 17)
+            avoidEdges.put(edge, new AvoidEdgeInfo(edge, new short[] { 1, 2 }));
+        for (int edge = 11; edge < graph.getAllEdges().getMaxId(); edge += 29)
+            avoidEdges.put(edge, new AvoidEdgeInfo(edge, new short[] { 1602 }));
+
+        return new TrafficSnapshot(1, new HashMap<Integer, EdgeInfo>(), avoidEdges, blocked, new BitSet());
+    }
+
+    private CustomizedShortcutWeights customize(TrafficSnapshot snapshot) {
+        return CustomizedShortcutWeights.customize(hierarchy, graph, new TrafficCHWeighting(encoder, snapshot),
+                freeFlowWeights, snapshot.getChangedEdges(false));
+    }
+
+    private Path calcDijkstraPath(Graph queryGraph, TrafficSnapshot snapshot, int from, int to) {
+        Dijkstra dijkstra = new Dijkstra(queryGraph, new TrafficAvoidWeighting(null, encoder, snapshot), TraversalMode.NODE_BASED);
+        dijkstra.setEdgeFilter(new BlockedEdgesEdgeFilter(encoder, snapshot));
+        return dijkstra.calcPath(from, to);
+    }
+
+    private Path calcCHPath(Graph queryGraph, TrafficSnapshot snapshot, CustomizedShortcutWeights weights, int from, int to) {
+        return new CustomizedCHAlgorithm(queryGraph, new TrafficCHWeighting(encoder, snapshot), hierarchy, weights).calcPath(from, to);
+    }
+
+    /**
+     * Asserts that the path on the hierarchy has the weight of the one of Dijkstra and consists of connected, passable
+     * edges of the graph whose weights add up to it.
+     */
+    private void assertSamePath(Graph queryGraph, TrafficSnapshot snapshot, CustomizedShortcutWeights weights, int from, int to) {
+        Path expected = calcDijkstraPath(queryGraph, snapshot, from, to);
+        Path actual = calcCHPath(queryGraph, snapshot, weights, from, to);
+        String message = "from " + from + " to " + to;
+
+        assertEquals(message, expected.isFound(), actual.isFound());
+        if (!expected.isFound())
+            return;
+        assertEquals(message, expected.getWeight(), actual.getWeight(), 1e-2);
+
+        Weighting weighting = new TrafficCHWeighting(encoder, snapshot);
+        double weight = 0;
+        int node = from;
+        List<EdgeIteratorState> edges = actual.calcEdges();
+        for (EdgeIteratorState edge : edges) {
+            assertEquals(message, node, edge.getBaseNode());
+            weight += weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE);
+            node = edge.getAdjNode();
+        }
+        assertEquals(message, to, node);
+        assertEquals(message, expected.getWeight(), weight, 1e-2);
+    }
+
+    @Test
+    public void TestFreeFlow() {
+        for (int from = 0; from < graph.getNodes(); from += 7) {
+            for (int to = 0; to < graph.getNodes(); to += 5)
+                assertSamePath(graph, TrafficSnapshot.EMPTY, freeFlowWeights, from, to);
+        }
+    }
+
+    @Test
+    public void TestTraffic() {
+        BitSet blocked = new BitSet();
+        for (int edge = 5; edge < graph.getAllEdges().getMaxId(); edge += 23)
+            blocked.set(edge);
+        TrafficSnapshot snapshot = createSnapshot(blocked);
+        CustomizedShortcutWeights weights = customize(snapshot);
+
+        for (int from = 0; from < graph.getNodes(); from += 7) {
+            for (int to = 0; to < graph.getNodes(); to += 5)
+                assertSamePath(graph, snapshot, weights, from, to);
+        }
+    }
+
+    @Test
+    public void TestBlockedEdgeOnFreeFlowPath() {
+        int from = 0;
+        int to = graph.getNodes() - 1;
+        List<EdgeIteratorState> freeFlowEdges = calcCHPath(graph, TrafficSnapshot.EMPTY, freeFlowWeights, from, to).calcEdges();
+
+        // blocking an edge of the free flow route invalidates the arcs that were witnessed by it
+        BitSet blocked = new BitSet();
+        blocked.set(freeFlowEdges.get(freeFlowEdges.size() / 2).getEdge());
+        TrafficSnapshot snapshot = createSnapshot(blocked);
+        CustomizedShortcutWeights weights = customize(snapshot);
+
+        assertSamePath(graph, snapshot, weights, from, to);
+        for (EdgeIteratorState edge : calcCHPath(graph, snapshot, weights, from, to).calcEdges())
+            assertFalse(blocked.get(edge.getEdge()));
+    }
+
+    @Test
+    public void TestVirtualNodes() {
+        BitSet blocked = new BitSet();
+        blocked.set(40);
+        TrafficSnapshot snapshot = createSnapshot(blocked);
+        CustomizedShortcutWeights weights = customize(snapshot);
+
+        LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+
+        // points between the crossings, so they snap onto the edges
+        double[][] points = { { 2.5, 3.4 }, { 11.6, 9.5 }, { 6.5, 0.3 }, { 13.5, 12.7 } };
+        for (double[] start : points) {
+            for (double[] end : points) {
+                QueryResult fromResult = index.findClosest(getLat(start[1]), getLon(start[0]), EdgeFilter.ALL_EDGES);
+                QueryResult toResult = index.findClosest(getLat(end[1]), getLon(end[0]), EdgeFilter.ALL_EDGES);
+                QueryGraph queryGraph = new QueryGraph(graph);
+                queryGraph.lookup(fromResult, toResult);
+
+                assertSamePath(queryGraph, snapshot, weights, fromResult.getClosestNode(), toResult.getClosestNode());
+            }
+        }
+    }
+
+    @Test
+    public void TestSparseCustomization() {
+        BitSet blocked = new BitSet();
+        blocked.set(8);
+        blocked.set(100);
+        TrafficSnapshot snapshot = createSnapshot(blocked);
+
+        CustomizedShortcutWeights sparse = customize(snapshot);
+        CustomizedShortcutWeights full = CustomizedShortcutWeights.customize(hierarchy, graph, new TrafficCHWeighting(encoder, snapshot));
+
+        assertTrue(sparse.size() > 0);
+        assertTrue(sparse.size() < full.size());
+        for (int arc = 0; arc < hierarchy.getArcs(); arc++) {
+            assertEquals(full.getWeight(arc, true), sparse.getWeight(arc, true), 0);
+            assertEquals(full.getWeight(arc, false), sparse.getWeight(arc, false), 0);
+        }
+    }
+
+    @Test
+    public void TestLoadHierarchy() {
+        String location = folder.getRoot().getAbsolutePath();
+        CustomizableHierarchy created = CustomizableHierarchy.loadOrCreate(new GHDirectory(location, DAType.RAM_STORE), graph);
+        CustomizableHierarchy loaded = CustomizableHierarchy.loadOrCreate(new GHDirectory(location, DAType.RAM_STORE), graph);
+
+        assertEquals(created.getArcs(), loaded.getArcs());
+        for (int node = 0; node < graph.getNodes(); node++)
+            assertEquals(created.getRank(node), loaded.getRank(node));
+        for (int arc = 0; arc < created.getArcs(); arc++) {
+            assertEquals(created.getTail(arc), loaded.getTail(arc));
+            assertEquals(created.getHead(arc), loaded.getHead(arc));
+        }
+    }
+}
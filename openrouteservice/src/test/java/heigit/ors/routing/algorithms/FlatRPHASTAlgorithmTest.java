@@ -0,0 +1,91 @@
+package heigit.ors.routing.algorithms;
+
+import com.graphhopper.routing.ch.PreparationWeighting;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.weighting.DistanceWeighting;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlatRPHASTAlgorithmTest {
+    // the trees of all sources reach every node of the chain, so a search from all nodes exceeds the retained size
+    private static final int NODES = 1100;
+
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+    private final Weighting weighting = new DistanceWeighting(encoder);
+
+    private CHGraph chGraph;
+
+    @Before
+    public void setUp() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).setCHGraph(weighting).create();
+        for (int node = 1; node < NODES; node++)
+            graph.edge(node - 1, node, 10, true);
+        graph.freeze();
+
+        chGraph = graph.getGraph(CHGraph.class, weighting);
+        new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_STORE), graph, chGraph, weighting, TraversalMode.NODE_BASED).doWork();
+    }
+
+    private FlatRPHASTAlgorithm createAlgorithm(int[] sources, int[] targets) {
+        FlatRPHASTAlgorithm algorithm = new FlatRPHASTAlgorithm(chGraph, new PreparationWeighting(weighting), TraversalMode.NODE_BASED);
+        algorithm.prepare(sources, targets);
+        return algorithm;
+    }
+
+    @Test
+    public void TestTableIsReused() {
+        int[] sources = { 3, 7 };
+        int[] targets = { 0, -1 };
+        FlatRPHASTAlgorithm algorithm = createAlgorithm(sources, targets);
+
+        int[] slots = algorithm.calcPaths(sources, targets);
+        MultiTreeSPTable table = algorithm.getTable();
+        assertEquals(-1, slots[1]);
+        assertEquals(30, table.getWeight(slots[0], 0), 1e-6);
+        assertEquals(70, table.getWeight(slots[0], 1), 1e-6);
+        algorithm.release();
+        assertNull(algorithm.getTable());
+
+        algorithm = createAlgorithm(sources, targets);
+        algorithm.calcPaths(sources, targets);
+        assertSame(table, algorithm.getTable());
+        algorithm.release();
+    }
+
+    @Test
+    public void TestSearchBeyondRetainedSize() {
+        int[] sources = new int[NODES];
+        for (int node = 0; node < NODES; node++)
+            sources[node] = node;
+        int[] targets = { 0 };
+        assertTrue((long) NODES * NODES > FlatRPHASTAlgorithm.MAX_RETAINED_SLOTS);
+
+        FlatRPHASTAlgorithm algorithm = createAlgorithm(sources, targets);
+        int[] slots = algorithm.calcPaths(sources, targets);
+        MultiTreeSPTable large = algorithm.getTable();
+        assertEquals(10 * (NODES - 1), large.getWeight(slots[0], NODES - 1), 1e-6);
+        algorithm.release();
+
+        // the search after the dropped table starts with a new one
+        sources = new int[] { 5 };
+        algorithm = createAlgorithm(sources, targets);
+        slots = algorithm.calcPaths(sources, targets);
+        assertNotSame(large, algorithm.getTable());
+        assertEquals(50, algorithm.getTable().getWeight(slots[0], 0), 1e-6);
+        algorithm.release();
+    }
+}
@@ -0,0 +1,58 @@
+package heigit.ors.routing.algorithms;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MultiTreeSPTableTest {
+    @Test
+    public void TestRelaxAndReuse() {
+        MultiTreeSPTable table = new MultiTreeSPTable();
+        table.init(10, 2);
+
+        int source = table.addSlot(3);
+        table.setWeight(source, 0, 0.0);
+        table.resetUpdate(source, true);
+
+        int child = table.addSlot(7);
+        table.initFromParent(child, source, 5, 2.5);
+
+        assertEquals(2.5, table.getWeight(child, 0), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, table.getWeight(child, 1), 0.0);
+        assertEquals(source, table.getParent(child, 0));
+        assertEquals(-1, table.getParent(child, 1));
+        assertEquals(5, table.getEdge(child, 0));
+        assertEquals(2.5, table.getTotalWeight(child), 0.0);
+
+        assertFalse(table.relax(child, source, 6, 3.0, false));
+        assertTrue(table.relax(child, source, 6, 1.0, false));
+        assertEquals(1.0, table.getWeight(child, 0), 0.0);
+        assertEquals(6, table.getEdge(child, 0));
+
+        table.init(10, 3);
+        assertEquals(0, table.size());
+        assertEquals(-1, table.getSlot(3));
+        assertEquals(-1, table.getSlot(7));
+
+        int slot = table.addSlot(7);
+        assertEquals(0, slot);
+        assertEquals(Double.POSITIVE_INFINITY, table.getWeight(slot, 2), 0.0);
+    }
+
+    @Test
+    public void TestHeapOrderAndUpdate() {
+        IntDoubleMinHeap heap = new IntDoubleMinHeap(2);
+        heap.push(4, 3.0);
+        heap.push(1, 1.0);
+        heap.push(9, 2.0);
+        heap.push(4, 0.5);
+
+        assertEquals(3, heap.size());
+        assertEquals(4, heap.poll());
+        assertEquals(1, heap.poll());
+        assertTrue(heap.contains(9));
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(9));
+    }
+}
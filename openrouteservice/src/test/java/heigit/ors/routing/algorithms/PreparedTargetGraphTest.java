@@ -0,0 +1,90 @@
+package heigit.ors.routing.algorithms;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PreparedTargetGraphTest {
+    private PreparedTargetGraph createGraph() {
+        PreparedTargetGraph.Builder builder = new PreparedTargetGraph.Builder(4);
+        builder.addNode(5);
+        builder.addEdge(7, 1, 5, 1.5);
+        builder.addEdge(9, 2, 7, 2.5);
+        builder.addEdge(7, 3, 8, 3.5);
+        return builder.build();
+    }
+
+    @Test
+    public void TestAdjacency() {
+        PreparedTargetGraph graph = createGraph();
+
+        assertEquals(3, graph.getNodesCount());
+        assertEquals(3, graph.getEdgesCount());
+        assertFalse(graph.containsNode(8));
+        assertEquals(-1, graph.getNodeIndex(8));
+
+        int index = graph.getNodeIndex(7);
+        assertEquals(2, graph.getEdgesEnd(index) - graph.getEdgesStart(index));
+        int edge = graph.getEdgesStart(index);
+        assertEquals(1, graph.getEdge(edge));
+        assertEquals(5, graph.getAdjNode(edge));
+        assertEquals(1.5, graph.getWeight(edge), 0.0);
+        assertEquals(8, graph.getAdjNode(edge + 1));
+
+        index = graph.getNodeIndex(5);
+        assertEquals(graph.getEdgesStart(index), graph.getEdgesEnd(index));
+    }
+
+    @Test
+    public void TestTopologicalOrder() {
+        PreparedTargetGraph graph = createGraph();
+
+        assertTrue(graph.hasTopologicalOrder());
+        assertEquals(9, graph.getNode(graph.getOrderedIndex(0)));
+        assertEquals(7, graph.getNode(graph.getOrderedIndex(1)));
+        assertEquals(5, graph.getNode(graph.getOrderedIndex(2)));
+
+        PreparedTargetGraph.Builder builder = new PreparedTargetGraph.Builder(4);
+        builder.addEdge(1, 10, 1, 1.0);
+        builder.addEdge(1, 11, 2, 1.0);
+        assertTrue(builder.build().hasTopologicalOrder());
+
+        builder = new PreparedTargetGraph.Builder(4);
+        builder.addEdge(1, 11, 2, 1.0);
+        builder.addEdge(2, 12, 1, 1.0);
+        assertFalse(builder.build().hasTopologicalOrder());
+    }
+
+    @Test
+    public void TestBuiltGraphIsNotChangedByBuilder() {
+        PreparedTargetGraph.Builder builder = new PreparedTargetGraph.Builder(4);
+        builder.addEdge(1, 10, 2, 1.0);
+        PreparedTargetGraph graph = builder.build();
+
+        builder.addNode(3);
+        builder.addEdge(4, 11, 3, 1.0);
+
+        assertEquals(1, graph.getNodesCount());
+        assertFalse(graph.containsNode(3));
+        assertFalse(graph.containsNode(4));
+        assertEquals(-1, graph.getNodeIndex(4));
+    }
+
+    @Test
+    public void TestCacheEviction() {
+        TargetGraphCache cache = new TargetGraphCache(2);
+        PreparedTargetGraph graph = createGraph();
+
+        cache.put("fastest", new int[] { 1, 2 }, graph);
+        cache.put("fastest", new int[] { 3 }, graph);
+        assertSame(graph, cache.get("fastest", new int[] { 1, 2 }));
+        assertNull(cache.get("shortest", new int[] { 1, 2 }));
+
+        cache.put("fastest", new int[] { 4 }, graph);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("fastest", new int[] { 3 }));
+        assertNotNull(cache.get("fastest", new int[] { 1, 2 }));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+}
@@ -0,0 +1,44 @@
+package heigit.ors.routing.graphhopper.extensions;
+
+import com.graphhopper.util.PMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class WeightingPresetsTest {
+    @Test
+    public void TestKeyIgnoresOrderAndNumberNotation() {
+        Map<String, PMap> first = new HashMap<>();
+        first.put("quiet", new PMap().put("factor", "0.50"));
+        first.put("green", new PMap().put("factor", "1"));
+
+        Map<String, PMap> second = new HashMap<>();
+        second.put("green", new PMap().put("factor", "1.0"));
+        second.put("quiet", new PMap().put("factor", ".5"));
+
+        assertEquals("green:factor=1.0+quiet:factor=0.5", WeightingPresets.createKey(first));
+        assertEquals(WeightingPresets.createKey(first), WeightingPresets.createKey(second));
+    }
+
+    @Test
+    public void TestAddParsesPreset() {
+        WeightingPresets presets = new WeightingPresets();
+        assertTrue(presets.isEmpty());
+
+        presets.add("quiet:factor=0.5 + green:factor=1");
+        assertFalse(presets.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestAddRejectsTurnDependentWeighting() {
+        new WeightingPresets().add("acceleration");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestAddRejectsInvalidParameter() {
+        new WeightingPresets().add("green:factor");
+    }
+}
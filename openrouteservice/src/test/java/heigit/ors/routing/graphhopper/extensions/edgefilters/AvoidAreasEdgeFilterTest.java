@@ -5,6 +5,9 @@ import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.GraphExtension;
 import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
 import com.vividsolutions.jts.geom.Coordinate;
@@ -13,8 +16,10 @@ import com.vividsolutions.jts.geom.Polygon;
 import heigit.ors.routing.RouteSearchParameters;
 import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.storages.EdgeBoundsIndex;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -51,4 +56,38 @@ public class AvoidAreasEdgeFilterTest {
         assertFalse(filter.accept(iter1));
         assertTrue(filter.accept(iter2));
     }
+
+    @Test
+    public void TestAvoidPolygonsWithIndex() {
+        NodeAccess nodes = _graphStorage.getNodeAccess();
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                int node = y * 10 + x;
+                nodes.setNode(node, 49.0 + y * 0.01, 8.0 + x * 0.01);
+                if (x > 0)
+                    _graphStorage.edge(node - 1, node, 730, true);
+                if (y > 0)
+                    _graphStorage.edge(node - 10, node, 1110, true);
+            }
+        }
+
+        GeometryFactory gf = new GeometryFactory();
+        Polygon poly = gf.createPolygon(new Coordinate[]{ new Coordinate(8.025, 49.025),
+                new Coordinate(8.055, 49.025),
+                new Coordinate(8.055, 49.045),
+                new Coordinate(8.025, 49.025)});
+
+        AvoidAreasEdgeFilter filter = new AvoidAreasEdgeFilter(new Polygon[] {poly});
+        AvoidAreasEdgeFilter indexFilter = new AvoidAreasEdgeFilter(new Polygon[] {poly}, EdgeBoundsIndex.loadOrCreate(new RAMDirectory(), _graphStorage), _graphStorage);
+
+        int blocked = 0;
+        EdgeIterator iter = _graphStorage.getAllEdges();
+        while (iter.next()) {
+            assertEquals(filter.accept(iter), indexFilter.accept(iter));
+            if (!indexFilter.accept(iter))
+                blocked++;
+        }
+
+        assertTrue(blocked > 0);
+    }
 }
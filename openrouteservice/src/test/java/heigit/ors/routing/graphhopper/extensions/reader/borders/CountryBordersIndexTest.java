@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GIScience Research Group, Heidelberg University (GIScience)
+ *
+ *   http://www.giscience.uni-hd.de
+ *   http://www.heigit.org
+ *
+ *  under one or more contributor license agreements. See the NOTICE file
+ *  distributed with this work for additional information regarding copyright
+ *  ownership. The GIScience licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package heigit.ors.routing.graphhopper.extensions.reader.borders;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class CountryBordersIndexTest {
+    private CountryBordersIndex index;
+
+    private Coordinate[] country1Geom = new Coordinate[] {
+            new Coordinate(0,0),
+            new Coordinate(1,0),
+            new Coordinate(1,1),
+            new Coordinate(0,1),
+            new Coordinate(0,0)
+    };
+    private Coordinate[] country2Geom = new Coordinate[] {
+            new Coordinate(1,0),
+            new Coordinate(2,0),
+            new Coordinate(2,1),
+            new Coordinate(1,1),
+            new Coordinate(1,0)
+    };
+    // overlaps the eastern half of country2
+    private Coordinate[] country3Geom = new Coordinate[] {
+            new Coordinate(1.5,0),
+            new Coordinate(3,0),
+            new Coordinate(3,1),
+            new Coordinate(1.5,1),
+            new Coordinate(1.5,0)
+    };
+
+    private GeometryFactory gf = new GeometryFactory();
+
+    @Before
+    public void setUp() throws Exception {
+        CountryBordersHierarchy h1 = new CountryBordersHierarchy(1);
+        h1.add(new CountryBordersPolygon("country1", gf.createPolygon(country1Geom), 1));
+        h1.add(new CountryBordersPolygon("country2", gf.createPolygon(country2Geom), 1));
+
+        CountryBordersHierarchy h2 = new CountryBordersHierarchy(2);
+        h2.add(new CountryBordersPolygon("country3", gf.createPolygon(country3Geom), 2));
+
+        index = new CountryBordersIndex(Arrays.asList(h1, h2), 0.25);
+    }
+
+    private String[] getNames(CountryBordersPolygon[] polygons) {
+        String[] names = new String[polygons.length];
+        for(int i = 0; i < polygons.length; i++)
+            names[i] = polygons[i].getName();
+        return names;
+    }
+
+    /**
+     * Test that points in cells inside of a country and in cells on a border are found in the correct countries
+     */
+    @Test
+    public void TestGetCountry() {
+        assertEquals("[country1]", Arrays.toString(getNames(index.getCountry(new Coordinate(0.4, 0.4)))));
+        assertEquals("[country1]", Arrays.toString(getNames(index.getCountry(new Coordinate(0.99, 0.5)))));
+        assertEquals("[country2]", Arrays.toString(getNames(index.getCountry(new Coordinate(1.01, 0.5)))));
+        assertEquals("[country2, country3]", Arrays.toString(getNames(index.getCountry(new Coordinate(1.7, 0.5)))));
+        assertEquals("[country3]", Arrays.toString(getNames(index.getCountry(new Coordinate(2.5, 0.5)))));
+    }
+
+    /**
+     * Test that points on a border or outside of all countries are not found in any country
+     */
+    @Test
+    public void TestGetCountryOutside() {
+        assertEquals(0, index.getCountry(new Coordinate(1.0, 0.5)).length);
+        assertEquals(0, index.getCountry(new Coordinate(0.5, 1.5)).length);
+        assertEquals(0, index.getCountry(new Coordinate(-0.5, -0.5)).length);
+        assertEquals(0, index.getCountry(new Coordinate(Double.NaN, 0.5)).length);
+    }
+
+    /**
+     * Test that candidates are determined by the bounding boxes of the polygons and their hierarchy
+     */
+    @Test
+    public void TestGetCandidateCountry() {
+        assertEquals("[country1]", Arrays.toString(getNames(index.getCandidateCountry(new Coordinate(0.4, 0.4)))));
+        assertEquals("[country1, country2]", Arrays.toString(getNames(index.getCandidateCountry(new Coordinate(1.0, 0.5)))));
+        assertEquals("[country2, country3]", Arrays.toString(getNames(index.getCandidateCountry(new Coordinate(1.6, 0.5)))));
+        assertEquals(0, index.getCandidateCountry(new Coordinate(0.5, 1.5)).length);
+    }
+}
@@ -0,0 +1,81 @@
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.vividsolutions.jts.geom.Envelope;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EdgeBoundsIndexTest {
+    private static final int SIZE = 20;
+
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private GraphHopperStorage graph;
+
+    @Before
+    public void setUp() {
+        graph = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+
+        NodeAccess nodes = graph.getNodeAccess();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int node = y * SIZE + x;
+                nodes.setNode(node, 49.0 + y * 0.01, 8.0 + x * 0.01);
+                if (x > 0)
+                    graph.edge(node - 1, node, 730, true);
+                if (y > 0)
+                    graph.edge(node - SIZE, node, 1110, true);
+            }
+        }
+
+        // a long edge with a geometry leaving the grid
+        graph.edge(0, SIZE * SIZE - 1, 50000, true).setWayGeometry(Helper.createPointList(48.9, 8.3, 49.3, 8.3));
+    }
+
+    private static Envelope getEnvelope(PointList points) {
+        Envelope env = new Envelope();
+        for (int i = 0; i < points.getSize(); i++)
+            env.expandToInclude(points.getLon(i), points.getLat(i));
+        return env;
+    }
+
+    @Test
+    public void TestContainsAllIntersectingEdges() {
+        EdgeBoundsIndex index = EdgeBoundsIndex.loadOrCreate(new RAMDirectory(), graph);
+        assertEquals(graph.getAllEdges().getMaxId(), index.getEdgesCount());
+
+        Envelope[] queries = new Envelope[] {
+                new Envelope(8.021, 8.043, 49.051, 49.072),
+                new Envelope(8.295, 8.305, 48.5, 48.95),
+                new Envelope(7.0, 7.5, 49.0, 49.1),
+                new Envelope(8.0, 8.2, 49.0, 49.2)
+        };
+
+        for (Envelope query : queries) {
+            IntHashSet edges = index.getEdges(query);
+            EdgeIterator iter = graph.getAllEdges();
+            while (iter.next()) {
+                if (getEnvelope(iter.fetchWayGeometry(3)).intersects(query))
+                    assertTrue(edges.contains(iter.getEdge()));
+            }
+        }
+
+        // only the long edge reaches below the grid
+        IntHashSet edges = index.getEdges(new Envelope(8.295, 8.305, 48.5, 48.95));
+        assertTrue(edges.size() < 10);
+    }
+}
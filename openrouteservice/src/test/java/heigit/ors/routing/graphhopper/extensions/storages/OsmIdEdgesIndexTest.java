@@ -0,0 +1,106 @@
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OsmIdEdgesIndexTest {
+    private static final String NAME = "ext_traffic_edges";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GHDirectory createDirectory() {
+        return new GHDirectory(folder.getRoot().getAbsolutePath(), DAType.RAM_STORE);
+    }
+
+    private OsmIdEdgesIndex.Builder createBuilder() {
+        OsmIdEdgesIndex.Builder builder = new OsmIdEdgesIndex.Builder();
+        // not sorted by either id, and way 5000000000 does not fit into an int
+        builder.add(7, 200L);
+        builder.add(2, 5000000000L);
+        builder.add(9, 100L);
+        builder.add(4, 200L);
+        builder.add(0, 300L);
+        builder.add(5, 200L);
+        return builder;
+    }
+
+    private List<Integer> getEdges(OsmIdEdgesIndex index, long osmId) {
+        List<Integer> edges = new ArrayList<>();
+        int first = index.indexOfOsmId(osmId);
+        if (first < 0)
+            return edges;
+
+        for (int i = first; i < index.size() && index.getOsmIdAt(i) == osmId; i++)
+            edges.add(index.getEdgeIdAt(i));
+        return edges;
+    }
+
+    private void assertLookups(OsmIdEdgesIndex index) {
+        assertEquals(6, index.size());
+
+        assertEquals(200L, index.getOsmId(7));
+        assertEquals(200L, index.getOsmId(4));
+        assertEquals(5000000000L, index.getOsmId(2));
+        assertEquals(300L, index.getOsmId(0));
+        assertEquals(100L, index.getOsmId(9));
+        assertEquals(OsmIdEdgesIndex.NO_OSM_ID, index.getOsmId(1));
+        assertEquals(OsmIdEdgesIndex.NO_OSM_ID, index.getOsmId(10));
+
+        assertEquals(Arrays.asList(4, 5, 7), getEdges(index, 200L));
+        assertEquals(Arrays.asList(9), getEdges(index, 100L));
+        assertEquals(Arrays.asList(2), getEdges(index, 5000000000L));
+        assertEquals(-1, index.indexOfOsmId(150L));
+        assertEquals(-1, index.indexOfOsmId(1L));
+        assertEquals(-1, index.indexOfOsmId(6000000000L));
+    }
+
+    @Test
+    public void TestCreatedIndexLookups() {
+        OsmIdEdgesIndex index = OsmIdEdgesIndex.create(createDirectory(), NAME, createBuilder());
+        assertLookups(index);
+        index.close();
+    }
+
+    @Test
+    public void TestLoadFlushedIndex() {
+        OsmIdEdgesIndex.create(createDirectory(), NAME, createBuilder()).close();
+
+        OsmIdEdgesIndex index = OsmIdEdgesIndex.load(createDirectory(), NAME);
+        assertLookups(index);
+        index.close();
+    }
+
+    @Test
+    public void TestLoadMissingIndexIsEmpty() {
+        OsmIdEdgesIndex index = OsmIdEdgesIndex.load(createDirectory(), NAME);
+        assertNotNull(index);
+        assertEquals(0, index.size());
+        assertEquals(OsmIdEdgesIndex.NO_OSM_ID, index.getOsmId(0));
+        assertEquals(-1, index.indexOfOsmId(200L));
+        index.close();
+
+        // the empty index has been stored and is loaded the next time
+        index = OsmIdEdgesIndex.load(createDirectory(), NAME);
+        assertEquals(0, index.size());
+        index.close();
+    }
+
+    @Test
+    public void TestEmptyBuilder() {
+        OsmIdEdgesIndex index = OsmIdEdgesIndex.create(createDirectory(), NAME, new OsmIdEdgesIndex.Builder());
+        assertEquals(0, index.size());
+        assertEquals(OsmIdEdgesIndex.NO_OSM_ID, index.getOsmId(3));
+        assertEquals(-1, index.indexOfOsmId(3L));
+        index.close();
+    }
+}
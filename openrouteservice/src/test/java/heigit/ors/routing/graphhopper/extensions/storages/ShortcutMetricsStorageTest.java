@@ -0,0 +1,150 @@
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ShortcutMetricsStorageTest {
+    private static final int SIZE = 6;
+
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+    private final Weighting weighting = new FastestWeighting(encoder);
+
+    private GraphHopperStorage graph;
+    private CHGraph chGraph;
+
+    @Before
+    public void setUp() {
+        graph = new GraphHopperStorage(Collections.singletonList(weighting), new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+
+        // grid with varying lengths and a few one way edges
+        NodeAccess nodes = graph.getNodeAccess();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int node = y * SIZE + x;
+                nodes.setNode(node, 49.0 + y * 0.01, 8.0 + x * 0.01);
+                if (x > 0)
+                    graph.edge(node - 1, node, 700 + 37 * ((node * 7) % 11), node % 4 != 1);
+                if (y > 0)
+                    graph.edge(node - SIZE, node, 1100 + 53 * ((node * 5) % 7), node % 6 != 2);
+            }
+        }
+
+        graph.freeze();
+
+        chGraph = graph.getGraph(CHGraph.class, weighting);
+        new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_STORE), graph, chGraph, weighting, TraversalMode.NODE_BASED).doWork();
+    }
+
+    /**
+     * Adds the original edges of the edge traversed from fromNode to toNode, each with toNode as adjacent node.
+     */
+    private void unpack(int edge, int fromNode, int toNode, List<EdgeIteratorState> edges) {
+        CHEdgeIteratorState state = (CHEdgeIteratorState) chGraph.getEdgeIteratorState(edge, toNode);
+        if (!state.isShortcut()) {
+            edges.add(graph.getEdgeIteratorState(edge, toNode));
+            return;
+        }
+
+        int first = state.getSkippedEdge1();
+        int second = state.getSkippedEdge2();
+        EdgeIteratorState firstState = chGraph.getEdgeIteratorState(first, fromNode);
+        if (firstState == null) {
+            first = state.getSkippedEdge2();
+            second = state.getSkippedEdge1();
+            firstState = chGraph.getEdgeIteratorState(first, fromNode);
+        }
+        int viaNode = firstState.getBaseNode();
+
+        unpack(first, fromNode, viaNode, edges);
+        unpack(second, viaNode, toNode, edges);
+    }
+
+    private double getTime(List<EdgeIteratorState> edges) {
+        double time = 0;
+        for (EdgeIteratorState edge : edges) {
+            try {
+                time += weighting.calcMillis(edge, false, EdgeIterator.NO_EDGE) / 1000.0;
+            } catch (IllegalStateException ex) {
+                return Double.NaN;
+            }
+        }
+        return time;
+    }
+
+    private double getDistance(List<EdgeIteratorState> edges) {
+        double distance = 0;
+        for (EdgeIteratorState edge : edges)
+            distance += edge.getDistance();
+        return distance;
+    }
+
+    @Test
+    public void TestSameMetricsAsUnpackedPaths() {
+        ShortcutMetricsStorage metrics = ShortcutMetricsStorage.loadOrCreate(new RAMDirectory(), chGraph, weighting);
+
+        int shortcuts = 0;
+        EdgeIterator iter = chGraph.getAllEdges();
+        while (iter.next()) {
+            CHEdgeIteratorState state = (CHEdgeIteratorState) iter;
+            if (!state.isShortcut())
+                continue;
+
+            int edge = state.getEdge();
+            int baseNode = state.getBaseNode();
+            int adjNode = state.getAdjNode();
+            assertTrue(metrics.isShortcut(edge));
+            shortcuts++;
+
+            List<EdgeIteratorState> forward = new ArrayList<>();
+            unpack(edge, baseNode, adjNode, forward);
+            List<EdgeIteratorState> backward = new ArrayList<>();
+            unpack(edge, adjNode, baseNode, backward);
+
+            double distance = getDistance(forward);
+            assertEquals(distance, metrics.getDistance(edge), distance * 1e-5);
+            assertEquals(distance, getDistance(backward), 1e-6);
+
+            double forwardTime = getTime(forward);
+            double backwardTime = getTime(backward);
+            double towardsHigher = adjNode > baseNode ? forwardTime : backwardTime;
+            double towardsLower = adjNode > baseNode ? backwardTime : forwardTime;
+            if (Double.isNaN(towardsHigher))
+                assertTrue(Double.isNaN(metrics.getTime(edge, true)));
+            else
+                assertEquals(towardsHigher, metrics.getTime(edge, true), towardsHigher * 1e-5);
+            if (Double.isNaN(towardsLower))
+                assertTrue(Double.isNaN(metrics.getTime(edge, false)));
+            else
+                assertEquals(towardsLower, metrics.getTime(edge, false), towardsLower * 1e-5);
+        }
+
+        assertTrue(shortcuts > 0);
+        assertFalse(metrics.isShortcut(graph.getAllEdges().getMaxId() - 1));
+    }
+}
@@ -0,0 +1,74 @@
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightingPresetStorageTest {
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private GraphHopperStorage graph;
+
+    @Before
+    public void setUp() {
+        graph = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+        graph.edge(0, 1, 10, true);
+        graph.edge(2, 1, 10, true);
+        graph.edge(1, 3, 10, true);
+        graph.edge(3, 3, 10, true);
+    }
+
+    /**
+     * Depends on the edge and on the order of the node ids like the hill index weightings.
+     */
+    private Weighting createDirectedWeighting() {
+        return new AbstractWeighting(encodingManager.getEncoder(FlagEncoderNames.CAR_ORS)) {
+            @Override
+            public double getMinWeight(double distance) {
+                return 0;
+            }
+
+            @Override
+            public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+                return edgeState.getEdge() + (edgeState.getBaseNode() < edgeState.getAdjNode() ? 0.5 : 0.25);
+            }
+
+            @Override
+            public String getName() {
+                return "directed";
+            }
+        };
+    }
+
+    @Test
+    public void TestStoresSumOfWeightingsPerDirection() {
+        Weighting weighting = createDirectedWeighting();
+        WeightingPresetStorage storage = WeightingPresetStorage.loadOrCreate(new RAMDirectory(), "test", graph, new Weighting[] { weighting, weighting });
+
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState reverseState = graph.getEdgeIteratorState(edge, state.getBaseNode());
+
+            assertTrue(storage.contains(edge));
+            for (EdgeIteratorState s : new EdgeIteratorState[] { state, reverseState }) {
+                double expected = 2 * weighting.calcWeight(s, false, EdgeIterator.NO_EDGE);
+                assertEquals(expected, storage.getFactor(edge, s.getBaseNode() < s.getAdjNode()), 1e-6);
+            }
+        }
+
+        assertFalse(storage.contains(graph.getEdges()));
+    }
+}
@@ -0,0 +1,42 @@
+package heigit.ors.routing.graphhopper.extensions.storages.builders;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OsmIdLevelTableTest {
+    @Test
+    public void TestUnsortedInput() {
+        long[] ids = { 42, 7, 1000000000000L, 13, 0 };
+        byte[] levels = { 1, 2, 3, 4, 5 };
+        OsmIdLevelTable table = OsmIdLevelTable.create(ids, levels, 4);
+
+        assertEquals(4, table.size());
+        assertEquals(1, table.get(42, (byte) -1));
+        assertEquals(2, table.get(7, (byte) -1));
+        assertEquals(3, table.get(1000000000000L, (byte) -1));
+        assertEquals(4, table.get(13, (byte) -1));
+        // beyond the given size
+        assertEquals(-1, table.get(0, (byte) -1));
+        assertEquals(-1, table.get(8, (byte) -1));
+    }
+
+    @Test
+    public void TestDuplicatesKeepLastLevel() {
+        long[] ids = { 5, 3, 5, 3, 5 };
+        byte[] levels = { 1, 2, 3, 4, 6 };
+        OsmIdLevelTable table = OsmIdLevelTable.create(ids, levels, ids.length);
+
+        assertEquals(2, table.size());
+        assertEquals(4, table.get(3, (byte) 0));
+        assertEquals(6, table.get(5, (byte) 0));
+    }
+
+    @Test
+    public void TestEmptyTable() {
+        OsmIdLevelTable table = OsmIdLevelTable.create(new long[0], new byte[0], 0);
+
+        assertEquals(0, table.size());
+        assertEquals(63, table.get(1, (byte) 63));
+    }
+}
@@ -0,0 +1,130 @@
+package heigit.ors.routing.traffic;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import heigit.ors.routing.graphhopper.extensions.ORSWeightingFactory;
+import heigit.ors.routing.graphhopper.extensions.TrafficCHAlgorithmFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.storages.CustomizableHierarchy;
+import heigit.ors.routing.graphhopper.extensions.weighting.TrafficAvoidWeighting;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the snapshots published for a profile are found by the graphs of the profile, whose folder changes
+ * when an update is swapped in.
+ */
+public class RealTrafficDataProviderTest {
+    private static final String GRAPH_PATH = "graphs/car";
+    // the folder of a graph built by an update, see VersionedGraphDirectory
+    private static final String VERSION_PATH = "graphs/car.1539875486000";
+
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+
+    /**
+     * Graph with the direct road 0 - 1 - 2 and the detour 0 - 3 - 2.
+     */
+    private GraphHopperStorage createGraph(String location) {
+        GraphHopperStorage graph = new GraphHopperStorage(new GHDirectory(location, DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        graph.create(3);
+        graph.getNodeAccess().setNode(0, 49.40, 8.66);
+        graph.getNodeAccess().setNode(1, 49.40, 8.67);
+        graph.getNodeAccess().setNode(2, 49.40, 8.68);
+        graph.getNodeAccess().setNode(3, 49.41, 8.67);
+        graph.edge(0, 1, 700, true);
+        graph.edge(1, 2, 700, true);
+        graph.edge(0, 3, 1200, true);
+        graph.edge(3, 2, 1200, true);
+        return graph;
+    }
+
+    private TrafficSnapshot createSnapshot(long version) {
+        HashMap<Integer, AvoidEdgeInfo> avoidEdges = new HashMap<>();
+        // a delay of 15 minutes on the detour
+        avoidEdges.put(2, new AvoidEdgeInfo(2, new short[] { 1602 }));
+        BitSet blocked = new BitSet();
+        blocked.set(0);
+
+        return new TrafficSnapshot(version, new HashMap<Integer, EdgeInfo>(), avoidEdges, blocked, new BitSet());
+    }
+
+    private HintsMap createHints(TrafficSnapshot snapshot) {
+        HintsMap hints = new HintsMap();
+        hints.setWeighting("fastest");
+        hints.put("weighting_traffic_block", true);
+        hints.put(ORSGraphHopper.TRAFFIC_SNAPSHOT, snapshot.getVersion());
+        return hints;
+    }
+
+    @Test
+    public void TestSnapshotOfProfile() {
+        RealTrafficDataProvider provider = new RealTrafficDataProvider();
+        TrafficSnapshot snapshot = createSnapshot(3);
+        provider.publish(GRAPH_PATH, snapshot);
+
+        assertSame(snapshot, provider.getSnapshot(GRAPH_PATH));
+        assertSame(snapshot, provider.getSnapshot(GRAPH_PATH, 3));
+        assertSame(TrafficSnapshot.EMPTY, provider.getSnapshot("graphs/bike"));
+        assertSame(TrafficSnapshot.EMPTY, provider.getSnapshot("graphs/bike", 0));
+    }
+
+    @Test
+    public void TestWeightingAfterSwap() {
+        RealTrafficDataProvider provider = new RealTrafficDataProvider();
+        TrafficSnapshot snapshot = createSnapshot(3);
+        provider.publish(GRAPH_PATH, snapshot);
+        ORSWeightingFactory weightingFactory = new ORSWeightingFactory(provider, GRAPH_PATH);
+
+        // the graph loaded from the configured path and the one of an update see the same traffic
+        for (String location : new String[] { GRAPH_PATH, VERSION_PATH }) {
+            GraphHopperStorage graph = createGraph(location);
+            Weighting weighting = weightingFactory.createWeighting(createHints(snapshot), TraversalMode.NODE_BASED, encoder, graph, null, graph);
+            assertTrue(weighting instanceof TrafficAvoidWeighting);
+
+            EdgeIteratorState detour = graph.getEdgeIteratorState(2, 3);
+            double freeFlow = new TrafficAvoidWeighting(null, encoder, TrafficSnapshot.EMPTY).calcWeight(detour, false, EdgeIterator.NO_EDGE);
+            assertEquals(freeFlow + 15 * 60, weighting.calcWeight(detour, false, EdgeIterator.NO_EDGE), 1e-6);
+        }
+    }
+
+    @Test
+    public void TestTrafficCHAfterSwap() {
+        // the factory reads the snapshots of the provider used by the routing profiles
+        String graphPath = "graphs/car-traffic-ch";
+        GraphHopperStorage graph = createGraph(graphPath + ".1539875486000");
+        TrafficCHAlgorithmFactory factory = new TrafficCHAlgorithmFactory(graph, encoder,
+                CustomizableHierarchy.loadOrCreate(new RAMDirectory(), graph), graphPath);
+
+        TrafficSnapshot snapshot = createSnapshot(5);
+        snapshot = snapshot.withShortcutWeights(factory.customize(snapshot));
+        RealTrafficDataProvider.getInstance().publish(graphPath, snapshot);
+
+        AlgorithmOptions opts = AlgorithmOptions.start().traversalMode(TraversalMode.NODE_BASED).hints(createHints(snapshot)).build();
+        Path path = factory.createAlgo(graph, opts).calcPath(0, 2);
+
+        // the blocked road is avoided and the delay on the detour is included
+        assertTrue(path.isFound());
+        assertEquals(2, path.calcEdges().size());
+        assertEquals(3, path.calcNodes().get(1));
+        assertTrue(path.getWeight() > 15 * 60);
+    }
+}
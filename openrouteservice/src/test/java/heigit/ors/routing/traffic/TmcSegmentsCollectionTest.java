@@ -0,0 +1,50 @@
+package heigit.ors.routing.traffic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TmcSegmentsCollectionTest {
+    private TmcSegment createSegment(long id, int from, int to, int direction) {
+        return new TmcSegment(id, "A5", from, to, direction, 100, null, null);
+    }
+
+    @Test
+    public void TestSegmentsOfLocationCodes() {
+        List<TmcSegment> segments = new ArrayList<>();
+        segments.add(createSegment(0, 10, 11, 0));
+        segments.add(createSegment(1, 11, 12, 0));
+        segments.add(createSegment(2, 11, 10, 1));
+        segments.add(createSegment(3, 10, 11, 0));
+        TmcSegmentsCollection collection = new TmcSegmentsCollection(segments);
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = collection.getFirstSegmentIndex(11, 10); i >= 0; i = collection.getNextSegmentIndex(i))
+            ids.add(collection.get(i).getId());
+        assertEquals(3, ids.size());
+        assertEquals(Long.valueOf(0), ids.get(0));
+        assertEquals(Long.valueOf(2), ids.get(1));
+        assertEquals(Long.valueOf(3), ids.get(2));
+
+        int i = collection.getFirstSegmentIndex(12, 11);
+        assertEquals(1, i);
+        assertEquals(-1, collection.getNextSegmentIndex(i));
+
+        assertEquals(-1, collection.getFirstSegmentIndex(10, 12));
+    }
+
+    @Test
+    public void TestNegativeLocationCodes() {
+        List<TmcSegment> segments = new ArrayList<>();
+        segments.add(createSegment(0, -1, 5, 0));
+        segments.add(createSegment(1, -1, -5, 0));
+        TmcSegmentsCollection collection = new TmcSegmentsCollection(segments);
+
+        assertEquals(0, collection.getFirstSegmentIndex(5, -1));
+        assertEquals(1, collection.getFirstSegmentIndex(-1, -5));
+        assertEquals(-1, collection.getFirstSegmentIndex(-5, 5));
+    }
+}
@@ -0,0 +1,79 @@
+package heigit.ors.routing.traffic;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class TrafficSnapshotTest {
+    private TrafficSnapshot createSnapshot() {
+        HashMap<Integer, AvoidEdgeInfo> avoidEdges = new HashMap<>();
+        avoidEdges.put(7, new AvoidEdgeInfo(7, new short[] { 1, 2 }));
+        avoidEdges.put(3, new AvoidEdgeInfo(3, new short[] { 1602 }));
+        avoidEdges.put(12, new AvoidEdgeInfo(12, new short[] { 403 }));
+
+        BitSet blocked = new BitSet();
+        blocked.set(5);
+        BitSet blockedHv = new BitSet();
+        blockedHv.set(9);
+
+        return new TrafficSnapshot(4, new HashMap<Integer, EdgeInfo>(), avoidEdges, blocked, blockedHv);
+    }
+
+    @Test
+    public void TestBlockedEdges() {
+        TrafficSnapshot snapshot = createSnapshot();
+
+        assertEquals(4, snapshot.getVersion());
+        assertTrue(snapshot.isBlocked(5, false));
+        assertTrue(snapshot.isBlocked(5, true));
+        assertFalse(snapshot.isBlocked(9, false));
+        assertTrue(snapshot.isBlocked(9, true));
+        assertFalse(snapshot.isBlocked(6, true));
+        assertFalse(snapshot.isBlocked(-1, true));
+    }
+
+    @Test
+    public void TestPenalties() {
+        TrafficSnapshot snapshot = createSnapshot();
+
+        assertEquals(-1, snapshot.getPenaltyIndex(5, true));
+
+        int index = snapshot.getPenaltyIndex(7, true);
+        assertEquals(TrafficSnapshot.PENALTY_SPEED_FACTOR, snapshot.getPenaltyType(index));
+        assertEquals(0.2, snapshot.getPenaltyValue(index), 1e-6);
+
+        index = snapshot.getPenaltyIndex(3, false);
+        assertEquals(TrafficSnapshot.PENALTY_DELAY, snapshot.getPenaltyType(index));
+        assertEquals(15 * 60, snapshot.getPenaltyValue(index), 1e-6);
+
+        // events for heavy vehicles only are ignored by cars
+        assertEquals(1, snapshot.getPenaltyValue(snapshot.getPenaltyIndex(12, true)), 1e-6);
+        assertEquals(0, snapshot.getPenaltyValue(snapshot.getPenaltyIndex(12, false)), 1e-6);
+    }
+
+    @Test
+    public void TestChangedEdges() {
+        TrafficSnapshot snapshot = createSnapshot();
+
+        BitSet changed = snapshot.getChangedEdges(false);
+        assertEquals(4, changed.cardinality());
+        assertTrue(changed.get(3) && changed.get(5) && changed.get(7) && changed.get(12));
+
+        changed = snapshot.getChangedEdges(true);
+        assertEquals(5, changed.cardinality());
+        assertTrue(changed.get(9));
+
+        assertNull(snapshot.getShortcutWeights());
+        assertEquals(4, snapshot.withShortcutWeights(null).getVersion());
+    }
+
+    @Test
+    public void TestEmptySnapshot() {
+        assertTrue(TrafficSnapshot.EMPTY.isEmpty());
+        assertEquals(-1, TrafficSnapshot.EMPTY.getPenaltyIndex(1, true));
+        assertFalse(TrafficSnapshot.EMPTY.isBlocked(1, true));
+    }
+}
@@ -0,0 +1,206 @@
+package heigit.ors.services.routing.requestprocessors.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import com.vividsolutions.jts.geom.Coordinate;
+import heigit.ors.common.DistanceUnit;
+import heigit.ors.globalResponseProcessor.geoJson.GeoJsonResponseWriter;
+import heigit.ors.routing.*;
+import heigit.ors.util.mockupUtil.RoutingRequestMockup;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Compares the output of {@link JsonRoutingResponseStreamWriter} with the output of the writers it replaces, apart
+ * from the timestamp and the generated feature ids.
+ */
+public class JsonRoutingResponseStreamWriterTest {
+    private static final String[] GEOMETRY_FORMATS = { null, "", "encodedpolyline", "geojson", "polyline" };
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private RoutingRequest createRequest(String geometryFormat, boolean elevation) throws Exception {
+        RoutingRequest request = new RoutingRequestMockup().create(RoutingRequestMockup.routeProfile.standardHeidelberg2d);
+        request.setGeometryFormat(geometryFormat);
+        request.setIncludeElevation(elevation);
+        request.setCoordinates(new Coordinate[] { new Coordinate(8.690614, 49.38365, 112.3), new Coordinate(8.7107, 49.4516, 145.7) });
+        request.setAttributes(new String[] { "detourfactor", "percentage", "avgspeed" });
+        request.setIncludeManeuvers(true);
+        request.setIncludeRoundaboutExits(true);
+        return request;
+    }
+
+    private RouteStep createStep(int type, int from, int to) {
+        RouteStep step = new RouteStep();
+        step.setDistance(617.3);
+        step.setDuration(71.2);
+        step.setType(type);
+        step.setInstruction("Turn right onto Berliner Straße");
+        step.setName("Berliner Straße");
+        step.setMessage(null);
+        step.setMessageType(-1);
+        step.setExitNumber(-1);
+        step.setWayPoints(new int[] { from, to });
+        return step;
+    }
+
+    private RouteResult createRoute(double lonOffset, boolean elevation) throws Exception {
+        RouteResult route = new RouteResult(0);
+
+        double[][] coords = {
+                { 49.383661, 8.690675, 112.34 },
+                { 49.383762, 8.69063, 113.0 },
+                { 49.383755, 8.690444946820548, 115.56 },
+                { 49.384111, 8.6904630144789, 118.0 },
+                { 49.384595, 8.690476425524274, 121.25 },
+                { 49.3854, 8.690506107646703, 120.1 } };
+        PointList points = new PointList(coords.length, elevation);
+        for (double[] c : coords) {
+            if (elevation)
+                points.add(c[0], c[1] + lonOffset, c[2]);
+            else
+                points.add(c[0], c[1] + lonOffset);
+        }
+        route.addPoints(points, false, elevation);
+
+        RouteSummary summary = route.getSummary();
+        summary.setDistance(1234.5);
+        summary.setDuration(142.4);
+        summary.setAscent(elevation ? 8.9 : 0.0);
+        summary.setDescent(elevation ? 1.2 : 0.0);
+        summary.setAverageSpeed(31.21);
+        summary.setBBox(new BBox(8.690444 + lonOffset, 8.690675 + lonOffset, 49.383661, 49.3854));
+
+        PathWrapper path = new PathWrapper();
+        path.setDistance(1234.5);
+        path.setTime(142400);
+        path.setAscend(elevation ? 8.9 : 0.0);
+        path.setDescend(elevation ? 1.2 : 0.0);
+        path.setPoints(points);
+        RouteSegment segment = new RouteSegment(path, DistanceUnit.Meters);
+        segment.setDetourFactor(1.37);
+
+        RouteStep depart = createStep(11, 0, 2);
+        RouteStepManeuver maneuver = new RouteStepManeuver();
+        maneuver.setBearingBefore(0);
+        maneuver.setBearingAfter(345);
+        maneuver.setLocation(new Coordinate(8.6906754872 + lonOffset, 49.3836616407));
+        depart.setManeuver(maneuver);
+        segment.addStep(depart);
+
+        RouteStep roundabout = createStep(7, 2, 4);
+        roundabout.setMessage("Take the second exit");
+        roundabout.setMessageType(1);
+        roundabout.setExitNumber(2);
+        roundabout.setRoundaboutExitBearings(new int[] { 90, 180, 270 });
+        segment.addStep(roundabout);
+
+        segment.addStep(createStep(10, 5, 5));
+        route.addSegment(segment);
+        route.setWayPointsIndices(new int[] { 0, 5 });
+
+        RouteExtraInfo surface = new RouteExtraInfo("surface");
+        surface.add(new RouteSegmentItem(0, 2, 3, 400.25));
+        surface.add(new RouteSegmentItem(2, 5, 1, 834.25));
+        route.addExtraInfo(surface);
+        route.addExtraInfo(new RouteExtraInfo("waytypes"));
+        RouteExtraInfo steepness = new RouteExtraInfo("steepness");
+        steepness.setFactor(10.0);
+        steepness.add(new RouteSegmentItem(0, 3, 12, 700));
+        steepness.add(new RouteSegmentItem(3, 5, -7, 534.5));
+        route.addExtraInfo(steepness);
+
+        route.addWarning(new RouteWarning(RouteWarning.TOLLWAYS));
+
+        return route;
+    }
+
+    private RouteResult[] createRoutes(boolean elevation) throws Exception {
+        return new RouteResult[] { createRoute(0, elevation), createRoute(0.01, elevation) };
+    }
+
+    private String write(JsonRoutingResponseStreamWriter writer, boolean geoJson) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonGenerator gen = jsonFactory.createGenerator(out);
+        if (geoJson)
+            writer.writeGeoJson(gen);
+        else
+            writer.writeJson(gen);
+        gen.close();
+        return out.toString();
+    }
+
+    /**
+     * Removes the parts of a response that differ between two calls.
+     */
+    private String normalize(String json) {
+        JSONObject jResp = new JSONObject(json);
+        jResp.getJSONObject("info").remove("timestamp");
+        if (jResp.has("features")) {
+            JSONArray jFeatures = jResp.getJSONArray("features");
+            for (int i = 0; i < jFeatures.length(); i++)
+                Assert.assertNotNull(jFeatures.getJSONObject(i).remove("id"));
+        }
+        return jResp.toString();
+    }
+
+    private void assertSameJson(boolean elevation) throws Exception {
+        RouteResult[] routes = createRoutes(elevation);
+        for (String format : GEOMETRY_FORMATS) {
+            RoutingRequest request = createRequest(format, elevation);
+            String expected = normalize(JsonRoutingResponseWriter.toJson(request, routes).toString());
+            String actual = normalize(write(new JsonRoutingResponseStreamWriter(request, routes), false));
+            JSONAssert.assertEquals("geometry format " + format, expected, actual, JSONCompareMode.STRICT);
+        }
+    }
+
+    private void assertSameGeoJson(boolean elevation) throws Exception {
+        RouteResult[] routes = createRoutes(elevation);
+        for (String format : GEOMETRY_FORMATS) {
+            RoutingRequest request = createRequest(format, elevation);
+            String expected = normalize(GeoJsonResponseWriter.toGeoJson(request, routes).toString());
+            String actual = normalize(write(new JsonRoutingResponseStreamWriter(request, routes), true));
+            JSONAssert.assertEquals("geometry format " + format, expected, actual, JSONCompareMode.STRICT);
+        }
+    }
+
+    @Test
+    public void writesSameJson() throws Exception {
+        assertSameJson(false);
+    }
+
+    @Test
+    public void writesSameJsonWithElevation() throws Exception {
+        assertSameJson(true);
+    }
+
+    @Test
+    public void writesSameGeoJson() throws Exception {
+        assertSameGeoJson(false);
+    }
+
+    @Test
+    public void writesSameGeoJsonWithElevation() throws Exception {
+        assertSameGeoJson(true);
+    }
+
+    @Test
+    public void writesSameJsonWithoutGeometry() throws Exception {
+        RouteResult[] routes = createRoutes(false);
+        RoutingRequest request = createRequest(null, false);
+        request.setIncludeGeometry(false);
+        String expected = normalize(JsonRoutingResponseWriter.toJson(request, routes).toString());
+        String actual = normalize(write(new JsonRoutingResponseStreamWriter(request, routes), false));
+        JSONAssert.assertEquals(expected, actual, JSONCompareMode.STRICT);
+    }
+}
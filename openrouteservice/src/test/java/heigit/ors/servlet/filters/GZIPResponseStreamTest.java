@@ -0,0 +1,105 @@
+package heigit.ors.servlet.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+public class GZIPResponseStreamTest {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final Map<String, String> headers = new HashMap<>();
+    private int contentLength = -1;
+
+    /**
+     * Response that records the headers, the content length and the body.
+     */
+    private HttpServletResponse createResponse() {
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { HttpServletResponse.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getOutputStream":
+                    return out;
+                case "addHeader":
+                case "setHeader":
+                    headers.put((String) args[0], (String) args[1]);
+                    return null;
+                case "setContentLength":
+                    contentLength = (Integer) args[0];
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private byte[] decompress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) > 0)
+                out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private void write(byte[] content) throws IOException {
+        GZIPResponseStream stream = new GZIPResponseStream(createResponse());
+        // in pieces like a JSON generator
+        for (int i = 0; i < content.length; i += 1000)
+            stream.write(content, i, Math.min(1000, content.length - i));
+        stream.close();
+    }
+
+    @Test
+    public void setsContentLengthOfSmallResponses() throws IOException {
+        byte[] content = new byte[50000];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) ('a' + i % 7);
+
+        write(content);
+
+        Assert.assertEquals(ContentEncodingType.GZIP, headers.get("Content-Encoding"));
+        Assert.assertEquals(body.size(), contentLength);
+        Assert.assertArrayEquals(content, decompress(body.toByteArray()));
+    }
+
+    @Test
+    public void streamsLargeResponses() throws IOException {
+        // random data does not compress, so more than the buffered size is written
+        byte[] content = new byte[3 << 20];
+        new Random(42).nextBytes(content);
+
+        write(content);
+
+        Assert.assertEquals(ContentEncodingType.GZIP, headers.get("Content-Encoding"));
+        Assert.assertEquals(-1, contentLength);
+        Assert.assertArrayEquals(content, decompress(body.toByteArray()));
+    }
+}
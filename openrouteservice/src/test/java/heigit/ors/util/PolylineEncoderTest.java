@@ -0,0 +1,34 @@
+package heigit.ors.util;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PolylineEncoderTest {
+    // the example of the encoded polyline algorithm format documentation
+    private static final Coordinate[] COORDINATES = new Coordinate[] {
+            new Coordinate(-120.2, 38.5),
+            new Coordinate(-120.95, 40.7),
+            new Coordinate(-126.453, 43.252)
+    };
+
+    @Test
+    public void TestEncode() {
+        Assert.assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", PolylineEncoder.encode(COORDINATES, false, new StringBuffer()));
+    }
+
+    @Test
+    public void TestEncodeIntoReusedBuffer() {
+        Coordinate[] longLine = new Coordinate[1000];
+        for (int i = 0; i < longLine.length; i++)
+            longLine[i] = new Coordinate(8.0 + i * 0.001, 49.0 - i * 0.002, 100 + i % 7);
+
+        PolylineEncoder encoder = new PolylineEncoder();
+        encoder.encode(longLine, true);
+        Assert.assertTrue(encoder.getLength() > 256);
+        Assert.assertEquals(PolylineEncoder.encode(longLine, true, new StringBuffer()), new String(encoder.getChars(), 0, encoder.getLength()));
+
+        encoder.encode(COORDINATES, false);
+        Assert.assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", new String(encoder.getChars(), 0, encoder.getLength()));
+    }
+}
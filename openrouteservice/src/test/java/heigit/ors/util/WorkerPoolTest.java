@@ -0,0 +1,140 @@
+package heigit.ors.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkerPoolTest {
+    @Test
+    public void runsAllTasks() throws Exception {
+        WorkerPool pool = new WorkerPool("test", 2);
+        final int[] values = new int[10];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            final int index = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    values[index] = index + 1;
+                    return null;
+                }
+            });
+        }
+
+        pool.run(tasks);
+
+        for (int i = 0; i < values.length; i++)
+            Assert.assertEquals(i + 1, values[i]);
+    }
+
+    @Test
+    public void runsOnCallingThreadWithoutWorkers() throws Exception {
+        WorkerPool pool = new WorkerPool("test", 0);
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger count = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Assert.assertSame(caller, Thread.currentThread());
+                    count.incrementAndGet();
+                    return null;
+                }
+            });
+        }
+
+        pool.run(tasks);
+
+        Assert.assertEquals(3, count.get());
+    }
+
+    @Test
+    public void runsNestedTasksOnSinglePool() throws Exception {
+        // the outer tasks occupy the only worker, the inner tasks must not wait for it
+        final WorkerPool pool = new WorkerPool("test", 1);
+        final AtomicInteger count = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    List<Callable<Void>> innerTasks = new ArrayList<>();
+                    for (int j = 0; j < 3; j++) {
+                        innerTasks.add(new Callable<Void>() {
+                            @Override
+                            public Void call() {
+                                count.incrementAndGet();
+                                return null;
+                            }
+                        });
+                    }
+                    pool.run(innerTasks);
+                    return null;
+                }
+            });
+        }
+
+        pool.run(tasks);
+
+        Assert.assertEquals(9, count.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rethrowsTaskException() throws Exception {
+        WorkerPool pool = new WorkerPool("test", 2);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() {
+                throw new IllegalStateException("failed");
+            }
+        });
+
+        pool.run(tasks);
+    }
+
+    @Test
+    public void waitsForRunningTasksOnFailure() throws Exception {
+        WorkerPool pool = new WorkerPool("test", 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                // fail only once the worker is busy with the second task
+                started.await();
+                throw new IllegalStateException("failed");
+            }
+        });
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                started.countDown();
+                Thread.sleep(200);
+                finished.set(true);
+                return null;
+            }
+        });
+
+        try {
+            pool.run(tasks);
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertTrue(finished.get());
+        }
+    }
+}